@@ -42,6 +42,7 @@
 
 package org.seasr.meandre.components;
 
+import java.io.File;
 import java.util.Set;
 
 import org.seasr.meandre.components.abstracts.util.AbstractComponentInputCache;
@@ -57,4 +58,8 @@ public class ComponentInputCache extends AbstractComponentInputCache {
         super(portNames);
     }
 
+    public ComponentInputCache(Set<String> portNames, int capacity, File spillDir) {
+        super(portNames, capacity, spillDir);
+    }
+
 }
@@ -42,6 +42,7 @@
 
 package org.seasr.meandre.components.abstracts;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -49,6 +50,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ScheduledFuture;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -68,6 +70,8 @@ import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.ComponentInputCache;
 import org.seasr.meandre.components.PackedDataComponents;
 import org.seasr.meandre.components.abstracts.util.ComponentLogFormatter;
+import org.seasr.meandre.components.abstracts.util.ComponentMetrics;
+import org.seasr.meandre.components.abstracts.util.MetricsRegistry;
 import org.seasr.meandre.components.abstracts.util.WebConsoleHandler;
 import org.seasr.meandre.support.generic.logging.formatter.ExceptionFormatter;
 
@@ -106,6 +110,35 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
     )
     public static final String PROP_IGNORE_ERRORS = "_ignore_errors";
 
+    @ComponentProperty(
+            description = "The maximum number of inputs buffered per port by the component input cache " +
+                          "(used by components with FiringPolicy = any while they wait for other inputs). " +
+                          "Use 0 for no limit. A full port never blocks or fails the flow: further inputs are spilled " +
+                          "to disk if _input_cache_spill is set, otherwise (or if they cannot be serialized) they are " +
+                          "kept in memory past the limit and a warning is logged.",
+            defaultValue = "0",
+            name = "_input_cache_capacity"
+    )
+    public static final String PROP_INPUT_CACHE_CAPACITY = "_input_cache_capacity";
+
+    @ComponentProperty(
+            description = "Set to 'true' to spill inputs to disk once a port of the input cache reaches its capacity. " +
+                          "Setting this property to 'false' keeps them in memory past the capacity (with a warning).",
+            defaultValue = "false",
+            name = "_input_cache_spill"
+    )
+    public static final String PROP_INPUT_CACHE_SPILL = "_input_cache_spill";
+
+    @ComponentProperty(
+            description = "Set to 'on' to collect execution metrics for this component (firings, latencies, errors, " +
+                          "items and bytes per port, time spent waiting for inputs) and expose them over JMX.<br/>" +
+                          "Possible values are: off, on<br>" +
+                          "Append ',&lt;seconds&gt;' to also print the metrics to the console periodically (e.g. 'on,60').",
+            defaultValue = "off",
+            name = "_metrics"
+    )
+    public static final String PROP_METRICS = "_metrics";
+
     //--------------------------------------------------------------------------------------------
 
 
@@ -124,6 +157,22 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
     public Logger console = null;
     public boolean ignoreErrors = false;
 
+    /** The execution metrics of this component (null when metrics are off) */
+    public ComponentMetrics metrics = null;
+
+    /** Per-firing state, allocated once and reused so that a firing does not allocate */
+    private String[] _inputPorts = null;
+    private final Set<String> _initiators = new HashSet<String>();
+    private final Set<String> _terminators = new HashSet<String>();
+    private String _className = null;
+
+    private ScheduledFuture<?> _metricsDump = null;
+    private ComponentContext _metricsContext = null;
+    private ComponentContext _instrumentedContext = null;
+
+    /** A failure of deferred work done outside of a firing, rethrown by the next firing */
+    private volatile Exception _deferredFailure = null;
+
 
     //--------------------------------------------------------------------------------------------
 
@@ -135,7 +184,21 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
     public void initialize(ComponentContextProperties ccp)
             throws ComponentExecutionException, ComponentContextException {
 
-        componentInputCache = new ComponentInputCache(new HashSet<String>(Arrays.asList(ccp.getInputNames())));
+        // descriptors generated before these properties existed will not have them
+        String cacheCapacity = ccp.getProperty(PROP_INPUT_CACHE_CAPACITY);
+        String cacheSpill = ccp.getProperty(PROP_INPUT_CACHE_SPILL);
+
+        File spillDir = null;
+        if (cacheSpill != null && Boolean.parseBoolean(cacheSpill.trim())) {
+            spillDir = new File(ccp.getRunDirectory());
+            if (!spillDir.isDirectory() && !spillDir.mkdirs())
+                spillDir = null;  // fall back to the default temp folder
+            if (spillDir == null)
+                spillDir = new File(System.getProperty("java.io.tmpdir"));
+        }
+
+        componentInputCache = new ComponentInputCache(new HashSet<String>(Arrays.asList(ccp.getInputNames())),
+                (cacheCapacity != null) ? Integer.parseInt(cacheCapacity.trim()) : 0, spillDir);
 
         Formatter formatter = new ComponentLogFormatter(ccp.getInstanceName(), ccp.getExecutionInstanceID(), ccp.getFlowExecutionInstanceID(), ccp.getFlowID());
         Handler consoleHandler = new WebConsoleHandler(ccp.getOutputConsole(), formatter);
@@ -188,8 +251,19 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
         inputPortNames = Collections.unmodifiableSet(inputPortNames);
         outputPortNames = Collections.unmodifiableSet(outputPortNames);
 
+        _inputPorts = inputPortNames.toArray(new String[inputPortNames.size()]);
+        _className = getClass().getName();
+
+        packedDataComponentsInput = new PackedDataComponents();
+        packedDataComponentsOutput = new PackedDataComponents();
+
+        inputPortsWithInitiators = Collections.unmodifiableSet(_initiators);
+        inputPortsWithTerminators = Collections.unmodifiableSet(_terminators);
+
         componentInputCache.setLogger(console);
 
+        initializeMetrics(ccp);
+
         try {
             console.entering(getClass().getName(), "initializeCallBack", ccp);
             initializeCallBack(ccp);
@@ -220,59 +294,95 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
     public void execute(ComponentContext cc)
             throws ComponentExecutionException, ComponentContextException {
 
+        long firingStart = 0;
+        boolean failed = false;
+
+        if (metrics != null) {
+            firingStart = metrics.firingStarted();
+
+            if (cc != _metricsContext) {
+                _metricsContext = cc;
+                _instrumentedContext = metrics.instrument(cc);
+            }
+            cc = _instrumentedContext;
+        }
+
         componentContext = cc;
 
-        // Initialize the PackedDataComponent variables each iteration
-        packedDataComponentsInput = new PackedDataComponents();
-        packedDataComponentsOutput = new PackedDataComponents();
+        // Reset the per-firing state (clearing empty sets is free)
+        _initiators.clear();
+        _terminators.clear();
 
-        inputPortsWithInitiators = new HashSet<String>();
-        inputPortsWithTerminators = new HashSet<String>();
+        // the level is checked up front so nothing is formatted or allocated when debugging is off
+        boolean finer = console.isLoggable(Level.FINER);
 
         try {
+            throwDeferredFailure();
+
             boolean callExecute = true;
 
-            for (String inputPort : inputPortNames) {
+            for (int i = 0; i < _inputPorts.length; i++) {
+                String inputPort = _inputPorts[i];
                 if (!cc.isInputAvailable(inputPort)) continue;
 
                 Object data = cc.getDataComponentFromInput(inputPort);
+                if (metrics != null)
+                    metrics.inputReceived(inputPort, data);
 
                 // show the inputs and data-types received on each input in "debug" mode
-                String debugMsg = String.format("Input port '%s' has data of type '%s'",
-                        inputPort, data.getClass().getName());
-                if (data instanceof StreamDelimiter)
-                	debugMsg += String.format(" (stream: %d)", ((StreamDelimiter)data).getStreamId());
-                console.finer(debugMsg);
+                if (finer) {
+                    String debugMsg = String.format("Input port '%s' has data of type '%s'",
+                            inputPort, data.getClass().getName());
+                    if (data instanceof StreamDelimiter)
+                        debugMsg += String.format(" (stream: %d)", ((StreamDelimiter)data).getStreamId());
+                    console.finer(debugMsg);
+                }
 
                 if (data instanceof StreamInitiator)
-                    inputPortsWithInitiators.add(inputPort);
+                    _initiators.add(inputPort);
 
                 else
 
                 if (data instanceof StreamTerminator)
-                    inputPortsWithTerminators.add(inputPort);
+                    _terminators.add(inputPort);
             }
 
-            inputPortsWithInitiators = Collections.unmodifiableSet(inputPortsWithInitiators);
-            inputPortsWithTerminators = Collections.unmodifiableSet(inputPortsWithTerminators);
-
-            if (inputPortsWithInitiators.size() > 0) {
-                callExecute = false;
-                handleStreamInitiators();
+            // the delimiters are forwarded even if the flush fails, so that the
+            // downstream components keep a consistent view of the streams
+            Exception flushFailure = null;
+            if (!_initiators.isEmpty() || !_terminators.isEmpty())
+                try {
+                    flushPending();
+                }
+                catch (Exception e) {
+                    flushFailure = e;
+                }
+
+            try {
+                if (!_initiators.isEmpty()) {
+                    callExecute = false;
+                    handleStreamInitiators();
+                }
+
+                if (!_terminators.isEmpty()) {
+                    callExecute = false;
+                    handleStreamTerminators();
+                }
             }
-
-            if (inputPortsWithTerminators.size() > 0) {
-                callExecute = false;
-                handleStreamTerminators();
+            catch (Exception e) {
+                if (flushFailure != null)
+                    console.log(Level.SEVERE, "Failed to process the pending firings", flushFailure);
+                throw e;
             }
 
-            if (callExecute) {
-                console.entering(getClass().getName(), "executeCallBack", cc);
-                executeCallBack(cc);
-                console.exiting(getClass().getName(), "executeCallBack");
-            }
+            if (flushFailure != null)
+                throw flushFailure;
+
+            if (callExecute)
+                dispatchExecute(cc);
         }
         catch (ComponentContextException e) {
+            failed = true;
             console.throwing(getClass().getName(), "executeCallBack", e);
             cc.pushDataComponentToOutput(OUT_ERROR, ExceptionFormatter.formatException(e));
 
@@ -280,6 +390,7 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
                 throw e;
         }
         catch (ComponentExecutionException e) {
+            failed = true;
             console.throwing(getClass().getName(), "executeCallBack", e);
             cc.pushDataComponentToOutput(OUT_ERROR, ExceptionFormatter.formatException(e));
 
@@ -287,12 +398,17 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
                 throw e;
         }
         catch (Exception e) {
+            failed = true;
             console.throwing(getClass().getName(), "executeCallBack", e);
             cc.pushDataComponentToOutput(OUT_ERROR, ExceptionFormatter.formatException(e));
 
             if (!ignoreErrors)
                 throw new ComponentExecutionException(e);
         }
+        finally {
+            if (metrics != null)
+                metrics.firingEnded(firingStart, failed);
+        }
     }
 
     /*
@@ -304,11 +420,29 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
             throws ComponentExecutionException, ComponentContextException {
 
         try {
-            console.entering(getClass().getName(), "disposeCallBack", ccp);
-            disposeCallBack(ccp);
-            console.exiting(getClass().getName(), "disposeCallBack");
+            // the component's own cleanup and the input cache disposal must run even if
+            // the pending work fails; that failure is rethrown once they have run
+            Exception flushFailure = null;
+            try {
+                flushPending();
+                throwDeferredFailure();
+            }
+            catch (Exception e) {
+                console.throwing(getClass().getName(), "flushPending", e);
+                flushFailure = e;
+            }
 
-            componentInputCache.dispose();
+            try {
+                console.entering(getClass().getName(), "disposeCallBack", ccp);
+                disposeCallBack(ccp);
+                console.exiting(getClass().getName(), "disposeCallBack");
+            }
+            finally {
+                componentInputCache.dispose();
+            }
+
+            if (flushFailure != null)
+                throw flushFailure;
         }
         catch (ComponentContextException e) {
             console.throwing(getClass().getName(), "disposeCallBack", e);
@@ -324,6 +458,9 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
             if (!ignoreErrors)
                 throw new ComponentContextException(e);
         }
+        finally {
+            disposeMetrics();
+        }
     }
 
     //--------------------------------------------------------------------------------------------
@@ -339,6 +476,71 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
 
     //--------------------------------------------------------------------------------------------
 
+    /**
+     * Called for every firing that does not carry stream delimiters; invokes executeCallBack.
+     * Subclasses may override this to defer the processing of the inputs, in which case they
+     * must also override flushPending().
+     *
+     * @param cc The component context
+     * @throws Exception Thrown in the event of an error
+     */
+    protected void dispatchExecute(ComponentContext cc) throws Exception {
+        boolean finer = console.isLoggable(Level.FINER);
+
+        if (finer) console.entering(_className, "executeCallBack", cc);
+        executeCallBack(cc);
+        if (finer) console.exiting(_className, "executeCallBack");
+    }
+
+    /**
+     * Called before stream delimiters are handled and before the component is disposed;
+     * subclasses that defer firings in dispatchExecute() must complete them here
+     * so that the outputs keep their order relative to the delimiters.
+     *
+     * @throws Exception Thrown in the event of an error
+     */
+    protected void flushPending() throws Exception {
+    }
+
+    /**
+     * Calls flushPending() from outside of a firing (e.g. from a timer thread). A failure is handled
+     * as a failed firing would be: it is logged, pushed on the error port and counted in the metrics;
+     * unless errors are ignored, it is then rethrown by the next firing (or by dispose).
+     */
+    protected void flushPendingOutsideFiring() {
+        try {
+            flushPending();
+        }
+        catch (Exception e) {
+            console.throwing(getClass().getName(), "flushPending", e);
+
+            if (metrics != null)
+                metrics.errorOccurred();
+
+            ComponentContext cc = componentContext;
+            if (cc != null)
+                try {
+                    cc.pushDataComponentToOutput(OUT_ERROR, ExceptionFormatter.formatException(e));
+                }
+                catch (ComponentContextException ce) {
+                    console.log(Level.SEVERE, "Could not push the error", ce);
+                }
+
+            if (!ignoreErrors && _deferredFailure == null)
+                _deferredFailure = e;
+        }
+    }
+
+    private void throwDeferredFailure() throws Exception {
+        Exception failure = _deferredFailure;
+        if (failure == null) return;
+
+        _deferredFailure = null;
+        throw failure;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
     /**
      * Forwards the stream initiator on all output ports (except the error port);
      * Make sure you override this method for components with FiringPolicy = any and simply invoke 'executeCallBack(componentContext);' and
@@ -399,6 +601,56 @@ public abstract class AbstractExecutableComponent implements ExecutableComponent
 
     //--------------------------------------------------------------------------------------------
 
+    private void initializeMetrics(ComponentContextProperties ccp) throws ComponentContextException {
+        // descriptors generated before this property existed will not have it
+        String metricsProp = ccp.getProperty(PROP_METRICS);
+        if (metricsProp == null) return;
+
+        StringTokenizer st = new StringTokenizer(metricsProp, " ,;/+&");
+        if (!st.hasMoreTokens() || st.countTokens() > 2)
+            throw new ComponentContextException("Invalid value for property '" + PROP_METRICS + "' specified: " + metricsProp);
+
+        String mode = st.nextToken().trim();
+        if (mode.equalsIgnoreCase("off")) return;
+        if (!mode.equalsIgnoreCase("on"))
+            throw new ComponentContextException("Invalid value for property '" + PROP_METRICS + "' specified: " + metricsProp);
+
+        long dumpInterval = 0;
+        if (st.hasMoreTokens())
+            try {
+                dumpInterval = Long.parseLong(st.nextToken().trim());
+            }
+            catch (NumberFormatException e) {
+                throw new ComponentContextException("Invalid value for property '" + PROP_METRICS + "' specified: " + metricsProp);
+            }
+
+        metrics = new ComponentMetrics(ccp.getInstanceName(), ccp.getExecutionInstanceID(),
+                ccp.getFlowExecutionInstanceID(), ccp.getInputNames(), ccp.getOutputNames());
+        MetricsRegistry.register(metrics);
+
+        if (dumpInterval > 0)
+            _metricsDump = MetricsRegistry.scheduleDump(metrics, console, dumpInterval);
+
+        console.fine("Execution metrics are being collected per user's request.");
+    }
+
+    private void disposeMetrics() {
+        if (metrics == null) return;
+
+        if (_metricsDump != null) {
+            _metricsDump.cancel(false);
+            _metricsDump = null;
+        }
+
+        MetricsRegistry.unregister(metrics);
+        console.fine(metrics.getSummary());
+
+        _metricsContext = null;
+        _instrumentedContext = null;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
     /**
      * Enables runtime interrogation to determine if a ComponentInput is
      * connected in a flow.
@@ -0,0 +1,299 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.meandre.annotations.ComponentProperty;
+import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextException;
+import org.meandre.core.ComponentContextProperties;
+import org.meandre.core.ComponentExecutionException;
+import org.seasr.meandre.components.abstracts.util.FiringContext;
+
+/**
+ * Base class for stateless components whose firings are independent of each other.
+ *
+ * When more than one thread is configured, every firing is handed to a worker pool and executeCallBack
+ * runs concurrently for different firings. The outputs pushed by each firing are held back and pushed
+ * in the order the inputs arrived, so downstream components see exactly the same sequence as with
+ * sequential execution. All pending firings complete before stream delimiters are forwarded and before
+ * the component is disposed.
+ *
+ * executeCallBack must only use the component context it receives as a parameter and must not modify
+ * shared fields; objects that are not thread safe (parsers, models, buffers) should be kept in the
+ * per-thread state (see createThreadState() and getThreadState()).
+ */
+public abstract class AbstractParallelExecutableComponent extends AbstractExecutableComponent {
+
+    //------------------------------ PROPERTIES --------------------------------------------------
+
+    @ComponentProperty(
+            description = "The number of firings to process concurrently. " +
+                          "Use 0 for one per available processor, or 1 to process the firings sequentially.",
+            defaultValue = "1",
+            name = "_num_threads"
+    )
+    public static final String PROP_NUM_THREADS = "_num_threads";
+
+    //--------------------------------------------------------------------------------------------
+
+
+    public int numThreads = 1;
+
+    private ExecutorService _workers = null;
+    private Semaphore _inFlight = null;
+    private long _nextSequence = 0;
+
+    /** Guards the fields below */
+    private final Object _emitLock = new Object();
+    private final Map<Long, Firing> _completed = new HashMap<Long, Firing>();
+    private long _nextToEmit = 0;
+    private Throwable _failure = null;
+
+    private final ThreadLocal<Object> _threadState = new ThreadLocal<Object>();
+
+
+    //--------------------------------------------------------------------------------------------
+
+    @Override
+    public void initialize(ComponentContextProperties ccp) throws ComponentExecutionException, ComponentContextException {
+        super.initialize(ccp);
+
+        // descriptors generated before this property existed will not have it
+        String threads = ccp.getProperty(PROP_NUM_THREADS);
+        try {
+            numThreads = (threads != null && threads.trim().length() > 0) ? Integer.parseInt(threads.trim()) : 1;
+        }
+        catch (NumberFormatException e) {
+            throw new ComponentContextException("Invalid value for property '" + PROP_NUM_THREADS + "' specified: " + threads);
+        }
+
+        if (numThreads <= 0)
+            numThreads = Runtime.getRuntime().availableProcessors();
+
+        if (numThreads > 1) {
+            final String name = getClass().getSimpleName();
+            final AtomicInteger count = new AtomicInteger();
+
+            _workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name + "-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            // bound the number of firings held in memory while waiting for an earlier, slower one
+            _inFlight = new Semaphore(numThreads * 2);
+
+            console.fine(String.format("Processing firings on %d threads", numThreads));
+        }
+    }
+
+    @Override
+    public void dispose(ComponentContextProperties ccp) throws ComponentExecutionException, ComponentContextException {
+        try {
+            super.dispose(ccp);
+        }
+        finally {
+            if (_workers != null) {
+                _workers.shutdownNow();
+                _workers = null;
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Creates the state used by the calling worker thread (e.g. a non thread safe model or parser)
+     *
+     * @return The state, or null if none is needed
+     * @throws Exception Thrown in the event of an error
+     */
+    public Object createThreadState() throws Exception {
+        return null;
+    }
+
+    /**
+     * Returns the state of the calling thread, creating it on first use
+     *
+     * @return The state created by createThreadState() for the calling thread
+     * @throws Exception Thrown in the event of an error
+     */
+    public Object getThreadState() throws Exception {
+        Object state = _threadState.get();
+        if (state == null) {
+            state = createThreadState();
+            _threadState.set(state);
+        }
+
+        return state;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    @Override
+    protected void dispatchExecute(ComponentContext cc) throws Exception {
+        if (_workers == null) {
+            super.dispatchExecute(cc);
+            return;
+        }
+
+        throwPendingFailure();
+
+        final Firing firing = new Firing(_nextSequence++, cc, FiringContext.snapshotInputs(cc, cc.getInputNames()));
+
+        _inFlight.acquire();
+        _workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    executeCallBack(FiringContext.create(firing.cc, firing.inputs, firing.outputs));
+                }
+                catch (Throwable t) {
+                    firing.error = t;
+                }
+                finally {
+                    completed(firing);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void flushPending() throws Exception {
+        if (_workers == null) return;
+
+        synchronized (_emitLock) {
+            while (_nextToEmit < _nextSequence)
+                _emitLock.wait();
+        }
+
+        throwPendingFailure();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void completed(Firing firing) {
+        synchronized (_emitLock) {
+            _completed.put(firing.sequence, firing);
+
+            // push the outputs of all the firings that are next in line
+            while ((firing = _completed.remove(_nextToEmit)) != null) {
+                emit(firing);
+
+                _nextToEmit++;
+                _inFlight.release();
+            }
+
+            _emitLock.notifyAll();
+        }
+    }
+
+    /** Must be called while holding _emitLock */
+    private void emit(Firing firing) {
+        Throwable error = firing.error;
+
+        if (error == null)
+            try {
+                for (Object[] output : firing.outputs)
+                    firing.cc.pushDataComponentToOutput((String) output[0], output[1]);
+            }
+            catch (Throwable t) {
+                error = t;
+            }
+
+        if (error == null) return;
+
+        // errors (OutOfMemoryError, ...) are never ignored
+        if (ignoreErrors && error instanceof Exception)
+            outputError((Exception) error, Level.WARNING);
+        else
+            if (_failure == null)
+                _failure = error;
+            else
+                console.log(Level.SEVERE, "Additional error in a concurrent firing", error);
+    }
+
+    private void throwPendingFailure() throws Exception {
+        Throwable failure;
+
+        synchronized (_emitLock) {
+            failure = _failure;
+            _failure = null;
+        }
+
+        if (failure instanceof Error)
+            throw (Error) failure;
+
+        if (failure != null)
+            throw (Exception) failure;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static class Firing {
+        final long sequence;
+        final ComponentContext cc;
+        final Map<String, Object> inputs;
+        final List<Object[]> outputs = new ArrayList<Object[]>();
+        Throwable error = null;
+
+        Firing(long sequence, ComponentContext cc, Map<String, Object> inputs) {
+            this.sequence = sequence;
+            this.cc = cc;
+            this.inputs = inputs;
+        }
+    }
+}
@@ -42,11 +42,22 @@
 
 package org.seasr.meandre.components.abstracts;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.meandre.annotations.ComponentProperty;
+import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.meandre.core.ComponentExecutionException;
 import org.meandre.core.system.components.ext.StreamInitiator;
 import org.meandre.core.system.components.ext.StreamTerminator;
+import org.seasr.meandre.components.abstracts.util.FiringContext;
 
 
 /**
@@ -64,17 +75,167 @@ public abstract class AbstractStreamingExecutableComponent extends AbstractExecu
     )
     public static final String PROP_STREAM_ID = "_stream_id";
 
+    @ComponentProperty(
+            description = "The number of consecutive firings (between stream delimiters) to coalesce into a single call " +
+                          "to executeBatch. Use 1 to process every firing as it arrives. Only components that override " +
+                          "executeBatch can batch; for the others the setting is ignored and every firing is processed " +
+                          "as it arrives.",
+            defaultValue = "1",
+            name = "_batch_size"
+    )
+    public static final String PROP_BATCH_SIZE = "_batch_size";
+
+    @ComponentProperty(
+            description = "The maximum time (in milliseconds) a firing may wait in an incomplete batch before the batch " +
+                          "is processed. Use 0 to wait until the batch is full or a stream delimiter arrives.",
+            defaultValue = "0",
+            name = "_batch_max_delay"
+    )
+    public static final String PROP_BATCH_MAX_DELAY = "_batch_max_delay";
+
     //--------------------------------------------------------------------------------------------
 
 
     public Integer streamId;
 
+    public int batchSize = 1;
+    public long batchMaxDelay = 0;
+
+    private final Object _batchLock = new Object();
+    private List<Map<String, Object>> _batch = null;
+    private long _batchStarted = 0;
+    private ScheduledExecutorService _batchTimer = null;
+
 
     //--------------------------------------------------------------------------------------------
 
     @Override
     public void initializeCallBack(ComponentContextProperties ccp) throws Exception {
         streamId = Integer.parseInt(getPropertyOrDieTrying(PROP_STREAM_ID, ccp));
+
+        // descriptors generated before these properties existed will not have them
+        String size = ccp.getProperty(PROP_BATCH_SIZE);
+        String delay = ccp.getProperty(PROP_BATCH_MAX_DELAY);
+
+        batchSize = (size != null && size.trim().length() > 0) ? Integer.parseInt(size.trim()) : 1;
+        batchMaxDelay = (delay != null && delay.trim().length() > 0) ? Long.parseLong(delay.trim()) : 0;
+
+        if (batchSize < 1)
+            throw new ComponentContextException("Invalid value for property '" + PROP_BATCH_SIZE + "' specified: " + size);
+
+        if (batchSize > 1 && !overridesExecuteBatch()) {
+            // replaying the firings one by one would only add latency (and a timer thread)
+            console.warning(String.format("%s does not override executeBatch - ignoring '%s'",
+                    getClass().getSimpleName(), PROP_BATCH_SIZE));
+            batchSize = 1;
+        }
+
+        if (batchSize > 1) {
+            _batch = new ArrayList<Map<String, Object>>(batchSize);
+            console.fine(String.format("Micro-batching enabled (size: %d, max delay: %d ms)", batchSize, batchMaxDelay));
+
+            if (batchMaxDelay > 0) {
+                _batchTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "batch-timer " + getClass().getSimpleName());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+                long period = Math.max(1, batchMaxDelay / 2);
+                _batchTimer.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        if (isBatchExpired())
+                            flushPendingOutsideFiring();
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Processes a batch of consecutive firings. Batching is only enabled for components that override
+     * this method to process the whole batch at once; the framework does not split the outputs, so to keep
+     * the downstream components unaware of the batching, implementations should push the outputs of every
+     * firing separately and in the order of the batch. The default implementation replays every firing
+     * through executeCallBack.
+     *
+     * @param cc The component context
+     * @param batch The inputs of every firing, in arrival order, keyed by input port name
+     * @throws Exception Thrown in the event of an error
+     */
+    public void executeBatch(ComponentContext cc, List<Map<String, Object>> batch) throws Exception {
+        for (Map<String, Object> inputs : batch)
+            executeCallBack(FiringContext.create(cc, inputs, null));
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    @Override
+    protected void dispatchExecute(ComponentContext cc) throws Exception {
+        if (_batch == null) {
+            super.dispatchExecute(cc);
+            return;
+        }
+
+        Map<String, Object> inputs = FiringContext.snapshotInputs(cc, cc.getInputNames());
+
+        synchronized (_batchLock) {
+            if (_batch.isEmpty())
+                _batchStarted = System.currentTimeMillis();
+
+            _batch.add(inputs);
+
+            if (_batch.size() >= batchSize)
+                flushBatch(cc);
+        }
+    }
+
+    @Override
+    protected void flushPending() throws Exception {
+        if (_batch == null) return;
+
+        synchronized (_batchLock) {
+            flushBatch(componentContext);
+        }
+    }
+
+    @Override
+    public void dispose(ComponentContextProperties ccp) throws ComponentExecutionException, ComponentContextException {
+        if (_batchTimer != null) {
+            _batchTimer.shutdownNow();
+            _batchTimer = null;
+        }
+
+        super.dispose(ccp);
+    }
+
+    private boolean overridesExecuteBatch() {
+        try {
+            return getClass().getMethod("executeBatch", ComponentContext.class, List.class).getDeclaringClass()
+                    != AbstractStreamingExecutableComponent.class;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private boolean isBatchExpired() {
+        synchronized (_batchLock) {
+            return !_batch.isEmpty() && System.currentTimeMillis() - _batchStarted >= batchMaxDelay;
+        }
+    }
+
+    /** Must be called while holding _batchLock */
+    private void flushBatch(ComponentContext cc) throws Exception {
+        if (_batch.isEmpty()) return;
+
+        List<Map<String, Object>> batch = _batch;
+        _batch = new ArrayList<Map<String, Object>>(batchSize);
+
+        console.finer(String.format("Processing a batch of %d firings", batch.size()));
+        executeBatch(cc, batch);
     }
 
     //--------------------------------------------------------------------------------------------
@@ -54,6 +54,7 @@ import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentExecutionException;
 import org.meandre.webui.WebUIException;
 import org.meandre.webui.WebUIFragmentCallback;
+import org.seasr.meandre.components.PackedDataComponents;
 import org.seasr.meandre.components.abstracts.util.EmptyHttpServletRequest;
 
 /**
@@ -259,6 +260,7 @@ public abstract class AbstractWebServiceHeadComponent extends AbstractExecutable
             sem.acquire();
             //
             // Build a new PackedDataComponents Object to populate and Push Out.
+            packedDataComponentsOutput = new PackedDataComponents();
             packedDataComponentsOutput.put(httpServletRequest,  request);
             packedDataComponentsOutput.put(httpServletResponse, response);
             packedDataComponentsOutput.put(semaphore, sem);
@@ -419,6 +419,7 @@ public abstract class AbstractWebServiceSessionComponent extends
 				console.fine(this.getClass().getName() +": Data event completed, ALL Push DataOutputs");
 
 	            // Build the packedOutputCollection.
+				packedDataComponentsOutput = new PackedDataComponents();
 				packedDataComponentsOutput.put(OutHttpServletRequest, request);
 				packedDataComponentsOutput.put(OutHttpServletResponse, response);
 				packedDataComponentsOutput.put(OutSemaphore, semaphore);
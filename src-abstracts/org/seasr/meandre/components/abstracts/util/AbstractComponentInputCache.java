@@ -42,11 +42,12 @@
 
 package org.seasr.meandre.components.abstracts.util;
 
-import java.util.Hashtable;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.meandre.core.ComponentContext;
@@ -62,20 +63,34 @@ import org.meandre.core.ComponentContextException;
  * OR where some set of inputs are required to handle a logical processing cycle. This
  * Object is intended to be couple with a single ExecutableComponent.
  *
+ * Each port is backed by a BoundedInputQueue; when a capacity is set, inputs that
+ * arrive while a port queue is full are spilled to disk (if a spill directory is given)
+ * instead of letting a fast upstream component fill the heap. Inputs that cannot be spilled
+ * are kept in memory past the capacity, with a warning, rather than failing the flow.
+ *
  */
 public abstract class AbstractComponentInputCache {
 
 	/**
-	 * Internal storage container for a Collection of java.util.Queue Objects keyed by input Name.
+	 * Internal storage container for a Collection of BoundedInputQueue Objects keyed by input Name.
 	 */
-	private Map<String, Queue<Object>> _inputCacheMap;
+	private Map<String, BoundedInputQueue> _inputCacheMap;
 
 	private Logger _logger = null;
 
 
 	protected AbstractComponentInputCache(Set<String> portNames) {
-	    _inputCacheMap = new Hashtable<String, Queue<Object>>(portNames.size());
-	    for (String portName : portNames) _inputCacheMap.put(portName, new LinkedList<Object>());
+	    this(portNames, 0, null);
+	}
+
+	/**
+	 * @param portNames The input port names
+	 * @param capacity The maximum number of inputs held in memory per port (0 = unbounded)
+	 * @param spillDir The directory where inputs are spilled once a port reaches its capacity (null = keep them in memory)
+	 */
+	protected AbstractComponentInputCache(Set<String> portNames, int capacity, File spillDir) {
+	    _inputCacheMap = new HashMap<String, BoundedInputQueue>(portNames.size());
+	    for (String portName : portNames) _inputCacheMap.put(portName, new BoundedInputQueue(portName, capacity, spillDir));
 	}
 
 	synchronized public void storeIfAvailable(ComponentContext cc, String portName) throws ComponentContextException {
@@ -85,11 +100,32 @@ public abstract class AbstractComponentInputCache {
 
 	synchronized public void store(ComponentContext cc, String portName) throws ComponentContextException {
 	    Object input = cc.getDataComponentFromInput(portName);
-	    _inputCacheMap.get(portName).add(input);
+	    BoundedInputQueue queue = _inputCacheMap.get(portName);
+
+	    try {
+	        long spilled = queue.getTotalSpilled();
+	        long overflowed = queue.getTotalOverflowed();
+	        queue.add(input);
+
+	        if (spilled == 0 && queue.getTotalSpilled() > 0 && _logger != null)
+	            _logger.warning(String.format("The input cache for port '%s' is full - spilling inputs to disk", portName));
+
+	        if (overflowed == 0 && queue.getTotalOverflowed() > 0 && _logger != null)
+	            _logger.warning(String.format("The input cache for port '%s' is full and inputs of type %s cannot be " +
+	                    "spilled to disk - keeping them in memory past the capacity", portName, input.getClass().getName()));
+	    }
+	    catch (IOException e) {
+	        throw new ComponentContextException(e);
+	    }
 	}
 
 	synchronized public Object retrieveNext(String portName) throws ComponentContextException {
-	    return hasData(portName) ? _inputCacheMap.get(portName).poll() : null;
+	    try {
+	        return hasData(portName) ? _inputCacheMap.get(portName).poll() : null;
+	    }
+	    catch (IOException e) {
+	        throw new ComponentContextException(e);
+	    }
 	}
 
 	synchronized public Object peek(String portName) throws ComponentContextException {
@@ -115,13 +151,35 @@ public abstract class AbstractComponentInputCache {
 	    return hasData(portName) ? _inputCacheMap.get(portName).size() : 0;
 	}
 
+	/**
+	 * Returns the largest number of inputs that were waiting on a port at any one time
+	 *
+	 * @param portName The port name
+	 * @return The high-water mark
+	 * @throws ComponentContextException Thrown if the port is unknown
+	 */
+	synchronized public int getHighWaterMark(String portName) throws ComponentContextException {
+	    if (!_inputCacheMap.containsKey(portName))
+	        throw new ComponentContextException("Unknown port name specified: " + portName);
+
+	    return _inputCacheMap.get(portName).getHighWaterMark();
+	}
+
 	public void setLogger(Logger logger) {
 	    _logger = logger;
 	}
 
 	public void dispose() {
-	    for (Queue<Object> queue : _inputCacheMap.values())
+	    for (Map.Entry<String, BoundedInputQueue> entry : _inputCacheMap.entrySet()) {
+	        BoundedInputQueue queue = entry.getValue();
+
+	        if (_logger != null && queue.getHighWaterMark() > 0 && _logger.isLoggable(Level.FINE))
+	            _logger.fine(String.format("Input cache for port '%s': high-water mark %d, %d inputs spilled to disk, " +
+	                    "%d kept in memory past the capacity",
+	                    entry.getKey(), queue.getHighWaterMark(), queue.getTotalSpilled(), queue.getTotalOverflowed()));
+
 	        queue.clear();
+	    }
 
 	    _inputCacheMap.clear();
 	    _inputCacheMap = null;
@@ -0,0 +1,338 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.components.abstracts.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.google.protobuf.Message;
+
+/**
+ * FIFO queue of port inputs backed by a ring buffer.
+ *
+ * With a capacity of 0 the ring simply grows as needed (the behavior of the old LinkedList based cache).
+ * With a positive capacity, inputs that arrive while the ring is full are spilled to a temporary file
+ * when a spill directory is given, and read back in arrival order as the ring drains. Protocol buffer
+ * messages are spilled in their wire format, other Serializable inputs through java serialization.
+ *
+ * Inputs are never rejected: the queue is filled and drained by the same component, so blocking would
+ * stall the flow. Inputs that cannot be spilled (no spill directory, or not serializable) are kept in
+ * memory past the capacity instead, and counted by {@link #getTotalOverflowed()} so that the owner can
+ * report it. The spill file is deleted as soon as the spill drains, and by clear().
+ *
+ * This class is not thread safe; AbstractComponentInputCache synchronizes access to it.
+ */
+public class BoundedInputQueue {
+
+    private static final int INITIAL_SIZE = 16;
+
+    private static final byte SPILL_PROTOBUF = 1;
+    private static final byte SPILL_SERIALIZED = 2;
+    private static final byte SPILL_IN_MEMORY = 3;
+
+    private final String _name;
+    private final int _capacity;
+    private final File _spillDir;
+
+    private Object[] _ring;
+    private int _head = 0;
+    private int _size = 0;
+    private int _highWaterMark = 0;
+
+    private File _spillFile = null;
+    private DataOutputStream _spillOut = null;
+    private DataInputStream _spillIn = null;
+    private int _spillCount = 0;
+    private long _totalSpilled = 0;
+    private long _totalOverflowed = 0;
+
+    /** The inputs that could not be written to the spill file, in the order of their markers in the file */
+    private final LinkedList<Object> _spillHeld = new LinkedList<Object>();
+
+    /** The parseFrom(byte[]) methods of the protocol buffer types spilled so far */
+    private final Map<String, Method> _parsers = new HashMap<String, Method>();
+
+
+    /**
+     * @param name The queue name (used for the spill file name and error messages)
+     * @param capacity The maximum number of inputs to keep in memory (0 = unbounded)
+     * @param spillDir The directory used to spill inputs once the capacity is reached (null = do not spill)
+     */
+    public BoundedInputQueue(String name, int capacity, File spillDir) {
+        _name = name;
+        _capacity = Math.max(capacity, 0);
+        _spillDir = spillDir;
+        _ring = new Object[(_capacity > 0) ? Math.min(_capacity, INITIAL_SIZE) : INITIAL_SIZE];
+    }
+
+    public void add(Object data) throws IOException {
+        if (_spillCount == 0 && (_capacity == 0 || _size < _capacity)) {
+            addToRing(data);
+            return;
+        }
+
+        if (_spillDir == null) {
+            // nowhere to spill: keep the input in memory past the capacity
+            addToRing(data);
+            _totalOverflowed++;
+            return;
+        }
+
+        // once spilling started, everything goes to disk until the spill drains, to preserve the order
+        spill(data);
+    }
+
+    public Object poll() throws IOException {
+        if (_size == 0) return null;
+
+        Object data = _ring[_head];
+        _ring[_head] = null;
+        _head = (_head + 1) % _ring.length;
+        _size--;
+
+        if (_spillCount > 0)
+            addToRing(unspill());
+
+        return data;
+    }
+
+    public Object peek() {
+        return (_size > 0) ? _ring[_head] : null;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public int size() {
+        return _size + _spillCount;
+    }
+
+    /**
+     * @return The largest number of inputs held by the queue (in memory and spilled) at any one time
+     */
+    public int getHighWaterMark() {
+        return _highWaterMark;
+    }
+
+    /**
+     * @return The total number of inputs that had to be spilled to disk
+     */
+    public long getTotalSpilled() {
+        return _totalSpilled;
+    }
+
+    /**
+     * @return The total number of inputs that arrived while the queue was full and had to be kept in memory
+     */
+    public long getTotalOverflowed() {
+        return _totalOverflowed;
+    }
+
+    public void clear() {
+        for (int i = 0; i < _ring.length; i++)
+            _ring[i] = null;
+
+        _head = _size = 0;
+        closeSpill();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void addToRing(Object data) {
+        if (_size == _ring.length) {
+            int newLength = (_capacity > _ring.length) ? Math.min(_ring.length * 2, _capacity) : _ring.length * 2;
+            Object[] ring = new Object[newLength];
+            for (int i = 0; i < _size; i++)
+                ring[i] = _ring[(_head + i) % _ring.length];
+
+            _ring = ring;
+            _head = 0;
+        }
+
+        _ring[(_head + _size) % _ring.length] = data;
+        _size++;
+
+        _highWaterMark = Math.max(_highWaterMark, size());
+    }
+
+    private void spill(Object data) throws IOException {
+        if (_spillOut == null) {
+            _spillFile = File.createTempFile("input_cache_" + _name.replaceAll("\\W", "_") + "_", ".spill", _spillDir);
+            _spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_spillFile)));
+        }
+
+        if (data instanceof Message && hasParser(data.getClass())) {
+            String className = data.getClass().getName();
+            byte[] bytes = ((Message) data).toByteArray();
+            _spillOut.writeByte(SPILL_PROTOBUF);
+            _spillOut.writeUTF(className);
+            _spillOut.writeInt(bytes.length);
+            _spillOut.write(bytes);
+        }
+
+        else
+
+        if (data instanceof Serializable) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(data);
+            oos.close();
+
+            byte[] bytes = baos.toByteArray();
+            _spillOut.writeByte(SPILL_SERIALIZED);
+            _spillOut.writeInt(bytes.length);
+            _spillOut.write(bytes);
+        }
+
+        else {
+            // keep it in memory; the marker preserves its place among the spilled inputs
+            _spillOut.writeByte(SPILL_IN_MEMORY);
+            _spillHeld.addLast(data);
+            _spillCount++;
+            _totalOverflowed++;
+            _highWaterMark = Math.max(_highWaterMark, size());
+            return;
+        }
+
+        _spillCount++;
+        _totalSpilled++;
+        _highWaterMark = Math.max(_highWaterMark, size());
+    }
+
+    private boolean hasParser(Class<?> type) {
+        String className = type.getName();
+        if (_parsers.containsKey(className))
+            return _parsers.get(className) != null;
+
+        Method parser = null;
+        try {
+            parser = type.getMethod("parseFrom", byte[].class);
+        }
+        catch (NoSuchMethodException e) {
+            // cannot be read back from its wire format
+        }
+
+        _parsers.put(className, parser);
+        return parser != null;
+    }
+
+    private Object unspill() throws IOException {
+        // make sure everything spilled so far is visible to the reader
+        _spillOut.flush();
+
+        if (_spillIn == null)
+            _spillIn = new DataInputStream(new BufferedInputStream(new FileInputStream(_spillFile)));
+
+        Object data;
+        byte kind = _spillIn.readByte();
+
+        try {
+            if (kind == SPILL_IN_MEMORY)
+                data = _spillHeld.removeFirst();
+
+            else
+
+            if (kind == SPILL_PROTOBUF) {
+                String className = _spillIn.readUTF();
+                byte[] bytes = new byte[_spillIn.readInt()];
+                _spillIn.readFully(bytes);
+
+                data = _parsers.get(className).invoke(null, bytes);
+            }
+            else {
+                byte[] bytes = new byte[_spillIn.readInt()];
+                _spillIn.readFully(bytes);
+
+                data = new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            }
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            IOException ioe = new IOException("Cannot read back spilled input for '" + _name + "'");
+            ioe.initCause(e);
+            throw ioe;
+        }
+
+        if (--_spillCount == 0)
+            closeSpill();
+
+        return data;
+    }
+
+    private void closeSpill() {
+        try {
+            if (_spillOut != null) _spillOut.close();
+            if (_spillIn != null) _spillIn.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+
+        if (_spillFile != null)
+            _spillFile.delete();
+
+        _spillOut = null;
+        _spillIn = null;
+        _spillFile = null;
+        _spillCount = 0;
+        _spillHeld.clear();
+    }
+}
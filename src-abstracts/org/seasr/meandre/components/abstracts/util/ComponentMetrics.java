@@ -0,0 +1,358 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.meandre.core.ComponentContext;
+import org.meandre.core.system.components.ext.StreamDelimiter;
+
+import com.google.protobuf.Message;
+
+/**
+ * Execution metrics of a single component instance: firing and error counts, the latency
+ * distribution of the firings, the time spent waiting for inputs between firings, and the
+ * number of items (and approximate bytes) received and pushed on every port.
+ *
+ * The record methods are lock free and do not allocate for ports known at construction time.
+ */
+public class ComponentMetrics implements ComponentMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String _componentName;
+    private final String _executionInstanceId;
+    private final String _flowExecutionInstanceId;
+
+    private final AtomicLong _firings = new AtomicLong();
+    private final AtomicLong _errors = new AtomicLong();
+    private final AtomicLong _blockedNanos = new AtomicLong();
+    private final LatencyHistogram _latency = new LatencyHistogram();
+
+    private final ConcurrentMap<String, PortCounter> _inputs = new ConcurrentHashMap<String, PortCounter>();
+    private final ConcurrentMap<String, PortCounter> _outputs = new ConcurrentHashMap<String, PortCounter>();
+
+    /** The end time of the last firing (or of the initialization); 0 while a firing is in progress */
+    private volatile long _idleSince;
+
+
+    public ComponentMetrics(String componentName, String executionInstanceId, String flowExecutionInstanceId,
+            String[] inputNames, String[] outputNames) {
+
+        _componentName = componentName;
+        _executionInstanceId = executionInstanceId;
+        _flowExecutionInstanceId = flowExecutionInstanceId;
+
+        for (String name : inputNames)
+            _inputs.put(name, new PortCounter());
+
+        for (String name : outputNames)
+            _outputs.put(name, new PortCounter());
+
+        _idleSince = System.nanoTime();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Marks the start of a firing; the time elapsed since the end of the previous firing is
+     * accounted as time spent blocked on input
+     *
+     * @return The start time (to be passed to {@link #firingEnded(long, boolean)})
+     */
+    public long firingStarted() {
+        long now = System.nanoTime();
+        long idleSince = _idleSince;
+
+        if (idleSince != 0) {
+            _blockedNanos.addAndGet(now - idleSince);
+            _idleSince = 0;
+        }
+
+        return now;
+    }
+
+    /**
+     * Marks the end of a firing
+     *
+     * @param startTime The value returned by {@link #firingStarted()}
+     * @param failed True if the firing ended with an error
+     */
+    public void firingEnded(long startTime, boolean failed) {
+        long now = System.nanoTime();
+
+        _firings.incrementAndGet();
+        if (failed)
+            _errors.incrementAndGet();
+
+        _latency.record(now - startTime);
+        _idleSince = now;
+    }
+
+    /**
+     * Counts an error that happened outside of a firing (e.g. in work deferred to a timer)
+     */
+    public void errorOccurred() {
+        _errors.incrementAndGet();
+    }
+
+    public void inputReceived(String port, Object data) {
+        counterFor(_inputs, port).record(data);
+    }
+
+    public void outputPushed(String port, Object data) {
+        counterFor(_outputs, port).record(data);
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return _latency;
+    }
+
+    /**
+     * Wraps a component context so that everything pushed through it is recorded as output
+     *
+     * @param cc The component context
+     * @return The instrumented component context
+     */
+    public ComponentContext instrument(final ComponentContext cc) {
+        return (ComponentContext) Proxy.newProxyInstance(ComponentContext.class.getClassLoader(),
+                new Class<?>[] { ComponentContext.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("pushDataComponentToOutput") && args != null && args.length == 2)
+                    outputPushed((String) args[0], args[1]);
+
+                try {
+                    return method.invoke(cc, args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public String getComponentName() {
+        return _componentName;
+    }
+
+    public String getExecutionInstanceId() {
+        return _executionInstanceId;
+    }
+
+    public String getFlowExecutionInstanceId() {
+        return _flowExecutionInstanceId;
+    }
+
+    public long getFirings() {
+        return _firings.get();
+    }
+
+    public long getErrors() {
+        return _errors.get();
+    }
+
+    public double getMeanLatencyMillis() {
+        return _latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    public double getLatencyMillis50thPercentile() {
+        return _latency.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    public double getLatencyMillis90thPercentile() {
+        return _latency.getValueAtPercentile(90) / NANOS_PER_MILLI;
+    }
+
+    public double getLatencyMillis99thPercentile() {
+        return _latency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    public double getMaxLatencyMillis() {
+        return _latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    public double getTotalLatencyMillis() {
+        return _latency.getTotal() / NANOS_PER_MILLI;
+    }
+
+    public double getBlockedOnInputMillis() {
+        return _blockedNanos.get() / NANOS_PER_MILLI;
+    }
+
+    public long getItemsIn() {
+        return sumItems(_inputs);
+    }
+
+    public long getItemsOut() {
+        return sumItems(_outputs);
+    }
+
+    public long getBytesIn() {
+        return sumBytes(_inputs);
+    }
+
+    public long getBytesOut() {
+        return sumBytes(_outputs);
+    }
+
+    public String[] getPortStatistics() {
+        List<String> stats = new ArrayList<String>();
+
+        for (Map.Entry<String, PortCounter> entry : new TreeMap<String, PortCounter>(_inputs).entrySet())
+            stats.add(String.format("in  %s: %d items, %d bytes", entry.getKey(), entry.getValue().items.get(), entry.getValue().bytes.get()));
+
+        for (Map.Entry<String, PortCounter> entry : new TreeMap<String, PortCounter>(_outputs).entrySet())
+            stats.add(String.format("out %s: %d items, %d bytes", entry.getKey(), entry.getValue().items.get(), entry.getValue().bytes.get()));
+
+        return stats.toArray(new String[stats.size()]);
+    }
+
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("Metrics for %s: %d firings, %d errors, latency ms (mean/p50/p90/p99/max): %.3f/%.3f/%.3f/%.3f/%.3f, " +
+                "busy %.1f ms, blocked on input %.1f ms",
+                _componentName, getFirings(), getErrors(), getMeanLatencyMillis(), getLatencyMillis50thPercentile(),
+                getLatencyMillis90thPercentile(), getLatencyMillis99thPercentile(), getMaxLatencyMillis(),
+                getTotalLatencyMillis(), getBlockedOnInputMillis()));
+
+        for (String stat : getPortStatistics())
+            sb.append(System.getProperty("line.separator")).append("    ").append(stat);
+
+        return sb.toString();
+    }
+
+    public void reset() {
+        _firings.set(0);
+        _errors.set(0);
+        _blockedNanos.set(0);
+        _latency.reset();
+
+        for (PortCounter counter : _inputs.values())
+            counter.reset();
+
+        for (PortCounter counter : _outputs.values())
+            counter.reset();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Estimates the size of a data item; protocol buffer messages are measured by their wire size,
+     * strings by their length and byte arrays by their length. Other types are not measured.
+     *
+     * @param data The data
+     * @return The approximate size in bytes
+     */
+    public static long sizeOf(Object data) {
+        if (data instanceof Message)
+            return ((Message) data).getSerializedSize();
+
+        if (data instanceof String)
+            return ((String) data).length();
+
+        if (data instanceof byte[])
+            return ((byte[]) data).length;
+
+        return 0;
+    }
+
+    private static PortCounter counterFor(ConcurrentMap<String, PortCounter> counters, String port) {
+        PortCounter counter = counters.get(port);
+        if (counter == null) {
+            PortCounter existing = counters.putIfAbsent(port, counter = new PortCounter());
+            if (existing != null)
+                counter = existing;
+        }
+
+        return counter;
+    }
+
+    private static long sumItems(Map<String, PortCounter> counters) {
+        long sum = 0;
+        for (PortCounter counter : counters.values())
+            sum += counter.items.get();
+
+        return sum;
+    }
+
+    private static long sumBytes(Map<String, PortCounter> counters) {
+        long sum = 0;
+        for (PortCounter counter : counters.values())
+            sum += counter.bytes.get();
+
+        return sum;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static class PortCounter {
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+
+        void record(Object data) {
+            if (data instanceof StreamDelimiter) return;
+
+            items.incrementAndGet();
+            bytes.addAndGet(sizeOf(data));
+        }
+
+        void reset() {
+            items.set(0);
+            bytes.set(0);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextException;
+
+/**
+ * Component context views used to run executeCallBack outside of the firing that delivered its inputs
+ * (for batched or concurrent processing).
+ */
+public class FiringContext {
+
+    private FiringContext() {
+    }
+
+    /**
+     * Takes a snapshot of the inputs available in the current firing
+     *
+     * @param cc The component context
+     * @param inputNames The input port names
+     * @return The inputs, keyed by port name
+     * @throws ComponentContextException Thrown if an input cannot be retrieved
+     */
+    public static Map<String, Object> snapshotInputs(ComponentContext cc, String[] inputNames) throws ComponentContextException {
+        Map<String, Object> inputs = new HashMap<String, Object>(inputNames.length * 2);
+        for (String port : inputNames)
+            if (cc.isInputAvailable(port))
+                inputs.put(port, cc.getDataComponentFromInput(port));
+
+        return inputs;
+    }
+
+    /**
+     * Creates a view of the component context that serves the given inputs
+     *
+     * @param cc The component context
+     * @param inputs The inputs, keyed by port name
+     * @param outputs If not null, the pushed outputs are collected here (as {port, data} pairs) instead of being pushed
+     * @return The component context view
+     */
+    public static ComponentContext create(final ComponentContext cc, final Map<String, Object> inputs, final List<Object[]> outputs) {
+        return (ComponentContext) Proxy.newProxyInstance(ComponentContext.class.getClassLoader(),
+                new Class<?>[] { ComponentContext.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+
+                if (name.equals("isInputAvailable"))
+                    return inputs.containsKey(args[0]);
+
+                if (name.equals("getDataComponentFromInput")) {
+                    Object data = inputs.get(args[0]);
+                    if (data == null)
+                        throw new ComponentContextException("No data available on input '" + args[0] + "'");
+
+                    return data;
+                }
+
+                if (outputs != null && name.equals("pushDataComponentToOutput")) {
+                    outputs.add(new Object[] { args[0], args[1] });
+                    return null;
+                }
+
+                try {
+                    return method.invoke(cc, args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the metrics of every registered component as an MBean on the platform MBean server, named
+ * <code>org.seasr.meandre.components:type=ComponentMetrics,flow=&lt;flow execution id&gt;,component=&lt;execution id&gt;</code>
+ */
+public class JmxMetricsReporter implements MetricsReporter {
+
+    public static final String DOMAIN = "org.seasr.meandre.components";
+
+    private static final Logger logger = Logger.getLogger(JmxMetricsReporter.class.getName());
+
+
+    public void registered(ComponentMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(metrics);
+
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+
+            server.registerMBean(metrics, name);
+        }
+        catch (JMException e) {
+            logger.log(Level.WARNING, "Cannot register the metrics MBean for " + metrics.getComponentName(), e);
+        }
+    }
+
+    public void unregistered(ComponentMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(metrics));
+        }
+        catch (InstanceNotFoundException e) {
+            // already gone
+        }
+        catch (JMException e) {
+            logger.log(Level.WARNING, "Cannot unregister the metrics MBean for " + metrics.getComponentName(), e);
+        }
+    }
+
+    public static ObjectName getObjectName(ComponentMetrics metrics) throws JMException {
+        return new ObjectName(String.format("%s:type=ComponentMetrics,flow=%s,component=%s", DOMAIN,
+                ObjectName.quote(metrics.getFlowExecutionInstanceId()),
+                ObjectName.quote(metrics.getExecutionInstanceId())));
+    }
+}
@@ -0,0 +1,180 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process wide registry of the metrics of the executing components.
+ *
+ * Components register their metrics when they are initialized and unregister them when disposed;
+ * every registered {@link MetricsReporter} is notified of both. A {@link JmxMetricsReporter} is
+ * installed by default.
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+    private static final ConcurrentMap<String, ComponentMetrics> _metrics = new ConcurrentHashMap<String, ComponentMetrics>();
+    private static final List<MetricsReporter> _reporters = new CopyOnWriteArrayList<MetricsReporter>();
+
+    private static ScheduledExecutorService _scheduler = null;
+
+    static {
+        _reporters.add(new JmxMetricsReporter());
+    }
+
+
+    private MetricsRegistry() {
+    }
+
+    public static void register(ComponentMetrics metrics) {
+        ComponentMetrics previous = _metrics.put(keyOf(metrics), metrics);
+        if (previous != null)
+            notifyUnregistered(previous);
+
+        for (MetricsReporter reporter : _reporters)
+            try {
+                reporter.registered(metrics);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Metrics reporter " + reporter.getClass().getName() + " failed", e);
+            }
+    }
+
+    public static void unregister(ComponentMetrics metrics) {
+        if (_metrics.remove(keyOf(metrics), metrics))
+            notifyUnregistered(metrics);
+    }
+
+    /**
+     * Returns the metrics of all the registered components
+     *
+     * @return The metrics
+     */
+    public static Collection<ComponentMetrics> getAll() {
+        return Collections.unmodifiableCollection(new ArrayList<ComponentMetrics>(_metrics.values()));
+    }
+
+    /**
+     * Returns the metrics of all the registered components of a flow execution
+     *
+     * @param flowExecutionInstanceId The flow execution instance id
+     * @return The metrics
+     */
+    public static Collection<ComponentMetrics> getAll(String flowExecutionInstanceId) {
+        List<ComponentMetrics> metrics = new ArrayList<ComponentMetrics>();
+        for (ComponentMetrics m : _metrics.values())
+            if (m.getFlowExecutionInstanceId().equals(flowExecutionInstanceId))
+                metrics.add(m);
+
+        return metrics;
+    }
+
+    public static void addReporter(MetricsReporter reporter) {
+        _reporters.add(reporter);
+    }
+
+    public static boolean removeReporter(MetricsReporter reporter) {
+        return _reporters.remove(reporter);
+    }
+
+    /**
+     * Periodically logs the summary of the given metrics at INFO level
+     *
+     * @param metrics The metrics
+     * @param console The logger to write to
+     * @param intervalSeconds The interval between dumps, in seconds
+     * @return The scheduled task (cancel it to stop the dumps)
+     */
+    public static ScheduledFuture<?> scheduleDump(final ComponentMetrics metrics, final Logger console, long intervalSeconds) {
+        return getScheduler().scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                console.info(metrics.getSummary());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static String keyOf(ComponentMetrics metrics) {
+        return metrics.getFlowExecutionInstanceId() + "/" + metrics.getExecutionInstanceId();
+    }
+
+    private static void notifyUnregistered(ComponentMetrics metrics) {
+        for (MetricsReporter reporter : _reporters)
+            try {
+                reporter.unregistered(metrics);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Metrics reporter " + reporter.getClass().getName() + " failed", e);
+            }
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (_scheduler == null)
+            _scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "component-metrics-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        return _scheduler;
+    }
+}
@@ -42,15 +42,8 @@
 
 package org.seasr.meandre.components.analytics.socialnetworking;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.WordUtils;
 import org.meandre.annotations.ComponentInput;
@@ -61,10 +54,10 @@ import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
 import org.seasr.datatypes.core.BasicDataTypesTools;
-import org.seasr.datatypes.core.KeyValuePair;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractStreamingExecutableComponent;
 import org.seasr.meandre.components.nlp.opennlp.OpenNLPNamedEntity;
+import org.seasr.meandre.support.components.analytics.socialnetworking.CooccurrenceGraph;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 
@@ -127,16 +120,16 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
     //--------------------------------------------------------------------------------------------
 
 
-    protected static final Pattern REGEXP_NONWHITESPACE = Pattern.compile("([^\\s]+)");
-    protected static final Pattern REGEXP_PERSON = Pattern.compile("(?:(\\p{Alpha}+)\\s*)");
-
     protected Set<String> _entityTypes;
     protected int _offset;
     protected boolean _isStreaming;
     protected boolean _removeUncorrelatedEntities;
     protected boolean _normalizeEntities;
 
-    protected final Map<Entity, Entity> _entities = new HashMap<Entity, Entity>();
+    protected CooccurrenceGraph _graph;
+
+    /** The graph to output, valid during generateAndPushOutput() */
+    protected CooccurrenceGraph.Adjacency _adjacency;
 
 
     //--------------------------------------------------------------------------------------------
@@ -157,6 +150,7 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
         for (String entity : entityTypes.split(","))
             _entityTypes.add(entity.trim());
 
+        _graph = new CooccurrenceGraph(_offset);
         _isStreaming = false;
     }
 
@@ -178,103 +172,40 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
         int TYPE_IDX        = tuplePeer.getIndexForFieldName(OpenNLPNamedEntity.TYPE_FIELD);
         int TEXT_IDX        = tuplePeer.getIndexForFieldName(OpenNLPNamedEntity.TEXT_FIELD);
 
-        // Linked list of sentences keyed by sentence id - the HashSet is the set of entities in that sentence
-        LinkedList<KeyValuePair<Integer, HashSet<Entity>>> _sentencesWindow = new LinkedList<KeyValuePair<Integer, HashSet<Entity>>>();
-
-        // Note: The algorithm used to mark entities as adjacent if they fall within the specified sentence distance
-        //       relies on a sliding-window of sentences that are within the 'adjacency' range. As new sentences are
+        // Note: Entities are marked as adjacent if they fall within the specified sentence distance. The graph
+        //       keeps a sliding window of the sentences that are within the 'adjacency' range; as new sentences are
         //       considered, the window moves to the right and old sentences that are now too far fall out of scope.
+        _graph.clearWindow();
 
-        SimpleTuple tuple = tuplePeer.createTuple();
+        SimpleTuple tuple = tuplePeer.createView();
         for (Strings t : tuples) {
         	tuple.setValues(t);
 
-            Integer sentenceId = Integer.parseInt(tuple.getValue(SENTENCE_ID_IDX));
-            String tupleType   = tuple.getValue(TYPE_IDX);
-            String tupleValue  = tuple.getValue(TEXT_IDX);
+            String tupleType = tuple.getValue(TYPE_IDX);
 
             // If the entity is of the type we're interested in
             if (_entityTypes.contains(tupleType)) {
+                int sentenceId = Integer.parseInt(tuple.getValue(SENTENCE_ID_IDX));
+                String tupleValue = tuple.getValue(TEXT_IDX);
 
                 if (_normalizeEntities) {
-                    // Normalize whitespaces
-                    StringBuilder sb = new StringBuilder();
-                    Matcher nonWhitespaceMatcher = REGEXP_NONWHITESPACE.matcher(tupleValue);
-                    while (nonWhitespaceMatcher.find())
-                        sb.append(" ").append(nonWhitespaceMatcher.group(1));
-
-                    if (sb.length() > 0)
-                        tupleValue = sb.substring(1);
-                    else
-                        continue;
-
-                    // Normalize people's names
-                    if (tupleType.toLowerCase().equals("person")) {
-                        sb = new StringBuilder();
-                        Matcher personMatcher = REGEXP_PERSON.matcher(tupleValue);
-                        while (personMatcher.find())
-                            sb.append(" ").append(personMatcher.group(1));
-
-                        if (sb.length() > 0)
-                            tupleValue = sb.substring(1);
-                        else
-                            continue;
+                    // Normalize whitespaces, or people's names
+                    if (tupleType.equalsIgnoreCase("person")) {
+                        tupleValue = normalizePersonName(tupleValue);
 
                         // ignore names with 1 character
-                        if (tupleValue.length() == 1)
+                        if (tupleValue.length() <= 1)
+                            continue;
+                    } else {
+                        tupleValue = normalizeWhitespace(tupleValue);
+                        if (tupleValue.length() == 0)
                             continue;
                     }
 
                     tupleValue = WordUtils.capitalizeFully(tupleValue);
                 }
 
-                // ... create an object for it
-                Entity entity = new Entity(tupleType, tupleValue);
-
-                // Check if we already recorded this entity before
-                Entity oldEntity = _entities.get(entity);
-                if (oldEntity == null)
-                    // If not, record it
-                    _entities.put(entity, entity);
-                else
-                    // Otherwise retrieve the entity we used before
-                    entity = oldEntity;
-
-                HashSet<Entity> sentenceEntities;
-
-                // Remove all sentences (together with any entities they contained) from the set
-                // of sentences that are too far from the current sentence of this entity
-                while (_sentencesWindow.size() > 0 && sentenceId - _sentencesWindow.peek().getKey() > _offset)
-                    _sentencesWindow.remove();
-
-                if (_sentencesWindow.size() > 0)  {
-                    // If this sentence is different from the last sentence in the window
-                    if (_sentencesWindow.getLast().getKey() != sentenceId) {
-                        // Create an entry for it and add it at the end of the window
-                        sentenceEntities = new HashSet<Entity>();
-                        _sentencesWindow.addLast(new KeyValuePair<Integer, HashSet<Entity>>(sentenceId, sentenceEntities));
-                    } else
-                        sentenceEntities = _sentencesWindow.getLast().getValue();
-                } else {
-                    // If there are no sentences in the window, create an entry for this sentence and add it
-                    sentenceEntities = new HashSet<Entity>();
-                    _sentencesWindow.addLast(new KeyValuePair<Integer, HashSet<Entity>>(sentenceId, sentenceEntities));
-                }
-
-                // Iterate through all the sentences in the window
-                for (KeyValuePair<Integer, HashSet<Entity>> kvp : _sentencesWindow)
-                    // ... and all the entities in each sentence
-                    for (Entity e : kvp.getValue()) {
-                        // ignore self-references
-                        if (e.equals(entity)) continue;
-
-                        // ... and mark the new entity as being adjacent to all the entities in the window
-                        e.addOutwardLink(entity);
-                        entity.addInwardLink(e);
-                    }
-
-                // Add the new entity to the window
-                sentenceEntities.add(entity);
+                _graph.add(sentenceId, _graph.intern(tupleType, tupleValue));
             }
         }
 
@@ -284,6 +215,8 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        _graph = null;
+        _adjacency = null;
     }
 
     //--------------------------------------------------------------------------------------------
@@ -310,19 +243,14 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
     private void generateAndPushOutputInternal() throws Exception {
         console.entering(getClass().getSimpleName(), "generateAndPushOutput");
 
-        console.info(String.format("Number of nodes: %d", _entities.size()));
+        console.info(String.format("Number of nodes: %d", _graph.getEntityCount()));
 
-        if (_removeUncorrelatedEntities) {
-            List<Entity> toRemove = new ArrayList<Entity>();
-            for (Entity entity : _entities.keySet())
-                if (!(entity.hasInwardLinks() || entity.hasOutwardLinks()))
-                    toRemove.add(entity);
+        _adjacency = _graph.toAdjacency(_removeUncorrelatedEntities);
 
-            for (Entity e : toRemove)
-                _entities.remove(e);
+        if (_removeUncorrelatedEntities)
+            console.info(String.format("Number of nodes after removing uncorrelated nodes: %d", _adjacency.getNodeCount()));
 
-            console.info(String.format("Number of nodes after removing uncorrelated nodes: %d", _entities.size()));
-        }
+        console.info(String.format("Number of edges: %d", _adjacency.getEdgeCount()));
 
         generateAndPushOutput();
 
@@ -332,89 +260,70 @@ public abstract class AbstractLinkCreationComponent extends AbstractStreamingExe
     }
 
     private void reset() {
-        _entities.clear();
+        _adjacency = null;
+        _graph.clear();
     }
 
     //--------------------------------------------------------------------------------------------
 
+    /**
+     * Outputs the graph held in _adjacency
+     *
+     * @throws Exception Thrown in the event of an error
+     */
     protected abstract void generateAndPushOutput() throws Exception;
 
     //--------------------------------------------------------------------------------------------
 
-    class Entity {
-        private final String _type;
-        private final String _value;
-        private final Map<Entity, Integer> _in;
-        private final Map<Entity, Integer> _out;
-        private Integer _id;
-
-        public Entity(String type, String value) {
-            _type = type;
-            _value = value;
-            _in = new HashMap<Entity, Integer>();
-            _out = new HashMap<Entity, Integer>();
-            _id = null;
-        }
-
-        public String getType() {
-            return _type;
-        }
-
-        public String getValue() {
-            return _value;
-        }
-
-        public void setId(int id) {
-            _id = id;
+    /**
+     * Collapses every run of whitespace to a single space, and trims the value
+     *
+     * @param value The value
+     * @return The normalized value (empty if the value only contained whitespace)
+     */
+    protected static String normalizeWhitespace(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+
+        for (int i = 0, iMax = value.length(); i < iMax; i++) {
+            char c = value.charAt(i);
+            if (isWhitespace(c)) continue;
+
+            if (sb.length() > 0 && isWhitespace(value.charAt(i - 1)))
+                sb.append(' ');
+            sb.append(c);
         }
 
-        public Integer getId() {
-            return _id;
-        }
-
-        public void addInwardLink(Entity fromEntity) {
-            Integer count = _in.get(fromEntity);
-            if (count == null) count = 0;
-            _in.put(fromEntity, count + 1);
-        }
-
-        public void addOutwardLink(Entity toEntity) {
-            Integer count = _out.get(toEntity);
-            if (count == null) count = 0;
-            _out.put(toEntity, count + 1);
-        }
-
-        public boolean hasInwardLinks() {
-            return _in.size() > 0;
-        }
-
-        public boolean hasOutwardLinks() {
-            return _out.size() > 0;
-        }
-
-        public Map<Entity, Integer> getInwardLinks() {
-            return _in;
-        }
+        return sb.toString();
+    }
 
-        public Map<Entity, Integer> getOutwardLinks() {
-            return _out;
+    /**
+     * Keeps the runs of (US-ASCII) letters of a person's name, separated by single spaces
+     *
+     * @param value The name
+     * @return The normalized name (empty if the name contains no letters)
+     */
+    protected static String normalizePersonName(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+
+        for (int i = 0, iMax = value.length(); i < iMax; i++) {
+            char c = value.charAt(i);
+            if (!isLetter(c)) continue;
+
+            if (sb.length() > 0 && !isLetter(value.charAt(i - 1)))
+                sb.append(' ');
+            sb.append(c);
         }
 
-        @Override
-        public int hashCode() {
-            return (_type + _value).hashCode();
-        }
+        return sb.toString();
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof Entity) || obj == null) return false;
-            Entity other = (Entity) obj;
-            return (_type + _value).equals(other.getType() + other.getValue());
-        }
+    /** Same as \s in a regular expression */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
 
-        @Override
-        public String toString() {
-            return String.format("%s (%s)", _value, _type);
-        }
+    /** Same as \p{Alpha} in a regular expression */
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 }
@@ -42,9 +42,7 @@
 
 package org.seasr.meandre.components.analytics.socialnetworking;
 
-import java.util.HashSet;
 import java.util.Properties;
-import java.util.Set;
 
 import javax.xml.transform.OutputKeys;
 
@@ -74,7 +72,7 @@ import org.w3c.dom.Element;
         firingPolicy = FiringPolicy.all,
         rights = Licenses.UofINCSA,
         baseURL="meandre://seasr.org/components/foundry/",
-        dependency = {"protobuf-java-2.2.0.jar"}
+        dependency = {"protobuf-java-2.2.0.jar", "trove-2.0.3.jar"}
 )
 public class LinkCreationToGraphML extends AbstractLinkCreationComponent {
 
@@ -108,23 +106,15 @@ public class LinkCreationToGraphML extends AbstractLinkCreationComponent {
         Document doc = DOMUtils.createNewDocument();
         Element elGraph = initialzeDocGraph(doc);
 
-        // Assign ids to entities and add nodes
-        int id = 0;
-        for (Entity entity : _entities.keySet()) {
-            entity.setId(id++);
-            addNode(entity, elGraph);
-        }
+        int nodeCount = _adjacency.getNodeCount();
 
-        for (Entity entity : _entities.keySet()) {
-            Set<Entity> relEntities = new HashSet<Entity>(entity.getInwardLinks().keySet());
-            relEntities.addAll(entity.getOutwardLinks().keySet());
+        // Node ids are the node indices of the adjacency
+        for (int node = 0; node < nodeCount; node++)
+            addNode(node, _adjacency.getType(node), _adjacency.getValue(node), elGraph);
 
-            for (Entity relEntity : relEntities) {
-                addEdge(entity, relEntity, elGraph);
-                relEntity.getInwardLinks().remove(entity);
-                relEntity.getOutwardLinks().remove(entity);
-            }
-        }
+        for (int node = 0; node < nodeCount; node++)
+            for (int edge = _adjacency.getEdgeStart(node), end = _adjacency.getEdgeStart(node + 1); edge < end; edge++)
+                addEdge(node, _adjacency.getTarget(edge), elGraph);
 
         String xmlString = DOMUtils.getString(doc, _xmlProperties);
         xmlString = XMLUtils.stripNonValidXMLCharacters(xmlString);
@@ -156,22 +146,22 @@ public class LinkCreationToGraphML extends AbstractLinkCreationComponent {
         return elGraph;
     }
 
-    private void addNode(Entity entity, Element elGraph) {
+    private void addNode(int id, String type, String value, Element elGraph) {
         Document doc = elGraph.getOwnerDocument();
         Element elNode = doc.createElement("node");
-        elNode.setAttribute("id", Integer.toString(entity.getId()));
+        elNode.setAttribute("id", Integer.toString(id));
         Element elData = doc.createElement("data");
-        elData.setAttribute("key", entity.getType());
-        elData.setTextContent(entity.getValue());
+        elData.setAttribute("key", type);
+        elData.setTextContent(value);
         elNode.appendChild(elData);
         elGraph.appendChild(elNode);
     }
 
-    private void addEdge(Entity source, Entity target, Element elGraph) {
+    private void addEdge(int source, int target, Element elGraph) {
         Document doc = elGraph.getOwnerDocument();
         Element elNode = doc.createElement("edge");
-        elNode.setAttribute("source", Integer.toString(source.getId()));
-        elNode.setAttribute("target", Integer.toString(target.getId()));
+        elNode.setAttribute("source", Integer.toString(source));
+        elNode.setAttribute("target", Integer.toString(target));
         elGraph.appendChild(elNode);
     }
 
@@ -42,9 +42,7 @@
 
 package org.seasr.meandre.components.analytics.socialnetworking;
 
-import java.util.HashSet;
 import java.util.Properties;
-import java.util.Set;
 
 import javax.xml.transform.OutputKeys;
 
@@ -73,7 +71,7 @@ import org.seasr.datatypes.core.Names;
         firingPolicy = FiringPolicy.all,
         rights = Licenses.UofINCSA,
         baseURL="meandre://seasr.org/components/foundry/",
-        dependency = {"protobuf-java-2.2.0.jar"}
+        dependency = {"protobuf-java-2.2.0.jar", "trove-2.0.3.jar"}
 )
 public class LinkCreationToProtovis extends AbstractLinkCreationComponent {
 
@@ -112,32 +110,17 @@ public class LinkCreationToProtovis extends AbstractLinkCreationComponent {
 
         console.finest("Adding nodes");
 
-        int id = 0;
+        int nodeCount = _adjacency.getNodeCount();
 
-        // Assign ids to entities and create nodes
-        for (Entity entity : _entities.keySet()) {
-            entity.setId(id++);
-            addNode(entity, jaNodes);
-        }
+        // Node ids are the node indices of the adjacency
+        for (int node = 0; node < nodeCount; node++)
+            addNode(_adjacency.getType(node), _adjacency.getValue(node), jaNodes);
 
         console.finest("Adding edges");
 
-        for (Entity entity : _entities.keySet()) {
-            Set<Entity> relEntities = new HashSet<Entity>(entity.getInwardLinks().keySet());
-            relEntities.addAll(entity.getOutwardLinks().keySet());
-
-            for (Entity relEntity : relEntities) {
-                Integer countIn = entity.getInwardLinks().get(relEntity);
-                if (countIn == null) countIn = 0;
-                Integer countOut = entity.getOutwardLinks().get(relEntity);
-                if (countOut == null) countOut = 0;
-
-                addEdge(entity, relEntity, countIn + countOut, jaLinks);
-
-                relEntity.getInwardLinks().remove(entity);
-                relEntity.getOutwardLinks().remove(entity);
-            }
-        }
+        for (int node = 0; node < nodeCount; node++)
+            for (int edge = _adjacency.getEdgeStart(node), end = _adjacency.getEdgeStart(node + 1); edge < end; edge++)
+                addEdge(node, _adjacency.getTarget(edge), _adjacency.getWeight(edge), jaLinks);
 
         String sOutput = String.format("%s", joOutput.toString(4));
         console.finest("Output: " + sOutput);
@@ -147,18 +130,18 @@ public class LinkCreationToProtovis extends AbstractLinkCreationComponent {
 
     //--------------------------------------------------------------------------------------------
 
-    private void addNode(Entity entity, JSONArray jaNodes) throws JSONException {
+    private void addNode(String type, String value, JSONArray jaNodes) throws JSONException {
         JSONObject joNode = new JSONObject();
-        joNode.put("nodeName", entity.getValue());
-        joNode.put("group", entity.getType());
+        joNode.put("nodeName", value);
+        joNode.put("group", type);
 
         jaNodes.put(joNode);
     }
 
-    private void addEdge(Entity entity1, Entity entity2, Integer strength, JSONArray jaLinks) throws JSONException {
+    private void addEdge(int source, int target, int strength, JSONArray jaLinks) throws JSONException {
         JSONObject joLink = new JSONObject();
-        joLink.put("source", entity1.getId());
-        joLink.put("target", entity2.getId());
+        joLink.put("source", source);
+        joLink.put("target", target);
         joLink.put("value", strength);
 
         jaLinks.put(joLink);
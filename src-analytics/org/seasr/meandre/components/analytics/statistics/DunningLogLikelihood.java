@@ -42,10 +42,8 @@
 
 package org.seasr.meandre.components.analytics.statistics;
 
-import java.util.Hashtable;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.logging.Level;
 
 import org.meandre.annotations.Component;
 import org.meandre.annotations.ComponentInput;
@@ -53,14 +51,16 @@ import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
 import org.meandre.core.ComponentContextProperties;
-import org.monkproject.utils.CountMapUtils;
-import org.monkproject.utils.ReverseScoredString;
-import org.monkproject.utils.corpuslinguistics.Frequency;
-import org.monkproject.utils.math.ArithUtils;
-import org.seasr.datatypes.core.BasicDataTypesTools;
+import org.monkproject.utils.corpuslinguistics.ReferenceCorpus;
+import org.seasr.datatypes.core.BasicDataTypes.Doubles;
+import org.seasr.datatypes.core.BasicDataTypes.DoublesMap;
+import org.seasr.datatypes.core.BasicDataTypes.Integers;
+import org.seasr.datatypes.core.BasicDataTypes.IntegersMap;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.support.components.analytics.statistics.FrequencyComparison;
+import org.seasr.meandre.support.components.analytics.summarization.HITS;
 
 
 /**
@@ -84,7 +84,7 @@ import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 		name = "Dunning Log Likelihood",
 		tags = "#ANALYTICS, dunning, likelihood, loglikelihood, monk, comparison, statistics",
 		baseURL = "meandre://seasr.org/components/foundry/",
-	    dependency = {"protobuf-java-2.2.0.jar"}
+	    dependency = {"trove-2.0.3.jar", "protobuf-java-2.2.0.jar"}
 )
 public class DunningLogLikelihood extends AbstractExecutableComponent {
 
@@ -158,197 +158,102 @@ public class DunningLogLikelihood extends AbstractExecutableComponent {
     )
     protected static final String PROP_CUTOFF = "cutoff";
 
+    @ComponentProperty(
+            name = "top_k",
+            description = "The number of tokens with the highest log-likelihood to output. " +
+                    "Use 0 to output every token.",
+            defaultValue = "0"
+    )
+    protected static final String PROP_TOP_K = "top_k";
+
     //--------------------------------------------------------------------------------------------
 
     Boolean _signedInts = true;
     Boolean _signedDoubles = true;
 	private int _cutoff = 0;
-    
+	private int _topK = 0;
+
+	private Object _referenceInput;
+	private ReferenceCorpus _reference;
+
     @Override
     public void initializeCallBack(ComponentContextProperties ccp) throws Exception {
     	_signedInts  = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_SIGNED_INTS, ccp));
     	_signedDoubles  = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_SIGNED_DOUBLES, ccp));
     	_cutoff  = Integer.parseInt(getPropertyOrDieTrying(PROP_CUTOFF, ccp));
+    	_topK = Integer.parseInt(getPropertyOrDieTrying(PROP_TOP_K, ccp));
     }
 
 	@Override
     public void executeCallBack(ComponentContext cc) throws Exception {
 		Map<String, Number> analysisCounts = DataTypeParser.parseAsStringNumberMap(
 		        cc.getDataComponentFromInput(IN_TOKEN_COUNTS));
-		Map<String, Number> referenceCounts = DataTypeParser.parseAsStringNumberMap(
-		        cc.getDataComponentFromInput(IN_REF_TOKEN_COUNTS));
-		
-//		Set<String> set = analysis.keySet();
-//		Iterator<String> iterator = set.iterator();
-//		while (iterator.hasNext()) {
-//			String str = iterator.next();
-//			analysisCounts.put(str, analysis.get(str));
-//		}
-//
-//		set = reference.keySet();
-//		iterator = set.iterator();
-//		while (iterator.hasNext()) {
-//			String str = iterator.next();
-//			referenceCounts.put(str, reference.get(str));
-//		}
-
-		Map<ReverseScoredString, double[]>  results = doDunning(analysisCounts,referenceCounts,_cutoff);
-
-//		double min = Double.MAX_VALUE;
-//		for (ReverseScoredString key : results.keySet()) {
-//			double score = key.getScore();
-//			min = (min<score) ? min : score;
-//		}
-
-		Map<String, Integer> outputMap = new Hashtable<String, Integer>();
-		Map<String,Double> outputMapDoubles = new Hashtable<String, Double>();
-		Map<String,Double> significanceMapDoubles = new Hashtable<String, Double>();
-		for (ReverseScoredString key : results.keySet()) {
-			int sign =  results.get(key)[SAMPLE_PERCENT_INDEX] >= results.get(key)[REFERE_PERCENT_INDEX] ? 1 : -1;
-			double score = key.getScore();
-			
-			outputMapDoubles.put(key.getString(), new Double(score)*(_signedDoubles ? sign : 1));
-			significanceMapDoubles.put(key.getString(), new Double(results.get(key)[SIGNIFICANCE_INDEX]));
-			
-//			if (min > 1) //apply score directly
-				outputMap.put(key.getString(), new Integer((int)(score*(_signedInts ? sign : 1))));
-//			else //scale score
-//				outputMap.put(key.getString(), new Integer((int)(score/min)));
-
-			console.finest(String.format("%s\t%s\t%s\t%s", key.getString(), score, (int)score,sign));
-		}
-		
-//		for (ReverseScoredString key : results.keySet()) {
-//		}
+		Object referenceInput = cc.getDataComponentFromInput(IN_REF_TOKEN_COUNTS);
 
-		cc.pushDataComponentToOutput(OUT_TOKEN_COUNTS, BasicDataTypesTools.mapToIntegerMap(outputMap, false));
-		cc.pushDataComponentToOutput(OUT_TOKEN_DOUBLES, BasicDataTypesTools.mapToDoubleMap(outputMapDoubles, false));
-		cc.pushDataComponentToOutput(OUT_TOKEN_SIGNIFICANCE, BasicDataTypesTools.mapToDoubleMap(significanceMapDoubles, false));
-	}
+		// Flows usually compare many documents against the same reference corpus; it is
+		// indexed once and then looked up by content (or reused as is for the same object)
+		if (_reference == null || referenceInput != _referenceInput) {
+		    _reference = getReferenceCorpus(referenceInput);
+		    _referenceInput = referenceInput;
+		}
 
-    @Override
-    public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
-    }
+		FrequencyComparison comparison = new FrequencyComparison(_reference, analysisCounts);
 
-    //--------------------------------------------------------------------------------------------
-/*
-	@Test
-	public void testSampleData(){
-		Map<String, Number> analysisCounts = new HashMap<String,Number>();
-		analysisCounts.put("i", 20);
-		analysisCounts.put("like", 10);
-		analysisCounts.put("peanuts", 5);
+		int[] words = comparison.wordsWithCountAtLeast(_cutoff);
+		double[] scores = comparison.logLikelihoods(words);
 
-		Map<String, Number> referenceCounts = new HashMap<String,Number>();
+		IntegersMap.Builder outputMap = IntegersMap.newBuilder();
+		DoublesMap.Builder outputMapDoubles = DoublesMap.newBuilder();
+		DoublesMap.Builder significanceMapDoubles = DoublesMap.newBuilder();
+		int[] selected = (_topK > 0) ? HITS.top(scores, _topK) : null;
+		for (int k = 0, kMax = (selected != null) ? selected.length : words.length; k < kMax; k++) {
+			int i = (selected != null) ? selected[k] : k;
+			int word = words[i];
+			String token = comparison.getWord(word);
+			double score = scores[i];
+			int sign = comparison.getSamplePercent(word) >= comparison.getReferencePercent(word) ? 1 : -1;
 
-		referenceCounts.put("i",5);
-		referenceCounts.put("like",10);
-		referenceCounts.put("peanuts",10);
-		referenceCounts.put("and",10);
-		referenceCounts.put("cake",3);
+			outputMapDoubles.addKey(token);
+			outputMapDoubles.addValue(Doubles.newBuilder().addValue(score * (_signedDoubles ? sign : 1)));
 
-		Map<ReverseScoredString, double[]>  results = doDunning(analysisCounts,referenceCounts,2);
+			// the significance of the log-likelihood is not computed
+			significanceMapDoubles.addKey(token);
+			significanceMapDoubles.addValue(Doubles.newBuilder().addValue(0.0));
 
-		System.out.println("Dunnings Log Likely hood\n Spelling\tscore");
-		for(ReverseScoredString key:results.keySet()){
-			System.out.println(key.getString()+"\t"+ key.getScore() );
+			outputMap.addKey(token);
+			outputMap.addValue(Integers.newBuilder().addValue((int) (score * (_signedInts ? sign : 1))));
 
+			if (console.isLoggable(Level.FINEST))
+			    console.finest(String.format("%s\t%s\t%s\t%s", token, score, (int) score, sign));
 		}
+
+		cc.pushDataComponentToOutput(OUT_TOKEN_COUNTS, outputMap.build());
+		cc.pushDataComponentToOutput(OUT_TOKEN_DOUBLES, outputMapDoubles.build());
+		cc.pushDataComponentToOutput(OUT_TOKEN_SIGNIFICANCE, significanceMapDoubles.build());
 	}
-*/
-	private Map<ReverseScoredString, double[]> doDunning(Map<String, Number> analysisCounts,
-			Map<String, Number> referenceCounts,int cutoff) {
-		Map<ReverseScoredString, double[]> results;
-		int analysisTotalCount = CountMapUtils.getTotalWordCount(analysisCounts);
-		int refTotalCount = CountMapUtils.getTotalWordCount(referenceCounts);
-		// Get combined string list.
-
-		Map<String, Number> combinedCounts = CountMapUtils.semiDeepClone(analysisCounts);
-		CountMapUtils.addCountMap(combinedCounts, referenceCounts);
-		// Holds results of analysis.
-		// Each unique input string produces
-		// one line of results.
-		results = new TreeMap<ReverseScoredString, double[]>();
-		// Get set of unique strings
-		// in the two input count maps
-		// combined.
-		Set<String> keySet = combinedCounts.keySet();
-		// Counts strings analyzed.
-		// int stringsDone = 0;
-		// Loop over the strings and
-		// compute the frequency statistics.
-		for (String stringToAnalyze : keySet) {
-			// Get string count in analysis text.
-			Number stringCount = analysisCounts.get(stringToAnalyze);
-			if (stringCount == null)
-				stringCount = new Integer(0);
-			
-			// Get string count in reference text.
-			Number refCount = referenceCounts.get(stringToAnalyze);
-			if (refCount == null)
-				refCount = new Integer(0);;
-			
-			if (refCount.intValue() < cutoff && stringCount.intValue() < cutoff)
-				continue;
-			
-			// Compute frequency statistics
-			// including Dunning's log-likelihood.
-//			(0) Count of word/lemma appearance in sample.
-//			(1) Percent of word/lemma appearance in sample.
-//			(2) Count of word/lemma appearance in reference.
-//			(3) Percent of word/lemma appearance in reference.
-//			(4) Log-likelihood measure.
-//			(5) Significance of log-likelihood.
-			double[] freqAnal = doFreq(stringToAnalyze, stringCount.intValue(),analysisTotalCount, refCount.intValue(), refTotalCount);
-
-			// Save results for later reporting.
-			results.put(new ReverseScoredString(stringToAnalyze, freqAnal[4]),
-					freqAnal);
-			// Update count of strings done.
-			// stringsDone++;
-		}
 
+    @Override
+    public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        _referenceInput = null;
+        _reference = null;
+    }
 
-		return results;
-	}
+    //--------------------------------------------------------------------------------------------
 
-	static int SAMPLE_COUNT_INDEX = 0;
-	static int SAMPLE_PERCENT_INDEX = 1;
-	static int REFERE_COUNT_INDEX = 2;
-	static int REFERE_PERCENT_INDEX = 3;
-	static int LOG_LIKLIHOOD_INDEX = 4;
-	static int SIGNIFICANCE_INDEX = 5;
-
-	/**
-	 *
-	 * @param stringToAnalyze
-	 * @param analysisCount
-	 * @param analysisTotalCount
-	 * @param refCount
-	 * @param refTotalCount
-	 * @return
-	 * 		  <p>
-	 *         (0) Count of word/lemma appearance in sample.<br /> (1) Percent
-	 *         of word/lemma appearance in sample.<br /> (2) Count of word/lemma
-	 *         appearance in reference.<br /> (3) Percent of word/lemma
-	 *         appearance in reference.<br /> (4) Log-likelihood measure.<br />
-	 *         (5) Significance of log-likelihood.<br />
-	 *         </p>
-	 *
-	 */
-	private static double[] doFreq(String stringToAnalyze, int analysisCount,
-			int analysisTotalCount, int refCount, int refTotalCount) {
-		// Compute percents and log-likelihood.
-
-		double freqAnal[] = Frequency.logLikelihoodFrequencyComparison(
-				analysisCount, refCount, analysisTotalCount, refTotalCount,
-				false);
-		// Convert percents to parts per 10,000.
-//		freqAnal[SAMPLE_PERCENT_INDEX] = freqAnal[SAMPLE_PERCENT_INDEX] * 100.0D;
-//		freqAnal[REFERE_PERCENT_INDEX] = freqAnal[REFERE_PERCENT_INDEX] * 100.0D;
-		freqAnal[6]=Math.pow(2.0D, ArithUtils.asinh(freqAnal[LOG_LIKLIHOOD_INDEX]));
-		return freqAnal;
-	}
+    protected ReferenceCorpus getReferenceCorpus(Object referenceInput) throws Exception {
+        if (referenceInput instanceof IntegersMap) {
+            IntegersMap counts = (IntegersMap) referenceInput;
 
+            String[] words = new String[counts.getKeyCount()];
+            int[] values = new int[words.length];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = counts.getKey(i);
+                values[i] = counts.getValue(i).getValue(0);
+            }
 
+            return ReferenceCorpus.forCounts(words, values);
+        }
+
+        return ReferenceCorpus.forCounts(DataTypeParser.parseAsStringNumberMap(referenceInput));
+    }
 }
@@ -0,0 +1,511 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.analytics.statistics;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.meandre.annotations.Component;
+import org.meandre.annotations.Component.FiringPolicy;
+import org.meandre.annotations.Component.Licenses;
+import org.meandre.annotations.Component.Mode;
+import org.meandre.annotations.ComponentInput;
+import org.meandre.annotations.ComponentOutput;
+import org.meandre.annotations.ComponentProperty;
+import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextException;
+import org.meandre.core.ComponentContextProperties;
+import org.meandre.core.system.components.ext.StreamInitiator;
+import org.meandre.core.system.components.ext.StreamTerminator;
+import org.seasr.datatypes.core.BasicDataTypes.Strings;
+import org.seasr.datatypes.core.BasicDataTypesTools;
+import org.seasr.datatypes.core.Names;
+import org.seasr.meandre.components.abstracts.AbstractStreamingExecutableComponent;
+import org.seasr.meandre.support.components.analytics.statistics.PearsonCorrelation;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
+import org.seasr.meandre.support.components.tuples.TupleBatch.ColumnType;
+
+/**
+ * Computes the Pearson correlation between the time series (e.g. the yearly frequencies of n-grams)
+ * given as (series, time, value) tuples, in memory rather than through generated SQL (see ComputePearson
+ * and TuplePearsonAnalysis). As in the TuplePearsonAnalysis queries, each pair is correlated over the
+ * times at which either series has a value, and the values can be normalized by the total for their time.
+ */
+
+@Component(
+        name = "Pearson Correlation Analysis",
+        creator = "Loretta Auvil",
+        baseURL = "meandre://seasr.org/components/foundry/",
+        firingPolicy = FiringPolicy.all,
+        mode = Mode.compute,
+        rights = Licenses.UofINCSA,
+        tags = "#ANALYTICS, tuple, pearson, correlation, ngram",
+        description = "This component computes the Pearson correlation between every pair of time series " +
+                "(or the most correlated series for each series). The series are read from the incoming tuples, " +
+                "one tuple per (series, time, value) -- for example the rows of an n-gram frequency table. " +
+                "Each pair of series is correlated over the times at which at least one of the two has a value, " +
+                "a time missing from one of them counting as a value of 0 (as in the queries generated by Tuple Pearson Analysis). " +
+                "Pairs in which a series is constant over those times are not output. " +
+                "If the input is a stream, the correlations are computed when the stream ends.",
+        dependency = { "trove-2.0.3.jar", "protobuf-java-2.2.0.jar" }
+)
+public class PearsonCorrelationAnalysis extends AbstractStreamingExecutableComponent {
+
+    //------------------------------ INPUTS ------------------------------------------------------
+
+    @ComponentInput(
+            name = Names.PORT_TUPLES,
+            description = "The (series, time, value) tuples" +
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray" +
+                "<br>TYPE: org.seasr.meandre.support.components.tuples.TupleBatch"
+    )
+    protected static final String IN_TUPLES = Names.PORT_TUPLES;
+
+    @ComponentInput(
+            name = Names.PORT_META_TUPLE,
+            description = "The meta data for the tuples" +
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Strings"
+    )
+    protected static final String IN_META_TUPLE = Names.PORT_META_TUPLE;
+
+    //------------------------------ OUTPUTS -----------------------------------------------------
+
+    @ComponentOutput(
+            name = Names.PORT_TUPLES,
+            description = "The (series1, series2, pearson) tuples, in chunks (not used when an output file is specified)" +
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray"
+    )
+    protected static final String OUT_TUPLES = Names.PORT_TUPLES;
+
+    @ComponentOutput(
+            name = Names.PORT_META_TUPLE,
+            description = "The meta data for the tuples" +
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Strings"
+    )
+    protected static final String OUT_META_TUPLE = Names.PORT_META_TUPLE;
+
+    @ComponentOutput(
+            name = Names.PORT_LOCATION,
+            description = "The file the correlations were written to (only used when an output file is specified)" +
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Strings"
+    )
+    protected static final String OUT_LOCATION = Names.PORT_LOCATION;
+
+    //----------------------------- PROPERTIES ---------------------------------------------------
+
+    @ComponentProperty(
+            name = "series_field",
+            description = "The tuple field identifying the series (e.g. the n-gram).",
+            defaultValue = "ngram_spelling_id"
+    )
+    protected static final String PROP_SERIES_FIELD = "series_field";
+
+    @ComponentProperty(
+            name = "time_field",
+            description = "The (integer) tuple field giving the position in the series (e.g. the year).",
+            defaultValue = "year"
+    )
+    protected static final String PROP_TIME_FIELD = "time_field";
+
+    @ComponentProperty(
+            name = "value_field",
+            description = "The (numeric) tuple field giving the value (e.g. the frequency).",
+            defaultValue = "freq"
+    )
+    protected static final String PROP_VALUE_FIELD = "value_field";
+
+    @ComponentProperty(
+            name = "total_field",
+            description = "Optional: The (numeric) tuple field giving the total for the time (e.g. the sum of the match counts " +
+                    "of the year). If specified, the values are normalized to value / total * 1,000,000 before being correlated.",
+            defaultValue = ""
+    )
+    protected static final String PROP_TOTAL_FIELD = "total_field";
+
+    @ComponentProperty(
+            name = "top_k",
+            description = "The number of most correlated series to output for each series. " +
+                    "Use 0 to output every pair of series once.",
+            defaultValue = "0"
+    )
+    protected static final String PROP_TOP_K = "top_k";
+
+    @ComponentProperty(
+            name = "min_correlation",
+            description = "The smallest correlation to output when outputting every pair (-1 outputs all of them).",
+            defaultValue = "-1"
+    )
+    protected static final String PROP_MIN_CORRELATION = "min_correlation";
+
+    @ComponentProperty(
+            name = "chunk_size",
+            description = "The maximum number of correlations pushed in one set of tuples.",
+            defaultValue = "100000"
+    )
+    protected static final String PROP_CHUNK_SIZE = "chunk_size";
+
+    @ComponentProperty(
+            name = "output_file",
+            description = "If specified, the correlations are written to this file (tab separated) instead of being output as tuples.",
+            defaultValue = ""
+    )
+    protected static final String PROP_OUTPUT_FILE = "output_file";
+
+    @ComponentProperty(
+            name = Names.PROP_WRAP_STREAM,
+            description = "Should the chunks of tuples be wrapped as a stream? " +
+                    "Ignored when the input is a stream, in which case the chunks are pushed inside it.",
+            defaultValue = "true"
+    )
+    protected static final String PROP_WRAP_STREAM = Names.PROP_WRAP_STREAM;
+
+    @ComponentProperty(
+            name = "num_threads",
+            description = "The number of threads computing the correlations (use 0 for the number of available processors)",
+            defaultValue = "1"
+    )
+    protected static final String PROP_NUM_THREADS = "num_threads";
+
+    //--------------------------------------------------------------------------------------------
+
+
+    protected static final String SERIES1_FIELD = "series1";
+    protected static final String SERIES2_FIELD = "series2";
+    protected static final String PEARSON_FIELD = "pearson";
+
+    protected static final SimpleTuplePeer OUT_PEER =
+        new SimpleTuplePeer(new String[] { SERIES1_FIELD, SERIES2_FIELD, PEARSON_FIELD });
+
+    protected String _seriesField;
+    protected String _timeField;
+    protected String _valueField;
+    protected String _totalField;
+    protected int _topK;
+    protected double _minCorrelation;
+    protected int _chunkSize;
+    protected String _outputFile;
+    protected boolean _wrapStream;
+    protected int _numThreads;
+    protected ExecutorService _workers;
+
+    protected boolean _isStreaming;
+
+    /** The accumulated tuples, with the series interned */
+    protected TObjectIntHashMap<String> _seriesIds;
+    protected List<String> _seriesNames;
+    protected int[] _series;
+    protected int[] _times;
+    protected double[] _values;
+    protected int _count;
+
+
+    //--------------------------------------------------------------------------------------------
+
+    @Override
+    public void initializeCallBack(ComponentContextProperties ccp) throws Exception {
+        super.initializeCallBack(ccp);
+
+        _seriesField = getPropertyOrDieTrying(PROP_SERIES_FIELD, ccp);
+        _timeField = getPropertyOrDieTrying(PROP_TIME_FIELD, ccp);
+        _valueField = getPropertyOrDieTrying(PROP_VALUE_FIELD, ccp);
+        _totalField = getPropertyOrDieTrying(PROP_TOTAL_FIELD, true, false, ccp);
+        _topK = Integer.parseInt(getPropertyOrDieTrying(PROP_TOP_K, ccp));
+        _minCorrelation = Double.parseDouble(getPropertyOrDieTrying(PROP_MIN_CORRELATION, ccp));
+        _chunkSize = Integer.parseInt(getPropertyOrDieTrying(PROP_CHUNK_SIZE, ccp));
+        _outputFile = getPropertyOrDieTrying(PROP_OUTPUT_FILE, true, false, ccp);
+        _wrapStream = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_WRAP_STREAM, ccp));
+
+        if (_chunkSize <= 0)
+            throw new ComponentContextException(String.format("Property '%s' must be greater than zero", PROP_CHUNK_SIZE));
+
+        _numThreads = Integer.parseInt(getPropertyOrDieTrying(PROP_NUM_THREADS, ccp));
+        if (_numThreads <= 0)
+            _numThreads = Runtime.getRuntime().availableProcessors();
+
+        if (_numThreads > 1) {
+            final AtomicInteger count = new AtomicInteger();
+            _workers = Executors.newFixedThreadPool(_numThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PearsonCorrelationAnalysis-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        _isStreaming = false;
+        reset();
+    }
+
+    @Override
+    public void executeCallBack(ComponentContext cc) throws Exception {
+        Strings inMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
+        SimpleTuplePeer inPeer = new SimpleTuplePeer(inMeta);
+
+        int SERIES_IDX = inPeer.getIndexForFieldName(_seriesField);
+        int TIME_IDX   = inPeer.getIndexForFieldName(_timeField);
+        int VALUE_IDX  = inPeer.getIndexForFieldName(_valueField);
+        int TOTAL_IDX  = (_totalField.length() > 0) ? inPeer.getIndexForFieldName(_totalField) : -1;
+
+        if (SERIES_IDX < 0 || TIME_IDX < 0 || VALUE_IDX < 0)
+            throw new ComponentContextException(String.format("The tuples must have the fields '%s', '%s' and '%s'; found: %s",
+                    _seriesField, _timeField, _valueField, inPeer.toString()));
+
+        if (_totalField.length() > 0 && TOTAL_IDX < 0)
+            throw new ComponentContextException(String.format("The tuples must have the field '%s'; found: %s",
+                    _totalField, inPeer.toString()));
+
+        TupleBatch tuples = TupleBatch.parse(cc.getDataComponentFromInput(IN_TUPLES), inPeer);
+        for (int i = 0, iMax = tuples.size(); i < iMax; i++) {
+            double value = tuples.getDouble(i, VALUE_IDX);
+            if (TOTAL_IDX >= 0)
+                value = value / tuples.getDouble(i, TOTAL_IDX) * 1000000;
+
+            add(tuples.getString(i, SERIES_IDX), tuples.getInt(i, TIME_IDX), value);
+        }
+
+        if (!_isStreaming)
+            computeAndPush();
+    }
+
+    @Override
+    public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        reset();
+
+        if (_workers != null) {
+            _workers.shutdownNow();
+            _workers = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isAccumulator() {
+        return true;
+    }
+
+    @Override
+    public void startStream() throws Exception {
+        _isStreaming = true;
+
+        reset();
+    }
+
+    @Override
+    public void endStream() throws Exception {
+        computeAndPush();
+
+        _isStreaming = false;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void add(String series, int time, double value) {
+        int id;
+        if (_seriesIds.containsKey(series))
+            id = _seriesIds.get(series);
+        else {
+            id = _seriesNames.size();
+            _seriesIds.put(series, id);
+            _seriesNames.add(series);
+        }
+
+        if (_count == _series.length) {
+            int capacity = Math.max(16, _count * 2);
+            _series = Arrays.copyOf(_series, capacity);
+            _times = Arrays.copyOf(_times, capacity);
+            _values = Arrays.copyOf(_values, capacity);
+        }
+
+        _series[_count] = id;
+        _times[_count] = time;
+        _values[_count] = value;
+        _count++;
+    }
+
+    private void reset() {
+        _seriesIds = new TObjectIntHashMap<String>();
+        _seriesNames = new ArrayList<String>();
+        _series = new int[0];
+        _times = new int[0];
+        _values = new double[0];
+        _count = 0;
+    }
+
+    /**
+     * Lays the accumulated values out as one row per series and one column per distinct time,
+     * marking the times each series has values at
+     */
+    private double[][] buildSeries(boolean[][] present) {
+        int[] distinctTimes = Arrays.copyOf(_times, _count);
+        Arrays.sort(distinctTimes);
+
+        int timeCount = 0;
+        for (int i = 0; i < distinctTimes.length; i++)
+            if (i == 0 || distinctTimes[i] != distinctTimes[i - 1])
+                distinctTimes[timeCount++] = distinctTimes[i];
+        distinctTimes = Arrays.copyOf(distinctTimes, timeCount);
+
+        double[][] series = new double[_seriesNames.size()][timeCount];
+        for (int s = 0; s < present.length; s++)
+            present[s] = new boolean[timeCount];
+
+        for (int i = 0; i < _count; i++) {
+            int time = Arrays.binarySearch(distinctTimes, _times[i]);
+            series[_series[i]][time] += _values[i];
+            present[_series[i]][time] = true;
+        }
+
+        return series;
+    }
+
+    private void computeAndPush() throws Exception {
+        boolean[][] present = new boolean[_seriesNames.size()][];
+        double[][] series = buildSeries(present);
+        int timeCount = series.length > 0 ? series[0].length : 0;
+        final String[] names = _seriesNames.toArray(new String[_seriesNames.size()]);
+
+        console.info(String.format("Computing the correlations of %d series of %d values", series.length, timeCount));
+
+        // free the accumulated tuples before the (potentially long) computation
+        reset();
+
+        PearsonCorrelation pearson = new PearsonCorrelation(series, present);
+        series = null;
+        present = null;
+
+        long start = System.currentTimeMillis();
+
+        if (_outputFile != null && _outputFile.length() > 0) {
+            File file = new File(_outputFile);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+            final long[] count = new long[1];
+
+            try {
+                writer.write(SERIES1_FIELD + "\t" + SERIES2_FIELD + "\t" + PEARSON_FIELD + "\n");
+                compute(pearson, new PearsonCorrelation.Handler() {
+                    public void correlation(int series1, int series2, double r) throws Exception {
+                        writer.write(names[series1]);
+                        writer.write('\t');
+                        writer.write(names[series2]);
+                        writer.write('\t');
+                        writer.write(Double.toString(r));
+                        writer.write('\n');
+                        count[0]++;
+                    }
+                });
+            }
+            finally {
+                writer.close();
+            }
+
+            console.info(String.format("Wrote %d correlations to %s in %d ms", count[0], file.getAbsolutePath(),
+                    System.currentTimeMillis() - start));
+
+            componentContext.pushDataComponentToOutput(OUT_LOCATION, BasicDataTypesTools.stringToStrings(file.getAbsolutePath()));
+            return;
+        }
+
+        boolean wrap = _wrapStream && !_isStreaming;
+        if (wrap)
+            pushDelimiter(new StreamInitiator(streamId));
+
+        final TupleBatch chunk = new TupleBatch(OUT_PEER,
+                new ColumnType[] { ColumnType.STRING, ColumnType.STRING, ColumnType.DOUBLE }, Math.min(_chunkSize, 1024));
+        final long[] count = new long[1];
+
+        compute(pearson, new PearsonCorrelation.Handler() {
+            public void correlation(int series1, int series2, double r) throws Exception {
+                int row = chunk.addRow();
+                chunk.setString(row, 0, names[series1]);
+                chunk.setString(row, 1, names[series2]);
+                chunk.setDouble(row, 2, r);
+                count[0]++;
+
+                if (chunk.size() == _chunkSize)
+                    pushChunk(chunk);
+            }
+        });
+
+        if (chunk.size() > 0 || count[0] == 0)
+            pushChunk(chunk);
+
+        if (wrap)
+            pushDelimiter(new StreamTerminator(streamId));
+
+        console.info(String.format("Computed %d correlations in %d ms", count[0], System.currentTimeMillis() - start));
+    }
+
+    private void compute(PearsonCorrelation pearson, PearsonCorrelation.Handler handler) throws Exception {
+        if (_topK > 0)
+            pearson.topK(_topK, _workers, _numThreads, handler);
+        else
+            pearson.allPairs(_minCorrelation, _workers, _numThreads, handler);
+    }
+
+    private void pushChunk(TupleBatch chunk) throws Exception {
+        componentContext.pushDataComponentToOutput(OUT_META_TUPLE, OUT_PEER.convert());
+        componentContext.pushDataComponentToOutput(OUT_TUPLES, chunk.convert());
+        chunk.clear();
+    }
+
+    private void pushDelimiter(Object delimiter) throws Exception {
+        componentContext.pushDataComponentToOutput(OUT_META_TUPLE, delimiter);
+        componentContext.pushDataComponentToOutput(OUT_TUPLES, delimiter);
+    }
+}
@@ -42,9 +42,13 @@
 
 package org.seasr.meandre.components.analytics.text.statistics;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.meandre.annotations.Component;
 import org.meandre.annotations.Component.FiringPolicy;
@@ -56,10 +60,9 @@ import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
 import org.meandre.core.ComponentContextProperties;
 import org.meandre.core.ComponentExecutionException;
-import org.seasr.datatypes.core.BasicDataTypesTools;
-import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractStreamingExecutableComponent;
+import org.seasr.meandre.support.components.text.TokenCountAccumulator;
 
 /**
  * This class reads all the token counts inputed and accumulates the counts
@@ -81,8 +84,9 @@ import org.seasr.meandre.components.abstracts.AbstractStreamingExecutableCompone
 				      "Given a sequence of wrapped models, it will create a new model that " +
 				      "accumulates/reduces the token counts and then pushes the resulting model. " +
 				      "If no wrapped model is provided it will act as a simple pass through. This " +
-				      "component is based on Wrapped models reducer.",
-		dependency = {"protobuf-java-2.2.0.jar"}
+				      "component is based on Wrapped models reducer. When firings are micro-batched " +
+				      "(see _batch_size), the count maps of a batch can be merged concurrently.",
+		dependency = {"protobuf-java-2.2.0.jar", "trove-2.0.3.jar"}
 )
 public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 
@@ -116,11 +120,19 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
     )
     protected static final String PROP_ORDERED = Names.PROP_ORDERED;
 
+    @ComponentProperty(
+            name = "merge_threads",
+            description = "The number of threads used to merge the token counts of a batch of firings " +
+                    "(only used when _batch_size is greater than 1). Use 0 for one per available processor.",
+            defaultValue = "1"
+    )
+    protected static final String PROP_MERGE_THREADS = "merge_threads";
+
 	//--------------------------------------------------------------------------------------------
 
 
 	/** The accumulated counts */
-	protected Hashtable<String,Integer> _accumulator;
+	protected TokenCountAccumulator _accumulator;
 
 	/** Number of models accumulated */
 	protected int _modelCounter;
@@ -128,6 +140,10 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 	/** Should the tokens be ordered */
 	private boolean _shouldOrderTokens;
 
+	/** The threads used to merge batches of counts */
+	private int _mergeThreads;
+	private ExecutorService _mergeWorkers;
+
 
 	//--------------------------------------------------------------------------------------------
 
@@ -137,6 +153,21 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 
 	    _shouldOrderTokens = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_ORDERED, ccp));
 
+	    _mergeThreads = Integer.parseInt(getPropertyOrDieTrying(PROP_MERGE_THREADS, ccp));
+	    if (_mergeThreads <= 0)
+	        _mergeThreads = Runtime.getRuntime().availableProcessors();
+
+	    if (_mergeThreads > 1 && batchSize > 1) {
+	        final AtomicInteger count = new AtomicInteger();
+	        _mergeWorkers = Executors.newFixedThreadPool(_mergeThreads, new ThreadFactory() {
+	            public Thread newThread(Runnable r) {
+	                Thread thread = new Thread(r, "TokenCounterReducer-merge-" + count.incrementAndGet());
+	                thread.setDaemon(true);
+	                return thread;
+	            }
+	        });
+	    }
+
 	    initializeReduction();
 	}
 
@@ -147,7 +178,22 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 		if (_accumulator == null)
 			cc.pushDataComponentToOutput(OUT_TOKEN_COUNTS, obj);
 		else
-		    reduceModel(DataTypeParser.parseAsStringIntegerMap(obj));
+		    reduceModel(obj);
+	}
+
+	@Override
+	public void executeBatch(ComponentContext cc, List<Map<String, Object>> batch) throws Exception {
+	    if (_accumulator == null || _mergeWorkers == null || batch.size() < 2) {
+	        super.executeBatch(cc, batch);
+	        return;
+	    }
+
+	    List<Object> countMaps = new ArrayList<Object>(batch.size());
+	    for (Map<String, Object> inputs : batch)
+	        countMaps.add(inputs.get(IN_TOKEN_COUNTS));
+
+	    _accumulator.add(TokenCountAccumulator.merge(countMaps, _mergeWorkers, _mergeThreads));
+	    _modelCounter += countMaps.size();
 	}
 
     @Override
@@ -155,6 +201,11 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
         _accumulator = null;
         _modelCounter = 0;
         _shouldOrderTokens = false;
+
+        if (_mergeWorkers != null) {
+            _mergeWorkers.shutdownNow();
+            _mergeWorkers = null;
+        }
     }
 
 	//-----------------------------------------------------------------------------------
@@ -177,7 +228,7 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 
         initializeReduction();
 
-        _accumulator = new Hashtable<String, Integer>();
+        _accumulator = new TokenCountAccumulator();
     }
 
     @Override
@@ -212,26 +263,17 @@ public class TokenCounterReducer extends AbstractStreamingExecutableComponent {
 	protected void pushReduction() throws Exception {
 		// Push
 		if (_accumulator != null && _accumulator.size() > 0)
-		    componentContext.pushDataComponentToOutput(OUT_TOKEN_COUNTS, BasicDataTypesTools.mapToIntegerMap(_accumulator, _shouldOrderTokens));
+		    componentContext.pushDataComponentToOutput(OUT_TOKEN_COUNTS, _accumulator.toIntegersMap(_shouldOrderTokens));
 	}
 
 	/**
 	 * Accumulates the model.
 	 *
-	 * @param im The model to accumulate
+	 * @param im The model to accumulate (an IntegersMap or a Map&lt;String, Integer&gt;)
+	 * @throws Exception Thrown if the model is in an unsupported format
 	 */
-	protected void reduceModel(Map<String, Integer> im) {
-	    for (Entry<String, Integer> entry : im.entrySet()) {
-			String token = entry.getKey();
-			int count = entry.getValue();
-
-			Integer oldCount = _accumulator.get(token);
-			if (oldCount != null)
-			    count += oldCount;
-
-			_accumulator.put(token, count);
-		}
-
+	protected void reduceModel(Object im) throws Exception {
+	    _accumulator.add(im);
 	    _modelCounter++;
 	}
 }
\ No newline at end of file
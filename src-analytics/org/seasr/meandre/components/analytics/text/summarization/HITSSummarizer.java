@@ -42,11 +42,10 @@
 
 package org.seasr.meandre.components.analytics.text.summarization;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Hashtable;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.meandre.annotations.Component;
 import org.meandre.annotations.Component.FiringPolicy;
@@ -59,17 +58,10 @@ import org.meandre.core.ComponentContext;
 import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes;
-import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-
-import cern.colt.matrix.DoubleMatrix1D;
-import cern.colt.matrix.DoubleMatrix2D;
-import cern.colt.matrix.impl.DenseDoubleMatrix1D;
-import cern.colt.matrix.impl.SparseDoubleMatrix2D;
-import cern.colt.matrix.linalg.Algebra;
-import cern.jet.math.Functions;
+import org.seasr.meandre.support.components.analytics.summarization.HITS;
 
 /**
  * This component ranks and sorts tokenized sentences. Useful for summarization
@@ -89,7 +81,7 @@ import cern.jet.math.Functions;
 		tags = "#ANALYTICS, text, sentence, token, tokenized sentence, summarization",
 		description = "This component ranks and sorts the tokenized input sentences " +
 				      "providing a simple summarization of top sentences and top tokens.",
-		dependency = {"colt.jar","protobuf-java-2.2.0.jar"}
+		dependency = {"trove-2.0.3.jar","protobuf-java-2.2.0.jar"}
 )
 public class HITSSummarizer extends AbstractExecutableComponent {
 
@@ -136,25 +128,47 @@ public class HITSSummarizer extends AbstractExecutableComponent {
 
     @ComponentProperty(
             name = Names.PROP_ITERATIONS,
-            description = "Number of iterations to run. ",
-            defaultValue = "10"
+            description = "Maximum number of iterations to run. ",
+            defaultValue = "100"
     )
     protected static final String PROP_ITERATIONS = Names.PROP_ITERATIONS;
 
+    @ComponentProperty(
+            name = "epsilon",
+            description = "The iterations stop once no sentence or token score changes by more than this amount. " +
+                    "Use 0 to always run the maximum number of iterations.",
+            defaultValue = "1e-6"
+    )
+    protected static final String PROP_EPSILON = "epsilon";
+
+    @ComponentProperty(
+            name = "num_threads",
+            description = "The number of threads used by each iteration on large inputs. " +
+                    "Use 0 for one per available processor.",
+            defaultValue = "1"
+    )
+    protected static final String PROP_NUM_THREADS = "num_threads";
+
 	//--------------------------------------------------------------------------------------------
 
 
 	/** Number of tokens to output */
 	private int iNTopTokens;
 
-	/** Number of iterations */
+	/** Maximum number of iterations */
 	private int iIterations;
 
 	/** Number of sentences to output */
 	private int iNTopSentences;
 
-	/** The algebra object */
-	private Algebra alg;
+	/** Convergence threshold */
+	private double dEpsilon;
+
+	/** Number of threads per iteration */
+	private int iThreads;
+
+	/** The pool running the iterations, if more than one thread is used */
+	private ExecutorService workers;
 
 
 	//--------------------------------------------------------------------------------------------
@@ -164,245 +178,76 @@ public class HITSSummarizer extends AbstractExecutableComponent {
 		this.iNTopSentences = Integer.parseInt(getPropertyOrDieTrying(PROP_N_TOP_SENTENCES, ccp));
 		this.iNTopTokens = Integer.parseInt(getPropertyOrDieTrying(PROP_N_TOP_TOKENS, ccp));
 		this.iIterations = Integer.parseInt(getPropertyOrDieTrying(PROP_ITERATIONS, ccp));
-		this.alg = new Algebra();
+		this.dEpsilon = Double.parseDouble(getPropertyOrDieTrying(PROP_EPSILON, ccp));
+
+		this.iThreads = Integer.parseInt(getPropertyOrDieTrying(PROP_NUM_THREADS, ccp));
+		if (this.iThreads <= 0)
+		    this.iThreads = Runtime.getRuntime().availableProcessors();
+
+		if (this.iThreads > 1) {
+		    final AtomicInteger count = new AtomicInteger();
+		    this.workers = Executors.newFixedThreadPool(this.iThreads, new ThreadFactory() {
+		        public Thread newThread(Runnable r) {
+		            Thread thread = new Thread(r, "HITSSummarizer-worker-" + count.incrementAndGet());
+		            thread.setDaemon(true);
+		            return thread;
+		        }
+		    });
+		}
 	}
 
 	@Override
     public void executeCallBack(ComponentContext cc) throws Exception {
 		StringsMap sm = (StringsMap) cc.getDataComponentFromInput(IN_TOKENIZED_SENTENCES);
-		Map<String, Integer> mapTokenToPos = new Hashtable<String,Integer>();
-		SparseDoubleMatrix2D sdm = convertTokenizedSentencesToSparseMatrix(sm, mapTokenToPos);
-		DoubleMatrix1D[] scores = hits(sdm);
-		pushSentence(scores[0], sm);
-		pushTokens(scores[1], mapTokenToPos);
+
+		HITS hits = HITS.fromRows(sm);
+		int iterations = hits.run(this.iIterations, this.dEpsilon, this.workers, this.iThreads);
+
+		console.fine(String.format("%d sentences, %d tokens, %d non-zero entries: %d iterations",
+		        hits.getRowCount(), hits.getColumnCount(), hits.getNonZeroCount(), iterations));
+
+		pushSentence(hits, sm);
+		pushTokens(hits);
 	}
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
         this.iNTopSentences = this.iNTopTokens = this.iIterations = -1;
-        this.alg = null;
+
+        if (this.workers != null) {
+            this.workers.shutdownNow();
+            this.workers = null;
+        }
     }
 
     //--------------------------------------------------------------------------------------------
 
-	/** Internal class for sorting purposes */
-	class Entry {
-		public String sText;
-		public Double dScore;
-
-		public Entry ( String s, Double d ) {
-			sText = s;
-			dScore = d;
-		}
-
-		@Override
-        public String toString () {
-			return "<"+sText+", "+dScore+">";
-		}
-	}
-
-
 	/** Push the ranked sentences.
 	 *
-	 * @param score The score
+	 * @param hits The scores
 	 * @param sm The sentences
 	 * @throws ComponentContextException Something went wrong while pushing
 	 */
-	private void pushSentence(DoubleMatrix1D score, StringsMap sm)
+	private void pushSentence(HITS hits, StringsMap sm)
 	throws ComponentContextException {
-		// Prepare the list of sentence
-		int iSent = sm.getKeyCount();
-		Entry [] ea = new Entry[iSent];
-		for ( int i=0 ; i<iSent ; i++ )
-			ea[i] = new Entry(sm.getKey(i),score.getQuick(i));
-
-		// Sort them based on the score
-		Arrays.sort(ea, new Comparator<Entry>(){
-            public int compare(Entry o1,Entry o2) {
-               return (o2.dScore>o1.dScore)?1:(o2.dScore==o1.dScore)?0:-1;
-            }} );
-
-		// Push them out
 		org.seasr.datatypes.core.BasicDataTypes.Strings.Builder res = BasicDataTypes.Strings.newBuilder();
-		int iMax = (this.iNTopSentences<0)?ea.length:(this.iNTopSentences>ea.length)?ea.length:this.iNTopSentences;
-		for ( int i=0 ; i<iMax ; i++ )
-			res.addValue(ea[i].sText);
+		for ( int i : HITS.top(hits.getHubScores(), this.iNTopSentences) )
+			res.addValue(sm.getKey(i));
 
 		componentContext.pushDataComponentToOutput(OUT_SENTENCES, res.build());
 	}
 
 	/** Push the ranked tokens.
 	 *
-	 * @param score The score
-	 * @param sm The sentences
+	 * @param hits The scores
 	 * @throws ComponentContextException Something went wrong while pushing
 	 */
-	private void pushTokens(DoubleMatrix1D doubleMatrix1D, Map<String, Integer> mapTokenToPos)
+	private void pushTokens(HITS hits)
 	throws ComponentContextException {
-
-		// Create the proper list of tokens
-		Set<String> set = mapTokenToPos.keySet();
-		int setSize = set.size();
-		String [] saIndex = new String[setSize];
-		for ( String sKey:set )
-			saIndex[mapTokenToPos.get(sKey)] = sKey;
-
-		// Prepare the list of tokens to sort
-		Entry [] ea = new Entry[setSize];
-		for ( int i=0 ; i<setSize ; i++ )
-			ea[i] = new Entry(saIndex[i],doubleMatrix1D.getQuick(i));
-
-		// Sort
-		Arrays.sort(ea, new Comparator<Entry>(){
-            public int compare(Entry o1,Entry o2) {
-               return (o2.dScore>o1.dScore)?1:(o2.dScore==o1.dScore)?0:-1;
-            }} );
-
-		// Push it out
 		org.seasr.datatypes.core.BasicDataTypes.Strings.Builder res = BasicDataTypes.Strings.newBuilder();
-		int iMax = (this.iNTopTokens<0)?ea.length:(this.iNTopTokens>ea.length)?ea.length:this.iNTopTokens;
-		for ( int i=0 ; i<iMax ; i++ )
-			res.addValue(ea[i].sText);
+		for ( int i : HITS.top(hits.getAuthorityScores(), this.iNTopTokens) )
+			res.addValue(hits.getColumnLabel(i));
 
 		componentContext.pushDataComponentToOutput(OUT_TOKENS, res.build());
 	}
-
-
-	/** Computes the HITS score for the given matrix returning the scores for hubs and authorities.
-	 *
-	 * @return The first one is the sentence ranking whereas the second is the token score
-	 */
-	@SuppressWarnings("static-access")
-	private DoubleMatrix1D[] hits(SparseDoubleMatrix2D w) {
-		/* My verified implementation of hits in python using numpy
-
-		   def hits ( W, K=10 ) :
-		     '''Computes the hits score for a weight matrix'''
-		     cont_size, term_size = W.shape
-		     cs, ts = ones(cont_size), ones(term_size)
-		     res = []
-		     cs = cs.reshape((cont_size,1))
-		     for k in xrange(K) :
-		          ncs = sum(w*ts,1)
-		          cs = ncs/(sum(ncs*ncs)**.5)
-		          cs = cs.reshape((cont_size,1))
-		          nts = sum(cs*w,0)
-		          ts = nts/(sum(nts*nts)**.5)
-		          res.append((cs,ts))
-		     return res
-		*/
-
-		Functions F = cern.jet.math.Functions.functions;
-		DoubleMatrix2D wt = alg.transpose(w);
-
-		int cont_size = w.rows();
-		int term_size = w.columns();
-		DoubleMatrix1D cs  = new DenseDoubleMatrix1D(cont_size); cs.assign(1.0);
-		DoubleMatrix1D ncs = new DenseDoubleMatrix1D(cont_size);
-		DoubleMatrix1D ts  = new DenseDoubleMatrix1D(term_size); ts.assign(1.0);
-		DoubleMatrix1D nts = new DenseDoubleMatrix1D(term_size);
-		double tmp;
-		for ( int i=0, iMax=this.iIterations ; i<iMax ; i++ ) {
-			ncs = alg.mult(w, ts); tmp = Math.sqrt(ncs.zDotProduct(ncs));
-			ncs.assign(F.mult(1/tmp));
-			cs.assign(ncs);
-			nts = alg.mult(wt, cs); tmp = Math.sqrt(nts.zDotProduct(nts));
-			nts.assign(F.mult(1/tmp));
-			ts.assign(nts);
-		}
-
-		return new DoubleMatrix1D [] {cs,ts};
-	}
-
-
-	private SparseDoubleMatrix2D convertTokenizedSentencesToSparseMatrix(
-			StringsMap sm, Map<String, Integer> mapTokenToPos) {
-		// Populate the map
-		populateTranslator(sm,mapTokenToPos);
-		// Create the matrix
-		SparseDoubleMatrix2D sdm = new SparseDoubleMatrix2D(sm.getKeyCount(),mapTokenToPos.keySet().size());
-		// Populate the matrix
-		int iSentence = 0;
-		for ( Strings strs:sm.getValueList() ) {
-			for ( String s:strs.getValueList() ) {
-				sdm.setQuick(iSentence, mapTokenToPos.get(s), 1.0f);
-			}
-			iSentence++;
-		}
-
-		// Return the matrix
-		return sdm;
-	}
-
-	/** Populates the given map with a token position translator.
-	 *
-	 * @param sm The string map
-	 * @param mapTokenToPos The mapt to filled
-	 * @return The same map passed
-	 */
-	private Map<String, Integer> populateTranslator(StringsMap sm,
-			Map<String, Integer> mapTokenToPos) {
-		int iCnt = 0;
-		for ( Strings strs:sm.getValueList() )
-			for ( String s:strs.getValueList() )
-				if ( !mapTokenToPos.containsKey(s) ) {
-					mapTokenToPos.put(s, iCnt++);
-				}
-		return mapTokenToPos;
-	}
-
-	@SuppressWarnings("static-access")
-	public static void main ( String [] sa ) {
-		/*
-		  w = array([[1, 0, 0, 0, 1, 0, 0, 1, 0],
-               [0, 1, 0, 0, 0, 0, 0, 0, 0],
-               [1, 1, 0, 1, 1, 0, 0, 0, 0]])
-
-		   def hits ( W, K=10 ) :
-		     '''Computes the hits score for a weight matrix'''
-		     cont_size, term_size = W.shape
-		     cs, ts = ones(cont_size), ones(term_size)
-		     res = []
-		     cs = cs.reshape((cont_size,1))
-		     for k in xrange(K) :
-		          ncs = sum(w*ts,1)
-		          cs = ncs/(sum(ncs*ncs)**.5)
-		          cs = cs.reshape((cont_size,1))
-		          nts = sum(cs*w,0)
-		          ts = nts/(sum(nts*nts)**.5)
-		          res.append((cs,ts))
-		     return res
-		*/
-
-		SparseDoubleMatrix2D w = new SparseDoubleMatrix2D(3,9);
-		w.assign(0);
-		w.setQuick(0,0,1); w.setQuick(0,4,1); w.setQuick(0,7,1);
-		w.setQuick(1,1,1);
-		w.setQuick(2,0,1); w.setQuick(2,1,1); w.setQuick(2,3,1); w.setQuick(2,4,1);
-
-		Functions F = cern.jet.math.Functions.functions;
-		Algebra alg = new Algebra();
-		DoubleMatrix2D wt = alg.transpose(w);
-
-		System.out.println(w);
-
-		int cont_size = w.rows();
-		int term_size = w.columns();
-		DoubleMatrix1D cs  = new DenseDoubleMatrix1D(cont_size); cs.assign(1.0);
-		DoubleMatrix1D ncs = new DenseDoubleMatrix1D(cont_size);
-		DoubleMatrix1D ts  = new DenseDoubleMatrix1D(term_size); ts.assign(1.0);
-		DoubleMatrix1D nts = new DenseDoubleMatrix1D(term_size);
-		double tmp;
-		for ( int i=0, iMax=10 ; i<iMax ; i++ ) {
-			ncs = alg.mult(w, ts); tmp = Math.sqrt(ncs.zDotProduct(ncs));
-			ncs.assign(F.mult(1/tmp));
-			cs.assign(ncs);
-			System.out.println(cs);
-			nts = alg.mult(wt, cs); tmp = Math.sqrt(nts.zDotProduct(nts));
-			nts.assign(F.mult(1/tmp));
-			ts.assign(nts);
-			System.out.println(ts);
-
-		}
-	}
 }
@@ -93,7 +93,7 @@ import org.seasr.meandre.support.components.tuples.TupleUtilities;
 		mode = Mode.webui,
 		firingPolicy = FiringPolicy.all,
 		baseURL = "meandre://seasr.org/components/tools/",
-		dependency = { "protobuf-java-2.2.0.jar" }
+		dependency = { "trove-2.0.3.jar", "protobuf-java-2.2.0.jar" }
 )
 public class TwitterTupleWebServer extends AbstractExecutableComponent
     implements ConfigurableWebUIFragmentCallback   {
@@ -4,7 +4,6 @@ package org.seasr.meandre.components.nlp.gazetteer;
 
 
 import java.io.BufferedReader;
-import java.io.CharArrayReader;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -16,21 +15,20 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 import org.seasr.meandre.support.generic.io.StreamUtils;
 
-import com.ontotext.gate.gazetteer.*;
-
 
 
 /*
- * simple wrapper class to process text into tuples using GATE's Gazetteer
+ * simple wrapper class to process text into tuples using a GATE style Gazetteer
  */
 
 
-public class AdvGazetteerWrapper implements AnnotationReceiver {
+public class AdvGazetteerWrapper {
 
 	SimpleTuplePeer tuplePeer;
 
@@ -55,17 +53,8 @@ public class AdvGazetteerWrapper implements AnnotationReceiver {
     {
     	String[] fields = {};
     	this.init(fields);
-    	m_annotationSet = new ArrayList();
     }
 
-	public void annotationFound(Annotation annotation) {
-	    m_annotationSet.add(annotation);
-
-	  }
-
-
-	private static ArrayList m_annotationSet = null;
-
     public void init(String[] addFields)
 	{
 		List<String> fields = new ArrayList<String>();
@@ -181,52 +170,49 @@ public class AdvGazetteerWrapper implements AnnotationReceiver {
     }
 
     public List<SimpleTuple> toTuples(String stringToParse, int count, String inLocation, String propMessage) throws IOException {
+    	// the gazetteer is loaded once per lists file and shared
+    	return toTuples(Gazetteer.load(propMessage), stringToParse, count, inLocation);
+    }
 
+    public List<SimpleTuple> toTuples(Gazetteer gaz, String stringToParse, int count, String inLocation) {
     	List<SimpleTuple> output = new ArrayList<SimpleTuple>();
+    	addTuples(gaz, stringToParse, count, inLocation, output);
 
-    	String strLine = stringToParse;
-    	AdvGazetteerWrapper sample = new AdvGazetteerWrapper();
-    	boolean doPrint = false;
-    	StandAloneGaz gaz = new StandAloneGaz();
-
-
-
-        // set the filename for intitalization of the gazetteer
-        gaz.setListsFile(propMessage);
-
-        //output the status ?
-        gaz.setOutputStatus(false);
-
-         gaz.init();
-		 CharArrayReader reader = new CharArrayReader(strLine.toCharArray());
-		 strLine=strLine.replaceAll(","," , ");
-	     strLine=strLine.replaceAll(":"," : ");
-	     strLine=strLine.replaceAll(";"," ; ");
-		 strLine=strLine.replaceAll("\\."," . ");
-		 strLine=strLine.replaceAll("\\("," \\( ");
-		 strLine=strLine.replaceAll("\\)"," \\) ");
-		 gaz.execute(reader,sample);
-		 for (int i = 0; i < m_annotationSet.size(); i++)
-			{
-
-			String mention= m_annotationSet.get(i).toString();
-			String cat=mention.split(":")[2];
-			cat=cat.replaceAll(".null","");
-			SimpleTuple tuple   = tuplePeer.createTuple();
-			tuple.setValue(TYPE_IDX,cat);
-			tuple.setValue(SENTENCE_ID_IDX, count);
-			tuple.setValue(LOCATION_ID_IDX, inLocation);
-			tuple.setValue(TEXT_START_IDX,mention.split(":")[1].split("-")[0]);
-			tuple.setValue(TEXT_IDX,mention.split(":")[0]);
-			output.add(tuple);
-			}
-
+    	return output;
+    }
 
+    /**
+     * Annotates a batch of sentences; sentence ids are assigned in order, starting at 1
+     */
+    public List<SimpleTuple> toTuples(Gazetteer gaz, String[] sentences, String inLocation) {
+    	List<SimpleTuple> output = new ArrayList<SimpleTuple>();
+    	for (int i = 0; i < sentences.length; i++)
+    		addTuples(gaz, sentences[i], i + 1, inLocation, output);
 
+    	return output;
+    }
 
-        return output;
+    /**
+     * Annotates the sentences (the keys) of a tokenized sentences map
+     */
+    public List<SimpleTuple> toTuples(Gazetteer gaz, StringsMap sentences, String inLocation) {
+    	List<SimpleTuple> output = new ArrayList<SimpleTuple>();
+    	for (int i = 0, iMax = sentences.getKeyCount(); i < iMax; i++)
+    		addTuples(gaz, sentences.getKey(i), i + 1, inLocation, output);
 
+    	return output;
+    }
 
+    private void addTuples(Gazetteer gaz, String sentence, int count, String inLocation, List<SimpleTuple> output) {
+    	for (Gazetteer.Match match : gaz.annotate(sentence)) {
+    		SimpleTuple tuple = tuplePeer.createTuple();
+    		tuple.setValue(TYPE_IDX, match.getLookup().getType());
+    		tuple.setValue(SENTENCE_ID_IDX, count);
+    		tuple.setValue(LOCATION_ID_IDX, inLocation);
+    		tuple.setValue(TEXT_START_IDX, match.getStart());
+    		tuple.setValue(TEXT_IDX, match.getPhrase());
+    		output.add(tuple);
+    	}
     }
 
     public static void main(String[] args) throws FileNotFoundException {
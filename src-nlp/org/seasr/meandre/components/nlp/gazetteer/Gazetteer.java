@@ -0,0 +1,376 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.nlp.gazetteer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, thread safe gazetteer built from GATE style gazetteer lists.
+ *
+ * The lists definition file contains one line per list, in the format
+ * <code>file.lst:majorType[:minorType[:language]]</code>, where the list file (relative to
+ * the definition file) contains one entry per line. All the entries are compiled into a
+ * token trie; annotating a text is a single left-to-right scan that reports the longest entry
+ * starting at each token. Matching is case sensitive, tokens are runs of letters and digits or
+ * single punctuation characters, and any amount of whitespace between tokens is allowed.
+ *
+ * Instances are shared: {@link #load(String)} returns the same gazetteer for the same lists
+ * file for as long as none of its files change.
+ */
+public class Gazetteer {
+
+    private static final ConcurrentMap<String, Gazetteer> _cache = new ConcurrentHashMap<String, Gazetteer>();
+
+    private final Node _root;
+    private final File[] _files;
+    private final long[] _lastModified;
+    private final int _entryCount;
+
+
+    /**
+     * Returns the gazetteer for the specified lists definition file, loading it if necessary
+     *
+     * @param listsFile The lists definition file
+     * @return The gazetteer
+     * @throws IOException Thrown if the lists cannot be read
+     */
+    public static Gazetteer load(String listsFile) throws IOException {
+        String key = new File(listsFile).getCanonicalPath();
+
+        Gazetteer gazetteer = _cache.get(key);
+        if (gazetteer != null && !gazetteer.isStale())
+            return gazetteer;
+
+        synchronized (_cache) {
+            gazetteer = _cache.get(key);
+            if (gazetteer == null || gazetteer.isStale()) {
+                gazetteer = new Gazetteer(new File(key));
+                _cache.put(key, gazetteer);
+            }
+        }
+
+        return gazetteer;
+    }
+
+    private Gazetteer(File listsFile) throws IOException {
+        List<File> files = new ArrayList<File>();
+        files.add(listsFile);
+
+        Builder root = new Builder();
+        int entryCount = 0;
+
+        for (String line : readLines(listsFile)) {
+            String[] parts = line.split(":");
+            File list = new File(listsFile.getParentFile(), parts[0]);
+            Lookup lookup = new Lookup(
+                    parts.length > 1 ? parts[1] : null,
+                    parts.length > 2 ? parts[2] : null,
+                    parts.length > 3 ? parts[3] : null);
+
+            files.add(list);
+
+            for (String entry : readLines(list)) {
+                List<String> tokens = new ArrayList<String>();
+                for (int[] span : tokenize(entry))
+                    tokens.add(entry.substring(span[0], span[1]));
+
+                if (tokens.isEmpty()) continue;
+
+                Builder node = root;
+                for (String token : tokens)
+                    node = node.child(token);
+
+                if (!node.lookups.contains(lookup)) {
+                    node.lookups.add(lookup);
+                    entryCount++;
+                }
+            }
+        }
+
+        _root = root.build();
+        _files = files.toArray(new File[files.size()]);
+        _lastModified = new long[_files.length];
+        for (int i = 0; i < _files.length; i++)
+            _lastModified[i] = _files[i].lastModified();
+        _entryCount = entryCount;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the gazetteer entries in a text
+     *
+     * @param text The text
+     * @return The matches, in text order
+     */
+    public List<Match> annotate(String text) {
+        List<int[]> spans = tokenize(text);
+        List<Match> matches = new ArrayList<Match>();
+
+        for (int i = 0, iMax = spans.size(); i < iMax; ) {
+            Node node = _root;
+            Node found = null;
+            int last = i;
+
+            for (int j = i; j < iMax; j++) {
+                int[] span = spans.get(j);
+                node = node.children.get(text.substring(span[0], span[1]));
+                if (node == null) break;
+
+                if (node.lookups.length > 0) {
+                    found = node;
+                    last = j;
+                }
+            }
+
+            if (found == null) {
+                i++;
+                continue;
+            }
+
+            int start = spans.get(i)[0];
+            int end = spans.get(last)[1];
+            String phrase = text.substring(start, end);
+
+            for (Lookup lookup : found.lookups)
+                matches.add(new Match(phrase, start, end, lookup));
+
+            i = last + 1;
+        }
+
+        return matches;
+    }
+
+    /**
+     * @return The number of distinct (entry, type) pairs in the gazetteer
+     */
+    public int getEntryCount() {
+        return _entryCount;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private boolean isStale() {
+        for (int i = 0; i < _files.length; i++)
+            if (_files[i].lastModified() != _lastModified[i])
+                return true;
+
+        return false;
+    }
+
+    private static List<int[]> tokenize(String text) {
+        List<int[]> spans = new ArrayList<int[]>();
+
+        for (int i = 0, iMax = text.length(); i < iMax; ) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int start = i++;
+            if (Character.isLetterOrDigit(c))
+                while (i < iMax && Character.isLetterOrDigit(text.charAt(i)))
+                    i++;
+
+            spans.add(new int[] { start, i });
+        }
+
+        return spans;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0)
+                    lines.add(line);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return lines;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static class Node {
+        final Map<String, Node> children;
+        final Lookup[] lookups;
+
+        Node(Map<String, Node> children, Lookup[] lookups) {
+            this.children = children;
+            this.lookups = lookups;
+        }
+    }
+
+    private static class Builder {
+        final Map<String, Builder> children = new HashMap<String, Builder>();
+        final List<Lookup> lookups = new ArrayList<Lookup>(1);
+
+        Builder child(String token) {
+            Builder child = children.get(token);
+            if (child == null) {
+                child = new Builder();
+                children.put(token, child);
+            }
+
+            return child;
+        }
+
+        Node build() {
+            Map<String, Node> nodes;
+            if (children.isEmpty())
+                nodes = Collections.emptyMap();
+            else {
+                nodes = new HashMap<String, Node>(children.size() * 4 / 3 + 1);
+                for (Map.Entry<String, Builder> entry : children.entrySet())
+                    nodes.put(entry.getKey(), entry.getValue().build());
+            }
+
+            return new Node(nodes, lookups.toArray(new Lookup[lookups.size()]));
+        }
+    }
+
+    public static class Lookup {
+        private final String _majorType;
+        private final String _minorType;
+        private final String _language;
+
+        Lookup(String majorType, String minorType, String language) {
+            _majorType = majorType;
+            _minorType = minorType;
+            _language = language;
+        }
+
+        public String getMajorType() {
+            return _majorType;
+        }
+
+        public String getMinorType() {
+            return _minorType;
+        }
+
+        public String getLanguage() {
+            return _language;
+        }
+
+        /**
+         * @return The major, minor type and language that are set, separated by '.'
+         */
+        public String getType() {
+            StringBuilder sb = new StringBuilder();
+            for (String part : new String[] { _majorType, _minorType, _language }) {
+                if (part == null) continue;
+                if (sb.length() > 0) sb.append('.');
+                sb.append(part);
+            }
+
+            return sb.toString();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Lookup && getType().equals(((Lookup) obj).getType());
+        }
+
+        @Override
+        public int hashCode() {
+            return getType().hashCode();
+        }
+    }
+
+    public static class Match {
+        private final String _phrase;
+        private final int _start;
+        private final int _end;
+        private final Lookup _lookup;
+
+        Match(String phrase, int start, int end, Lookup lookup) {
+            _phrase = phrase;
+            _start = start;
+            _end = end;
+            _lookup = lookup;
+        }
+
+        public String getPhrase() {
+            return _phrase;
+        }
+
+        public int getStart() {
+            return _start;
+        }
+
+        public int getEnd() {
+            return _end;
+        }
+
+        public Lookup getLookup() {
+            return _lookup;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%d-%d:%s", _phrase, _start, _end, _lookup.getType());
+        }
+    }
+}
@@ -58,6 +58,7 @@ import org.meandre.core.ComponentContext;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
+import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
@@ -86,8 +87,12 @@ import org.seasr.meandre.support.generic.io.StreamUtils;
 		mode = Mode.compute,
 		rights = Licenses.UofINCSA,
 		tags = "#ANALYTICS, semantic, text, nlp, information extraction, entity, entity extraction",
-		description = "This component performs named entity tagging using GATE's Stand Alone Gazetteer facilities",
-		dependency = {"trove-2.0.3.jar","protobuf-java-2.2.0.jar", "StandAloneGaz.jar"}
+		description = "This component performs named entity tagging by looking up the entries of a set of GATE style " +
+		              "gazetteer lists (a lists definition file with one 'file.lst:majorType[:minorType[:language]]' " +
+		              "line per list). The entries are compiled into a token trie that is shared between the " +
+		              "components using the same lists, and each text is annotated in a single scan that reports the " +
+		              "longest entry starting at each token. Matching is case sensitive.",
+		dependency = {"trove-2.0.3.jar","protobuf-java-2.2.0.jar"}
 )
 public class NLPURIGazetteerAdv extends AbstractExecutableComponent {
 
@@ -115,6 +120,7 @@ public class NLPURIGazetteerAdv extends AbstractExecutableComponent {
                  "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Strings" +
                  "<br>TYPE: byte[]" +
                  "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Bytes" +
+                 "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsMap (the keys are the sentences)" +
                  "<br>TYPE: java.lang.Object"
 	)
 	protected static final String IN_SENTENCES = Names.PORT_SENTENCES;
@@ -141,12 +147,12 @@ public class NLPURIGazetteerAdv extends AbstractExecutableComponent {
 
 
 	AdvGazetteerWrapper gazHelper;
+	Gazetteer gazetteer;
 
 	protected String modelsDir;
 	protected String taggerFile;
 	protected String sMessage;
 
-    int count = 0;
     int id=0;
 
     //--------------------------------------------------------------------------------------------
@@ -155,31 +161,27 @@ public class NLPURIGazetteerAdv extends AbstractExecutableComponent {
     public void initializeCallBack(ComponentContextProperties ccp) throws Exception
     {
     	 sMessage = ccp.getProperty(PROP_MESSAGE);
-		gazHelper = new AdvGazetteerWrapper();//not required
+		gazHelper = new AdvGazetteerWrapper();
+
+		// the gazetteer lists are compiled once, and shared by all components using the same lists
+		URL loc = StreamUtils.getURLforResource(DataTypeParser.parseAsURI(sMessage));
+		gazetteer = Gazetteer.load(loc.getPath());
+		console.fine(String.format("Loaded %d gazetteer entries from %s", gazetteer.getEntryCount(), loc));
 	}
 
     @Override
     public void executeCallBack(ComponentContext cc) throws Exception
     {
-    	String[] inputs = DataTypeParser.parseAsString(cc.getDataComponentFromInput(IN_SENTENCES));
-
+    	Object input = cc.getDataComponentFromInput(IN_SENTENCES);
 		String[] location = DataTypeParser.parseAsString(cc.getDataComponentFromInput(IN_LOCATION));
-		URL loc = StreamUtils.getURLforResource(DataTypeParser.parseAsURI(sMessage));
-
-
-
-		List<Strings> output = new ArrayList<Strings>();
 
-		count=0;
-		for (String sentence : inputs)
+		List<SimpleTuple> tuples = (input instanceof StringsMap) ?
+		        gazHelper.toTuples(gazetteer, (StringsMap) input, location[0]) :
+		        gazHelper.toTuples(gazetteer, DataTypeParser.parseAsString(input), location[0]);
 
-		{
-			count++;
-	    List<SimpleTuple> tuples = gazHelper.toTuples(sentence,count,location[0],loc.getPath());
-		for (SimpleTuple tuple : tuples) {
+		List<Strings> output = new ArrayList<Strings>(tuples.size());
+		for (SimpleTuple tuple : tuples)
 		   output.add(tuple.convert());
-		}
-		}
         Strings[] results = new Strings[output.size()];
         output.toArray(results);
 
@@ -193,5 +195,6 @@ public class NLPURIGazetteerAdv extends AbstractExecutableComponent {
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
     	sMessage = null;
+    	gazetteer = null;
     }
 }
\ No newline at end of file
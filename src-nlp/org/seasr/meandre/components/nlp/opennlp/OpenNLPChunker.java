@@ -42,9 +42,6 @@
 
 package org.seasr.meandre.components.nlp.opennlp;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
 import opennlp.tools.chunker.ChunkerME;
 import opennlp.tools.chunker.ChunkerModel;
@@ -59,17 +56,16 @@ import org.meandre.annotations.ComponentInput;
 import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
-import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.components.abstracts.util.ComponentUtils;
-import org.seasr.meandre.support.components.tuples.SimpleTuple;
+import org.seasr.meandre.support.components.opennlp.TokenOffsets;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
-import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
+import org.seasr.meandre.support.components.tuples.TupleBatch.ColumnType;
 
 
 /**
@@ -148,6 +144,8 @@ public class OpenNLPChunker extends AbstractExecutableComponent {
     protected POSTaggerME _posTagger;
     protected ChunkerME _chunker;
     protected SimpleTuplePeer _tuplePeer;
+    protected TupleBatch _chunkerTuples;
+    protected int[] _offsets;
 
 
     //--------------------------------------------------------------------------------------------
@@ -162,52 +160,55 @@ public class OpenNLPChunker extends AbstractExecutableComponent {
 
         _tuplePeer = new SimpleTuplePeer(new String[] { SENTENCE_ID_FIELD, TOKEN_FIELD, POS_FIELD,
                 CHUNK_FIELD, POS_PROB_FIELD, CHUNK_PROB_FIELD, TOKEN_START_FIELD });
+        _chunkerTuples = new TupleBatch(_tuplePeer, new ColumnType[] { ColumnType.INT, ColumnType.STRING, ColumnType.STRING,
+                ColumnType.STRING, ColumnType.STRING, ColumnType.STRING, ColumnType.INT });
     }
 
     @Override
     public void executeCallBack(ComponentContext cc) throws Exception {
         StringsMap tokenizedSentences = (StringsMap) cc.getDataComponentFromInput(IN_TOKENIZED_SENTENCES);
-        StringsArray.Builder chunkerTuples = StringsArray.newBuilder();
-
-        for (int i = 0, iMax = tokenizedSentences.getKeyCount(), sentenceOffset = 0; i < iMax; i++) {
-            String sentence = tokenizedSentences.getKey(i);
-            String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
-            String[] tags = _posTagger.tag(tokens);
-            String[] chunkerTags = _chunker.chunk(tokens, tags);
-            double[] posProbs = _posTagger.probs();
-            double[] chunkerProbs = _chunker.probs();
-
-            for (int t = 0, tMax = tokens.length, lastTokenStart = 0; t < tMax; t++) {
-                String token = tokens[t];
-                String tag = tags[t];
-                String chunkerTag = chunkerTags[t];
-                int tokenStart = sentence.indexOf(token, lastTokenStart);
-
-                SimpleTuple chunkerTuple = _tuplePeer.createTuple();
-                chunkerTuple.setValue(SENTENCE_ID_FIELD, Integer.toString(i));
-                chunkerTuple.setValue(TOKEN_FIELD, token);
-                chunkerTuple.setValue(POS_FIELD, tag);
-                chunkerTuple.setValue(POS_PROB_FIELD, String.format("%.3f", posProbs[t]));
-                chunkerTuple.setValue(CHUNK_FIELD, chunkerTag);
-                chunkerTuple.setValue(CHUNK_PROB_FIELD, String.format("%.3f", chunkerProbs[t]));
-                chunkerTuple.setValue(TOKEN_START_FIELD, Integer.toString(sentenceOffset + tokenStart));
-
-                chunkerTuples.addValue(chunkerTuple.convert());
-
-                lastTokenStart = tokenStart;
+        StringsArray chunkerTuples;
+
+        try {
+            for (int i = 0, iMax = tokenizedSentences.getKeyCount(), sentenceOffset = 0; i < iMax; i++) {
+                String sentence = tokenizedSentences.getKey(i);
+                String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
+                String[] tags = _posTagger.tag(tokens);
+                String[] chunkerTags = _chunker.chunk(tokens, tags);
+                double[] posProbs = _posTagger.probs();
+                double[] chunkerProbs = _chunker.probs();
+                _offsets = TokenOffsets.align(sentence, tokens, _offsets);
+
+                for (int t = 0, tMax = tokens.length; t < tMax; t++) {
+                    // fields: sentenceId, token, pos, chunk, posProb, chunkProb, tokenStart
+                    int row = _chunkerTuples.addRow();
+                    _chunkerTuples.setInt(row, 0, i);
+                    _chunkerTuples.setString(row, 1, tokens[t]);
+                    _chunkerTuples.setString(row, 2, tags[t]);
+                    _chunkerTuples.setString(row, 3, chunkerTags[t]);
+                    _chunkerTuples.setString(row, 4, String.format("%.3f", posProbs[t]));
+                    _chunkerTuples.setString(row, 5, String.format("%.3f", chunkerProbs[t]));
+                    _chunkerTuples.setInt(row, 6, sentenceOffset + TokenOffsets.start(_offsets, t));
+                }
+
+                sentenceOffset += sentence.length();
             }
 
-            sentenceOffset += sentence.length();
+            chunkerTuples = _chunkerTuples.convert();
+        }
+        finally {
+            _chunkerTuples.clear();
         }
 
         cc.pushDataComponentToOutput(OUT_META_TUPLE, _tuplePeer.convert());
-        cc.pushDataComponentToOutput(OUT_TUPLES, chunkerTuples.build());
+        cc.pushDataComponentToOutput(OUT_TUPLES, chunkerTuples);
     }
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
         _posTagger = null;
         _chunker = null;
+        _chunkerTuples = null;
     }
 
     //--------------------------------------------------------------------------------------------
@@ -215,58 +216,20 @@ public class OpenNLPChunker extends AbstractExecutableComponent {
     private POSTaggerME initializePosTagger(String langCode, final String runDirectory) throws Exception {
         String modelFileName = String.format(POS_MODEL_FORMAT, langCode);
         String nlpPosModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "pos";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), modelFileName, nlpPosModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install models to: " + nlpPosModelsDir);
-        }
+        POSModel model = OpenNLPModels.getModel(POSModel.class, getClass(), modelFileName, nlpPosModelsDir, console);
+        POSTaggerME posTagger = new POSTaggerME(model);
+        console.fine("POS model loaded. Tagger is ready.");
 
-        File modelFile = new File(nlpPosModelsDir, modelFileName);
-        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
-
-        FileInputStream modelStream = new FileInputStream(modelFile);
-        try {
-            POSModel model = new POSModel(modelStream);
-            POSTaggerME posTagger = new POSTaggerME(model);
-            console.fine("POS model loaded. Tagger is ready.");
-
-            return posTagger;
-        }
-        finally {
-            try { modelStream.close(); } catch (IOException e) { }
-        }
+        return posTagger;
     }
 
     private ChunkerME initializeChunker(String langCode, final String runDirectory) throws Exception {
         String modelFileName = String.format(CHUNKER_MODEL_FORMAT, langCode);
         String nlpChunkerModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "chunker";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), modelFileName, nlpChunkerModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - Chunker models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install Chunker models to: " + nlpChunkerModelsDir);
-        }
+        ChunkerModel model = OpenNLPModels.getModel(ChunkerModel.class, getClass(), modelFileName, nlpChunkerModelsDir, console);
+        ChunkerME chunker = new ChunkerME(model);
+        console.fine("Chunker model loaded. Chunker is ready.");
 
-        File modelFile = new File(nlpChunkerModelsDir, modelFileName);
-        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
-
-        FileInputStream modelStream = new FileInputStream(modelFile);
-        try {
-            ChunkerModel model = new ChunkerModel(modelStream);
-            ChunkerME chunker = new ChunkerME(model);
-            console.fine("Chunker model loaded. Chunker is ready.");
-
-            return chunker;
-        }
-        finally {
-            try { modelStream.close(); } catch (IOException e) { }
-        }
+        return chunker;
     }
 }
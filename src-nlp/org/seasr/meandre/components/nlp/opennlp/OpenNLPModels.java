@@ -0,0 +1,190 @@
+/**
+ * University of Illinois/NCSA
+ * Open Source License
+ *
+ * Copyright (c) 2008, Board of Trustees-University of Illinois.
+ * All rights reserved.
+ *
+ * Developed by:
+ *
+ * Automated Learning Group
+ * National Center for Supercomputing Applications
+ * http://www.seasr.org
+ *
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal with the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimers.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimers in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the names of Automated Learning Group, The National Center for
+ *    Supercomputing Applications, or University of Illinois, nor the names of
+ *    its contributors may be used to endorse or promote products derived from
+ *    this Software without specific prior written permission.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * WITH THE SOFTWARE.
+ */
+
+package org.seasr.meandre.components.nlp.opennlp;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.meandre.core.ComponentContextException;
+import org.seasr.meandre.components.abstracts.util.ComponentUtils;
+import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
+
+/**
+ * Process-wide registry of OpenNLP models.
+ *
+ * OpenNLP models are immutable once loaded and can be shared by any number of threads; the *ME
+ * classes built on top of them (NameFinderME, POSTaggerME, ...) are not, so every thread
+ * should create its own from the shared model. A model file is loaded once, no matter how many
+ * components or flows use it: models are identified by their file name and content, so copies
+ * installed in different run directories share the same instance.
+ */
+public final class OpenNLPModels {
+
+    private static final ConcurrentMap<String, FutureTask<Object>> _models =
+        new ConcurrentHashMap<String, FutureTask<Object>>();
+
+    private OpenNLPModels() {
+    }
+
+    /**
+     * Installs (if needed) and loads a model
+     *
+     * @param modelClass The model class (e.g. TokenNameFinderModel)
+     * @param component The component class whose classpath contains the models jar
+     * @param modelFileName The model file name (e.g. en-ner-person.bin)
+     * @param modelsDir The directory to install the models into
+     * @param console The logger
+     * @return The shared model
+     * @throws Exception Thrown if the model cannot be installed or loaded
+     */
+    public static <M> M getModel(Class<M> modelClass, Class<?> component, String modelFileName,
+            String modelsDir, Logger console) throws Exception {
+
+        InstallStatus status = ComponentUtils.installJARContainingResource(component, modelFileName, modelsDir, false);
+        switch (status) {
+            case SKIPPED:
+                console.fine("Installation skipped - models already installed");
+                break;
+
+            case FAILED:
+                throw new ComponentContextException("Failed to install models to: " + modelsDir);
+        }
+
+        return getModel(modelClass, new File(modelsDir, modelFileName));
+    }
+
+    /**
+     * Loads a model, or returns the already loaded instance
+     *
+     * @param modelClass The model class; it must have a constructor taking an InputStream
+     * @param modelFile The model file
+     * @return The shared model
+     * @throws Exception Thrown if the model cannot be loaded
+     */
+    public static <M> M getModel(final Class<M> modelClass, final File modelFile) throws Exception {
+        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
+
+        String key = String.format("%s:%s:%d:%x", modelClass.getName(), modelFile.getName(),
+                modelFile.length(), checksum(modelFile));
+
+        FutureTask<Object> task = _models.get(key);
+        if (task == null) {
+            FutureTask<Object> newTask = new FutureTask<Object>(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return loadModel(modelClass, modelFile);
+                }
+            });
+
+            task = _models.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try {
+            return modelClass.cast(task.get());
+        }
+        catch (ExecutionException e) {
+            // do not cache failures
+            _models.remove(key, task);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets all loaded models (they are freed when no component uses them any longer)
+     */
+    public static void clear() {
+        _models.clear();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static Object loadModel(Class<?> modelClass, File modelFile) throws Exception {
+        InputStream modelStream = new BufferedInputStream(new FileInputStream(modelFile));
+        try {
+            return modelClass.getConstructor(InputStream.class).newInstance(modelStream);
+        }
+        catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+        finally {
+            try { modelStream.close(); } catch (IOException e) { }
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[65536];
+
+        InputStream in = new FileInputStream(file);
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                crc.update(buffer, 0, n);
+        }
+        finally {
+            try { in.close(); } catch (IOException e) { }
+        }
+
+        return crc.getValue();
+    }
+}
@@ -43,14 +43,18 @@
 package org.seasr.meandre.components.nlp.opennlp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.namefind.TokenNameFinderModel;
@@ -70,11 +74,11 @@ import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.Names;
-import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.components.abstracts.util.ComponentUtils;
-import org.seasr.meandre.support.components.tuples.SimpleTuple;
+import org.seasr.meandre.components.abstracts.AbstractParallelExecutableComponent;
+import org.seasr.meandre.support.components.opennlp.TokenOffsets;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
-import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
+import org.seasr.meandre.support.components.tuples.TupleBatch.ColumnType;
 
 /**
  * This component tags entities from the incoming set of tokenized sentences
@@ -92,7 +96,10 @@ import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
         rights = Licenses.UofINCSA,
         tags = "#ANALYTICS, opennlp, semantic, text, nlp, information extraction, entity, entity extraction",
         description = "This component tags entities from the incoming set of tokenized sentences " +
-                "using Apache OpenNLP named entity facilities.",
+                "using Apache OpenNLP named entity facilities. When more than one thread is configured, " +
+                "documents are tagged concurrently, and the sentences of each document can also be split into " +
+                "blocks that are tagged concurrently (see split_sentences); " +
+                "the entities are always output in sentence order.",
         dependency = {
                 "protobuf-java-2.2.0.jar",
                 "opennlp-tools-1.5.2-incubating.jar",
@@ -100,7 +107,7 @@ import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
                 "opennlp-models-ner.jar"
         }
 )
-public class OpenNLPNamedEntity extends AbstractExecutableComponent {
+public class OpenNLPNamedEntity extends AbstractParallelExecutableComponent {
 
     //------------------------------ INPUTS ------------------------------------------------------
 
@@ -144,6 +151,17 @@ public class OpenNLPNamedEntity extends AbstractExecutableComponent {
     )
     protected static final String PROP_ENTITY_TYPES = "entity_types";
 
+    @ComponentProperty(
+            name = "split_sentences",
+            description = "If true and more than one thread is configured, the sentences of each document are split into " +
+                    "blocks (of at least 16 sentences) that are tagged concurrently. This is faster for long documents, " +
+                    "but the adaptive data of the finders (the entities already found in the document, used as features) " +
+                    "is then only kept within each block, so the entities found can differ slightly from those found " +
+                    "when the whole document is tagged at once (false).",
+            defaultValue = "false"
+    )
+    protected static final String PROP_SPLIT_SENTENCES = "split_sentences";
+
     //--------------------------------------------------------------------------------------------
 
 
@@ -156,8 +174,20 @@ public class OpenNLPNamedEntity extends AbstractExecutableComponent {
     public static final String TEXT_START_FIELD  = "textStart";
     public static final String TEXT_FIELD        = "text";
 
-    protected NameFinderME[] _finders;
+    protected static final int SENTENCE_ID_IDX = 0;
+    protected static final int TEXT_IDX        = 1;
+    protected static final int TYPE_IDX        = 2;
+    protected static final int TEXT_START_IDX  = 3;
+
+    protected static final ColumnType[] ENTITY_COLUMN_TYPES = new ColumnType[] {
+        ColumnType.INT, ColumnType.STRING, ColumnType.STRING, ColumnType.INT };
+
+    /** The smallest number of sentences worth handing to another thread */
+    protected static final int MIN_SENTENCES_PER_BLOCK = 16;
+
+    protected TokenNameFinderModel[] _models;
     protected SimpleTuplePeer _tuplePeer;
+    protected ExecutorService _sentenceWorkers;
 
 
     //--------------------------------------------------------------------------------------------
@@ -172,95 +202,164 @@ public class OpenNLPNamedEntity extends AbstractExecutableComponent {
 
         String runDirectory = ccp.getRunDirectory();
         String langCode = getPropertyOrDieTrying(PROP_LANG_CODE, ccp);
-        _finders = initializeNER(langCode, entityTypes, runDirectory);
+        _models = initializeNER(langCode, entityTypes, runDirectory);
 
         _tuplePeer = new SimpleTuplePeer(new String[] { SENTENCE_ID_FIELD, TEXT_FIELD, TYPE_FIELD, TEXT_START_FIELD });
+
+        boolean splitSentences = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_SPLIT_SENTENCES, ccp));
+
+        if (numThreads > 1 && splitSentences) {
+            final AtomicInteger count = new AtomicInteger();
+            _sentenceWorkers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "OpenNLPNamedEntity-sentences-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
     }
 
     @Override
-    public void executeCallBack(ComponentContext cc) throws Exception {
-        StringsMap tokenizedSentences = (StringsMap) cc.getDataComponentFromInput(IN_TOKENIZED_SENTENCES);
-        StringsArray.Builder entityTuples = StringsArray.newBuilder();
+    public Object createThreadState() throws Exception {
+        // the models are shared, but the finders keep per-sentence state
+        NameFinderME[] finders = new NameFinderME[_models.length];
+        for (int i = 0; i < finders.length; i++)
+            finders[i] = new NameFinderME(_models[i]);
 
-        try {
-            for (int i = 0, iMax = tokenizedSentences.getKeyCount(); i < iMax; i++) {
-                String sentence = tokenizedSentences.getKey(i);
-                String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
+        return new FinderState(finders, new TupleBatch(_tuplePeer, ENTITY_COLUMN_TYPES));
+    }
 
-                Map<Integer, Span> tokenPositions = new HashMap<Integer, Span>(tokens.length);
-                for (int j = 0, jMax = tokens.length, lastPos = 0; j < jMax; j++) {
-                    String token = tokens[j];
-                    int pos = sentence.indexOf(token, lastPos);
-                    lastPos = pos + token.length();
-                    tokenPositions.put(j,  new Span(pos, lastPos));
-                }
+    @Override
+    public void executeCallBack(ComponentContext cc) throws Exception {
+        final StringsMap tokenizedSentences = (StringsMap) cc.getDataComponentFromInput(IN_TOKENIZED_SENTENCES);
+        StringsArray entityTuples;
 
-                for (NameFinderME finder : _finders) {
-                    Span[] entitySpans = finder.find(tokens);
-                    for (Span span : entitySpans) {
-                        Span entity = new Span(
-                                tokenPositions.get(span.getStart()).getStart(),
-                                tokenPositions.get(span.getEnd() - 1).getEnd());
+        int count = tokenizedSentences.getKeyCount();
+        int blocks = (_sentenceWorkers == null) ? 1 :
+            Math.min(numThreads, (count + MIN_SENTENCES_PER_BLOCK - 1) / MIN_SENTENCES_PER_BLOCK);
 
-                        SimpleTuple entityTuple = _tuplePeer.createTuple();
-                        entityTuple.setValue(SENTENCE_ID_FIELD, Integer.toString(i));
-                        entityTuple.setValue(TEXT_FIELD, entity.getCoveredText(sentence).toString());
-                        entityTuple.setValue(TYPE_FIELD, span.getType());
-                        entityTuple.setValue(TEXT_START_FIELD, Integer.toString(entity.getStart()));
+        if (blocks <= 1)
+            entityTuples = findEntities(tokenizedSentences, 0, count);
 
-                        entityTuples.addValue(entityTuple.convert());
+        else {
+            List<Future<StringsArray>> results = new ArrayList<Future<StringsArray>>(blocks);
+            for (int b = 0; b < blocks; b++) {
+                final int start = (int) ((long) b * count / blocks);
+                final int end = (int) ((long) (b + 1) * count / blocks);
+
+                results.add(_sentenceWorkers.submit(new Callable<StringsArray>() {
+                    public StringsArray call() throws Exception {
+                        return findEntities(tokenizedSentences, start, end);
                     }
-                }
+                }));
             }
-        }
-        finally {
-            for (NameFinderME finder : _finders)
-                finder.clearAdaptiveData();
+
+            // collect in block order so the output does not depend on scheduling
+            StringsArray.Builder builder = StringsArray.newBuilder();
+            try {
+                for (Future<StringsArray> result : results)
+                    builder.addAllValue(result.get().getValueList());
+            }
+            catch (ExecutionException e) {
+                for (Future<StringsArray> result : results)
+                    result.cancel(true);
+
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+
+            entityTuples = builder.build();
         }
 
         cc.pushDataComponentToOutput(OUT_META_TUPLE, _tuplePeer.convert());
-        cc.pushDataComponentToOutput(OUT_TUPLES, entityTuples.build());
+        cc.pushDataComponentToOutput(OUT_TUPLES, entityTuples);
     }
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
-        _finders = null;
+        if (_sentenceWorkers != null) {
+            _sentenceWorkers.shutdownNow();
+            _sentenceWorkers = null;
+        }
+
+        _models = null;
     }
 
     //--------------------------------------------------------------------------------------------
 
-    private NameFinderME[] initializeNER(String langCode, Set<String> entityTypes, String runDirectory) throws Exception {
-        String nlpNERModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "ner";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), String.format(NER_MODEL_FORMAT, langCode, "person"), nlpNERModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install models to: " + nlpNERModelsDir);
+    /**
+     * Tags the sentences in the range [start, end) using the finders of the calling thread.
+     * The adaptive data is cleared afterwards, so every range (normally the whole document)
+     * is tagged from the same state.
+     */
+    protected StringsArray findEntities(StringsMap tokenizedSentences, int start, int end) throws Exception {
+        FinderState state = (FinderState) getThreadState();
+        TupleBatch entities = state.entities;
+
+        try {
+            for (int i = start; i < end; i++) {
+                String sentence = tokenizedSentences.getKey(i);
+                String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
+                int[] offsets = state.offsets = TokenOffsets.align(sentence, tokens, state.offsets);
+
+                for (NameFinderME finder : state.finders) {
+                    Span[] entitySpans = finder.find(tokens);
+                    for (Span span : entitySpans) {
+                        int entityStart = TokenOffsets.start(offsets, span.getStart());
+                        int entityEnd = TokenOffsets.end(offsets, span.getEnd() - 1);
+                        if (entityStart < 0 || entityEnd < 0) {
+                            console.fine(String.format("Skipping entity not found in sentence %d: %s", i, span));
+                            continue;
+                        }
+
+                        int row = entities.addRow();
+                        entities.setInt(row, SENTENCE_ID_IDX, i);
+                        entities.setString(row, TEXT_IDX, sentence.substring(entityStart, entityEnd));
+                        entities.setString(row, TYPE_IDX, span.getType());
+                        entities.setInt(row, TEXT_START_IDX, entityStart);
+                    }
+                }
+            }
+
+            return entities.convert();
+        }
+        finally {
+            entities.clear();
+
+            for (NameFinderME finder : state.finders)
+                finder.clearAdaptiveData();
         }
+    }
 
-        NameFinderME[] finders = new NameFinderME[entityTypes.size()];
+    private TokenNameFinderModel[] initializeNER(String langCode, Set<String> entityTypes, String runDirectory) throws Exception {
+        String nlpNERModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "ner";
+        TokenNameFinderModel[] models = new TokenNameFinderModel[entityTypes.size()];
 
         int i = 0;
         for (String entityType : entityTypes) {
-            File modelFile = new File(nlpNERModelsDir, String.format(NER_MODEL_FORMAT, langCode, entityType));
-            if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
-
-            FileInputStream modelStream = new FileInputStream(modelFile);
-            try {
-                TokenNameFinderModel model = new TokenNameFinderModel(modelStream);
-                finders[i++] = new NameFinderME(model);
-                console.fine(String.format("TokenNameFinder model for '%s' successfully loaded.", entityType));
-            }
-            finally {
-                try { modelStream.close(); } catch (IOException e) { }
-            }
+            // shared with any other component using the same model
+            models[i++] = OpenNLPModels.getModel(TokenNameFinderModel.class, getClass(),
+                    String.format(NER_MODEL_FORMAT, langCode, entityType), nlpNERModelsDir, console);
+            console.fine(String.format("TokenNameFinder model for '%s' successfully loaded.", entityType));
         }
 
         console.fine("All models loaded. Named entity finder is ready.");
 
-        return finders;
+        return models;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    protected static class FinderState {
+        final NameFinderME[] finders;
+        final TupleBatch entities;
+        int[] offsets;
+
+        FinderState(NameFinderME[] finders, TupleBatch entities) {
+            this.finders = finders;
+            this.entities = entities;
+        }
     }
 }
@@ -43,9 +43,6 @@
 package org.seasr.meandre.components.nlp.opennlp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.regex.Pattern;
 
 import opennlp.tools.postag.POSModel;
@@ -59,17 +56,16 @@ import org.meandre.annotations.ComponentInput;
 import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
-import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.components.abstracts.util.ComponentUtils;
-import org.seasr.meandre.support.components.tuples.SimpleTuple;
+import org.seasr.meandre.support.components.opennlp.TokenOffsets;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
-import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
+import org.seasr.meandre.support.components.tuples.TupleBatch.ColumnType;
 
 /**
  * This component performs part of speech tagging on the tokenized sentences
@@ -155,6 +151,8 @@ public class OpenNLPPosTagger extends AbstractExecutableComponent {
     protected POSTaggerME _posTagger;
     protected Pattern _filter;
     protected SimpleTuplePeer _tuplePeer;
+    protected TupleBatch _posTuples;
+    protected int[] _offsets;
 
 
     //--------------------------------------------------------------------------------------------
@@ -170,48 +168,53 @@ public class OpenNLPPosTagger extends AbstractExecutableComponent {
 
         _posTagger = initializePosTagger(langCode, runDirectory);
         _tuplePeer = new SimpleTuplePeer(new String[] { SENTENCE_ID_FIELD, TOKEN_FIELD, POS_FIELD, POS_PROB_FIELD, TOKEN_START_FIELD });
+        _posTuples = new TupleBatch(_tuplePeer, new ColumnType[] {
+                ColumnType.INT, ColumnType.STRING, ColumnType.STRING, ColumnType.STRING, ColumnType.INT });
     }
 
     @Override
     public void executeCallBack(ComponentContext cc) throws Exception {
         StringsMap tokenizedSentences = (StringsMap) cc.getDataComponentFromInput(IN_TOKENIZED_SENTENCES);
-        StringsArray.Builder posTuples = StringsArray.newBuilder();
-
-        for (int i = 0, iMax = tokenizedSentences.getKeyCount(), sentenceOffset = 0; i < iMax; i++) {
-            String sentence = tokenizedSentences.getKey(i);
-            String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
-            String[] tags = _posTagger.tag(tokens);
-            double[] probs = _posTagger.probs();
-
-            for (int t = 0, tMax = tokens.length, lastTokenStart = 0; t < tMax; t++) {
-                String token = tokens[t];
-                String tag = tags[t];
-                int tokenStart = sentence.indexOf(token, lastTokenStart);
-
-                if (_filter == null || _filter.matcher(tag).matches()) {
-                    SimpleTuple posTuple = _tuplePeer.createTuple();
-                    posTuple.setValue(SENTENCE_ID_FIELD, Integer.toString(i));
-                    posTuple.setValue(TOKEN_FIELD, token);
-                    posTuple.setValue(POS_FIELD, tag);
-                    posTuple.setValue(POS_PROB_FIELD, String.format("%.3f", probs[t]));
-                    posTuple.setValue(TOKEN_START_FIELD, Integer.toString(sentenceOffset + tokenStart));
-
-                    posTuples.addValue(posTuple.convert());
+        StringsArray posTuples;
+
+        try {
+            for (int i = 0, iMax = tokenizedSentences.getKeyCount(), sentenceOffset = 0; i < iMax; i++) {
+                String sentence = tokenizedSentences.getKey(i);
+                String[] tokens = BasicDataTypesTools.stringsToStringArray(tokenizedSentences.getValue(i));
+                String[] tags = _posTagger.tag(tokens);
+                double[] probs = _posTagger.probs();
+                _offsets = TokenOffsets.align(sentence, tokens, _offsets);
+
+                for (int t = 0, tMax = tokens.length; t < tMax; t++) {
+                    String tag = tags[t];
+
+                    if (_filter == null || _filter.matcher(tag).matches()) {
+                        int row = _posTuples.addRow();
+                        _posTuples.setInt(row, 0, i);
+                        _posTuples.setString(row, 1, tokens[t]);
+                        _posTuples.setString(row, 2, tag);
+                        _posTuples.setString(row, 3, String.format("%.3f", probs[t]));
+                        _posTuples.setInt(row, 4, sentenceOffset + TokenOffsets.start(_offsets, t));
+                    }
                 }
 
-                lastTokenStart = tokenStart;
+                sentenceOffset += sentence.length();
             }
 
-            sentenceOffset += sentence.length();
+            posTuples = _posTuples.convert();
+        }
+        finally {
+            _posTuples.clear();
         }
 
         cc.pushDataComponentToOutput(OUT_META_TUPLE, _tuplePeer.convert());
-        cc.pushDataComponentToOutput(OUT_TUPLES, posTuples.build());
+        cc.pushDataComponentToOutput(OUT_TUPLES, posTuples);
     }
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
         _posTagger = null;
+        _posTuples = null;
     }
 
     //--------------------------------------------------------------------------------------------
@@ -219,29 +222,10 @@ public class OpenNLPPosTagger extends AbstractExecutableComponent {
     private POSTaggerME initializePosTagger(String langCode, final String runDirectory) throws Exception {
         String modelFileName = String.format(POS_MODEL_FORMAT, langCode);
         String nlpPosModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "pos";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), modelFileName, nlpPosModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install models to: " + nlpPosModelsDir);
-        }
-
-        File modelFile = new File(nlpPosModelsDir, modelFileName);
-        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
+        POSModel model = OpenNLPModels.getModel(POSModel.class, getClass(), modelFileName, nlpPosModelsDir, console);
+        POSTaggerME posTagger = new POSTaggerME(model);
+        console.fine("POS model loaded. Tagger is ready.");
 
-        FileInputStream modelStream = new FileInputStream(modelFile);
-        try {
-            POSModel model = new POSModel(modelStream);
-            POSTaggerME posTagger = new POSTaggerME(model);
-            console.fine("POS model loaded. Tagger is ready.");
-
-            return posTagger;
-        }
-        finally {
-            try { modelStream.close(); } catch (IOException e) { }
-        }
+        return posTagger;
     }
 }
@@ -43,9 +43,6 @@
 package org.seasr.meandre.components.nlp.opennlp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
@@ -58,14 +55,11 @@ import org.meandre.annotations.ComponentInput;
 import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
-import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.components.abstracts.util.ComponentUtils;
-import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
 
 /**
  * This component does sentence detection on the text contained in the input model using Apache OpenNLP.
@@ -172,29 +166,10 @@ public class OpenNLPSentenceDetector extends AbstractExecutableComponent {
     private SentenceDetectorME initializeSentenceDetector(String langCode, String runDirectory) throws Exception {
         String modelFileName = String.format(SENT_MODEL_FORMAT, langCode);
         String nlpSentModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "sent";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), modelFileName, nlpSentModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install models to: " + nlpSentModelsDir);
-        }
-
-        File modelFile = new File(nlpSentModelsDir, modelFileName);
-        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
-
-        FileInputStream modelStream = new FileInputStream(modelFile);
-        try {
-            SentenceModel model = new SentenceModel(modelStream);
-            SentenceDetectorME sentDetector = new SentenceDetectorME(model);
-            console.fine("Sentence model loaded. Detector is ready.");
+        SentenceModel model = OpenNLPModels.getModel(SentenceModel.class, getClass(), modelFileName, nlpSentModelsDir, console);
+        SentenceDetectorME sentDetector = new SentenceDetectorME(model);
+        console.fine("Sentence model loaded. Detector is ready.");
 
-            return sentDetector;
-        }
-        finally {
-            try { modelStream.close(); } catch (IOException e) { }
-        }
+        return sentDetector;
     }
 }
@@ -43,9 +43,6 @@
 package org.seasr.meandre.components.nlp.opennlp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
 import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
@@ -58,15 +55,12 @@ import org.meandre.annotations.ComponentInput;
 import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
-import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.components.abstracts.util.ComponentUtils;
-import org.seasr.meandre.support.generic.io.JARInstaller.InstallStatus;
 
 /**
  * This component performs tokenization on sentences using Apache OpenNLP, and outputs the tokens.
@@ -165,29 +159,10 @@ public class OpenNLPSentenceTokenizer extends AbstractExecutableComponent {
     private TokenizerME initializeTokenizer(String langCode, String runDirectory) throws Exception {
         String modelFileName = String.format(TOKEN_MODEL_FORMAT, langCode);
         String nlpTokensModelsDir = runDirectory + File.separator + "opennlp-models" + File.separator + "token";
-        InstallStatus status = ComponentUtils.installJARContainingResource(getClass(), modelFileName, nlpTokensModelsDir, false);
-        switch (status) {
-            case SKIPPED:
-                console.fine("Installation skipped - models already installed");
-                break;
-
-            case FAILED:
-                throw new ComponentContextException("Failed to install models to: " + nlpTokensModelsDir);
-        }
-
-        File modelFile = new File(nlpTokensModelsDir, modelFileName);
-        if (!modelFile.exists()) throw new FileNotFoundException(modelFile.toString());
-
-        FileInputStream modelStream = new FileInputStream(modelFile);
-        try {
-            TokenizerModel model = new TokenizerModel(modelStream);
-            TokenizerME tokenizer = new TokenizerME(model);
-            console.fine("Tokenizer model loaded. Tokenizer is ready.");
+        TokenizerModel model = OpenNLPModels.getModel(TokenizerModel.class, getClass(), modelFileName, nlpTokensModelsDir, console);
+        TokenizerME tokenizer = new TokenizerME(model);
+        console.fine("Tokenizer model loaded. Tokenizer is ready.");
 
-            return tokenizer;
-        }
-        finally {
-            try { modelStream.close(); } catch (IOException e) { }
-        }
+        return tokenizer;
     }
 }
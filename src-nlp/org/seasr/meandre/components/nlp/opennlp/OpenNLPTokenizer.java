@@ -59,7 +59,7 @@ import org.meandre.core.ComponentExecutionException;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
-import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.components.abstracts.AbstractParallelExecutableComponent;
 
 /**
  * @author Boris Capitanu
@@ -80,7 +80,7 @@ import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
                 "opennlp-maxent-3.0.2-incubating.jar"
         }
 )
-public class OpenNLPTokenizer extends AbstractExecutableComponent {
+public class OpenNLPTokenizer extends AbstractParallelExecutableComponent {
 
     //------------------------------ INPUTS ------------------------------------------------------
 
@@ -46,8 +46,30 @@ public class Collocation {
 
 	public static double[] association(int sampleCount, int refCount,
 			int sampleSize, int refSize) {
-		double result[] = new double[Z + 1];
+		return association(sampleCount, refCount, sampleSize, refSize,
+				new double[Z + 1]);
+	}
+
+	/**
+	 * Computes collocation measures into a caller supplied array, so that
+	 * the same array can be reused across many collocations.
+	 * 
+	 * @param sampleCount
+	 *            Count of collocation appearance in sample.
+	 * @param refCount
+	 *            Count of collocation appearance in reference corpus.
+	 * @param sampleSize
+	 *            Number of words/lemmas in the sample.
+	 * @param refSize
+	 *            Number of words/lemmas in reference corpus.
+	 * @param result
+	 *            Array of at least Z + 1 elements receiving the measures.
+	 * 
+	 * @return The result array.
+	 */
 
+	public static double[] association(int sampleCount, int refCount,
+			int sampleSize, int refSize, double[] result) {
 		for (int i = 0; i <= Z; i++) {
 			result[i] = 0.0D;
 		}
@@ -116,6 +138,28 @@ public class Collocation {
 		return result;
 	}
 
+	/**
+	 * Computes collocation measures against a reference corpus.
+	 * 
+	 * @param sampleCount
+	 *            Count of collocation appearance in sample.
+	 * @param sampleSize
+	 *            Number of words/lemmas in the sample.
+	 * @param collocation
+	 *            The collocation, as it appears in the reference corpus.
+	 * @param reference
+	 *            The reference corpus.
+	 * 
+	 * @return The measures of collocational association, as
+	 *         {@link #association(int, int, int, int)}.
+	 */
+
+	public static double[] association(int sampleCount, int sampleSize,
+			String collocation, ReferenceCorpus reference) {
+		return association(sampleCount, reference.getCount(collocation),
+				sampleSize, reference.getSize());
+	}
+
 	/**
 	 * Don't allow instantiation but do allow overrides.
 	 */
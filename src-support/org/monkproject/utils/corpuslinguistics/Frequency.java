@@ -12,6 +12,54 @@ import org.monkproject.utils.math.distributions.Sig;
  */
 
 public class Frequency {
+	/**
+	 * Compute the log-likelihood measure for comparing frequencies in two
+	 * corpora, without allocating a result array.
+	 * 
+	 * @param a
+	 *            Count of word/lemma appearance in sample.
+	 * @param b
+	 *            Count of word/lemma appearance in reference corpus.
+	 * @param c
+	 *            Total words/lemmas in the sample.
+	 * @param d
+	 *            Total words/lemmas in reference corpus.
+	 * 
+	 * @return The log-likelihood measure.
+	 */
+
+	public static double logLikelihood(double a, double b, double c, double d) {
+		double e1 = c * (a + b) / (c + d);
+		double e2 = d * (a + b) / (c + d);
+
+		double ae1 = 0.0D;
+
+		if (e1 != 0.0D) {
+			ae1 = a / e1;
+		}
+
+		double be2 = 0.0D;
+
+		if (e2 != 0.0D) {
+			be2 = b / e2;
+		}
+
+		double logLike = 2.0D * ((a * ArithUtils.safeLog(ae1)) + (b * ArithUtils
+				.safeLog(be2)));
+		
+		// added missed elementes of log likelihood calculation:
+		double ce1 = 0.0D;
+		if (e1!=c) ce1 = (c-a)/(c-e1);
+		
+		double de2 = 0.0D;
+		if (e2!=d) de2 = (d-b)/(d-e2);
+		
+		logLike += 2.0D * ((c-a) * ArithUtils.safeLog(ce1) + (d-b) * ArithUtils
+				.safeLog(de2));
+
+		return logLike;
+	}
+
 	/**
 	 * Compute log-likelihood statistic for comparing frequencies in two
 	 * corpora.
@@ -54,33 +102,7 @@ public class Frequency {
 		double c = sampleSize;
 		double d = refSize;
 
-		double e1 = c * (a + b) / (c + d);
-		double e2 = d * (a + b) / (c + d);
-
-		double ae1 = 0.0D;
-
-		if (e1 != 0.0D) {
-			ae1 = a / e1;
-		}
-
-		double be2 = 0.0D;
-
-		if (e2 != 0.0D) {
-			be2 = b / e2;
-		}
-
-		double logLike = 2.0D * ((a * ArithUtils.safeLog(ae1)) + (b * ArithUtils
-				.safeLog(be2)));
-		
-		// added missed elementes of log likelihood calculation:
-		double ce1 = 0.0D;
-		if (e1!=c) ce1 = (c-a)/(c-e1);
-		
-		double de2 = 0.0D;
-		if (e2!=d) de2 = (d-b)/(d-e2);
-		
-		logLike += 2.0D * ((c-a) * ArithUtils.safeLog(ce1) + (d-b) * ArithUtils
-				.safeLog(de2));
+		double logLike = logLikelihood(a, b, c, d);
 
 		result[0] = a;
 
@@ -140,6 +162,33 @@ public class Frequency {
 				sampleSize, refSize, true);
 	}
 
+	/**
+	 * Compute log-likelihood statistic for comparing the frequency of a
+	 * word/lemma in a sample with its frequency in a reference corpus.
+	 * 
+	 * @param sampleCount
+	 *            Count of word/lemma appearance in sample.
+	 * @param sampleSize
+	 *            Total words/lemmas in the sample.
+	 * @param word
+	 *            The word/lemma.
+	 * @param reference
+	 *            The reference corpus.
+	 * @param computeLLSig
+	 *            Compute significance of log likelihood.
+	 * 
+	 * @return A double array containing frequency comparison statistics, as
+	 *         {@link #logLikelihoodFrequencyComparison(int, int, int, int, boolean)}.
+	 */
+
+	public static double[] logLikelihoodFrequencyComparison(int sampleCount,
+			int sampleSize, String word, ReferenceCorpus reference,
+			boolean computeLLSig) {
+		return logLikelihoodFrequencyComparison(sampleCount,
+				reference.getCount(word), sampleSize, reference.getSize(),
+				computeLLSig);
+	}
+
 	/**
 	 * Don't allow instantiation but do allow overrides.
 	 */
@@ -0,0 +1,263 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.monkproject.utils.corpuslinguistics;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable reference corpus: its vocabulary, the count of every word
+ * and the total word count.
+ * 
+ * <p>
+ * Comparative statistics are usually computed for many samples against the
+ * same reference corpus. Instances are therefore obtained through
+ * {@link #forCounts}, which returns the already indexed corpus when the
+ * same counts (same words, counts and order) were indexed recently.
+ * </p>
+ */
+
+public final class ReferenceCorpus {
+	/**
+	 * Number of recently used corpora that are kept.
+	 */
+
+	public static final int MAX_CACHED_CORPORA = 4;
+
+	private static final Map<Long, SoftReference<ReferenceCorpus>> cache = new LinkedHashMap<Long, SoftReference<ReferenceCorpus>>(
+			16, 0.75f, true);
+
+	private final String[] words;
+	private final int[] counts;
+	private final TObjectIntHashMap<String> index;
+	private final int size;
+	private final long contentHash;
+
+	private ReferenceCorpus(String[] words, int[] counts,
+			TObjectIntHashMap<String> index, long contentHash) {
+		this.words = words;
+		this.counts = counts;
+		this.index = index;
+		this.contentHash = contentHash;
+
+		int total = 0;
+		for (int i = 0; i < counts.length; i++)
+			total += counts[i];
+		size = total;
+	}
+
+	/**
+	 * Get the reference corpus with the given counts.
+	 * 
+	 * @param words
+	 *            The words of the corpus.
+	 * @param counts
+	 *            The count of each word; aligned with words. A word given
+	 *            more than once keeps its first position and its last count,
+	 *            as when the counts are read into a map.
+	 * 
+	 * @return The (possibly cached) reference corpus. The arrays are copied,
+	 *         so they can be reused by the caller.
+	 */
+
+	public static ReferenceCorpus forCounts(String[] words, int[] counts) {
+		if (words.length != counts.length)
+			throw new IllegalArgumentException(String.format(
+					"%d words but %d counts", words.length, counts.length));
+
+		long hash = contentHash(words, counts);
+		ReferenceCorpus corpus = getCached(hash, words, counts);
+		if (corpus != null)
+			return corpus;
+
+		TObjectIntHashMap<String> index = new TObjectIntHashMap<String>(
+				words.length);
+		String[] uniqueWords = new String[words.length];
+		int[] uniqueCounts = new int[words.length];
+		int numWords = 0;
+
+		for (int i = 0; i < words.length; i++) {
+			if (index.containsKey(words[i]))
+				uniqueCounts[index.get(words[i])] = counts[i];
+			else {
+				index.put(words[i], numWords);
+				uniqueWords[numWords] = words[i];
+				uniqueCounts[numWords++] = counts[i];
+			}
+		}
+
+		if (numWords < words.length) {
+			uniqueWords = Arrays.copyOf(uniqueWords, numWords);
+			uniqueCounts = Arrays.copyOf(uniqueCounts, numWords);
+
+			hash = contentHash(uniqueWords, uniqueCounts);
+			corpus = getCached(hash, uniqueWords, uniqueCounts);
+			if (corpus != null)
+				return corpus;
+		}
+
+		corpus = new ReferenceCorpus(uniqueWords, uniqueCounts, index, hash);
+
+		synchronized (cache) {
+			cache.put(hash, new SoftReference<ReferenceCorpus>(corpus));
+			for (Iterator<Long> it = cache.keySet().iterator(); cache.size() > MAX_CACHED_CORPORA;) {
+				it.next();
+				it.remove();
+			}
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Get the reference corpus with the given counts.
+	 * 
+	 * @param countMap
+	 *            Map from word to count.
+	 * 
+	 * @return The (possibly cached) reference corpus.
+	 */
+
+	public static ReferenceCorpus forCounts(
+			Map<String, ? extends Number> countMap) {
+		String[] words = new String[countMap.size()];
+		int[] counts = new int[words.length];
+
+		int i = 0;
+		for (Entry<String, ? extends Number> entry : countMap.entrySet()) {
+			words[i] = entry.getKey();
+			counts[i++] = entry.getValue().intValue();
+		}
+
+		return forCounts(words, counts);
+	}
+
+	/**
+	 * Get the number of distinct words.
+	 */
+
+	public int getNumWords() {
+		return words.length;
+	}
+
+	/**
+	 * Get the total word count.
+	 */
+
+	public int getSize() {
+		return size;
+	}
+
+	public String getWord(int wordIndex) {
+		return words[wordIndex];
+	}
+
+	public int getCount(int wordIndex) {
+		return counts[wordIndex];
+	}
+
+	/**
+	 * Get the index of a word.
+	 * 
+	 * @return The index of the word, or -1 if it does not occur in the corpus.
+	 */
+
+	public int indexOf(String word) {
+		return index.containsKey(word) ? index.get(word) : -1;
+	}
+
+	/**
+	 * Get the count of a word (0 if it does not occur in the corpus).
+	 */
+
+	public int getCount(String word) {
+		return index.containsKey(word) ? counts[index.get(word)] : 0;
+	}
+
+	/**
+	 * Get the hash of the words and counts this corpus was built from.
+	 */
+
+	public long getContentHash() {
+		return contentHash;
+	}
+
+	private static ReferenceCorpus getCached(long hash, String[] words,
+			int[] counts) {
+		synchronized (cache) {
+			SoftReference<ReferenceCorpus> cached = cache.get(hash);
+			ReferenceCorpus corpus = (cached != null) ? cached.get() : null;
+
+			return (corpus != null && corpus.hasCounts(words, counts)) ? corpus
+					: null;
+		}
+	}
+
+	private boolean hasCounts(String[] otherWords, int[] otherCounts) {
+		if (otherWords.length != words.length)
+			return false;
+
+		for (int i = 0; i < words.length; i++)
+			if (counts[i] != otherCounts[i] || !words[i].equals(otherWords[i]))
+				return false;
+
+		return true;
+	}
+
+	private static long contentHash(String[] words, int[] counts) {
+		long hash = words.length;
+		for (int i = 0; i < words.length; i++) {
+			hash = hash * 0x100000001b3L + words[i].hashCode();
+			hash = hash * 0x100000001b3L + counts[i];
+		}
+
+		return hash;
+	}
+}
@@ -0,0 +1,367 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.socialnetworking;
+
+import gnu.trove.TLongHashingStrategy;
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates an undirected, weighted graph of entities that occur within a given
+ * sentence distance of each other.
+ *
+ * Entities are interned into dense int ids (per type, so looking an entity up does not
+ * build a composite key). Edge weights are kept in a primitive map keyed by the two ids
+ * packed into a long, and the sentences within range are kept in a ring buffer of id
+ * arrays that are reused as the window slides. The graph is exported in compressed
+ * sparse row form (see {@link Adjacency}).
+ */
+public class CooccurrenceGraph {
+
+    private final int _maxDistance;
+
+    private final TObjectIntHashMap<String> _typeIds = new TObjectIntHashMap<String>();
+    private final List<String> _types = new ArrayList<String>();
+    private final List<TObjectIntHashMap<String>> _entityIds = new ArrayList<TObjectIntHashMap<String>>();
+
+    /** Entity id to type id and value */
+    private int[] _entityTypes = new int[64];
+    private final List<String> _entityValues = new ArrayList<String>();
+
+    /** (smaller id << 32 | larger id) to the number of co-occurrences */
+    private final TLongIntHashMap _edges = new TLongIntHashMap(new PairHashingStrategy());
+
+    /** The sentences in the window, oldest first, starting at _windowHead */
+    private int[] _windowSentences = new int[4];
+    private int[][] _windowEntities = new int[4][];
+    private int[] _windowSizes = new int[4];
+    private int _windowHead = 0;
+    private int _windowCount = 0;
+
+
+    /**
+     * @param maxDistance The maximum sentence distance at which two entities are linked
+     */
+    public CooccurrenceGraph(int maxDistance) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException("The sentence distance must be greater than or equal to zero");
+
+        _maxDistance = maxDistance;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the id of an entity, assigning the next id if it has not been seen before
+     *
+     * @param type The entity type
+     * @param value The (normalized) entity value
+     * @return The entity id
+     */
+    public int intern(String type, String value) {
+        int typeId;
+        if (_typeIds.containsKey(type))
+            typeId = _typeIds.get(type);
+        else {
+            typeId = _types.size();
+            _typeIds.put(type, typeId);
+            _types.add(type);
+            _entityIds.add(new TObjectIntHashMap<String>());
+        }
+
+        TObjectIntHashMap<String> ids = _entityIds.get(typeId);
+        if (ids.containsKey(value))
+            return ids.get(value);
+
+        int id = _entityValues.size();
+        ids.put(value, id);
+        _entityValues.add(value);
+
+        if (id == _entityTypes.length)
+            _entityTypes = Arrays.copyOf(_entityTypes, id * 2);
+        _entityTypes[id] = typeId;
+
+        return id;
+    }
+
+    /**
+     * Records an occurrence of an entity, linking it to every other entity occurrence in the
+     * sentences that are within range. Sentences that are now out of range are dropped from the window.
+     *
+     * @param sentenceId The id of the sentence the entity occurs in
+     * @param entity The entity id (see intern())
+     */
+    public void add(int sentenceId, int entity) {
+        int capacity = _windowSentences.length;
+
+        while (_windowCount > 0 && sentenceId - _windowSentences[_windowHead] > _maxDistance) {
+            _windowHead = (_windowHead + 1) % capacity;
+            _windowCount--;
+        }
+
+        int last = (_windowHead + _windowCount - 1) % capacity;
+        if (_windowCount == 0 || _windowSentences[last] != sentenceId) {
+            if (_windowCount == capacity) {
+                growWindow();
+                capacity = _windowSentences.length;
+            }
+
+            last = (_windowHead + _windowCount) % capacity;
+            _windowSentences[last] = sentenceId;
+            _windowSizes[last] = 0;
+            _windowCount++;
+        }
+
+        boolean inSentence = false;
+
+        for (int s = 0; s < _windowCount; s++) {
+            int slot = (_windowHead + s) % capacity;
+            int[] entities = _windowEntities[slot];
+
+            for (int i = 0, iMax = _windowSizes[slot]; i < iMax; i++) {
+                int other = entities[i];
+                if (other == entity) {
+                    if (slot == last) inSentence = true;
+                    continue;
+                }
+
+                long key = other < entity ? ((long) other << 32) | entity : ((long) entity << 32) | other;
+                _edges.adjustOrPutValue(key, 1, 1);
+            }
+        }
+
+        if (!inSentence) {
+            int[] entities = _windowEntities[last];
+            int size = _windowSizes[last];
+
+            if (entities == null)
+                entities = _windowEntities[last] = new int[8];
+            else if (size == entities.length)
+                entities = _windowEntities[last] = Arrays.copyOf(entities, size * 2);
+
+            entities[size] = entity;
+            _windowSizes[last] = size + 1;
+        }
+    }
+
+    /** Empties the sentence window, so the next entity is not linked to the ones seen so far */
+    public void clearWindow() {
+        _windowHead = _windowCount = 0;
+    }
+
+    /** Removes all entities and links */
+    public void clear() {
+        clearWindow();
+
+        _typeIds.clear();
+        _types.clear();
+        _entityIds.clear();
+        _entityValues.clear();
+        _edges.clear();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public int getEntityCount() {
+        return _entityValues.size();
+    }
+
+    public int getEdgeCount() {
+        return _edges.size();
+    }
+
+    public String getType(int entity) {
+        return _types.get(_entityTypes[entity]);
+    }
+
+    public String getValue(int entity) {
+        return _entityValues.get(entity);
+    }
+
+    /**
+     * Exports the graph
+     *
+     * @param removeUnlinked True to leave out the entities that are not linked to any other entity
+     * @return The adjacency of the graph
+     */
+    public Adjacency toAdjacency(boolean removeUnlinked) {
+        int entityCount = getEntityCount();
+
+        // keys sort by source id, then target id, which is the order of the CSR arrays
+        long[] keys = _edges.keys();
+        Arrays.sort(keys);
+
+        int[] nodeOf = new int[entityCount];
+        int nodeCount;
+
+        if (removeUnlinked) {
+            for (long key : keys) {
+                nodeOf[(int) (key >>> 32)] = 1;
+                nodeOf[(int) key] = 1;
+            }
+
+            nodeCount = 0;
+            for (int e = 0; e < entityCount; e++)
+                nodeOf[e] = nodeOf[e] != 0 ? nodeCount++ : -1;
+        }
+        else {
+            for (int e = 0; e < entityCount; e++)
+                nodeOf[e] = e;
+            nodeCount = entityCount;
+        }
+
+        int[] entities = new int[nodeCount];
+        for (int e = 0; e < entityCount; e++)
+            if (nodeOf[e] >= 0)
+                entities[nodeOf[e]] = e;
+
+        int[] edgeStart = new int[nodeCount + 1];
+        int[] targets = new int[keys.length];
+        int[] weights = new int[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            edgeStart[nodeOf[(int) (key >>> 32)] + 1]++;
+            targets[i] = nodeOf[(int) key];
+            weights[i] = _edges.get(key);
+        }
+
+        for (int n = 0; n < nodeCount; n++)
+            edgeStart[n + 1] += edgeStart[n];
+
+        return new Adjacency(entities, edgeStart, targets, weights);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void growWindow() {
+        int capacity = _windowSentences.length;
+        int[] sentences = new int[capacity * 2];
+        int[][] entities = new int[capacity * 2][];
+        int[] sizes = new int[capacity * 2];
+
+        for (int s = 0; s < _windowCount; s++) {
+            int slot = (_windowHead + s) % capacity;
+            sentences[s] = _windowSentences[slot];
+            entities[s] = _windowEntities[slot];
+            sizes[s] = _windowSizes[slot];
+        }
+
+        _windowSentences = sentences;
+        _windowEntities = entities;
+        _windowSizes = sizes;
+        _windowHead = 0;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The default long hash (high ^ low word) maps every pair of ids with the same XOR to the
+     * same bucket, which degrades the edge map to linear probing on sequential ids
+     */
+    private static class PairHashingStrategy implements TLongHashingStrategy {
+        private static final long serialVersionUID = 1L;
+
+        public int computeHashCode(long key) {
+            key *= 0x9e3779b97f4a7c15L;
+            return (int) (key ^ (key >>> 32)) & Integer.MAX_VALUE;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The nodes and edges of a graph in compressed sparse row form. Nodes are numbered
+     * 0 .. getNodeCount() - 1 in the order their entities were first seen. Every edge is
+     * listed once, under its lower numbered node: the edges of node n are
+     * getEdgeStart(n) .. getEdgeStart(n + 1) - 1, by increasing target.
+     * Node types and values are read from the graph, so clear() invalidates the adjacency.
+     */
+    public class Adjacency {
+        private final int[] _entities;
+        private final int[] _edgeStart;
+        private final int[] _targets;
+        private final int[] _weights;
+
+        private Adjacency(int[] entities, int[] edgeStart, int[] targets, int[] weights) {
+            _entities = entities;
+            _edgeStart = edgeStart;
+            _targets = targets;
+            _weights = weights;
+        }
+
+        public int getNodeCount() {
+            return _entities.length;
+        }
+
+        public int getEdgeCount() {
+            return _targets.length;
+        }
+
+        public String getType(int node) {
+            return CooccurrenceGraph.this.getType(_entities[node]);
+        }
+
+        public String getValue(int node) {
+            return CooccurrenceGraph.this.getValue(_entities[node]);
+        }
+
+        public int getEdgeStart(int node) {
+            return _edgeStart[node];
+        }
+
+        public int getTarget(int edge) {
+            return _targets[edge];
+        }
+
+        /** @return The number of times the two entities occurred within range of each other */
+        public int getWeight(int edge) {
+            return _weights[edge];
+        }
+    }
+}
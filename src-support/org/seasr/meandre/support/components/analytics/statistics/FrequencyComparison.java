@@ -0,0 +1,240 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.statistics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.monkproject.utils.corpuslinguistics.Collocation;
+import org.monkproject.utils.corpuslinguistics.Frequency;
+import org.monkproject.utils.corpuslinguistics.ReferenceCorpus;
+
+/**
+ * Sample and reference token counts aligned over a single vocabulary, so that the frequency
+ * comparison statistics of every word can be computed in one pass over primitive arrays.
+ *
+ * The words of the {@link ReferenceCorpus} come first, in its order, followed by the words that
+ * only occur in the sample. Only the sample side is built per comparison; the reference corpus is
+ * shared by every comparison against it.
+ */
+public class FrequencyComparison {
+
+    private final ReferenceCorpus _reference;
+
+    private final String[] _sampleOnlyWords;
+    private final int[] _sampleCounts;
+    private final int _sampleSize;
+    private final int _size;
+
+
+    /**
+     * @param sampleCounts The token counts of the sample
+     * @param refCounts The token counts of the reference
+     */
+    public FrequencyComparison(Map<String, ? extends Number> sampleCounts, Map<String, ? extends Number> refCounts) {
+        this(ReferenceCorpus.forCounts(refCounts), sampleCounts);
+    }
+
+    /**
+     * @param reference The reference corpus
+     * @param sampleCounts The token counts of the sample
+     */
+    public FrequencyComparison(ReferenceCorpus reference, Map<String, ? extends Number> sampleCounts) {
+        _reference = reference;
+
+        int numRefWords = reference.getNumWords();
+        int[] counts = new int[numRefWords + sampleCounts.size()];
+        _sampleOnlyWords = alignSample(sampleCounts, counts);
+        _sampleCounts = counts;
+        _sampleSize = sum(counts);
+        _size = numRefWords + _sampleOnlyWords.length;
+    }
+
+    /**
+     * Compares another sample against the reference of this comparison
+     *
+     * @param sampleCounts The token counts of the new sample
+     * @return The new comparison
+     */
+    public FrequencyComparison withSample(Map<String, ? extends Number> sampleCounts) {
+        return new FrequencyComparison(_reference, sampleCounts);
+    }
+
+    public ReferenceCorpus getReference() {
+        return _reference;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /** @return The number of distinct words in the sample and the reference combined */
+    public int size() {
+        return _size;
+    }
+
+    public String getWord(int word) {
+        int numRefWords = _reference.getNumWords();
+        return (word < numRefWords) ? _reference.getWord(word) : _sampleOnlyWords[word - numRefWords];
+    }
+
+    public int getSampleCount(int word) {
+        return _sampleCounts[word];
+    }
+
+    public int getReferenceCount(int word) {
+        return (word < _reference.getNumWords()) ? _reference.getCount(word) : 0;
+    }
+
+    /** @return The total token count of the sample */
+    public int getSampleSize() {
+        return _sampleSize;
+    }
+
+    /** @return The total token count of the reference */
+    public int getReferenceSize() {
+        return _reference.getSize();
+    }
+
+    /** @return The percentage of the sample made up by the word (0 for an empty sample) */
+    public double getSamplePercent(int word) {
+        return (_sampleSize == 0) ? 0.0 : 100.0 * ((double) _sampleCounts[word] / _sampleSize);
+    }
+
+    /** @return The percentage of the reference made up by the word (0 for an empty reference) */
+    public double getReferencePercent(int word) {
+        int refSize = _reference.getSize();
+        return (refSize == 0) ? 0.0 : 100.0 * ((double) getReferenceCount(word) / refSize);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * @param cutoff The minimum count
+     * @return The words that occur at least cutoff times in the sample or in the reference
+     */
+    public int[] wordsWithCountAtLeast(int cutoff) {
+        int[] words = new int[_size];
+        int count = 0;
+
+        for (int i = 0; i < _size; i++)
+            if (_sampleCounts[i] >= cutoff || getReferenceCount(i) >= cutoff)
+                words[count++] = i;
+
+        if (count == _size) return words;
+
+        int[] result = new int[count];
+        System.arraycopy(words, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Computes Dunning's log-likelihood of the given words, as {@link Frequency#logLikelihood}
+     *
+     * @param words The words to score
+     * @return The log-likelihoods, aligned with words
+     */
+    public double[] logLikelihoods(int[] words) {
+        double[] scores = new double[words.length];
+        double sampleSize = _sampleSize, refSize = _reference.getSize();
+
+        for (int i = 0; i < words.length; i++) {
+            int word = words[i];
+            scores[i] = Frequency.logLikelihood(_sampleCounts[word], getReferenceCount(word), sampleSize, refSize);
+        }
+
+        return scores;
+    }
+
+    /**
+     * Computes one of the {@link Collocation} association measures of the given words
+     *
+     * @param measure The measure (one of Collocation.DICE, LOGLIKE, ..., Z)
+     * @param words The words to score
+     * @return The measures, aligned with words
+     */
+    public double[] associations(int measure, int[] words) {
+        double[] scores = new double[words.length];
+        double[] result = new double[Collocation.Z + 1];
+
+        for (int i = 0; i < words.length; i++) {
+            int word = words[i];
+            Collocation.association(_sampleCounts[word], getReferenceCount(word), _sampleSize, _reference.getSize(), result);
+            scores[i] = result[measure];
+        }
+
+        return scores;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /** Fills counts with the sample counts of the reference words and the sample-only words after them */
+    private String[] alignSample(Map<String, ? extends Number> sampleCounts, int[] counts) {
+        String[] sampleOnlyWords = new String[sampleCounts.size()];
+        int numRefWords = _reference.getNumWords(), numSampleOnly = 0;
+
+        for (Entry<String, ? extends Number> entry : sampleCounts.entrySet()) {
+            String word = entry.getKey();
+            int count = entry.getValue().intValue();
+
+            int refWord = _reference.indexOf(word);
+            if (refWord >= 0)
+                counts[refWord] = count;
+            else {
+                counts[numRefWords + numSampleOnly] = count;
+                sampleOnlyWords[numSampleOnly++] = word;
+            }
+        }
+
+        String[] result = new String[numSampleOnly];
+        System.arraycopy(sampleOnlyWords, 0, result, 0, numSampleOnly);
+        return result;
+    }
+
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts)
+            sum += count;
+
+        return sum;
+    }
+}
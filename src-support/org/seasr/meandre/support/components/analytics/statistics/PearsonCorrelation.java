@@ -0,0 +1,500 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.statistics;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the (sample) Pearson correlation between every pair of a set of equally long series,
+ * for example the yearly frequencies of a set of n-grams.
+ *
+ * The series are standardized once (centered and scaled to unit norm), which turns every
+ * correlation into a plain dot product. The pairs are then computed block by block: the rows of
+ * two blocks of BLOCK_SIZE series stay in cache while every pair between them is computed, four
+ * pairs at a time. Blocks of rows can be spread over several threads; the correlations are always
+ * handed to the {@link Handler} on the calling thread, in order.
+ *
+ * A series with zero variance has no defined correlation; pairs involving one are skipped.
+ *
+ * When the series only have values at some of the times (the missing ones holding 0), each pair
+ * can instead be correlated over the times at which at least one of the two has a value. The sums
+ * over those times equal the sums over all times, so only the number of values differs from pair
+ * to pair: the raw dot products are computed as above and corrected with that count, which is
+ * taken from bit sets of the times each series has values at.
+ */
+public class PearsonCorrelation {
+
+    /** The number of series in a block */
+    public static final int BLOCK_SIZE = 64;
+
+    /** Receives the computed correlations */
+    public interface Handler {
+        void correlation(int series1, int series2, double pearson) throws Exception;
+    }
+
+    /** The standardized series, or the series themselves when correlating over the present times */
+    private final double[][] _standardized;
+    private final int _length;
+
+    /** The times each series has values at (one bit per time), or null to correlate over all times */
+    private final long[][] _present;
+    private final double[] _sums;
+    private final double[] _sumSquares;
+
+
+    /**
+     * @param series The series (all of the same length); they are not modified
+     */
+    public PearsonCorrelation(double[][] series) {
+        this(series, null);
+    }
+
+    /**
+     * @param series The series (all of the same length); they are not modified
+     * @param present For each series, the times it has a value at; each pair of series is correlated
+     *                over the times at which at least one of the two has a value (null correlates over all times)
+     */
+    public PearsonCorrelation(double[][] series, boolean[][] present) {
+        _length = series.length > 0 ? series[0].length : 0;
+        _standardized = new double[series.length][];
+
+        for (int s = 0; s < series.length; s++)
+            if (series[s].length != _length || (present != null && present[s].length != _length))
+                throw new IllegalArgumentException(String.format(
+                        "Series %d has %d values; %d were expected", s, series[s].length, _length));
+
+        if (present != null && !isComplete(present)) {
+            int words = (_length + 63) >>> 6;
+            _present = new long[series.length][words];
+            _sums = new double[series.length];
+            _sumSquares = new double[series.length];
+
+            for (int s = 0; s < series.length; s++) {
+                double[] values = series[s];
+                for (int i = 0; i < _length; i++) {
+                    if (present[s][i])
+                        _present[s][i >>> 6] |= 1L << i;
+                    _sums[s] += values[i];
+                    _sumSquares[s] += values[i] * values[i];
+                }
+
+                _standardized[s] = values;
+            }
+
+            return;
+        }
+
+        _present = null;
+        _sums = null;
+        _sumSquares = null;
+
+        for (int s = 0; s < series.length; s++) {
+            double[] values = series[s];
+
+            double mean = 0.0;
+            for (double v : values)
+                mean += v;
+            mean /= _length;
+
+            double[] z = new double[_length];
+            double norm = 0.0;
+            for (int i = 0; i < _length; i++) {
+                z[i] = values[i] - mean;
+                norm += z[i] * z[i];
+            }
+
+            if (norm == 0.0) continue;
+
+            double scale = 1.0 / Math.sqrt(norm);
+            for (int i = 0; i < _length; i++)
+                z[i] *= scale;
+
+            _standardized[s] = z;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public int size() {
+        return _standardized.length;
+    }
+
+    /**
+     * @return True if the series has zero variance (when correlating over the present times,
+     *         the variance depends on the other series, so this is only known per pair)
+     */
+    public boolean isConstant(int series) {
+        return _standardized[series] == null;
+    }
+
+    /** @return The correlation between two series (NaN if either one is constant) */
+    public double correlation(int series1, int series2) {
+        double[] x = _standardized[series1], y = _standardized[series2];
+        return (x == null || y == null) ? Double.NaN : pearson(series1, series2, dot(x, y));
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Computes the correlation of every pair of series (s1 &lt; s2), handing over the ones that are at
+     * least minCorrelation ordered by s1, then s2
+     *
+     * @param minCorrelation The smallest correlation to report (-1 reports every pair)
+     * @param executor The executor to run the blocks on, or null to use the calling thread
+     * @param parallelism The number of blocks to compute concurrently
+     * @param handler The handler receiving the correlations
+     * @throws Exception Thrown if the handler fails
+     */
+    public void allPairs(final double minCorrelation, ExecutorService executor, int parallelism, Handler handler)
+        throws Exception {
+
+        run(new BlockComputation() {
+            public Pairs compute(int start, int end) {
+                Pairs pairs = new Pairs(start, end, 0);
+
+                // the blocks on and right of the diagonal
+                for (int other = start; other < _standardized.length; other += BLOCK_SIZE)
+                    multiply(start, end, other, Math.min(other + BLOCK_SIZE, _standardized.length), true, minCorrelation, pairs);
+
+                return pairs;
+            }
+        }, executor, parallelism, handler);
+    }
+
+    /**
+     * Finds the k series most correlated with each series, handing them over ordered by series, then
+     * by decreasing correlation
+     *
+     * @param k The number of correlated series to report per series
+     * @param executor The executor to run the blocks on, or null to use the calling thread
+     * @param parallelism The number of blocks to compute concurrently
+     * @param handler The handler receiving the correlations
+     * @throws Exception Thrown if the handler fails
+     */
+    public void topK(final int k, ExecutorService executor, int parallelism, Handler handler) throws Exception {
+        if (k <= 0) return;
+
+        run(new BlockComputation() {
+            public Pairs compute(int start, int end) {
+                Pairs pairs = new Pairs(start, end, k);
+
+                // every block (each pair is computed twice), so the heap of a series is only used by one task
+                for (int other = 0; other < _standardized.length; other += BLOCK_SIZE)
+                    multiply(start, end, other, Math.min(other + BLOCK_SIZE, _standardized.length), false, -1.0, pairs);
+
+                pairs.sort();
+                return pairs;
+            }
+        }, executor, parallelism, handler);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private interface BlockComputation {
+        /** Computes the pairs of the series in [start, end) */
+        Pairs compute(int start, int end);
+    }
+
+    private void run(final BlockComputation computation, ExecutorService executor, int parallelism, Handler handler)
+        throws Exception {
+
+        int count = _standardized.length;
+
+        if (executor == null || parallelism <= 1) {
+            for (int start = 0; start < count; start += BLOCK_SIZE)
+                computation.compute(start, Math.min(start + BLOCK_SIZE, count)).handle(handler);
+
+            return;
+        }
+
+        // hand over the blocks in order, with at most two blocks per thread pending
+        LinkedList<Future<Pairs>> pending = new LinkedList<Future<Pairs>>();
+        try {
+            for (int start = 0; start < count; start += BLOCK_SIZE) {
+                if (pending.size() >= 2 * parallelism)
+                    pending.removeFirst().get().handle(handler);
+
+                final int from = start, to = Math.min(start + BLOCK_SIZE, count);
+                pending.add(executor.submit(new Callable<Pairs>() {
+                    public Pairs call() {
+                        return computation.compute(from, to);
+                    }
+                }));
+            }
+
+            while (!pending.isEmpty())
+                pending.removeFirst().get().handle(handler);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+        finally {
+            for (Future<Pairs> future : pending)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Computes the correlations between the series in [start1, end1) and [start2, end2), adding
+     * the ones that are at least minCorrelation to the pairs
+     */
+    private void multiply(int start1, int end1, int start2, int end2, boolean upperOnly, double minCorrelation, Pairs pairs) {
+        double[][] z = _standardized;
+        int n = _length;
+
+        for (int s1 = start1; s1 < end1; s1++) {
+            double[] x = z[s1];
+            if (x == null) continue;
+
+            int s2 = upperOnly ? Math.max(start2, s1 + 1) : start2;
+
+            // four series at a time, so every value of x is loaded once per four pairs
+            while (s2 + 3 < end2) {
+                double[] y0 = z[s2], y1 = z[s2 + 1], y2 = z[s2 + 2], y3 = z[s2 + 3];
+
+                if (y0 == null || y1 == null || y2 == null || y3 == null) {
+                    for (int s = s2; s < s2 + 4; s++)
+                        if (z[s] != null && s != s1)
+                            pairs.add(s1, s, pearson(s1, s, dot(x, z[s])), minCorrelation);
+                }
+                else {
+                    double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+                    for (int i = 0; i < n; i++) {
+                        double v = x[i];
+                        d0 += v * y0[i];
+                        d1 += v * y1[i];
+                        d2 += v * y2[i];
+                        d3 += v * y3[i];
+                    }
+
+                    if (s2 != s1)     pairs.add(s1, s2, pearson(s1, s2, d0), minCorrelation);
+                    if (s2 + 1 != s1) pairs.add(s1, s2 + 1, pearson(s1, s2 + 1, d1), minCorrelation);
+                    if (s2 + 2 != s1) pairs.add(s1, s2 + 2, pearson(s1, s2 + 2, d2), minCorrelation);
+                    if (s2 + 3 != s1) pairs.add(s1, s2 + 3, pearson(s1, s2 + 3, d3), minCorrelation);
+                }
+
+                s2 += 4;
+            }
+
+            for (; s2 < end2; s2++)
+                if (z[s2] != null && s2 != s1)
+                    pairs.add(s1, s2, pearson(s1, s2, dot(x, z[s2])), minCorrelation);
+        }
+    }
+
+    /**
+     * Turns the dot product of the rows of two series into their correlation
+     *
+     * @return The correlation, or NaN if either series is constant over the times considered
+     */
+    private double pearson(int series1, int series2, double dot) {
+        if (_present == null) return dot;
+
+        long[] present1 = _present[series1], present2 = _present[series2];
+        int n = 0;
+        for (int i = 0; i < present1.length; i++)
+            n += Long.bitCount(present1[i] | present2[i]);
+
+        double sum1 = _sums[series1], sum2 = _sums[series2];
+        double var1 = n * _sumSquares[series1] - sum1 * sum1;
+        double var2 = n * _sumSquares[series2] - sum2 * sum2;
+
+        // a series that is constant over these times only leaves rounding errors in its variance
+        if (var1 <= 1e-12 * n * _sumSquares[series1] || var2 <= 1e-12 * n * _sumSquares[series2])
+            return Double.NaN;
+
+        return (n * dot - sum1 * sum2) / Math.sqrt(var1 * var2);
+    }
+
+    private static boolean isComplete(boolean[][] present) {
+        for (boolean[] times : present)
+            for (boolean p : times)
+                if (!p) return false;
+
+        return true;
+    }
+
+    private static double dot(double[] x, double[] y) {
+        double d0 = 0.0, d1 = 0.0;
+        int i = 0, n = x.length;
+
+        for (; i + 1 < n; i += 2) {
+            d0 += x[i] * y[i];
+            d1 += x[i + 1] * y[i + 1];
+        }
+        if (i < n)
+            d0 += x[i] * y[i];
+
+        return d0 + d1;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The correlations found for the series in [start, end). Without a limit they are kept in the
+     * order they were added; with a limit, each series keeps the best ones in a bounded min-heap.
+     */
+    private static class Pairs {
+        private final int _start;
+        private final int _limit;
+        private final int[][] _others;
+        private final double[][] _values;
+        private final int[] _sizes;
+
+        Pairs(int start, int end, int limit) {
+            _start = start;
+            _limit = limit;
+            _others = new int[end - start][];
+            _values = new double[end - start][];
+            _sizes = new int[end - start];
+        }
+
+        void add(int series, int other, double pearson, double minCorrelation) {
+            if (!(pearson >= minCorrelation)) return;
+
+            // rounding can push the dot product of standardized series slightly outside [-1, 1]
+            if (pearson > 1.0) pearson = 1.0;
+            else if (pearson < -1.0) pearson = -1.0;
+
+            int row = series - _start;
+            int size = _sizes[row];
+            int[] others = _others[row];
+            double[] values = _values[row];
+
+            if (others == null) {
+                int capacity = _limit > 0 ? _limit : 16;
+                others = _others[row] = new int[capacity];
+                values = _values[row] = new double[capacity];
+            }
+
+            if (_limit == 0) {
+                if (size == others.length) {
+                    others = _others[row] = Arrays.copyOf(others, size * 2);
+                    values = _values[row] = Arrays.copyOf(values, size * 2);
+                }
+
+                others[size] = other;
+                values[size] = pearson;
+                _sizes[row] = size + 1;
+            }
+            else if (size < _limit) {
+                others[size] = other;
+                values[size] = pearson;
+                _sizes[row] = size + 1;
+                siftUp(others, values, size);
+            }
+            else if (isBetter(pearson, other, values[0], others[0])) {
+                others[0] = other;
+                values[0] = pearson;
+                siftDown(others, values, 0, size);
+            }
+        }
+
+        /** Orders the heaps by decreasing correlation (ties by series) */
+        void sort() {
+            for (int row = 0; row < _sizes.length; row++)
+                for (int last = _sizes[row] - 1; last > 0; last--) {
+                    int[] others = _others[row];
+                    double[] values = _values[row];
+
+                    // move the worst remaining pair to the end
+                    int o = others[0]; others[0] = others[last]; others[last] = o;
+                    double v = values[0]; values[0] = values[last]; values[last] = v;
+                    siftDown(others, values, 0, last);
+                }
+        }
+
+        void handle(Handler handler) throws Exception {
+            for (int row = 0; row < _sizes.length; row++)
+                for (int i = 0, iMax = _sizes[row]; i < iMax; i++)
+                    handler.correlation(_start + row, _others[row][i], _values[row][i]);
+        }
+
+        private static boolean isBetter(double value1, int other1, double value2, int other2) {
+            return value1 > value2 || (value1 == value2 && other1 < other2);
+        }
+
+        private static void siftUp(int[] others, double[] values, int pos) {
+            int other = others[pos];
+            double value = values[pos];
+
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!isBetter(values[parent], others[parent], value, other)) break;
+                others[pos] = others[parent];
+                values[pos] = values[parent];
+                pos = parent;
+            }
+
+            others[pos] = other;
+            values[pos] = value;
+        }
+
+        private static void siftDown(int[] others, double[] values, int pos, int size) {
+            int other = others[pos];
+            double value = values[pos];
+
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= size) break;
+                if (child + 1 < size && isBetter(values[child], others[child], values[child + 1], others[child + 1]))
+                    child++;
+                if (!isBetter(value, other, values[child], others[child])) break;
+                others[pos] = others[child];
+                values[pos] = values[child];
+                pos = child;
+            }
+
+            others[pos] = other;
+            values[pos] = value;
+        }
+    }
+}
@@ -3,8 +3,16 @@ package org.seasr.meandre.support.components.analytics.statistics;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,7 +71,8 @@ public class Prosody {
 	public int reportIntervalInProblems = (int) 1e1;
 	ArrayList<ProsodyProblem> prosodyProblems = null;
 	int numProblems;
-	ProsodyProblemSolver[] problemSolvers = null;
+	int problemsPerTask = 256;  /* consecutive seed windows solved together by one task */
+	int maxNumCostTableSignatures = 2048;
 
 	int maxNumPhonemes = (int) 20e6;
 	int numFeatures = 6;
@@ -71,6 +80,10 @@ public class Prosody {
 	int maxNumTexts = (int) 1e3;
 	int windowSizeInFeatures = -1;
 
+	int[][] phonemeSignatures;
+	int[] numSignatures;
+	int[][] signatureDifferences;
+
 	int[] featureWeights = new int[] { part_of_speech_weight, accent_weight, stress_weight, tone_weight, phrase_id_weight, break_index_weight };
 
 	HashMap<String, Integer>[] symbolToIndex = new HashMap[numFeatures];
@@ -793,192 +806,302 @@ public class Prosody {
 //		}
 //	}
 
-	int nextProblemIndex = 0;
-
-	int getNextProblemIndexAndIncrement() {
-
-		synchronized (this) {
+	/**
+	 * Interns the feature symbols of every phoneme into signature ids and tabulates the weighted
+	 * difference between every pair of signatures, so that comparing two phonemes costs a lookup
+	 * per feature group instead of a comparison per feature. All features are tried as a single
+	 * group first, then split in halves; if even the halves have too many distinct signatures the
+	 * features are compared directly.
+	 */
+	private void indexPhonemes() {
+		signatureDifferences = null;
+
+		for (int groupSize = numFeatures; groupSize >= numFeatures / 2; groupSize /= 2) {
+			int numGroups = numFeatures / groupSize;
+			int[][] groupSignatures = new int[numGroups][];
+			int[][] groupDifferences = new int[numGroups][];
+			int[] groupNumSignatures = new int[numGroups];
+
+			boolean fits = true;
+			for (int group = 0; group < numGroups && fits; group++) {
+				List<PhonemeSignature> signatures = new ArrayList<PhonemeSignature>();
+				groupSignatures[group] = internSignatures(group * groupSize, groupSize, signatures);
+				groupNumSignatures[group] = signatures.size();
+				logger.fine(String.format("numSignatures[%d..%d] = %d", group * groupSize, (group + 1) * groupSize - 1, signatures.size()));
+
+				if (signatures.size() > maxNumCostTableSignatures)
+					fits = false;
+				else
+					groupDifferences[group] = tabulateDifferences(signatures);
+			}
 
-			if (nextProblemIndex < numProblems) {
+			if (fits) {
+				phonemeSignatures = groupSignatures;
+				numSignatures = groupNumSignatures;
+				signatureDifferences = groupDifferences;
+				return;
+			}
+		}
+	}
 
-				int problemIndex = nextProblemIndex;
+	private int[] internSignatures(int firstFeature, int numGroupFeatures, List<PhonemeSignature> signatures) {
+		int phonemeCount = symbolIndex / numFeatures;
+		int[] signatureIds = new int[phonemeCount];
+
+		Map<PhonemeSignature, Integer> idMap = new HashMap<PhonemeSignature, Integer>();
+		for (int phoneme = 0; phoneme < phonemeCount; phoneme++) {
+			PhonemeSignature signature = new PhonemeSignature(symbols, phoneme * numFeatures + firstFeature, numGroupFeatures, firstFeature);
+			Integer id = idMap.get(signature);
+			if (id == null) {
+				id = signatures.size();
+				if (id > maxNumCostTableSignatures) break;
+				idMap.put(signature, id);
+				signatures.add(signature);
+			}
+			signatureIds[phoneme] = id;
+		}
 
-				nextProblemIndex++;
+		return signatureIds;
+	}
 
-				return problemIndex;
-			} else {
-				return -1;
+	private int[] tabulateDifferences(List<PhonemeSignature> signatures) {
+		int count = signatures.size();
+		int[] differences = new int[count * count];
+		for (int i = 0; i < count; i++) {
+			PhonemeSignature signature1 = signatures.get(i);
+			for (int j = 0; j < count; j++) {
+				PhonemeSignature signature2 = signatures.get(j);
+				int differenceSum = 0;
+				for (int f = 0; f < signature1.length; f++)
+					if (symbols[signature1.offset + f] != symbols[signature2.offset + f])
+						differenceSum += featureWeights[signature1.firstFeature + f];
+				differences[i * count + j] = differenceSum;
 			}
 		}
 
+		return differences;
 	}
 
-	public void solveProblem(ProsodyProblem prosodyProblem) {
+	int phonemeDifference(int phoneme1, int phoneme2) {
+		if (signatureDifferences != null && signatureDifferences.length == 1)
+			return signatureDifferences[0][phonemeSignatures[0][phoneme1] * numSignatures[0] + phonemeSignatures[0][phoneme2]];
 
-		int seedTextIndex = prosodyProblem.seedTextIndex;
-		int seedWindowSymbolIndex = prosodyProblem.seedWindowSymbolIndex;
+		int differenceSum = 0;
 
-		double bestOverallSimilarity = Double.NEGATIVE_INFINITY;
-		int bestCandidateTextIndex = -1;
-		int numTies = 0;
-		int[] tiedCandidateTextIndices = new int[numTexts];
-		for (int candidateTextIndex = 0; candidateTextIndex < numTexts; candidateTextIndex++) {
+		if (signatureDifferences != null) {
+			for (int group = 0; group < signatureDifferences.length; group++)
+				differenceSum += signatureDifferences[group][phonemeSignatures[group][phoneme1] * numSignatures[group] + phonemeSignatures[group][phoneme2]];
 
-			int candidateTextNumWindows = -1;
-			int candidateWindowSymbolIndex = -1;
-			if (candidateTextIndex == 0) {
-				candidateTextNumWindows = textEndSymbolIndex[0] / numFeatures - windowSizeInFeatures / numFeatures + 1;
-				candidateWindowSymbolIndex = 0;
-			} else {
-				candidateTextNumWindows = (textEndSymbolIndex[candidateTextIndex] - textEndSymbolIndex[candidateTextIndex - 1]) / numFeatures - windowSizeInFeatures / numFeatures + 1;
-				candidateWindowSymbolIndex = textEndSymbolIndex[candidateTextIndex - 1];
-			}
+			return differenceSum;
+		}
 
-			double candidateTextWeightSum = 0.0;
-			int candidateTextWeightCount = 0;
-			for (int candidateWindowIndex = 0; candidateWindowIndex < candidateTextNumWindows; candidateWindowIndex++) {
+		int index1 = phoneme1 * numFeatures;
+		int index2 = phoneme2 * numFeatures;
+		for (int f = 0; f < numFeatures; f++)
+			if (symbols[index1 + f] != symbols[index2 + f])
+				differenceSum += featureWeights[f];
 
-				// ensure non overlapping windows
-				// if (Math.abs(seedWindowSymbolIndex - candidateWindowSymbolIndex) > windowSizeInFeatures) {
+		return differenceSum;
+	}
 
-				// compare windows
-				int differenceSum = 0;
-				int index1 = seedWindowSymbolIndex;
-				int index2 = candidateWindowSymbolIndex;
-				int featureIndex = 0;
-				for (; featureIndex < windowSizeInFeatures; index1++, index2++, featureIndex++) {
-					if (symbols[index1] != symbols[index2]) {
-						differenceSum += windowFeatureWeights[featureIndex];
-					}
-				}
+	int windowDifference(int phoneme1, int phoneme2) {
+		int differenceSum = 0;
+		for (int i = 0; i < windowSizeInPhonemes; i++)
+			differenceSum += phonemeDifference(phoneme1 + i, phoneme2 + i);
 
-				double weight = differenceSumToWeight[differenceSum];
+		return differenceSum;
+	}
 
-				// double similarity = 1.0 - (double) differenceSum / windowSizeInFeatures;
+	public void solveProblem(ProsodyProblem prosodyProblem) {
+		int problemIndex = prosodyProblems.indexOf(prosodyProblem);
+		solveProblems(problemIndex, problemIndex + 1, new int[maxNumCandidateWindows()]);
+	}
 
-				// Double weight = differenceToWeightMap.get(similarity);
-				// if (weight == null) {
-				// weight = Math.pow(similarity, weightingPower);
-				// differenceToWeightMap.put(differenceSum, weight);
-				// }
-				// similarity = weight;
+	/**
+	 * Solves the problems in [fromProblem, toProblem), which must be consecutive seed windows of
+	 * the same text. The window differences against a candidate text are computed in full for the
+	 * first seed only; each following seed slides them one phoneme along their diagonal, which
+	 * removes the leading phoneme pair and adds the trailing one.
+	 */
+	void solveProblems(int fromProblem, int toProblem, int[] windowDifferences) {
+		for (int candidateTextIndex = 0; candidateTextIndex < numTexts; candidateTextIndex++) {
 
-				// similarity = Math.pow(similarity, weightingPower);
+			int candidateStartPhoneme = (candidateTextIndex == 0) ? 0 : textEndSymbolIndex[candidateTextIndex - 1] / numFeatures;
+			int candidateTextNumWindows = numCandidateWindows(candidateTextIndex);
 
-				// candidateTextWeightSum += similarity;
+			int previousSeedPhoneme = -1;
+			for (int problemIndex = fromProblem; problemIndex < toProblem; problemIndex++) {
 
-				candidateTextWeightSum += weight;
-				candidateTextWeightCount++;
+				ProsodyProblem prosodyProblem = prosodyProblems.get(problemIndex);
+				int seedPhoneme = prosodyProblem.seedWindowSymbolIndex / numFeatures;
 
-				// }
+				if (previousSeedPhoneme < 0) {
+					for (int i = 0; i < candidateTextNumWindows; i++)
+						windowDifferences[i] = windowDifference(seedPhoneme, candidateStartPhoneme + i);
+				} else {
+					int trailingSeedPhoneme = previousSeedPhoneme + windowSizeInPhonemes;
+					for (int i = candidateTextNumWindows - 1; i > 0; i--) {
+						int candidatePhoneme = candidateStartPhoneme + i - 1;
+						windowDifferences[i] = windowDifferences[i - 1]
+						        - phonemeDifference(previousSeedPhoneme, candidatePhoneme)
+						        + phonemeDifference(trailingSeedPhoneme, candidatePhoneme + windowSizeInPhonemes);
+					}
+					if (candidateTextNumWindows > 0)
+						windowDifferences[0] = windowDifference(seedPhoneme, candidateStartPhoneme);
+				}
+				previousSeedPhoneme = seedPhoneme;
 
-				candidateWindowSymbolIndex += numFeatures;
+				double candidateTextWeightSum = 0.0;
+				for (int i = 0; i < candidateTextNumWindows; i++)
+					candidateTextWeightSum += differenceSumToWeight[windowDifferences[i]];
 
+				prosodyProblem.similarities[candidateTextIndex] = candidateTextWeightSum / candidateTextNumWindows;
 			}
+		}
+
+		int[] tiedCandidateTextIndices = new int[numTexts];
+		for (int problemIndex = fromProblem; problemIndex < toProblem; problemIndex++) {
 
-			double candidateTextSimilarity = candidateTextWeightSum / candidateTextWeightCount;
+			ProsodyProblem prosodyProblem = prosodyProblems.get(problemIndex);
 
-			prosodyProblem.similarities[candidateTextIndex] = candidateTextSimilarity;
+			double bestOverallSimilarity = Double.NEGATIVE_INFINITY;
+			int numTies = 0;
+			for (int candidateTextIndex = 0; candidateTextIndex < numTexts; candidateTextIndex++) {
+				double candidateTextSimilarity = prosodyProblem.similarities[candidateTextIndex];
 
-			if (candidateTextSimilarity > bestOverallSimilarity) {
-				numTies = 0;
-				tiedCandidateTextIndices[numTies++] = candidateTextIndex;
-				bestOverallSimilarity = candidateTextSimilarity;
-			} else if (candidateTextSimilarity == bestOverallSimilarity) {
-				tiedCandidateTextIndices[numTies++] = candidateTextIndex;
+				if (candidateTextSimilarity > bestOverallSimilarity) {
+					numTies = 0;
+					tiedCandidateTextIndices[numTies++] = candidateTextIndex;
+					bestOverallSimilarity = candidateTextSimilarity;
+				} else if (candidateTextSimilarity == bestOverallSimilarity) {
+					tiedCandidateTextIndices[numTies++] = candidateTextIndex;
+				}
 			}
 
-		}
+			int bestCandidateTextIndex = tiedCandidateTextIndices[(int) (Math.random() * numTies)];
 
-		bestCandidateTextIndex = tiedCandidateTextIndices[(int) (Math.random() * numTies)];
+			synchronized (this) {
+				similarityWeights[prosodyProblem.seedTextIndex][bestCandidateTextIndex]++;
+			}
 
-		synchronized (this) {
-			similarityWeights[seedTextIndex][bestCandidateTextIndex]++;
+			prosodyProblem.complete = true;
 		}
+	}
 
-		prosodyProblem.complete = true;
+	int numCandidateWindows(int candidateTextIndex) {
+		int candidateStartSymbolIndex = (candidateTextIndex == 0) ? 0 : textEndSymbolIndex[candidateTextIndex - 1];
+		return (textEndSymbolIndex[candidateTextIndex] - candidateStartSymbolIndex) / numFeatures - windowSizeInPhonemes + 1;
 	}
 
-	public void solveProblems() {
+	int maxNumCandidateWindows() {
+		int maxNumWindows = 0;
+		for (int candidateTextIndex = 0; candidateTextIndex < numTexts; candidateTextIndex++)
+			maxNumWindows = Math.max(maxNumWindows, numCandidateWindows(candidateTextIndex));
 
-		nextProblemIndex = 0;
+		return maxNumWindows;
+	}
 
-		/************************/
-		/* start worker threads */
-		/************************/
+	public void solveProblems() {
 
-		problemSolvers = new ProsodyProblemSolver[numThreads];
-		for (int i = 0; i < numThreads; i++) {
-			problemSolvers[i] = new ProsodyProblemSolver(this, i);
-			problemSolvers[i].start();
-		}
+		indexPhonemes();
 
 		/*************************************************/
-		/* wait until all worker threads have terminated */
+		/* split problems into runs of consecutive seeds */
 		/*************************************************/
-		int nextReportNumProblemsSolved = reportIntervalInProblems;
-
-		//Clock clock = new Clock();
-		long startTime = System.currentTimeMillis();
-		long lastReportTime = startTime;
-		while (true) {
-
-			int numProblemsSolved = countNumContiguousProblemsSolved();
+		List<int[]> problemRanges = new ArrayList<int[]>();
+		int rangeStart = 0;
+		for (int i = 1; i <= numProblems; i++) {
+			if (i == numProblems || i - rangeStart == problemsPerTask
+			        || prosodyProblems.get(i).seedTextIndex != prosodyProblems.get(i - 1).seedTextIndex
+			        || prosodyProblems.get(i).seedWindowSymbolIndex != prosodyProblems.get(i - 1).seedWindowSymbolIndex + numFeatures) {
+				if (i > rangeStart)
+					problemRanges.add(new int[] { rangeStart, i });
+				rangeStart = i;
+			}
+		}
 
-			if (logger.isLoggable(Level.FINER)) {
-				if (numProblemsSolved >= nextReportNumProblemsSolved) {
-					long time = System.currentTimeMillis();
+		int poolSize = (numThreads > 0) ? numThreads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
 
-					double duration = (time - startTime) / 1000.0;
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Prosody-worker-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 
-					double seedsPerSecond = numProblemsSolved / duration;
+		final int maxNumWindows = maxNumCandidateWindows();
+		final ThreadLocal<int[]> windowDifferences = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				return new int[maxNumWindows];
+			}
+		};
+
+		try {
+			CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+			for (final int[] range : problemRanges) {
+				completionService.submit(new Callable<Integer>() {
+					public Integer call() {
+						solveProblems(range[0], range[1], windowDifferences.get());
+						return range[1] - range[0];
+					}
+				});
+			}
 
-					double timePerSeed = duration / numProblemsSolved;
-					double totalTimeEst = timePerSeed * numProblems;
-					double timeLeft = totalTimeEst - duration;
+			/**************************************/
+			/* collect the tasks as they complete */
+			/**************************************/
+			int nextReportNumProblemsSolved = reportIntervalInProblems;
+			int numProblemsSolved = 0;
 
-					logger.finer("seedsPerSecond   = " + seedsPerSecond);
-					logger.finer("timePerSeed      = " + timePerSeed);
-					logger.finer("totalTimeEst   = " + totalTimeEst);
-					logger.finer("timeLeft (s)     = " + timeLeft);
-					logger.finer("timeLeft (m)     = " + timeLeft / 60);
-					logger.finer("timeLeft (h)     = " + timeLeft / 3600);
-					logger.finer("timeLeft (d)     = " + timeLeft / 3600 / 24);
+			long startTime = System.currentTimeMillis();
+			for (int i = 0, iMax = problemRanges.size(); i < iMax; i++) {
 
-					logger.finer("numProblemsSolved = " + numProblemsSolved);
-					logger.finer("numProblems       = " + numProblems);
-					nextReportNumProblemsSolved += reportIntervalInProblems;
-				}
-			}
+				numProblemsSolved += completionService.take().get();
 
-			if (numProblemsSolved == numProblems) {
-				break;
-			}
+				if (logger.isLoggable(Level.FINER)) {
+					if (numProblemsSolved >= nextReportNumProblemsSolved) {
+						long time = System.currentTimeMillis();
 
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		}
-	}
+						double duration = (time - startTime) / 1000.0;
 
-	int countNumContiguousProblemsSolved() {
+						double seedsPerSecond = numProblemsSolved / duration;
 
-		int numProblemsSolved = 0;
-		for (Iterator<ProsodyProblem> iterator = prosodyProblems.iterator(); iterator.hasNext();) {
+						double timePerSeed = duration / numProblemsSolved;
+						double totalTimeEst = timePerSeed * numProblems;
+						double timeLeft = totalTimeEst - duration;
 
-			ProsodyProblem prosodyProblem = iterator.next();
+						logger.finer("seedsPerSecond   = " + seedsPerSecond);
+						logger.finer("timePerSeed      = " + timePerSeed);
+						logger.finer("totalTimeEst   = " + totalTimeEst);
+						logger.finer("timeLeft (s)     = " + timeLeft);
+						logger.finer("timeLeft (m)     = " + timeLeft / 60);
+						logger.finer("timeLeft (h)     = " + timeLeft / 3600);
+						logger.finer("timeLeft (d)     = " + timeLeft / 3600 / 24);
 
-			if (prosodyProblem.complete) {
-				numProblemsSolved++;
-			} else {
-				break;
+						logger.finer("numProblemsSolved = " + numProblemsSolved);
+						logger.finer("numProblems       = " + numProblems);
+						while (nextReportNumProblemsSolved <= numProblemsSolved)
+							nextReportNumProblemsSolved += reportIntervalInProblems;
+					}
+				}
 			}
 		}
-
-		return numProblemsSolved;
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 
 	public void setLogger(Logger logger) {
@@ -1004,52 +1127,42 @@ class ProsodyProblem implements Serializable {
 
 }
 
-class ProsodyProblemSolver extends Thread {
-
-	Prosody prosody;
+class PhonemeSignature {
 
-	int numThreads = -1;
-	int threadIndex = -1;
+	final int[] symbols;
+	final int offset;
+	final int length;
+	final int firstFeature;
+	final int hashCode;
 
-	boolean stopNow = false;
-	boolean terminated = false;
+	PhonemeSignature(int[] symbols, int offset, int length, int firstFeature) {
+		this.symbols = symbols;
+		this.offset = offset;
+		this.length = length;
+		this.firstFeature = firstFeature;
 
-	ProsodyProblemSolver(Prosody prosody, int threadIndex) {
-		this.prosody = prosody;
-		this.numThreads = prosody.numThreads;
-		this.threadIndex = threadIndex;
+		int hash = 1;
+		for (int i = offset; i < offset + length; i++)
+			hash = 31 * hash + symbols[i];
+		this.hashCode = hash;
 	}
 
 	@Override
-	public void run() {
-
-		while (true) {
-
-			if (stopNow) {
-				break;
-			}
-
-			int problemIndex = prosody.getNextProblemIndexAndIncrement();
-
-			if (problemIndex == -1) {
-				break;
-			}
-
-			/*****************/
-			/* SOLVE PROBLEM */
-			/*****************/
-
-			prosody.solveProblem(prosody.prosodyProblems.get(problemIndex));
+	public int hashCode() {
+		return hashCode;
+	}
 
-		}
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PhonemeSignature)) return false;
 
-		terminated = true;
+		PhonemeSignature other = (PhonemeSignature) obj;
+		if (other.hashCode != hashCode || other.length != length) return false;
 
-		return;
-	}
+		for (int i = 0; i < length; i++)
+			if (symbols[offset + i] != other.symbols[other.offset + i])
+				return false;
 
-	public void terminate() {
-		stopNow = true;
+		return true;
 	}
-
 }
@@ -0,0 +1,431 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.summarization;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
+
+/**
+ * Computes HITS hub and authority scores for a binary row x column incidence matrix
+ * (e.g. sentences x tokens) held in compressed sparse row (CSR) form.
+ *
+ * Each iteration makes a single pass over the non-zero entries: the hub score of a row is
+ * computed from the current authority scores and immediately scattered back into the new
+ * authority scores, so no transposed copy of the matrix is needed. The iterations stop as
+ * soon as no score changes by more than the given epsilon.
+ */
+public class HITS {
+
+    /** Below this number of non-zero entries an iteration is not worth splitting between threads */
+    private static final int MIN_PARALLEL_NON_ZEROS = 1 << 16;
+
+    private final int _rows;
+    private final String[] _columnLabels;
+
+    /** Row r spans _columns[_rowStart[r]] .. _columns[_rowStart[r + 1] - 1] */
+    private final int[] _rowStart;
+    private final int[] _columns;
+
+    private double[] _hubs;
+    private double[] _authorities;
+    private int _iterations = 0;
+
+
+    private HITS(int rows, String[] columnLabels, int[] rowStart, int[] columns) {
+        _rows = rows;
+        _columnLabels = columnLabels;
+        _rowStart = rowStart;
+        _columns = columns;
+    }
+
+    /**
+     * Builds the sentence x token incidence matrix of the given tokenized sentences
+     *
+     * @param sentences The tokenized sentences
+     * @return The matrix
+     */
+    public static HITS fromRows(final StringsMap sentences) {
+        return fromRows(new AbstractList<List<String>>() {
+            @Override
+            public List<String> get(int index) {
+                return sentences.getValue(index).getValueList();
+            }
+
+            @Override
+            public int size() {
+                return sentences.getValueCount();
+            }
+        });
+    }
+
+    /**
+     * Builds the incidence matrix of the given rows, assigning column indices to the
+     * labels in order of first appearance. Repeated labels in a row count once.
+     *
+     * @param rows The labels (e.g. tokens) present in each row (e.g. sentence)
+     * @return The matrix
+     */
+    public static HITS fromRows(List<? extends List<String>> rows) {
+        int nonZeros = 0;
+        for (List<String> row : rows)
+            nonZeros += row.size();
+
+        TObjectIntHashMap<String> columnIndex = new TObjectIntHashMap<String>();
+        List<String> labels = new ArrayList<String>();
+        int[] rowStart = new int[rows.size() + 1];
+        int[] columns = new int[nonZeros];
+
+        // lastRow[c] is the last row (plus one) that column c was added to
+        int[] lastRow = new int[16];
+        int n = 0, r = 0;
+
+        for (List<String> row : rows) {
+            rowStart[r++] = n;
+
+            for (String label : row) {
+                int column;
+                if (columnIndex.containsKey(label))
+                    column = columnIndex.get(label);
+                else {
+                    column = labels.size();
+                    columnIndex.put(label, column);
+                    labels.add(label);
+
+                    if (column == lastRow.length)
+                        lastRow = Arrays.copyOf(lastRow, column * 2);
+                }
+
+                if (lastRow[column] == r) continue;
+
+                lastRow[column] = r;
+                columns[n++] = column;
+            }
+        }
+        rowStart[r] = n;
+
+        return new HITS(r, labels.toArray(new String[labels.size()]), rowStart,
+                n == columns.length ? columns : Arrays.copyOf(columns, n));
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public int getRowCount() {
+        return _rows;
+    }
+
+    public int getColumnCount() {
+        return _columnLabels.length;
+    }
+
+    public String getColumnLabel(int column) {
+        return _columnLabels[column];
+    }
+
+    public int getNonZeroCount() {
+        return _rowStart[_rows];
+    }
+
+    /** @return The hub (row) scores computed by the last call to run() */
+    public double[] getHubScores() {
+        return _hubs;
+    }
+
+    /** @return The authority (column) scores computed by the last call to run() */
+    public double[] getAuthorityScores() {
+        return _authorities;
+    }
+
+    /** @return The number of iterations performed by the last call to run() */
+    public int getIterations() {
+        return _iterations;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Iterates the hub and authority scores (both starting at 1 and kept at unit L2 norm)
+     *
+     * @param maxIterations The maximum number of iterations
+     * @param epsilon Stop once no score changes by more than this amount
+     * @param executor The executor used to split each iteration, or null to run on the calling thread
+     * @param parallelism The number of parts to split each iteration into
+     * @return The number of iterations performed
+     * @throws Exception Thrown if a part of an iteration fails
+     */
+    public int run(int maxIterations, double epsilon, ExecutorService executor, int parallelism) throws Exception {
+        int columns = _columnLabels.length;
+
+        int parts = Math.max(1, Math.min(parallelism, getNonZeroCount() / MIN_PARALLEL_NON_ZEROS));
+        if (executor == null) parts = 1;
+
+        int[] partStart = partitionRows(parts);
+        double[][] partial = new double[parts][];
+        for (int p = 1; p < parts; p++)
+            partial[p] = new double[columns];
+
+        double[] hubs = new double[_rows];
+        double[] authorities = new double[columns];
+        Arrays.fill(hubs, 1.0);
+        Arrays.fill(authorities, 1.0);
+
+        double[] nextHubs = new double[_rows];
+        double[] nextAuthorities = new double[columns];
+
+        _iterations = 0;
+        while (_iterations < maxIterations) {
+            Arrays.fill(nextAuthorities, 0.0);
+            partial[0] = nextAuthorities;
+
+            if (parts == 1)
+                multiply(authorities, nextHubs, nextAuthorities, 0, _rows);
+            else
+                multiply(authorities, nextHubs, partial, partStart, executor);
+
+            // the scale of the hub scores cancels out when normalizing the authorities
+            normalize(nextHubs);
+            normalize(nextAuthorities);
+
+            _iterations++;
+
+            double delta = Math.max(maxDifference(hubs, nextHubs), maxDifference(authorities, nextAuthorities));
+
+            double[] tmp = hubs; hubs = nextHubs; nextHubs = tmp;
+            tmp = authorities; authorities = nextAuthorities; nextAuthorities = tmp;
+
+            if (delta <= epsilon) break;
+        }
+
+        _hubs = hubs;
+        _authorities = authorities;
+
+        return _iterations;
+    }
+
+    /**
+     * Selects the k highest scores without sorting the whole array
+     *
+     * @param scores The scores
+     * @param k The number of indices to select, or a negative number to select them all
+     * @return The indices of the k highest scores, by decreasing score (ties by increasing index)
+     */
+    public static int[] top(double[] scores, int k) {
+        int n = scores.length;
+        if (k < 0 || k > n) k = n;
+
+        // min-heap of the best k indices seen so far, the worst one at the root
+        int[] heap = new int[k];
+        int size = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            }
+            else if (k > 0 && ranksBefore(i, heap[0], scores)) {
+                heap[0] = i;
+                siftDown(heap, 0, size, scores);
+            }
+        }
+
+        // repeatedly move the worst remaining index to the end
+        for (int last = size - 1; last > 0; last--) {
+            int tmp = heap[0]; heap[0] = heap[last]; heap[last] = tmp;
+            siftDown(heap, 0, last, scores);
+        }
+
+        return heap;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /** Computes hubs = A * authorities for rows [start, end) and adds A' * hubs to scatter */
+    private void multiply(double[] authorities, double[] hubs, double[] scatter, int start, int end) {
+        int[] columns = _columns;
+
+        for (int r = start; r < end; r++) {
+            int from = _rowStart[r], to = _rowStart[r + 1];
+
+            double hub = 0.0;
+            for (int i = from; i < to; i++)
+                hub += authorities[columns[i]];
+
+            hubs[r] = hub;
+
+            if (hub != 0.0)
+                for (int i = from; i < to; i++)
+                    scatter[columns[i]] += hub;
+        }
+    }
+
+    private void multiply(final double[] authorities, final double[] hubs, final double[][] partial,
+            int[] partStart, ExecutorService executor) throws Exception {
+
+        final int parts = partial.length;
+        final int columns = _columnLabels.length;
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(parts);
+        for (int p = 0; p < parts; p++) {
+            final double[] scatter = partial[p];
+            final int start = partStart[p], end = partStart[p + 1];
+
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    if (scatter != partial[0]) Arrays.fill(scatter, 0.0);
+                    multiply(authorities, hubs, scatter, start, end);
+                    return null;
+                }
+            });
+        }
+        invokeAll(executor, tasks);
+
+        // sum the partial authority vectors into the first one, by column ranges
+        tasks.clear();
+        for (int p = 0; p < parts; p++) {
+            final int start = (int) ((long) p * columns / parts);
+            final int end = (int) ((long) (p + 1) * columns / parts);
+
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    double[] sum = partial[0];
+                    for (int q = 1; q < parts; q++) {
+                        double[] scatter = partial[q];
+                        for (int c = start; c < end; c++)
+                            sum[c] += scatter[c];
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(executor, tasks);
+    }
+
+    private static void invokeAll(ExecutorService executor, List<Callable<Object>> tasks) throws Exception {
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks))
+                future.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /** Splits the rows into ranges holding roughly the same number of non-zero entries */
+    private int[] partitionRows(int parts) {
+        int[] partStart = new int[parts + 1];
+        long nonZeros = getNonZeroCount();
+
+        for (int p = 1; p < parts; p++) {
+            int target = (int) (p * nonZeros / parts);
+            int r = Arrays.binarySearch(_rowStart, 0, _rows + 1, target);
+            if (r < 0) r = -r - 1;
+
+            partStart[p] = Math.max(partStart[p - 1], Math.min(r, _rows));
+        }
+        partStart[parts] = _rows;
+
+        return partStart;
+    }
+
+    private static void normalize(double[] v) {
+        double sum = 0.0;
+        for (double x : v)
+            sum += x * x;
+
+        if (sum == 0.0) return;
+
+        double scale = 1.0 / Math.sqrt(sum);
+        for (int i = 0; i < v.length; i++)
+            v[i] *= scale;
+    }
+
+    private static double maxDifference(double[] a, double[] b) {
+        double max = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double d = Math.abs(a[i] - b[i]);
+            if (d > max) max = d;
+        }
+
+        return max;
+    }
+
+    private static boolean ranksBefore(int i, int j, double[] scores) {
+        return scores[i] > scores[j] || (scores[i] == scores[j] && i < j);
+    }
+
+    private static void siftUp(int[] heap, int pos, double[] scores) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!ranksBefore(heap[parent], item, scores)) break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int pos, int size, double[] scores) {
+        int item = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], scores)) child++;
+            if (!ranksBefore(item, heap[child], scores)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.opennlp;
+
+/**
+ * Aligns the tokens of a sentence with their positions in the sentence text.
+ *
+ * The offsets are kept in a flat int[] (start and end of token t at 2t and 2t+1), which can be
+ * reused from one sentence to the next; tokens that cannot be found in the text get -1 for both.
+ */
+public final class TokenOffsets {
+
+    private TokenOffsets() {
+    }
+
+    /**
+     * Finds the character offsets of the tokens in the text
+     *
+     * @param text The text the tokens came from
+     * @param tokens The tokens, in text order
+     * @param offsets An array to reuse, or null
+     * @return The offsets (the given array if it was large enough)
+     */
+    public static int[] align(String text, String[] tokens, int[] offsets) {
+        int n = tokens.length * 2;
+        if (offsets == null || offsets.length < n)
+            offsets = new int[Math.max(n, offsets != null ? offsets.length * 2 : 0)];
+
+        for (int t = 0, pos = 0, textLen = text.length(); t < tokens.length; t++) {
+            String token = tokens[t];
+
+            // tokens are usually separated by nothing but whitespace
+            int start = pos;
+            while (start < textLen && Character.isWhitespace(text.charAt(start)))
+                start++;
+
+            if (!text.startsWith(token, start))
+                start = text.indexOf(token, pos);
+
+            if (start < 0) {
+                offsets[2 * t] = offsets[2 * t + 1] = -1;
+                continue;
+            }
+
+            pos = start + token.length();
+            offsets[2 * t] = start;
+            offsets[2 * t + 1] = pos;
+        }
+
+        return offsets;
+    }
+
+    public static int start(int[] offsets, int token) {
+        return offsets[2 * token];
+    }
+
+    public static int end(int[] offsets, int token) {
+        return offsets[2 * token + 1];
+    }
+}
@@ -0,0 +1,255 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.text;
+
+import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.seasr.datatypes.core.BasicDataTypes;
+import org.seasr.datatypes.core.BasicDataTypes.IntegersMap;
+import org.seasr.datatypes.core.exceptions.UnsupportedDataTypeException;
+
+/**
+ * Accumulates token counts in a primitive (open addressing) token to count table.
+ *
+ * Count maps are merged straight from their IntegersMap representation, without first
+ * converting them to a java.util.Map of boxed counts. Instances are not thread safe;
+ * use {@link #merge(List, ExecutorService, int)} to merge many maps concurrently.
+ */
+public class TokenCountAccumulator {
+
+    private final TObjectIntHashMap<String> _counts;
+
+
+    public TokenCountAccumulator() {
+        _counts = new TObjectIntHashMap<String>();
+    }
+
+    public TokenCountAccumulator(int expectedSize) {
+        _counts = new TObjectIntHashMap<String>(expectedSize);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public void add(String token, int count) {
+        _counts.adjustOrPutValue(token, count, count);
+    }
+
+    public void add(IntegersMap counts) {
+        for (int i = 0, iMax = counts.getKeyCount(); i < iMax; i++)
+            add(counts.getKey(i), counts.getValue(i).getValue(0));
+    }
+
+    public void add(Map<String, Integer> counts) {
+        for (Entry<String, Integer> entry : counts.entrySet())
+            add(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Adds token counts given in any of the supported formats
+     *
+     * @param data The counts (an IntegersMap or a Map&lt;String, Integer&gt;)
+     * @throws UnsupportedDataTypeException Thrown if the data is in an unsupported format
+     */
+    @SuppressWarnings("unchecked")
+    public void add(Object data) throws UnsupportedDataTypeException {
+        if (data instanceof IntegersMap)
+            add((IntegersMap) data);
+
+        else
+
+        if (data instanceof Map) {
+            Map<String, Integer> map = (Map<String, Integer>) data;
+            if (!map.isEmpty() && !(map.values().iterator().next() instanceof Integer))
+                throw new UnsupportedDataTypeException("The given map is not in the correct format!");
+
+            add(map);
+        }
+
+        else
+            throw new UnsupportedDataTypeException(data == null ? "null" : data.getClass().getName());
+    }
+
+    public void add(TokenCountAccumulator other) {
+        for (TObjectIntIterator<String> it = other._counts.iterator(); it.hasNext(); ) {
+            it.advance();
+            add(it.key(), it.value());
+        }
+    }
+
+    public int get(String token) {
+        return _counts.get(token);
+    }
+
+    public int size() {
+        return _counts.size();
+    }
+
+    public void clear() {
+        _counts.clear();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Converts the counts to an IntegersMap
+     *
+     * @param ordered True to order the tokens by decreasing count
+     * @return The counts
+     */
+    public IntegersMap toIntegersMap(boolean ordered) {
+        int size = _counts.size();
+        String[] tokens = new String[size];
+        int[] counts = new int[size];
+
+        int n = 0;
+        for (TObjectIntIterator<String> it = _counts.iterator(); it.hasNext(); n++) {
+            it.advance();
+            tokens[n] = it.key();
+            counts[n] = it.value();
+        }
+
+        IntegersMap.Builder res = IntegersMap.newBuilder();
+
+        if (ordered) {
+            // sort (count, position) pairs packed into longs, so no comparator or boxing is needed;
+            // ~count reverses the order of the counts and keeps its sign in the high word
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++)
+                order[i] = ((long) ~counts[i] << 32) | i;
+
+            Arrays.sort(order);
+
+            for (long entry : order) {
+                int i = (int) entry;
+                res.addKey(tokens[i]);
+                res.addValue(BasicDataTypes.Integers.newBuilder().addValue(counts[i]));
+            }
+        }
+        else
+            for (int i = 0; i < size; i++) {
+                res.addKey(tokens[i]);
+                res.addValue(BasicDataTypes.Integers.newBuilder().addValue(counts[i]));
+            }
+
+        return res.build();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Merges a list of count maps, splitting the work between several threads
+     *
+     * @param countMaps The count maps (in any format supported by {@link #add(Object)})
+     * @param executor The executor to run the partial merges on
+     * @param parallelism The number of partial merges
+     * @return The merged counts
+     * @throws Exception Thrown if a count map is in an unsupported format
+     */
+    public static TokenCountAccumulator merge(final List<?> countMaps, ExecutorService executor, int parallelism)
+        throws Exception {
+
+        int parts = Math.max(1, Math.min(parallelism, countMaps.size()));
+        if (parts == 1 || executor == null) {
+            TokenCountAccumulator result = new TokenCountAccumulator();
+            for (Object counts : countMaps)
+                result.add(counts);
+
+            return result;
+        }
+
+        List<Future<TokenCountAccumulator>> partials = new ArrayList<Future<TokenCountAccumulator>>(parts);
+        for (int p = 0; p < parts; p++) {
+            final int start = (int) ((long) p * countMaps.size() / parts);
+            final int end = (int) ((long) (p + 1) * countMaps.size() / parts);
+
+            partials.add(executor.submit(new Callable<TokenCountAccumulator>() {
+                public TokenCountAccumulator call() throws Exception {
+                    TokenCountAccumulator partial = new TokenCountAccumulator();
+                    for (int i = start; i < end; i++)
+                        partial.add(countMaps.get(i));
+
+                    return partial;
+                }
+            }));
+        }
+
+        TokenCountAccumulator result = null;
+        try {
+            for (Future<TokenCountAccumulator> partial : partials) {
+                TokenCountAccumulator counts = partial.get();
+
+                // fold the smaller tables into the largest one
+                if (result == null)
+                    result = counts;
+                else if (counts.size() > result.size()) {
+                    counts.add(result);
+                    result = counts;
+                }
+                else
+                    result.add(counts);
+            }
+        }
+        catch (ExecutionException e) {
+            for (Future<TokenCountAccumulator> partial : partials)
+                partial.cancel(true);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,251 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.transform.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies an ordered list of find/replace rules in a single pass over the text.
+ *
+ * The rules are compiled into one alternation, <code>(rule1)|(rule2)|...</code>, with the capturing groups
+ * of every rule renumbered, and the text is scanned once: at each position the first rule (in order) that
+ * matches is replaced and scanning resumes after the match. Unlike applying the rules one after the other,
+ * a rule never sees the output of another rule, and rules do not match across each other's matches.
+ * Rules that use back references, or the LITERAL or CANON_EQ flags, cannot be combined
+ * (see {@link #canCombine(Pattern)}).
+ *
+ * Replacements use the syntax of {@link Matcher#appendReplacement(StringBuffer, String)}: $n refers
+ * to group n of the rule and \ escapes the next character. Instances are immutable and thread safe.
+ */
+public class RegexRewriter {
+
+    private static final int INLINE_FLAGS = Pattern.UNIX_LINES | Pattern.CASE_INSENSITIVE | Pattern.COMMENTS |
+        Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNICODE_CASE;
+    private static final String INLINE_FLAG_CHARS = "dixmsu";
+    private static final int[] INLINE_FLAG_VALUES = { Pattern.UNIX_LINES, Pattern.CASE_INSENSITIVE,
+        Pattern.COMMENTS, Pattern.MULTILINE, Pattern.DOTALL, Pattern.UNICODE_CASE };
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile("(?<!\\\\)(?:\\\\\\\\)*\\\\[1-9]");
+
+    private final Pattern _combined;
+    private final Pattern[] _patterns;
+    private final int[] _groupOffsets;
+    private final Object[][] _replacements;
+
+
+    /**
+     * @param rules The patterns and their replacements, in the order they should be tried
+     * @throws IllegalArgumentException Thrown if a rule cannot be combined or a replacement is invalid
+     */
+    public RegexRewriter(Map<Pattern, String> rules) {
+        int count = rules.size();
+
+        _patterns = new Pattern[count];
+        _groupOffsets = new int[count];
+        _replacements = new Object[count][];
+
+        StringBuilder sb = new StringBuilder();
+        int group = 1;
+        int i = 0;
+
+        for (Map.Entry<Pattern, String> rule : rules.entrySet()) {
+            Pattern pattern = rule.getKey();
+            if (!canCombine(pattern))
+                throw new IllegalArgumentException("Rule cannot be combined with the others: " + pattern.pattern());
+
+            int groupCount = pattern.matcher("").groupCount();
+
+            _patterns[i] = pattern;
+            _groupOffsets[i] = group;
+            _replacements[i] = parseReplacement(rule.getValue(), groupCount, group);
+
+            if (sb.length() > 0) sb.append('|');
+            // flags only apply to the group they are set in, so every rule keeps its own
+            sb.append('(').append(inlineFlags(pattern.flags())).append(pattern.pattern()).append(')');
+
+            group += groupCount + 1;
+            i++;
+        }
+
+        _combined = Pattern.compile(sb.length() > 0 ? sb.toString() : "(?!)");
+
+        if (_combined.matcher("").groupCount() != group - 1)
+            throw new IllegalArgumentException("The rules could not be combined: " + sb);
+    }
+
+    /**
+     * Checks whether a pattern can be part of a combined rule set (it uses no back references
+     * and only flags that can be expressed inline)
+     *
+     * @param pattern The pattern
+     * @return True if the pattern can be combined
+     */
+    public static boolean canCombine(Pattern pattern) {
+        return (pattern.flags() & ~INLINE_FLAGS) == 0 && !BACK_REFERENCE.matcher(pattern.pattern()).find();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public String rewrite(CharSequence text) {
+        return rewrite(text, null);
+    }
+
+    /**
+     * Applies the rules to the text
+     *
+     * @param text The text
+     * @param logger If not null, every match is logged to it at FINE level
+     * @return The rewritten text
+     */
+    public String rewrite(CharSequence text, Logger logger) {
+        Matcher matcher = _combined.matcher(text);
+        if (!matcher.find())
+            return text.toString();
+
+        boolean debug = logger != null && logger.isLoggable(Level.FINE);
+        StringBuilder sb = new StringBuilder(text.length());
+        int last = 0;
+
+        do {
+            int rule = 0;
+            while (matcher.start(_groupOffsets[rule]) < 0)
+                rule++;
+
+            sb.append(text, last, matcher.start());
+
+            for (Object part : _replacements[rule]) {
+                if (part instanceof String)
+                    sb.append((String) part);
+                else {
+                    String value = matcher.group((Integer) part);
+                    if (value != null)
+                        sb.append(value);
+                }
+            }
+
+            if (debug)
+                logger.fine(String.format("Rule %d (%s) match: '%s'", rule + 1, _patterns[rule].pattern(), matcher.group()));
+
+            last = matcher.end();
+        } while (matcher.find());
+
+        sb.append(text, last, text.length());
+
+        return sb.toString();
+    }
+
+    public int getRuleCount() {
+        return _patterns.length;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static String inlineFlags(int flags) {
+        if (flags == 0) return "";
+
+        StringBuilder sb = new StringBuilder("(?");
+        for (int i = 0; i < INLINE_FLAG_VALUES.length; i++)
+            if ((flags & INLINE_FLAG_VALUES[i]) != 0)
+                sb.append(INLINE_FLAG_CHARS.charAt(i));
+
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Splits a replacement into literal strings and (renumbered) group references
+     */
+    private static Object[] parseReplacement(String replacement, int groupCount, int groupOffset) {
+        List<Object> parts = new ArrayList<Object>();
+        StringBuilder literal = new StringBuilder();
+
+        for (int i = 0, iMax = replacement.length(); i < iMax; i++) {
+            char c = replacement.charAt(i);
+
+            if (c == '\\') {
+                if (++i < iMax)
+                    literal.append(replacement.charAt(i));
+            }
+
+            else
+
+            if (c == '$') {
+                if (++i >= iMax || !Character.isDigit(replacement.charAt(i)))
+                    throw new IllegalArgumentException("Illegal group reference in replacement: " + replacement);
+
+                // same rule as Matcher: take as many digits as still form a valid group number
+                int group = replacement.charAt(i) - '0';
+                if (group > groupCount)
+                    throw new IllegalArgumentException("No group " + group + " in replacement: " + replacement);
+
+                while (i + 1 < iMax && Character.isDigit(replacement.charAt(i + 1))) {
+                    int next = group * 10 + (replacement.charAt(i + 1) - '0');
+                    if (next > groupCount) break;
+                    group = next;
+                    i++;
+                }
+
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+
+                parts.add(groupOffset + group);
+            }
+
+            else
+                literal.append(c);
+        }
+
+        if (literal.length() > 0)
+            parts.add(literal.toString());
+
+        return parts.toArray();
+    }
+}
@@ -0,0 +1,341 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.transform.text;
+
+import gnu.trove.TIntIntHashMap;
+import gnu.trove.TIntIntIterator;
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token based multi-pattern replacement.
+ *
+ * The text is split into tokens (runs of non-delimiter characters, with every delimiter character being
+ * a token of its own) and all the patterns, single tokens and multi-token phrases alike, are matched at
+ * once by an Aho-Corasick automaton over the token sequence. Matches never cut through a token, and when
+ * several patterns match, the leftmost and then the longest one wins. Replacing a text therefore costs a
+ * single pass over its tokens, independent of the number of patterns.
+ *
+ * Instances are immutable once built and can be shared between threads; build one per rule set and
+ * reuse it.
+ */
+public class ReplacementEngine {
+
+    /** The delimiters used by the text replacement components */
+    public static final String DEFAULT_DELIMITERS = " \t\n\r\f.,;!?\"\':(){}[]*-<>~";
+
+    private final boolean _ignoreCase;
+    private final String _delimiters;
+    private final boolean[] _asciiDelimiters = new boolean[128];
+
+    /** Token id for every (normalized) token that occurs in a pattern */
+    private final TObjectIntHashMap<String> _tokenIds = new TObjectIntHashMap<String>();
+
+    /** The whole (normalized) patterns, for lookups of complete values */
+    private final Map<String, String> _exact = new HashMap<String, String>();
+
+    // the automaton; node 0 is the root
+    private final TIntIntHashMap[] _next;
+    private final int[] _fail;
+    private final int[] _outputLink;
+    private final int[] _length;
+    private final String[] _replacement;
+
+
+    /**
+     * Builds the engine using the default delimiters
+     *
+     * @param replacements The replacement for every pattern (token or phrase)
+     * @param ignoreCase True to match the patterns regardless of letter case
+     */
+    public ReplacementEngine(Map<String, String> replacements, boolean ignoreCase) {
+        this(replacements, ignoreCase, DEFAULT_DELIMITERS);
+    }
+
+    /**
+     * Builds the engine
+     *
+     * @param replacements The replacement for every pattern (token or phrase)
+     * @param ignoreCase True to match the patterns regardless of letter case
+     * @param delimiters The characters that separate tokens
+     */
+    public ReplacementEngine(Map<String, String> replacements, boolean ignoreCase, String delimiters) {
+        _ignoreCase = ignoreCase;
+        _delimiters = delimiters;
+
+        for (int i = 0; i < delimiters.length(); i++) {
+            char c = delimiters.charAt(i);
+            if (c < 128) _asciiDelimiters[c] = true;
+        }
+
+        List<TIntIntHashMap> next = new ArrayList<TIntIntHashMap>();
+        List<Integer> length = new ArrayList<Integer>();
+        List<String> replacement = new ArrayList<String>();
+
+        next.add(new TIntIntHashMap());
+        length.add(0);
+        replacement.add(null);
+
+        TokenList tokens = new TokenList();
+
+        for (Map.Entry<String, String> entry : replacements.entrySet()) {
+            String pattern = normalize(entry.getKey().trim());
+            if (pattern.length() == 0) continue;
+
+            _exact.put(pattern, entry.getValue());
+
+            tokenize(pattern, tokens);
+
+            int node = 0;
+            for (int i = 0; i < tokens.size; i++) {
+                String token = pattern.substring(tokens.starts[i], tokens.ends[i]);
+
+                int id;
+                if (_tokenIds.containsKey(token))
+                    id = _tokenIds.get(token);
+                else {
+                    id = _tokenIds.size();
+                    _tokenIds.put(token, id);
+                }
+
+                TIntIntHashMap transitions = next.get(node);
+                if (transitions.containsKey(id))
+                    node = transitions.get(id);
+                else {
+                    transitions.put(id, next.size());
+                    node = next.size();
+
+                    next.add(new TIntIntHashMap());
+                    length.add(0);
+                    replacement.add(null);
+                }
+            }
+
+            length.set(node, tokens.size);
+            replacement.set(node, entry.getValue());
+        }
+
+        int size = next.size();
+        _next = next.toArray(new TIntIntHashMap[size]);
+        _length = new int[size];
+        _replacement = replacement.toArray(new String[size]);
+        _fail = new int[size];
+        _outputLink = new int[size];
+
+        for (int i = 0; i < size; i++)
+            _length[i] = length.get(i);
+
+        // breadth first computation of the failure and output links
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (TIntIntIterator it = _next[0].iterator(); it.hasNext(); ) {
+            it.advance();
+            queue.add(it.value());
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.removeFirst();
+
+            for (TIntIntIterator it = _next[node].iterator(); it.hasNext(); ) {
+                it.advance();
+                int id = it.key();
+                int child = it.value();
+
+                int fail = _fail[node];
+                while (fail != 0 && !_next[fail].containsKey(id))
+                    fail = _fail[fail];
+
+                fail = _next[fail].containsKey(id) ? _next[fail].get(id) : 0;
+                if (fail == child) fail = 0;
+
+                _fail[child] = fail;
+                _outputLink[child] = (_replacement[fail] != null) ? fail : _outputLink[fail];
+
+                queue.add(child);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces all the patterns found in the text
+     *
+     * @param text The text
+     * @return The text with the patterns replaced (the same instance if nothing matched)
+     */
+    public String replace(String text) {
+        TokenList tokens = new TokenList();
+        tokenize(text, tokens);
+
+        int n = tokens.size;
+        int[] matchLength = null;
+        int[] matchNode = null;
+
+        int state = 0;
+        for (int i = 0; i < n; i++) {
+            state = step(state, idOf(text, tokens.starts[i], tokens.ends[i]));
+
+            // every pattern ending at this token; remember the longest one for each start position
+            for (int node = (_replacement[state] != null) ? state : _outputLink[state]; node != 0; node = _outputLink[node]) {
+                if (matchLength == null) {
+                    matchLength = new int[n];
+                    matchNode = new int[n];
+                }
+
+                int start = i - _length[node] + 1;
+                if (_length[node] > matchLength[start]) {
+                    matchLength[start] = _length[node];
+                    matchNode[start] = node;
+                }
+            }
+        }
+
+        if (matchLength == null)
+            return text;
+
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < n; ) {
+            if (matchLength[i] > 0) {
+                sb.append(_replacement[matchNode[i]]);
+                i += matchLength[i];
+            } else {
+                sb.append(text, tokens.starts[i], tokens.ends[i]);
+                i++;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Looks up the replacement for a complete value (e.g. a single token)
+     *
+     * @param value The value
+     * @return The replacement, or null if the value does not match a pattern
+     */
+    public String lookup(String value) {
+        return _exact.get(normalize(value.trim()));
+    }
+
+    public int getPatternCount() {
+        return _exact.size();
+    }
+
+    public boolean isIgnoreCase() {
+        return _ignoreCase;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private String normalize(String s) {
+        return _ignoreCase ? s.toLowerCase() : s;
+    }
+
+    private int idOf(String text, int start, int end) {
+        String token = normalize(text.substring(start, end));
+        return _tokenIds.containsKey(token) ? _tokenIds.get(token) : -1;
+    }
+
+    private int step(int state, int id) {
+        if (id < 0) return 0;
+
+        while (state != 0 && !_next[state].containsKey(id))
+            state = _fail[state];
+
+        return _next[state].containsKey(id) ? _next[state].get(id) : 0;
+    }
+
+    private boolean isDelimiter(char c) {
+        return (c < 128) ? _asciiDelimiters[c] : _delimiters.indexOf(c) >= 0;
+    }
+
+    private void tokenize(String text, TokenList tokens) {
+        tokens.size = 0;
+
+        int start = -1;
+        for (int i = 0, iMax = text.length(); i < iMax; i++) {
+            if (isDelimiter(text.charAt(i))) {
+                if (start >= 0) {
+                    tokens.add(start, i);
+                    start = -1;
+                }
+                tokens.add(i, i + 1);
+            }
+            else
+                if (start < 0)
+                    start = i;
+        }
+
+        if (start >= 0)
+            tokens.add(start, text.length());
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static class TokenList {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int size = 0;
+
+        void add(int start, int end) {
+            if (size == starts.length) {
+                int[] s = new int[size * 2];
+                int[] e = new int[size * 2];
+                System.arraycopy(starts, 0, s, 0, size);
+                System.arraycopy(ends, 0, e, 0, size);
+                starts = s;
+                ends = e;
+            }
+
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+}
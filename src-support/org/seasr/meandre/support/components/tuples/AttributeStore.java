@@ -0,0 +1,837 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.tuples;
+
+import gnu.trove.TLongLongHashMap;
+import gnu.trove.TLongLongIterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent key/value store kept in the tab separated format of the attribute cache files:
+ * one <code>key\tvalue[\textra...]</code> record per line, with later records overriding earlier ones.
+ *
+ * The file is treated as an append-only log. It is memory mapped for reading and indexed by a hash
+ * of the key, so lookups cost one probe into the mapped file instead of loading every entry into the heap.
+ * New entries are buffered and appended in groups (at most every 100ms, or whenever 64KB are pending)
+ * and are visible to lookups as soon as put() returns. Once more than half of the records are overridden
+ * the log is compacted in the background. The index is saved next to the file when the store is closed,
+ * so reopening an unchanged file does not rescan it.
+ *
+ * Stores are shared: every open() of the same file returns the same instance (reference counted), so
+ * entries written by one component are immediately seen by the others in the same server.
+ * Components that only look entries up can use openReadOnly(), which never creates or modifies the file.
+ */
+public class AttributeStore {
+
+    private static final Logger logger = Logger.getLogger(AttributeStore.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int GROUP_COMMIT_BYTES = 64 * 1024;
+    private static final long GROUP_COMMIT_INTERVAL = 100;
+    private static final long COMPACTION_MIN_RECORDS = 100000;
+    private static final long COMPACTION_CHUNK_BYTES = 1 << 20;
+
+    private static final int INDEX_MAGIC = 0x41545331;
+
+    private static final Map<File, AttributeStore> openStores = new HashMap<File, AttributeStore>();
+    private static ScheduledExecutorService background = null;
+
+    private final File _file;
+    private final File _indexFile;
+    private final boolean _readOnly;
+    private int _refCount = 0;
+
+    /** Guards the file, the mapped segments and the index; writers only change them while appending or compacting */
+    private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+    private RandomAccessFile _raf;
+    private FileChannel _channel;
+    private MappedByteBuffer[] _segments = new MappedByteBuffer[0];
+    private long _length = 0;
+    private long _records = 0;
+    private TLongLongHashMap _index = new TLongLongHashMap();
+    private Map<String, Long> _collisions = new HashMap<String, Long>();
+
+    /** Serializes appends, and the final swap of a compaction */
+    private final Object _appendLock = new Object();
+
+    /** Serializes compactions */
+    private final Object _compactLock = new Object();
+
+    /** Guards the pending (not yet appended) entries */
+    private final Object _pendingLock = new Object();
+    private ByteArrayOutputStream _pending = new ByteArrayOutputStream();
+    private Map<String, String[]> _unflushed = new HashMap<String, String[]>();
+    private Map<String, String[]> _flushing = null;
+
+    private ScheduledFuture<?> _committer = null;
+    private volatile boolean _compactionScheduled = false;
+    private boolean _closed = false;
+
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Opens (creating it if needed) the store kept in the given file
+     *
+     * @param file The store file
+     * @return The shared store instance; call close() when done with it
+     * @throws IOException Thrown if the file cannot be opened or is not in the expected format
+     */
+    public static AttributeStore open(File file) throws IOException {
+        File canonicalFile = file.getCanonicalFile();
+
+        synchronized (openStores) {
+            AttributeStore store = openStores.get(canonicalFile);
+            if (store == null) {
+                store = new AttributeStore(canonicalFile);
+                store.load();
+                openStores.put(canonicalFile, store);
+            }
+
+            store._refCount++;
+            return store;
+        }
+    }
+
+    /**
+     * Opens the store kept in the given file for lookups only. If the file is already open for
+     * writing in this server the shared instance is returned, so its pending entries are seen too.
+     *
+     * @param file The store file
+     * @return The store (call close() when done with it), or null if the file does not exist
+     * @throws IOException Thrown if the file cannot be read or is not in the expected format
+     */
+    public static AttributeStore openReadOnly(File file) throws IOException {
+        if (!file.exists()) return null;
+
+        File canonicalFile = file.getCanonicalFile();
+
+        synchronized (openStores) {
+            AttributeStore store = openStores.get(canonicalFile);
+            if (store != null) {
+                store._refCount++;
+                return store;
+            }
+        }
+
+        // read-only stores are private to the caller, so a later open() never gets one
+        AttributeStore store = new AttributeStore(canonicalFile, true);
+        store.load();
+        store._refCount = 1;
+
+        return store;
+    }
+
+    protected AttributeStore(File file) {
+        this(file, false);
+    }
+
+    protected AttributeStore(File file, boolean readOnly) {
+        _file = file;
+        _indexFile = new File(file.getPath() + ".idx");
+        _readOnly = readOnly;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value for a key
+     *
+     * @param key The key
+     * @return The value, or null if the key is not in the store
+     * @throws IOException Thrown if the record cannot be read
+     */
+    public String get(String key) throws IOException {
+        String[] record = getRecord(key);
+        return (record != null) ? record[1] : null;
+    }
+
+    public boolean containsKey(String key) throws IOException {
+        return getRecord(key) != null;
+    }
+
+    /**
+     * Returns the latest record for a key
+     *
+     * @param key The key
+     * @return The record fields (key, value, extras), or null if the key is not in the store
+     * @throws IOException Thrown if the record cannot be read
+     */
+    public String[] getRecord(String key) throws IOException {
+        key = key.trim();
+
+        synchronized (_pendingLock) {
+            String[] record = _unflushed.get(key);
+            if (record == null && _flushing != null)
+                record = _flushing.get(key);
+            if (record != null)
+                return record.clone();
+        }
+
+        byte[] keyBytes = key.getBytes(UTF8);
+
+        _lock.readLock().lock();
+        try {
+            long offset = offsetOf(key, keyBytes);
+            if (offset < 0 || !Arrays.equals(readKey(offset), keyBytes))
+                return null;
+
+            return readRecord(offset);
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds (or overrides) an entry. The entry is visible to lookups immediately and is
+     * written to disk with the next group commit.
+     *
+     * @param key The key
+     * @param value The value
+     * @param extras Additional fields to store with the entry
+     * @throws IOException Thrown if a group commit triggered by this entry fails, or the store is read-only
+     */
+    public void put(String key, String value, String... extras) throws IOException {
+        if (_readOnly)
+            throw new IOException(String.format("The attribute store %s was opened read-only", _file));
+
+        String[] record = new String[2 + extras.length];
+        record[0] = key.trim();
+        record[1] = value.trim();
+        System.arraycopy(extras, 0, record, 2, extras.length);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(key).append('\t').append(value);
+        for (String extra : extras)
+            sb.append('\t').append(extra);
+        sb.append('\n');
+
+        byte[] data = sb.toString().getBytes(UTF8);
+        boolean commit;
+
+        synchronized (_pendingLock) {
+            _pending.write(data, 0, data.length);
+            _unflushed.put(record[0], record);
+            commit = _pending.size() >= GROUP_COMMIT_BYTES;
+        }
+
+        if (commit)
+            flush();
+    }
+
+    /**
+     * Appends all pending entries to the file
+     *
+     * @throws IOException Thrown if the entries cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (_appendLock) {
+            byte[] data;
+
+            synchronized (_pendingLock) {
+                if (_pending.size() == 0) return;
+
+                data = _pending.toByteArray();
+                _pending.reset();
+                _flushing = _unflushed;
+                _unflushed = new HashMap<String, String[]>();
+            }
+
+            try {
+                _lock.writeLock().lock();
+                try {
+                    long start = _length;
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining())
+                        _channel.write(buffer, start + buffer.position());
+                    _channel.force(false);
+
+                    _length += data.length;
+                    map();
+                    _records += index(start, _length, _index, _collisions);
+                }
+                finally {
+                    _lock.writeLock().unlock();
+                }
+            }
+            finally {
+                synchronized (_pendingLock) {
+                    _flushing = null;
+                }
+            }
+        }
+
+        if (needsCompaction())
+            scheduleCompaction();
+    }
+
+    /**
+     * Rewrites the file keeping only the latest record of every key. The live records are copied
+     * while lookups and appends continue; only the records appended meanwhile are copied, and
+     * the files swapped, with appends blocked.
+     *
+     * @throws IOException Thrown if the file cannot be rewritten
+     */
+    public void compact() throws IOException {
+        if (_readOnly) return;
+
+        synchronized (_compactLock) {
+            File tmpFile = new File(_file.getPath() + ".compact");
+            TLongLongHashMap index = new TLongLongHashMap();
+            Map<String, Long> collisions = new HashMap<String, Long>();
+            long length = 0;
+            long records = 0;
+            long snapshot;
+
+            _lock.readLock().lock();
+            try {
+                if (_closed) return;
+                snapshot = _length;
+            }
+            finally {
+                _lock.readLock().unlock();
+            }
+
+            boolean replaced = false;
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16);
+            try {
+                // the read lock is only held one chunk at a time, so group commits can proceed in between;
+                // a record overridden meanwhile is still copied, and its override is indexed after it below
+                long pos = 0;
+                while (pos < snapshot) {
+                    _lock.readLock().lock();
+                    try {
+                        if (_closed) return;
+
+                        long chunkEnd = Math.min(snapshot, pos + COMPACTION_CHUNK_BYTES);
+                        long runStart = pos;
+
+                        while (pos < chunkEnd) {
+                            long end = lineEnd(pos);
+                            byte[] key = readKey(pos);
+
+                            if (key != null && offsetOf(new String(key, UTF8), key) == pos) {
+                                long hash = hash(key, 0, key.length);
+                                if (index.containsKey(hash))
+                                    collisions.put(new String(key, UTF8), length);
+                                else
+                                    index.put(hash, length);
+
+                                length += end - pos + 1;
+                                records++;
+                            } else {
+                                copy(runStart, pos, out);
+                                runStart = end + 1;
+                            }
+
+                            pos = end + 1;
+                        }
+
+                        copy(runStart, pos, out);
+                    }
+                    finally {
+                        _lock.readLock().unlock();
+                    }
+                }
+
+                synchronized (_appendLock) {
+                    if (_closed) return;
+
+                    // appends are blocked by _appendLock, so the file can be read without the read lock
+                    long tailLength = _length - snapshot;
+                    copy(snapshot, _length, out);
+                    out.close();
+
+                    _lock.writeLock().lock();
+                    try {
+                        closeFile();
+
+                        replaced = tmpFile.renameTo(_file) || (_file.delete() && tmpFile.renameTo(_file));
+                        openFile();
+
+                        if (!replaced) {
+                            map();
+                            throw new IOException("Cannot replace " + _file + " with its compacted version");
+                        }
+
+                        _length = length + tailLength;
+                        _index = index;
+                        _collisions = collisions;
+                        map();
+                        _records = records + index(length, _length, _index, _collisions);
+                    }
+                    finally {
+                        _lock.writeLock().unlock();
+                    }
+                }
+            }
+            finally {
+                out.close();
+                if (!replaced)
+                    tmpFile.delete();
+            }
+
+            logger.fine(String.format("Compacted %s to %d records (%d bytes)", _file, _records, _length));
+        }
+    }
+
+    /**
+     * @return The number of distinct keys appended to the file (pending entries are not counted)
+     */
+    public int size() {
+        _lock.readLock().lock();
+        try {
+            return _index.size() + _collisions.size();
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Releases this reference to the store; the last close commits the pending entries,
+     * saves the index and closes the file
+     *
+     * @throws IOException Thrown if the pending entries or the index cannot be written
+     */
+    public void close() throws IOException {
+        synchronized (openStores) {
+            if (--_refCount > 0) return;
+            if (!_readOnly)
+                openStores.remove(_file);
+        }
+
+        if (_committer != null)
+            _committer.cancel(false);
+
+        synchronized (_appendLock) {
+            try {
+                flush();
+            }
+            finally {
+                _lock.writeLock().lock();
+                try {
+                    if (!_readOnly)
+                        saveIndex();
+                }
+                finally {
+                    closeFile();
+                    _closed = true;
+                    _lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void load() throws IOException {
+        openFile();
+
+        _length = _raf.length();
+        if (_readOnly) {
+            // a partial last line cannot be terminated without writing to the file, so it is left out
+            while (_length > 0) {
+                _raf.seek(_length - 1);
+                if (_raf.read() == '\n') break;
+                _length--;
+            }
+
+            map();
+            if (!loadIndex())
+                _records = index(0, _length, _index, _collisions);
+
+            return;
+        }
+
+        if (_length > 0) {
+            // an interrupted write may have left a partial line; make sure new records start on their own line
+            _raf.seek(_length - 1);
+            if (_raf.read() != '\n') {
+                _raf.seek(_length);
+                _raf.write('\n');
+                _length++;
+            }
+        }
+
+        map();
+
+        if (!loadIndex())
+            _records = index(0, _length, _index, _collisions);
+
+        _committer = getBackgroundExecutor().scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                }
+                catch (Exception e) {
+                    logger.log(Level.WARNING, "Cannot write to " + _file, e);
+                }
+            }
+        }, GROUP_COMMIT_INTERVAL, GROUP_COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+
+        if (needsCompaction())
+            scheduleCompaction();
+    }
+
+    private void openFile() throws IOException {
+        _raf = new RandomAccessFile(_file, _readOnly ? "r" : "rw");
+        _channel = _raf.getChannel();
+        _segments = new MappedByteBuffer[0];
+    }
+
+    private void closeFile() throws IOException {
+        _segments = new MappedByteBuffer[0];
+        _channel.close();
+        _raf.close();
+    }
+
+    /**
+     * (Re)maps the file, reusing the full segments mapped so far
+     */
+    private void map() throws IOException {
+        int count = (int) ((_length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        MappedByteBuffer[] segments = Arrays.copyOf(_segments, count);
+
+        for (int i = Math.max(0, _segments.length - 1); i < count; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = _channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, _length - start));
+        }
+
+        _segments = segments;
+    }
+
+    /**
+     * Indexes the records in the given range of the file
+     *
+     * @return The number of records found
+     */
+    private long index(long from, long to, TLongLongHashMap index, Map<String, Long> collisions) throws IOException {
+        long records = 0;
+        long pos = from;
+
+        while (pos < to) {
+            long end = lineEnd(pos);
+            byte[] key = readKey(pos);
+
+            if (key != null) {
+                long hash = hash(key, 0, key.length);
+                String collidingKey = collisions.isEmpty() ? null : new String(key, UTF8);
+
+                if (collidingKey != null && collisions.containsKey(collidingKey))
+                    collisions.put(collidingKey, pos);
+
+                else
+
+                if (index.containsKey(hash) && !Arrays.equals(readKey(index.get(hash)), key))
+                    collisions.put(new String(key, UTF8), pos);
+
+                else
+                    index.put(hash, pos);
+
+                records++;
+            }
+
+            pos = end + 1;
+        }
+
+        return records;
+    }
+
+    private long offsetOf(String key, byte[] keyBytes) {
+        if (!_collisions.isEmpty()) {
+            Long offset = _collisions.get(key);
+            if (offset != null)
+                return offset;
+        }
+
+        long hash = hash(keyBytes, 0, keyBytes.length);
+        return _index.containsKey(hash) ? _index.get(hash) : -1;
+    }
+
+    /**
+     * Copies the given range of the file to a stream
+     */
+    private void copy(long from, long to, OutputStream out) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(to - from, 1 << 16)];
+
+        while (from < to) {
+            ByteBuffer segment = _segments[(int) (from >>> SEGMENT_BITS)].duplicate();
+            segment.position((int) (from & SEGMENT_MASK));
+
+            int len = (int) Math.min(Math.min(to - from, buffer.length), segment.remaining());
+            segment.get(buffer, 0, len);
+            out.write(buffer, 0, len);
+
+            from += len;
+        }
+    }
+
+    private byte byteAt(long pos) {
+        return _segments[(int) (pos >>> SEGMENT_BITS)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    private long lineEnd(long pos) {
+        while (pos < _length && byteAt(pos) != '\n')
+            pos++;
+
+        return pos;
+    }
+
+    /**
+     * Reads the (trimmed) key of the record at the given offset
+     *
+     * @return The key bytes, or null for blank lines
+     * @throws IOException Thrown if the line is not a valid record
+     */
+    private byte[] readKey(long offset) throws IOException {
+        long end = lineEnd(offset);
+        long tab = offset;
+        while (tab < end && byteAt(tab) != '\t')
+            tab++;
+
+        long start = offset;
+        while (start < tab && (byteAt(start) & 0xff) <= ' ')
+            start++;
+
+        long keyEnd = tab;
+        while (keyEnd > start && (byteAt(keyEnd - 1) & 0xff) <= ' ')
+            keyEnd--;
+
+        if (tab == end) {
+            if (start == keyEnd) return null;
+            throw new IOException(String.format("Invalid cache file format (%s, offset %d)", _file, offset));
+        }
+
+        byte[] key = new byte[(int) (keyEnd - start)];
+        for (int i = 0; i < key.length; i++)
+            key[i] = byteAt(start + i);
+
+        return key;
+    }
+
+    private String[] readRecord(long offset) {
+        long end = lineEnd(offset);
+        byte[] line = new byte[(int) (end - offset)];
+        for (int i = 0; i < line.length; i++)
+            line[i] = byteAt(offset + i);
+
+        String[] parts = new String(line, UTF8).split("\t");
+        String[] record = (parts.length >= 2) ? parts : new String[] { parts[0], "" };
+        record[0] = record[0].trim();
+        record[1] = record[1].trim();
+
+        return record;
+    }
+
+    private boolean needsCompaction() {
+        _lock.readLock().lock();
+        try {
+            return _records > COMPACTION_MIN_RECORDS && _records > 2L * (_index.size() + _collisions.size());
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (_compactionScheduled) return;
+        _compactionScheduled = true;
+
+        getBackgroundExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    synchronized (openStores) {
+                        if (_refCount == 0) return;
+                    }
+                    compact();
+                }
+                catch (Exception e) {
+                    logger.log(Level.WARNING, "Cannot compact " + _file, e);
+                }
+                finally {
+                    _compactionScheduled = false;
+                }
+            }
+        });
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private void saveIndex() throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_indexFile), 1 << 16));
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(_length);
+            out.writeLong(_file.lastModified());
+            out.writeLong(_records);
+
+            out.writeInt(_index.size());
+            for (TLongLongIterator it = _index.iterator(); it.hasNext(); ) {
+                it.advance();
+                out.writeLong(it.key());
+                out.writeLong(it.value());
+            }
+
+            out.writeInt(_collisions.size());
+            for (Map.Entry<String, Long> entry : _collisions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+        catch (IOException e) {
+            out.close();
+            _indexFile.delete();
+            throw e;
+        }
+
+        out.close();
+    }
+
+    /**
+     * Loads the index saved when the store was last closed, if it matches the file
+     *
+     * @return True if the index was loaded, False if the file needs to be indexed
+     */
+    private boolean loadIndex() throws IOException {
+        if (!_indexFile.exists()) return false;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_indexFile), 1 << 16));
+        try {
+            if (in.readInt() != INDEX_MAGIC || in.readLong() != _length || in.readLong() != _file.lastModified())
+                return false;
+
+            _records = in.readLong();
+
+            int size = in.readInt();
+            TLongLongHashMap index = new TLongLongHashMap(size);
+            for (int i = 0; i < size; i++)
+                index.put(in.readLong(), in.readLong());
+
+            size = in.readInt();
+            Map<String, Long> collisions = new HashMap<String, Long>();
+            for (int i = 0; i < size; i++)
+                collisions.put(in.readUTF(), in.readLong());
+
+            _index = index;
+            _collisions = collisions;
+
+            return true;
+        }
+        catch (IOException e) {
+            logger.log(Level.FINE, "Ignoring the unreadable index " + _indexFile, e);
+            return false;
+        }
+        finally {
+            in.close();
+            // the saved index is only valid until the file changes
+            if (!_readOnly)
+                _indexFile.delete();
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * 64 bit FNV-1a hash
+     */
+    static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset, iMax = offset + length; i < iMax; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static synchronized ScheduledExecutorService getBackgroundExecutor() {
+        if (background == null)
+            background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "attribute-store");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        return background;
+    }
+}
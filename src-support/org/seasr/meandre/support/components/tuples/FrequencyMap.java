@@ -43,20 +43,29 @@
 package org.seasr.meandre.support.components.tuples;
 
 
+import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntIterator;
+
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.PriorityQueue;
 
 //
 // a work in progress
 // used for twitter stuff
 //
+// counts are kept in a primitive open-addressing map (no Integer per increment);
+// use topEntries(n) when only the most frequent items are needed, and
+// SpaceSavingFrequencyMap when the set of keys is unbounded
+//
 
 public class FrequencyMap<T> {
 
-	Map<T,Integer> map = new HashMap<T,Integer>();
+	TObjectIntHashMap<T> map = new TObjectIntHashMap<T>();
 	int maxCount = 0;
 	T mfKey; // mostFrequentKey
 	
@@ -65,9 +74,13 @@ public class FrequencyMap<T> {
 		
 	}
 	
-	private void add(T key, int value)
+	public FrequencyMap(int initialCapacity)
+	{
+		map = new TObjectIntHashMap<T>(initialCapacity);
+	}
+	
+	private void put(T key, int value)
 	{
-		this.add(key);
 		map.put(key, value);
 		
 		if (value > maxCount) {
@@ -78,22 +91,22 @@ public class FrequencyMap<T> {
 	
 	public void add(T key)
 	{
-		Integer value = map.get(key);
-
-		if (value == null) {
-			value = new Integer(0);
-		}
-		value = value+1;
-		
-		
-		map.put(key,value);
-		
+		add(key, 1);
+	}
+	
+	public void add(T key, int count)
+	{
+		int value = map.adjustOrPutValue(key, count, count);
 		
-		if (value> maxCount) {
+		if (value > maxCount) {
 			maxCount = value;
 			mfKey = key;
 		}
-		
+	}
+	
+	public int getCount(T key)
+	{
+		return map.get(key);
 	}
 	
 	public int size()
@@ -105,6 +118,7 @@ public class FrequencyMap<T> {
 	{
 		map.clear();
 		maxCount = 0;
+		mfKey = null;
 	}
 	
 	public T getMostFrequentItem()
@@ -142,16 +156,16 @@ public class FrequencyMap<T> {
 		List<Map.Entry<T, Integer>> old = entries.subList(size, entries.size());
 		
 		// clear it all
-		map.clear();
+		this.clear();
 		
 		for (Map.Entry<T, Integer> e : sub) {
 			Integer oldV = e.getValue();
 			
 			if (defaultValue == 0) {
-				this.add(e.getKey(), oldV);
+				this.put(e.getKey(), oldV);
 			}
 			else {
-				this.add(e.getKey(), defaultValue);
+				this.put(e.getKey(), defaultValue);
 			}
 			
 		}
@@ -166,20 +180,62 @@ public class FrequencyMap<T> {
 	public List<Map.Entry<T, Integer>> sortedEntries()
 	{
 		List<Map.Entry<T, Integer>> sortedEntries = 
-			new ArrayList<Map.Entry<T, Integer>>(map.entrySet());
-
-       // Sort the list using an anonymous inner class, descending order
-       java.util.Collections.sort(sortedEntries, new Comparator<Map.Entry<T, Integer>>(){
-         public int compare(Map.Entry<T, Integer> entry0, 
-        		            Map.Entry<T, Integer> entry1)
-         {
-        	 int v0 = entry0.getValue();
-        	 int v1 = entry1.getValue();
-        	 return v1 - v0; // descending
-          }
-      });
-    
-      return sortedEntries;
+			new ArrayList<Map.Entry<T, Integer>>(map.size());
+		
+		for (TObjectIntIterator<T> it = map.iterator(); it.hasNext(); ) {
+			it.advance();
+			sortedEntries.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(it.key(), it.value()));
+		}
+		
+		Collections.sort(sortedEntries, FrequencyMap.<T>descendingComparator());
+		
+		return sortedEntries;
+	}
+	
+	//
+	// the N most frequent entries, most frequent first
+	// uses a bounded heap, so only N entries are ever allocated and sorted
+	//
+	public List<Map.Entry<T, Integer>> topEntries(int n)
+	{
+		if (n <= 0) 
+			return new ArrayList<Map.Entry<T, Integer>>(0);
+		
+		Comparator<Map.Entry<T, Integer>> descending = FrequencyMap.<T>descendingComparator();
+		
+		// min-heap of the best n seen so far (head is the smallest)
+		PriorityQueue<Map.Entry<T, Integer>> heap = 
+			new PriorityQueue<Map.Entry<T, Integer>>(Math.min(n, map.size()) + 1, Collections.reverseOrder(descending));
+		
+		for (TObjectIntIterator<T> it = map.iterator(); it.hasNext(); ) {
+			it.advance();
+			int value = it.value();
+			
+			if (heap.size() < n) 
+				heap.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(it.key(), value));
+			
+			else if (value > heap.peek().getValue()) {
+				heap.poll();
+				heap.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(it.key(), value));
+			}
+		}
+		
+		List<Map.Entry<T, Integer>> top = new ArrayList<Map.Entry<T, Integer>>(heap);
+		Collections.sort(top, descending);
+		
+		return top;
+	}
+	
+	static <T> Comparator<Map.Entry<T, Integer>> descendingComparator()
+	{
+		return new Comparator<Map.Entry<T, Integer>>() {
+			public int compare(Map.Entry<T, Integer> entry0, Map.Entry<T, Integer> entry1)
+			{
+				int v0 = entry0.getValue();
+				int v1 = entry1.getValue();
+				return (v1 < v0) ? -1 : ((v1 == v0) ? 0 : 1); // descending
+			}
+		};
 	}
 	
 }
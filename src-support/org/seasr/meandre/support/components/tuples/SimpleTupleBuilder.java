@@ -0,0 +1,139 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import org.seasr.datatypes.core.BasicDataTypes.Strings;
+
+/**
+ * An output SimpleTuple whose values are written straight into a Strings.Builder,
+ * so convert() does not have to copy an intermediate String[].
+ *
+ * As with SimpleTuple, values carry over from one convert() to the next; fields that
+ * were never set are emitted as empty strings (rather than being dropped).
+ */
+public class SimpleTupleBuilder extends SimpleTuple {
+
+    protected Strings.Builder builder;
+
+    public SimpleTupleBuilder(SimpleTuplePeer peer)
+    {
+        this.peer = peer;
+        this.builder = Strings.newBuilder();
+
+        for (int i = 0, iMax = peer.size(); i < iMax; i++)
+            builder.addValue("");
+    }
+
+    @Override
+    public void setValues(Strings v)
+    {
+        checkSize(v.getValueCount());
+
+        builder = Strings.newBuilder(v);
+    }
+
+    @Override
+    public void setValues(String[] parts)
+    {
+        checkSize(parts.length);
+
+        for (int i = 0; i < parts.length; i++)
+            setValue(i, parts[i]);
+    }
+
+    @Override
+    public void setValue(int idx, String v)
+    {
+        builder.setValue(idx, (v != null) ? v : "");
+    }
+
+    @Override
+    public void setValue(int idx, int v)
+    {
+        builder.setValue(idx, Integer.toString(v));
+    }
+
+    @Override
+    public void setValue(int idx, double v)
+    {
+        builder.setValue(idx, Double.toString(v));
+    }
+
+    @Override
+    public String getValue(int idx)
+    {
+        return builder.getValue(idx);
+    }
+
+    @Override
+    public Strings convert()
+    {
+        Strings tuple = builder.build();
+
+        // a protobuf builder cannot be reused after build()
+        builder = Strings.newBuilder(tuple);
+
+        return tuple;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, iMax = builder.getValueCount(); i < iMax; i++) {
+            if (i > 0) sb.append(SimpleTuplePeer.TOKEN_DELIM);
+            sb.append(builder.getValue(i));
+        }
+        return sb.toString();
+    }
+
+    protected void checkSize(int size)
+    {
+        if (this.peer.size() != size) {
+            String msg = "unable to force new values into tuple, mismatch in size ";
+            msg += " peer size " + this.peer.size() + "  incoming size " + size;
+
+            throw new RuntimeException(msg);
+        }
+    }
+}
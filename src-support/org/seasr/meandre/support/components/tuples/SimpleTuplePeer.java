@@ -132,6 +132,18 @@ public class SimpleTuplePeer
 		return tuple;
 	}
 
+	// read-only tuple that wraps (rather than copies) the incoming Strings
+	public SimpleTuple createView()
+	{
+		return new SimpleTupleView(this);
+	}
+
+	// output tuple that writes directly into a Strings builder
+	public SimpleTuple createTupleBuilder()
+	{
+		return new SimpleTupleBuilder(this);
+	}
+
 
 	private void init(String[] fieldNames)
 	{
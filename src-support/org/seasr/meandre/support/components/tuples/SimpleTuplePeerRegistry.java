@@ -0,0 +1,174 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.seasr.datatypes.core.BasicDataTypes.Strings;
+
+/**
+ * Process-wide cache of SimpleTuplePeer instances, interned by their list of field names.
+ *
+ * Tuple components receive the same meta tuple over and over; looking the peer up here
+ * turns the per-firing schema setup into a hash lookup instead of building a new field map.
+ * Peers returned by the registry are shared and must be treated as immutable.
+ */
+public class SimpleTuplePeerRegistry {
+
+    /** Safety valve so flows that generate schemas on the fly cannot grow the cache forever */
+    protected static final int MAX_ENTRIES = 4096;
+
+    protected static final ConcurrentMap<List<String>, SimpleTuplePeer> peers =
+        new ConcurrentHashMap<List<String>, SimpleTuplePeer>();
+
+    protected static final ConcurrentMap<DerivedKey, SimpleTuplePeer> derivedPeers =
+        new ConcurrentHashMap<DerivedKey, SimpleTuplePeer>();
+
+    protected SimpleTuplePeerRegistry() {
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the shared peer for the field names in the given meta tuple
+     *
+     * @param meta The meta tuple
+     * @return The peer
+     */
+    public static SimpleTuplePeer getPeer(Strings meta) {
+        // the message's value list is immutable, so it can be used for the lookup without copying
+        SimpleTuplePeer peer = peers.get(meta.getValueList());
+        if (peer != null) return peer;
+
+        return intern(new ArrayList<String>(meta.getValueList()));
+    }
+
+    /**
+     * Returns the shared peer for the given field names
+     *
+     * @param fieldNames The field names
+     * @return The peer
+     */
+    public static SimpleTuplePeer getPeer(String[] fieldNames) {
+        List<String> key = Arrays.asList(fieldNames);
+        SimpleTuplePeer peer = peers.get(key);
+        if (peer != null) return peer;
+
+        return intern(new ArrayList<String>(key));
+    }
+
+    /**
+     * Returns the shared peer made of the fields of 'peer' followed by 'additionalFields'
+     *
+     * @param peer The base peer
+     * @param additionalFields The fields to append
+     * @return The peer
+     */
+    public static SimpleTuplePeer getPeer(SimpleTuplePeer peer, String[] additionalFields) {
+        DerivedKey key = new DerivedKey(peer, additionalFields);
+        SimpleTuplePeer derived = derivedPeers.get(key);
+        if (derived != null) return derived;
+
+        String[] fields = new String[peer.size() + additionalFields.length];
+        System.arraycopy(peer.getFieldNames(), 0, fields, 0, peer.size());
+        System.arraycopy(additionalFields, 0, fields, peer.size(), additionalFields.length);
+
+        derived = getPeer(fields);
+
+        if (derivedPeers.size() >= MAX_ENTRIES)
+            derivedPeers.clear();
+
+        key = new DerivedKey(peer, additionalFields.clone());
+        SimpleTuplePeer existing = derivedPeers.putIfAbsent(key, derived);
+
+        return (existing != null) ? existing : derived;
+    }
+
+    public static void clear() {
+        derivedPeers.clear();
+        peers.clear();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    protected static SimpleTuplePeer intern(List<String> fieldNames) {
+        if (peers.size() >= MAX_ENTRIES)
+            clear();
+
+        SimpleTuplePeer peer = new SimpleTuplePeer(fieldNames.toArray(new String[fieldNames.size()]));
+        SimpleTuplePeer existing = peers.putIfAbsent(fieldNames, peer);
+
+        return (existing != null) ? existing : peer;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    protected static class DerivedKey {
+        private final SimpleTuplePeer peer;
+        private final String[] additionalFields;
+        private final int hashCode;
+
+        DerivedKey(SimpleTuplePeer peer, String[] additionalFields) {
+            this.peer = peer;
+            this.additionalFields = additionalFields;
+            this.hashCode = 31 * System.identityHashCode(peer) + Arrays.hashCode(additionalFields);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DerivedKey)) return false;
+
+            DerivedKey other = (DerivedKey) obj;
+            return peer == other.peer && Arrays.equals(additionalFields, other.additionalFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import org.seasr.datatypes.core.BasicDataTypes.Strings;
+
+/**
+ * A read-only SimpleTuple that wraps an incoming Strings message instead of copying it.
+ *
+ * setValues(Strings) only swaps the wrapped message, values are resolved lazily from it
+ * and convert() hands back the original message.  Create one per component (not per row)
+ * via SimpleTuplePeer.createView() and reuse it across the tuples of a set.
+ */
+public class SimpleTupleView extends SimpleTuple {
+
+    protected Strings source;
+
+    public SimpleTupleView(SimpleTuplePeer peer)
+    {
+        this.peer = peer;
+    }
+
+    @Override
+    public void setValues(Strings v)
+    {
+        this.source = v;
+    }
+
+    @Override
+    public void setValues(String[] parts)
+    {
+        throw new UnsupportedOperationException("read-only tuple view");
+    }
+
+    @Override
+    public void setValue(SimpleTuple copyMe)
+    {
+        throw new UnsupportedOperationException("read-only tuple view");
+    }
+
+    @Override
+    public void setValue(int idx, String v)
+    {
+        throw new UnsupportedOperationException("read-only tuple view");
+    }
+
+    @Override
+    public void setValue(int idx, int v)
+    {
+        throw new UnsupportedOperationException("read-only tuple view");
+    }
+
+    @Override
+    public void setValue(int idx, double v)
+    {
+        throw new UnsupportedOperationException("read-only tuple view");
+    }
+
+    @Override
+    public String getValue(int idx)
+    {
+        return source.getValue(idx);
+    }
+
+    /**
+     * @return The wrapped message (no copy is made)
+     */
+    @Override
+    public Strings convert()
+    {
+        return source;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, iMax = source.getValueCount(); i < iMax; i++) {
+            if (i > 0) sb.append(SimpleTuplePeer.TOKEN_DELIM);
+            sb.append(source.getValue(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,217 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate frequency counter for unbounded streams (the Space-Saving algorithm of
+ * Metwally, Agrawal and El Abbadi).
+ *
+ * At most 'capacity' keys are monitored.  When a new key arrives and the map is full,
+ * the least frequent key is evicted and the newcomer inherits its count (+1).  Every key
+ * whose true frequency exceeds total/capacity is guaranteed to be monitored, and the
+ * reported count over-estimates the true count by at most getError(key).
+ *
+ * The monitored keys live in an array-based min-heap, so each add() is O(log capacity)
+ * and allocates nothing once the map is full.
+ */
+public class SpaceSavingFrequencyMap<T> {
+
+    protected final int capacity;
+
+    protected Object[] keys;
+    protected int[] counts;
+    protected int[] errors;
+    protected int size;
+    protected long total;
+
+    /** key -> (heap position + 1); 0 means "not monitored" */
+    protected TObjectIntHashMap<T> positions;
+
+    public SpaceSavingFrequencyMap(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+
+        this.capacity = capacity;
+        this.keys = new Object[capacity];
+        this.counts = new int[capacity];
+        this.errors = new int[capacity];
+        this.positions = new TObjectIntHashMap<T>(capacity);
+    }
+
+    public void add(T key) {
+        total++;
+
+        int pos = positions.get(key) - 1;
+        if (pos >= 0) {
+            counts[pos]++;
+            siftDown(pos);
+            return;
+        }
+
+        if (size < capacity) {
+            pos = size++;
+            keys[pos] = key;
+            counts[pos] = 1;
+            errors[pos] = 0;
+            positions.put(key, pos + 1);
+            siftUp(pos);
+            return;
+        }
+
+        // replace the least frequent key
+        positions.remove(key(0));
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0]++;
+        positions.put(key, 1);
+        siftDown(0);
+    }
+
+    /**
+     * @return The estimated count of the key (an upper bound), or 0 if the key is not monitored
+     */
+    public int getCount(T key) {
+        int pos = positions.get(key) - 1;
+        return (pos >= 0) ? counts[pos] : 0;
+    }
+
+    /**
+     * @return The maximum over-estimation of the count of the key
+     */
+    public int getError(T key) {
+        int pos = positions.get(key) - 1;
+        return (pos >= 0) ? errors[pos] : 0;
+    }
+
+    /**
+     * @return The number of items added to the map
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            keys[i] = null;
+
+        positions.clear();
+        size = 0;
+        total = 0;
+    }
+
+    public List<Map.Entry<T, Integer>> sortedEntries() {
+        return topEntries(size);
+    }
+
+    /**
+     * @return The n most frequent monitored keys with their estimated counts, most frequent first
+     */
+    public List<Map.Entry<T, Integer>> topEntries(int n) {
+        List<Map.Entry<T, Integer>> entries = new ArrayList<Map.Entry<T, Integer>>(size);
+        for (int i = 0; i < size; i++)
+            entries.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(key(i), counts[i]));
+
+        Collections.sort(entries, FrequencyMap.<T>descendingComparator());
+
+        return (n < entries.size()) ? new ArrayList<Map.Entry<T, Integer>>(entries.subList(0, Math.max(n, 0))) : entries;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    protected T key(int pos) {
+        return (T) keys[pos];
+    }
+
+    protected void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (counts[parent] <= counts[pos]) break;
+
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    protected void siftDown(int pos) {
+        while (true) {
+            int left = 2 * pos + 1;
+            if (left >= size) break;
+
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && counts[right] < counts[left])
+                smallest = right;
+
+            if (counts[pos] <= counts[smallest]) break;
+
+            swap(pos, smallest);
+            pos = smallest;
+        }
+    }
+
+    protected void swap(int i, int j) {
+        Object k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+        int c = counts[i]; counts[i] = counts[j]; counts[j] = c;
+        int e = errors[i]; errors[i] = errors[j]; errors[j] = e;
+
+        positions.put(key(i), i + 1);
+        positions.put(key(j), j + 1);
+    }
+}
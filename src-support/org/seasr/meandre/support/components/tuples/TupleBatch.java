@@ -0,0 +1,478 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import java.util.Arrays;
+
+import org.seasr.datatypes.core.BasicDataTypes.Strings;
+import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
+import org.seasr.datatypes.core.exceptions.UnsupportedDataTypeException;
+
+/**
+ * A columnar batch of tuples sharing a single SimpleTuplePeer schema.
+ *
+ * Each field is stored in a typed column (int[], long[], double[] or String[])
+ * instead of one String[] per row.  A batch created from a StringsArray keeps a
+ * reference to it and only materializes the columns that are actually read, so
+ * components that look at one or two fields never copy the rest of the tuple.
+ */
+public class TupleBatch {
+
+    public enum ColumnType { STRING, INT, LONG, DOUBLE }
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    protected final SimpleTuplePeer peer;
+    protected final ColumnType[] types;
+    protected final Object[] columns;
+
+    protected StringsArray source;
+    protected int size;
+    protected int capacity;
+
+    //--------------------------------------------------------------------------------------------
+
+    public TupleBatch(SimpleTuplePeer peer) {
+        this(peer, null, DEFAULT_CAPACITY);
+    }
+
+    public TupleBatch(SimpleTuplePeer peer, ColumnType[] types) {
+        this(peer, types, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty batch
+     *
+     * @param peer The schema of the tuples
+     * @param types The column types (null means all columns are STRING)
+     * @param capacity The initial number of rows to allocate
+     */
+    public TupleBatch(SimpleTuplePeer peer, ColumnType[] types, int capacity) {
+        this.peer = peer;
+        this.types = checkTypes(peer, types);
+        this.columns = new Object[peer.size()];
+        this.capacity = Math.max(capacity, 1);
+        this.size = 0;
+
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = allocate(this.types[i], this.capacity);
+    }
+
+    /**
+     * Creates a batch backed by the given tuples; columns are materialized on first access
+     *
+     * @param peer The schema of the tuples
+     * @param types The column types (null means all columns are STRING)
+     * @param tuples The tuples
+     */
+    protected TupleBatch(SimpleTuplePeer peer, ColumnType[] types, StringsArray tuples) {
+        this.peer = peer;
+        this.types = checkTypes(peer, types);
+        this.columns = new Object[peer.size()];
+        this.source = tuples;
+        this.size = tuples.getValueCount();
+        this.capacity = size;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Wraps a StringsArray of tuples into a batch without copying any values
+     *
+     * @param peer The schema of the tuples
+     * @param tuples The tuples
+     * @param types The column types (null means all columns are STRING)
+     * @return The batch
+     */
+    public static TupleBatch wrap(SimpleTuplePeer peer, StringsArray tuples, ColumnType[] types) {
+        return new TupleBatch(peer, types, tuples);
+    }
+
+    public static TupleBatch wrap(SimpleTuplePeer peer, StringsArray tuples) {
+        return wrap(peer, tuples, null);
+    }
+
+    /**
+     * Attempts to convert the given data to a TupleBatch
+     *
+     * @param data The data (a TupleBatch or a StringsArray)
+     * @param peer The schema to use if the data is a StringsArray
+     * @return The batch
+     * @throws UnsupportedDataTypeException Thrown if the data is in an unsupported format
+     */
+    public static TupleBatch parse(Object data, SimpleTuplePeer peer) throws UnsupportedDataTypeException {
+        if (data == null)
+            return null;
+
+        if (data instanceof TupleBatch)
+            return (TupleBatch) data;
+
+        if (data instanceof StringsArray)
+            return wrap(peer, (StringsArray) data);
+
+        throw new UnsupportedDataTypeException(data.getClass().getName());
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    public SimpleTuplePeer getPeer() {
+        return peer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ColumnType getColumnType(int col) {
+        return types[col];
+    }
+
+    public String getString(int row, int col) {
+        checkRow(row);
+
+        switch (types[col]) {
+            case INT:    return Integer.toString(((int[]) column(col))[row]);
+            case LONG:   return Long.toString(((long[]) column(col))[row]);
+            case DOUBLE: return Double.toString(((double[]) column(col))[row]);
+            default:     return ((String[]) column(col))[row];
+        }
+    }
+
+    public int getInt(int row, int col) {
+        checkRow(row);
+
+        switch (types[col]) {
+            case INT:    return ((int[]) column(col))[row];
+            case LONG:   return (int) ((long[]) column(col))[row];
+            case DOUBLE: return (int) ((double[]) column(col))[row];
+            default:     return Integer.parseInt(((String[]) column(col))[row]);
+        }
+    }
+
+    public long getLong(int row, int col) {
+        checkRow(row);
+
+        switch (types[col]) {
+            case INT:    return ((int[]) column(col))[row];
+            case LONG:   return ((long[]) column(col))[row];
+            case DOUBLE: return (long) ((double[]) column(col))[row];
+            default:     return Long.parseLong(((String[]) column(col))[row]);
+        }
+    }
+
+    public double getDouble(int row, int col) {
+        checkRow(row);
+
+        switch (types[col]) {
+            case INT:    return ((int[]) column(col))[row];
+            case LONG:   return ((long[]) column(col))[row];
+            case DOUBLE: return ((double[]) column(col))[row];
+            default:     return Double.parseDouble(((String[]) column(col))[row]);
+        }
+    }
+
+    /**
+     * Returns the backing array of a STRING column (only the first size() entries are valid)
+     */
+    public String[] getStringColumn(int col) {
+        return (String[]) typedColumn(col, ColumnType.STRING);
+    }
+
+    /**
+     * Returns the backing array of an INT column (only the first size() entries are valid)
+     */
+    public int[] getIntColumn(int col) {
+        return (int[]) typedColumn(col, ColumnType.INT);
+    }
+
+    /**
+     * Returns the backing array of a LONG column (only the first size() entries are valid)
+     */
+    public long[] getLongColumn(int col) {
+        return (long[]) typedColumn(col, ColumnType.LONG);
+    }
+
+    /**
+     * Returns the backing array of a DOUBLE column (only the first size() entries are valid)
+     */
+    public double[] getDoubleColumn(int col) {
+        return (double[]) typedColumn(col, ColumnType.DOUBLE);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Appends an empty row to the batch
+     *
+     * @return The index of the new row
+     */
+    public int addRow() {
+        detach();
+
+        if (size == capacity)
+            grow(capacity + (capacity >> 1) + 1);
+
+        return size++;
+    }
+
+    /**
+     * Appends a tuple to the batch, converting values to the column types
+     *
+     * @param tuple The tuple
+     * @return The index of the new row
+     */
+    public int addRow(Strings tuple) {
+        if (tuple.getValueCount() != types.length)
+            throw new RuntimeException("unable to add tuple to batch, mismatch in size " +
+                    " peer size " + types.length + "  incoming size " + tuple.getValueCount());
+
+        int row = addRow();
+        for (int col = 0; col < types.length; col++)
+            setString(row, col, tuple.getValue(col));
+
+        return row;
+    }
+
+    public int addRow(SimpleTuple tuple) {
+        int row = addRow();
+        for (int col = 0; col < types.length; col++)
+            setString(row, col, tuple.getValue(col));
+
+        return row;
+    }
+
+    public void setString(int row, int col, String value) {
+        checkWritable(row);
+
+        switch (types[col]) {
+            case INT:    ((int[]) columns[col])[row] = Integer.parseInt(value); break;
+            case LONG:   ((long[]) columns[col])[row] = Long.parseLong(value); break;
+            case DOUBLE: ((double[]) columns[col])[row] = Double.parseDouble(value); break;
+            default:     ((String[]) columns[col])[row] = value; break;
+        }
+    }
+
+    public void setInt(int row, int col, int value) {
+        checkWritable(row);
+
+        switch (types[col]) {
+            case INT:    ((int[]) columns[col])[row] = value; break;
+            case LONG:   ((long[]) columns[col])[row] = value; break;
+            case DOUBLE: ((double[]) columns[col])[row] = value; break;
+            default:     ((String[]) columns[col])[row] = Integer.toString(value); break;
+        }
+    }
+
+    public void setLong(int row, int col, long value) {
+        checkWritable(row);
+
+        switch (types[col]) {
+            case INT:    ((int[]) columns[col])[row] = (int) value; break;
+            case LONG:   ((long[]) columns[col])[row] = value; break;
+            case DOUBLE: ((double[]) columns[col])[row] = value; break;
+            default:     ((String[]) columns[col])[row] = Long.toString(value); break;
+        }
+    }
+
+    public void setDouble(int row, int col, double value) {
+        checkWritable(row);
+
+        switch (types[col]) {
+            case INT:    ((int[]) columns[col])[row] = (int) value; break;
+            case LONG:   ((long[]) columns[col])[row] = (long) value; break;
+            case DOUBLE: ((double[]) columns[col])[row] = value; break;
+            default:     ((String[]) columns[col])[row] = Double.toString(value); break;
+        }
+    }
+
+    /**
+     * Removes all the rows; the allocated columns are kept so the batch can be refilled
+     */
+    public void clear() {
+        if (source != null) {
+            source = null;
+            for (int i = 0; i < columns.length; i++)
+                columns[i] = allocate(types[i], capacity);
+        }
+        else
+            for (int i = 0; i < columns.length; i++)
+                if (types[i] == ColumnType.STRING)
+                    Arrays.fill((String[]) columns[i], 0, size, null);
+
+        size = 0;
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a row as a Strings tuple; rows of a wrapped StringsArray are returned as-is
+     *
+     * @param row The row index
+     * @return The tuple
+     */
+    public Strings getRow(int row) {
+        checkRow(row);
+
+        if (source != null)
+            return source.getValue(row);
+
+        Strings.Builder builder = Strings.newBuilder();
+        for (int col = 0; col < types.length; col++) {
+            String value = getString(row, col);
+            builder.addValue(value != null ? value : "");
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Copies a row into the given tuple
+     *
+     * @param row The row index
+     * @param tuple The tuple to fill in (must be created from the same peer)
+     */
+    public void getRow(int row, SimpleTuple tuple) {
+        for (int col = 0; col < types.length; col++)
+            tuple.setValue(col, getString(row, col));
+    }
+
+    /**
+     * Converts the batch to the StringsArray tuple format used on the component ports
+     *
+     * @return The tuples
+     */
+    public StringsArray convert() {
+        if (source != null)
+            return source;
+
+        StringsArray.Builder builder = StringsArray.newBuilder();
+        for (int row = 0; row < size; row++)
+            builder.addValue(getRow(row));
+
+        return builder.build();
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    protected Object column(int col) {
+        Object column = columns[col];
+        if (column == null) {
+            // materialize the column from the wrapped tuples
+            column = allocate(types[col], size);
+            columns[col] = column;
+
+            for (int row = 0; row < size; row++)
+                setValue(column, types[col], row, source.getValue(row).getValue(col));
+        }
+
+        return column;
+    }
+
+    protected Object typedColumn(int col, ColumnType type) {
+        if (types[col] != type)
+            throw new IllegalArgumentException(String.format("Column '%s' is of type %s, not %s",
+                    peer.getFieldNameForIndex(col), types[col], type));
+
+        return column(col);
+    }
+
+    protected void detach() {
+        if (source == null) return;
+
+        for (int col = 0; col < columns.length; col++)
+            column(col);
+
+        source = null;
+    }
+
+    protected void grow(int newCapacity) {
+        for (int col = 0; col < columns.length; col++) {
+            Object newColumn = allocate(types[col], newCapacity);
+            System.arraycopy(columns[col], 0, newColumn, 0, size);
+            columns[col] = newColumn;
+        }
+
+        capacity = newCapacity;
+    }
+
+    protected void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+
+    protected void checkWritable(int row) {
+        detach();
+        checkRow(row);
+    }
+
+    protected static void setValue(Object column, ColumnType type, int row, String value) {
+        switch (type) {
+            case INT:    ((int[]) column)[row] = Integer.parseInt(value); break;
+            case LONG:   ((long[]) column)[row] = Long.parseLong(value); break;
+            case DOUBLE: ((double[]) column)[row] = Double.parseDouble(value); break;
+            default:     ((String[]) column)[row] = value; break;
+        }
+    }
+
+    protected static Object allocate(ColumnType type, int capacity) {
+        switch (type) {
+            case INT:    return new int[capacity];
+            case LONG:   return new long[capacity];
+            case DOUBLE: return new double[capacity];
+            default:     return new String[capacity];
+        }
+    }
+
+    protected static ColumnType[] checkTypes(SimpleTuplePeer peer, ColumnType[] types) {
+        if (types == null) {
+            types = new ColumnType[peer.size()];
+            for (int i = 0; i < types.length; i++)
+                types[i] = ColumnType.STRING;
+        }
+
+        if (types.length != peer.size())
+            throw new RuntimeException("invalid batch, " + types.length + " column types for " + peer.size() + " fields");
+
+        return types;
+    }
+}
@@ -0,0 +1,366 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+package org.seasr.meandre.support.components.tuples;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * In-memory 'SELECT keys, COUNT(*), SUM(x), MIN(x), MAX(x), AVG(x) ... GROUP BY keys' over a TupleBatch.
+ *
+ * Large batches are split into contiguous row ranges that are grouped concurrently
+ * (one hash table per shard) and the per-shard groups are then merged.
+ * Group keys hash all of their values positionally, so permuted keys do not collide.
+ */
+public class TupleGroupBy {
+
+    public enum Function { SUM, MIN, MAX, AVG }
+
+    /** Batches smaller than this are grouped on the calling thread */
+    public static final int MIN_ROWS_PER_SHARD = 10000;
+
+    protected final int[] keyFields;
+    protected final boolean[] lowercase;
+    protected final boolean[] trim;
+    protected final Function[] functions;
+    protected final int[] aggregateFields;
+    protected final int numThreads;
+
+    protected ExecutorService executor;
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * @param keyFields The indices of the fields to group by
+     * @param lowercase Whether to lowercase the corresponding key field (may be null)
+     * @param trim Whether to trim the corresponding key field (may be null)
+     * @param functions The aggregate functions to compute (may be null)
+     * @param aggregateFields The indices of the (numeric) fields the aggregate functions apply to (may be null)
+     * @param numThreads The number of threads to use (<= 0 means the number of available processors)
+     */
+    public TupleGroupBy(int[] keyFields, boolean[] lowercase, boolean[] trim,
+                        Function[] functions, int[] aggregateFields, int numThreads) {
+        this.keyFields = keyFields;
+        this.lowercase = (lowercase != null) ? lowercase : new boolean[keyFields.length];
+        this.trim = (trim != null) ? trim : new boolean[keyFields.length];
+        this.functions = (functions != null) ? functions : new Function[0];
+        this.aggregateFields = (aggregateFields != null) ? aggregateFields : new int[0];
+        this.numThreads = (numThreads > 0) ? numThreads : Runtime.getRuntime().availableProcessors();
+
+        if (this.functions.length != this.aggregateFields.length)
+            throw new IllegalArgumentException("Each aggregate function needs exactly one field");
+    }
+
+    /**
+     * Groups the tuples of the batch
+     *
+     * @param batch The tuples
+     * @return The groups, in no particular order
+     * @throws Exception Thrown if a shard fails (e.g. a non-numeric value in an aggregate field)
+     */
+    public List<Group> groupBy(final TupleBatch batch) throws Exception {
+        final int rows = batch.size();
+
+        // materialize the columns we need up front; shards only read them
+        for (int col : keyFields) batch.column(col);
+        for (int col : aggregateFields) batch.column(col);
+
+        int shards = Math.min(numThreads, rows / MIN_ROWS_PER_SHARD);
+        if (shards <= 1)
+            return new ArrayList<Group>(groupRange(batch, 0, rows).values());
+
+        int shardSize = (rows + shards - 1) / shards;
+        List<Future<Map<GroupKey, Group>>> futures = new ArrayList<Future<Map<GroupKey, Group>>>(shards);
+
+        for (int start = 0; start < rows; start += shardSize) {
+            final int from = start;
+            final int to = Math.min(start + shardSize, rows);
+
+            futures.add(getExecutor().submit(new Callable<Map<GroupKey, Group>>() {
+                public Map<GroupKey, Group> call() throws Exception {
+                    return groupRange(batch, from, to);
+                }
+            }));
+        }
+
+        Map<GroupKey, Group> merged = null;
+        try {
+            for (Future<Map<GroupKey, Group>> future : futures) {
+                Map<GroupKey, Group> shard = future.get();
+
+                if (merged == null) {
+                    merged = shard;
+                    continue;
+                }
+
+                for (Group group : shard.values()) {
+                    Group existing = merged.get(group.key);
+                    if (existing == null)
+                        merged.put(group.key, group);
+                    else
+                        existing.merge(group);
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            for (Future<Map<GroupKey, Group>> future : futures)
+                future.cancel(true);
+
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        }
+
+        return new ArrayList<Group>(merged.values());
+    }
+
+    /**
+     * Selects the groups with count > threshold, largest count first
+     *
+     * @param groups The groups
+     * @param threshold The count threshold
+     * @param n The maximum number of groups to return (<= 0 for all)
+     * @return The selected groups
+     */
+    public static List<Group> topGroups(List<Group> groups, int threshold, int n) {
+        List<Group> result;
+
+        if (n > 0) {
+            PriorityQueue<Group> heap = new PriorityQueue<Group>(n + 1, Collections.reverseOrder(BY_COUNT_DESC));
+            for (Group group : groups) {
+                if (group.count <= threshold) continue;
+
+                if (heap.size() < n)
+                    heap.add(group);
+                else if (group.count > heap.peek().count) {
+                    heap.poll();
+                    heap.add(group);
+                }
+            }
+            result = new ArrayList<Group>(heap);
+        }
+        else {
+            result = new ArrayList<Group>(groups.size());
+            for (Group group : groups)
+                if (group.count > threshold)
+                    result.add(group);
+        }
+
+        Collections.sort(result, BY_COUNT_DESC);
+
+        return result;
+    }
+
+    /**
+     * @return True if this engine groups on the given key fields and aggregates the given fields
+     */
+    public boolean usesFields(int[] keyFields, int[] aggregateFields) {
+        return Arrays.equals(this.keyFields, keyFields) && Arrays.equals(this.aggregateFields, aggregateFields);
+    }
+
+    public void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    protected Map<GroupKey, Group> groupRange(TupleBatch batch, int from, int to) {
+        Map<GroupKey, Group> groups = new HashMap<GroupKey, Group>();
+
+        for (int row = from; row < to; row++) {
+            String[] values = new String[keyFields.length];
+            for (int i = 0; i < keyFields.length; i++) {
+                String value = batch.getString(row, keyFields[i]);
+
+                if (lowercase[i]) value = value.toLowerCase();
+                if (trim[i]) value = value.trim();
+
+                values[i] = value;
+            }
+
+            GroupKey key = new GroupKey(values);
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(key, functions.length);
+                groups.put(key, group);
+            }
+
+            group.count++;
+
+            for (int i = 0; i < aggregateFields.length; i++) {
+                int col = aggregateFields[i];
+
+                // empty values are treated as missing
+                if (batch.getColumnType(col) == TupleBatch.ColumnType.STRING && batch.getString(row, col).length() == 0)
+                    continue;
+
+                group.add(i, batch.getDouble(row, col));
+            }
+        }
+
+        return groups;
+    }
+
+    protected synchronized ExecutorService getExecutor() {
+        if (executor == null)
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "TupleGroupBy");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        return executor;
+    }
+
+    protected static final Comparator<Group> BY_COUNT_DESC = new Comparator<Group>() {
+        public int compare(Group g1, Group g2) {
+            return (g2.count < g1.count) ? -1 : ((g2.count == g1.count) ? 0 : 1);
+        }
+    };
+
+    //--------------------------------------------------------------------------------------------
+
+    public static class GroupKey {
+        private final String[] values;
+        private final int hashCode;
+
+        public GroupKey(String[] values) {
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof GroupKey)) return false;
+
+            GroupKey other = (GroupKey) obj;
+            return hashCode == other.hashCode && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    public static class Group {
+        protected final GroupKey key;
+        protected long count;
+        protected final long[] n;
+        protected final double[] sum;
+        protected final double[] min;
+        protected final double[] max;
+
+        protected Group(GroupKey key, int numAggregates) {
+            this.key = key;
+            this.n = new long[numAggregates];
+            this.sum = new double[numAggregates];
+            this.min = new double[numAggregates];
+            this.max = new double[numAggregates];
+
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        protected void add(int i, double value) {
+            n[i]++;
+            sum[i] += value;
+            if (value < min[i]) min[i] = value;
+            if (value > max[i]) max[i] = value;
+        }
+
+        protected void merge(Group other) {
+            count += other.count;
+
+            for (int i = 0; i < n.length; i++) {
+                n[i] += other.n[i];
+                sum[i] += other.sum[i];
+                if (other.min[i] < min[i]) min[i] = other.min[i];
+                if (other.max[i] > max[i]) max[i] = other.max[i];
+            }
+        }
+
+        public String[] getKeyValues() {
+            return key.values;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The value of the i-th aggregate, or NaN if the group had no values for its field
+         */
+        public double getAggregate(int i, Function function) {
+            if (n[i] == 0) return Double.NaN;
+
+            switch (function) {
+                case SUM: return sum[i];
+                case MIN: return min[i];
+                case MAX: return max[i];
+                default:  return sum[i] / n[i];
+            }
+        }
+    }
+}
@@ -108,14 +108,7 @@ public class TupleUtilities {
 			freqMap.add(value);
 		}
 
-		List<Map.Entry<String, Integer>> sortedEntries = freqMap.sortedEntries();
-		// return sortedEntries;
-
-		List<Map.Entry<String, Integer>> output = new ArrayList<Map.Entry<String, Integer>>();
-		for (int i = 0; i < sortedEntries.size() && i < N; i++) {
-			output.add(sortedEntries.get(i));
-		}
-		return output;
+		return freqMap.topEntries(N);
 
 
 		/*
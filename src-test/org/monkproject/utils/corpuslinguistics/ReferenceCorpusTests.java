@@ -0,0 +1,136 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.monkproject.utils.corpuslinguistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks the reference corpus against the word count maps it replaces.
+ */
+public class ReferenceCorpusTests {
+
+    @Test
+    public void testCountsMatchMap() {
+        String[] words = { "the", "cat", "sat", "on", "mat" };
+        int[] counts = { 10, 2, 1, 3, 2 };
+
+        ReferenceCorpus corpus = ReferenceCorpus.forCounts(words, counts);
+        Map<String, Integer> map = toMap(words, counts);
+
+        assertEquals(map.size(), corpus.getNumWords());
+        assertEquals(18, corpus.getSize());
+
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            int i = corpus.indexOf(entry.getKey());
+            assertEquals(entry.getKey(), corpus.getWord(i));
+            assertEquals(entry.getValue().intValue(), corpus.getCount(i));
+            assertEquals(entry.getValue().intValue(), corpus.getCount(entry.getKey()));
+        }
+
+        assertEquals(-1, corpus.indexOf("dog"));
+        assertEquals(0, corpus.getCount("dog"));
+    }
+
+    @Test
+    public void testDuplicateWordsKeepLastCount() {
+        String[] words = { "a", "b", "a", "c", "b" };
+        int[] counts = { 1, 2, 3, 4, 5 };
+
+        ReferenceCorpus corpus = ReferenceCorpus.forCounts(words, counts);
+        Map<String, Integer> map = toMap(words, counts);
+
+        assertEquals(map.size(), corpus.getNumWords());
+        assertEquals(3 + 5 + 4, corpus.getSize());
+
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getKey(), corpus.getWord(i));
+            assertEquals(entry.getValue().intValue(), corpus.getCount(i++));
+        }
+
+        // the duplicates are collapsed before looking up the cache
+        assertSame(corpus, ReferenceCorpus.forCounts(words.clone(), counts.clone()));
+        assertSame(corpus, ReferenceCorpus.forCounts(new String[] { "a", "b", "c" }, new int[] { 3, 5, 4 }));
+    }
+
+    @Test
+    public void testSameCountsShareCorpus() {
+        String[] words = { "x", "y", "z" };
+        int[] counts = { 7, 8, 9 };
+
+        ReferenceCorpus corpus = ReferenceCorpus.forCounts(words, counts);
+        assertSame(corpus, ReferenceCorpus.forCounts(new String[] { "x", "y", "z" }, new int[] { 7, 8, 9 }));
+        assertSame(corpus, ReferenceCorpus.forCounts(toMap(words, counts)));
+
+        // the arrays are copied, so changing them does not change the corpus
+        counts[0] = 1;
+        assertEquals(7, corpus.getCount("x"));
+        assertNotSame(corpus, ReferenceCorpus.forCounts(words, counts));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMisalignedCounts() {
+        ReferenceCorpus.forCounts(new String[] { "a", "b" }, new int[] { 1 });
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The counts read into a map, the way the reference corpus used to be parsed
+     */
+    private static Map<String, Integer> toMap(String[] words, int[] counts) {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < words.length; i++)
+            map.put(words[i], counts[i]);
+
+        return map;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.abstracts;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextProperties;
+
+/**
+ * Measures the per firing overhead of AbstractExecutableComponent.execute for a
+ * pass-through component driven by a mock context.
+ *
+ * Not a unit test; run it by hand with the test classpath:
+ * <pre>
+ *   java -cp ... org.seasr.meandre.components.abstracts.ExecuteOverheadBenchmark [firings] [debug_level]
+ * </pre>
+ * Bytes per firing are reported when the JVM supports per thread allocation counters.
+ *
+ * This is a plain main() loop rather than a JMH benchmark: JMH needs Java 6+ and its annotation
+ * processor, while this Ant build compiles for Java 5 against the jars in lib. The loop is warmed
+ * up by the first rounds. The mock context is a reflective proxy (the Meandre core interfaces are
+ * only available as a jar at run time), so each round also times the bare executeCallBack through
+ * the same proxy, and the difference is reported as the cost of execute() itself.
+ */
+public class ExecuteOverheadBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static class PassThrough extends AbstractExecutableComponent {
+
+        @Override
+        public void initializeCallBack(ComponentContextProperties ccp) throws Exception {
+        }
+
+        @Override
+        public void executeCallBack(ComponentContext cc) throws Exception {
+            cc.pushDataComponentToOutput("out", cc.getDataComponentFromInput("in"));
+        }
+
+        @Override
+        public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int firings = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        String debugLevel = (args.length > 1) ? args[1] : "info";
+
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(AbstractExecutableComponent.PROP_DEBUG_LEVEL, debugLevel);
+        props.put(AbstractExecutableComponent.PROP_IGNORE_ERRORS, "false");
+
+        ComponentContext cc = mockContext(props, "token");
+        PassThrough component = new PassThrough();
+        component.initialize(cc);
+
+        AllocationCounter allocations = AllocationCounter.create();
+
+        System.out.println(String.format("%d firings per round, debug level %s", firings, debugLevel));
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytesBefore = allocations.currentThreadBytes();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < firings; i++)
+                component.execute(cc);
+
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocations.currentThreadBytes() - bytesBefore;
+
+            // the same work without the framework, to take the cost of the mock context out
+            long baseBytesBefore = allocations.currentThreadBytes();
+            long baseStart = System.nanoTime();
+
+            for (int i = 0; i < firings; i++)
+                component.executeCallBack(cc);
+
+            long baseElapsed = System.nanoTime() - baseStart;
+            long baseBytes = allocations.currentThreadBytes() - baseBytesBefore;
+
+            String timing = String.format("round %d: %.1f ns/firing (callback alone: %.1f, overhead: %.1f)",
+                    round, (double) elapsed / firings, (double) baseElapsed / firings,
+                    (double) (elapsed - baseElapsed) / firings);
+
+            if (bytes >= 0 && baseBytes >= 0)
+                System.out.println(String.format("%s, %.1f bytes/firing (overhead: %.1f)",
+                        timing, (double) bytes / firings, (double) (bytes - baseBytes) / firings));
+            else
+                System.out.println(timing);
+        }
+
+        component.dispose(cc);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static ComponentContext mockContext(final Map<String, String> props, final Object token) {
+        final Logger logger = Logger.getLogger(ExecuteOverheadBenchmark.class.getName());
+
+        return (ComponentContext) Proxy.newProxyInstance(ExecuteOverheadBenchmark.class.getClassLoader(),
+                new Class[] { ComponentContext.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+
+                        if (name.equals("getProperty")) return props.get(args[0]);
+                        if (name.equals("getPropertyNames")) return props.keySet().toArray(new String[props.size()]);
+                        if (name.equals("getInputNames")) return new String[] { "in" };
+                        if (name.equals("getOutputNames")) return new String[] { "out", "error" };
+                        if (name.equals("isInputAvailable")) return Boolean.TRUE;
+                        if (name.equals("getDataComponentFromInput")) return token;
+                        if (name.equals("getOutputConsole")) return System.out;
+                        if (name.equals("getLogger")) return logger;
+                        if (name.equals("getRunDirectory")) return System.getProperty("java.io.tmpdir");
+                        if (method.getReturnType() == String.class) return "benchmark/" + name;
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Reads the com.sun.management per thread allocation counter through reflection,
+     * so that the benchmark still runs (timing only) on JVMs that lack it.
+     */
+    private static class AllocationCounter {
+
+        private final ThreadMXBean _threads;
+        private final Method _allocatedBytes;
+
+        private AllocationCounter(ThreadMXBean threads, Method allocatedBytes) {
+            _threads = threads;
+            _allocatedBytes = allocatedBytes;
+        }
+
+        static AllocationCounter create() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            try {
+                Class<?> sunThreads = Class.forName("com.sun.management.ThreadMXBean");
+                if (sunThreads.isInstance(threads))
+                    return new AllocationCounter(threads, sunThreads.getMethod("getThreadAllocatedBytes", long.class));
+            }
+            catch (Exception e) {
+                // not available
+            }
+
+            return new AllocationCounter(threads, null);
+        }
+
+        long currentThreadBytes() {
+            if (_allocatedBytes == null) return -1;
+
+            try {
+                return (Long) _allocatedBytes.invoke(_threads, Thread.currentThread().getId());
+            }
+            catch (Exception e) {
+                return -1;
+            }
+        }
+    }
+}
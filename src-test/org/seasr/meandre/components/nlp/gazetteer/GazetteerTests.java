@@ -0,0 +1,183 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.components.nlp.gazetteer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ontotext.gate.gazetteer.Annotation;
+import com.ontotext.gate.gazetteer.AnnotationReceiver;
+import com.ontotext.gate.gazetteer.StandAloneGaz;
+
+/**
+ * Checks the gazetteer against the StandAloneGaz library it replaces, on the same lists.
+ */
+public class GazetteerTests {
+
+    private File _dir;
+    private File _listsFile;
+
+    @Before
+    public void createLists() throws IOException {
+        _dir = File.createTempFile("gazetteer", "");
+        _dir.delete();
+        _dir.mkdirs();
+
+        _listsFile = write("lists.def", "city.lst:location:city\nperson.lst:person\norg.lst:organization:company:en\n");
+        write("city.lst", "New York\nNew York City\nParis\nSpringfield\n");
+        write("person.lst", "John Smith\nParis\n");
+        write("org.lst", "Acme Corp\nNew York Times\n");
+    }
+
+    @After
+    public void deleteLists() {
+        for (File file : _dir.listFiles())
+            file.delete();
+        _dir.delete();
+    }
+
+    @Test
+    public void testMatchesStandAloneGaz() throws IOException {
+        // the old library never matched an entry at the very start of a text, so none of these start with one
+        String[] texts = {
+                "I met John Smith in New York City last week.",
+                "We read the New York Times and visited Springfield, then Paris.",
+                "Then Acme Corp hired John  Smith (from New York).",
+                "Nothing to see here."
+        };
+
+        Gazetteer gazetteer = Gazetteer.load(_listsFile.getPath());
+        for (String text : texts)
+            assertEquals(annotateWithStandAloneGaz(text), toStrings(gazetteer.annotate(text)));
+    }
+
+    @Test
+    public void testEntryAtStart() throws IOException {
+        assertEquals("[Paris:0-5:location.city, Paris:0-5:person]",
+                Gazetteer.load(_listsFile.getPath()).annotate("Paris is nice.").toString());
+    }
+
+    @Test
+    public void testLongestMatch() throws IOException {
+        Gazetteer gazetteer = Gazetteer.load(_listsFile.getPath());
+
+        assertEquals("[New York City:0-13:location.city]", gazetteer.annotate("New York City").toString());
+        assertEquals("[New York Times:0-14:organization.company.en]", gazetteer.annotate("New York Times").toString());
+        assertEquals("[New York:0-8:location.city]", gazetteer.annotate("New York Town").toString());
+        // matching is case sensitive and never cuts through a token
+        assertEquals("[]", gazetteer.annotate("new york Parisian").toString());
+    }
+
+    @Test
+    public void testSharedUntilListsChange() throws Exception {
+        Gazetteer gazetteer = Gazetteer.load(_listsFile.getPath());
+        assertSame(gazetteer, Gazetteer.load(new File(_dir, "./lists.def").getPath()));
+        assertEquals(8, gazetteer.getEntryCount());
+
+        File list = write("person.lst", "John Smith\nParis\nJane Doe\n");
+        list.setLastModified(list.lastModified() + 2000);
+
+        Gazetteer reloaded = Gazetteer.load(_listsFile.getPath());
+        assertNotSame(gazetteer, reloaded);
+        assertEquals(9, reloaded.getEntryCount());
+        assertEquals("[Jane Doe:4-12:person]", reloaded.annotate("Ask Jane Doe").toString());
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The annotations of the old library, converted the way AdvGazetteerWrapper did (without the null
+     * types), with its offsets (which were shifted by 4) corrected
+     */
+    private List<String> annotateWithStandAloneGaz(String text) throws IOException {
+        final List<String> annotations = new ArrayList<String>();
+
+        StandAloneGaz gaz = new StandAloneGaz();
+        gaz.setListsFile(_listsFile.getPath());
+        gaz.setOutputStatus(false);
+        gaz.init();
+        gaz.execute(new CharArrayReader(text.toCharArray()), new AnnotationReceiver() {
+            public void annotationFound(Annotation annotation) {
+                String[] parts = annotation.toString().split(":");
+                String[] offsets = parts[1].split("-");
+                annotations.add(String.format("%s:%d-%d:%s", parts[0],
+                        Integer.parseInt(offsets[0]) - 4, Integer.parseInt(offsets[1]) - 4,
+                        parts[2].replaceAll(".null", "")));
+            }
+        });
+
+        return annotations;
+    }
+
+    private static List<String> toStrings(List<Gazetteer.Match> matches) {
+        List<String> strings = new ArrayList<String>();
+        for (Gazetteer.Match match : matches)
+            strings.add(match.toString());
+
+        return strings;
+    }
+
+    private File write(String name, String text) throws IOException {
+        File file = new File(_dir, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(text);
+        writer.close();
+
+        return file;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.socialnetworking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks the co-occurrence graph against the sentence window algorithm that
+ * AbstractLinkCreationComponent used before it.
+ */
+public class CooccurrenceGraphTests {
+
+    private static final String[] TYPES = { "person", "location", "organization" };
+
+    @Test
+    public void testMatchesSentenceWindow() {
+        Random random = new Random(1);
+
+        for (int distance : new int[] { 0, 1, 3 }) {
+            List<String[]> occurrences = new ArrayList<String[]>();
+            int sentenceId = 0;
+            for (int i = 0; i < 2000; i++) {
+                sentenceId += random.nextInt(3);
+                occurrences.add(new String[] {
+                        Integer.toString(sentenceId),
+                        TYPES[random.nextInt(TYPES.length)],
+                        "e" + random.nextInt(60) });
+            }
+
+            CooccurrenceGraph graph = new CooccurrenceGraph(distance);
+            for (String[] occurrence : occurrences)
+                graph.add(Integer.parseInt(occurrence[0]), graph.intern(occurrence[1], occurrence[2]));
+
+            assertEquals(sentenceWindow(occurrences, distance), edges(graph.toAdjacency(false)));
+        }
+    }
+
+    @Test
+    public void testNodesAndEdgeOrder() {
+        CooccurrenceGraph graph = new CooccurrenceGraph(1);
+        int c = graph.intern("person", "C");
+        int a = graph.intern("person", "A");
+        int lone = graph.intern("location", "Nowhere");
+        int b = graph.intern("location", "A");
+
+        // same value, different type: different entities
+        assertEquals(4, graph.getEntityCount());
+        assertEquals(a, graph.intern("person", "A"));
+
+        graph.add(0, a);
+        graph.add(0, b);
+        graph.add(0, a);
+        graph.add(1, c);
+        graph.add(5, lone);
+
+        CooccurrenceGraph.Adjacency all = graph.toAdjacency(false);
+        assertEquals(4, all.getNodeCount());
+        assertEquals("C", all.getValue(0));
+
+        CooccurrenceGraph.Adjacency linked = graph.toAdjacency(true);
+        assertEquals(3, linked.getNodeCount());
+        assertEquals(3, linked.getEdgeCount());
+
+        // nodes in first-seen order, every edge once under its lower node, by increasing target
+        for (int n = 0; n < linked.getNodeCount(); n++)
+            for (int e = linked.getEdgeStart(n); e < linked.getEdgeStart(n + 1); e++)
+                assertTrue(linked.getTarget(e) > n && (e == linked.getEdgeStart(n) || linked.getTarget(e) > linked.getTarget(e - 1)));
+
+        Map<String, Integer> edges = edges(linked);
+        // A occurs twice in sentence 0: linked twice to B, and both are within range of C
+        assertEquals(Integer.valueOf(2), edges.get("location:A|person:A"));
+        assertEquals(Integer.valueOf(1), edges.get("location:A|person:C"));
+        assertEquals(Integer.valueOf(1), edges.get("person:A|person:C"));
+    }
+
+    @Test
+    public void testLargeSentenceIds() {
+        // an entity repeated in a sentence is only entered into the window once, whatever the sentence id
+        CooccurrenceGraph graph = new CooccurrenceGraph(1);
+        int a = graph.intern("person", "A");
+        int b = graph.intern("person", "B");
+
+        graph.add(1000, a);
+        graph.add(1000, a);
+        graph.add(1001, b);
+
+        assertEquals(Integer.valueOf(1), edges(graph.toAdjacency(true)).get("person:A|person:B"));
+    }
+
+    @Test
+    public void testClearWindow() {
+        CooccurrenceGraph graph = new CooccurrenceGraph(5);
+        graph.add(0, graph.intern("person", "A"));
+        graph.clearWindow();
+        graph.add(1, graph.intern("person", "B"));
+
+        assertEquals(0, graph.getEdgeCount());
+
+        graph.clear();
+        assertEquals(0, graph.getEntityCount());
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The old algorithm: a window of sentences, each with the set of its entities; every new entity
+     * is linked to all the other entities in the window. The weight of an undirected edge is the sum
+     * of the counts in both directions.
+     */
+    private static Map<String, Integer> sentenceWindow(List<String[]> occurrences, int distance) {
+        LinkedList<Object[]> window = new LinkedList<Object[]>();
+        Map<String, Integer> edges = new TreeMap<String, Integer>();
+
+        for (String[] occurrence : occurrences) {
+            int sentenceId = Integer.parseInt(occurrence[0]);
+            String entity = occurrence[1] + ":" + occurrence[2];
+
+            while (window.size() > 0 && sentenceId - (Integer) window.peek()[0] > distance)
+                window.remove();
+
+            if (window.isEmpty() || (Integer) window.getLast()[0] != sentenceId)
+                window.addLast(new Object[] { sentenceId, new HashSet<String>() });
+
+            for (Object[] sentence : window)
+                for (Object other : (Set<?>) sentence[1]) {
+                    if (other.equals(entity)) continue;
+                    String key = entity.compareTo((String) other) < 0 ? entity + "|" + other : other + "|" + entity;
+                    Integer count = edges.get(key);
+                    edges.put(key, (count == null) ? 1 : count + 1);
+                }
+
+            @SuppressWarnings("unchecked")
+            Set<String> entities = (Set<String>) window.getLast()[1];
+            entities.add(entity);
+        }
+
+        return edges;
+    }
+
+    private static Map<String, Integer> edges(CooccurrenceGraph.Adjacency adjacency) {
+        Map<String, Integer> edges = new TreeMap<String, Integer>();
+        Map<Integer, String> names = new HashMap<Integer, String>();
+        for (int n = 0; n < adjacency.getNodeCount(); n++)
+            names.put(n, adjacency.getType(n) + ":" + adjacency.getValue(n));
+
+        for (int n = 0; n < adjacency.getNodeCount(); n++)
+            for (int e = adjacency.getEdgeStart(n); e < adjacency.getEdgeStart(n + 1); e++) {
+                String source = names.get(n), target = names.get(adjacency.getTarget(e));
+                String key = source.compareTo(target) < 0 ? source + "|" + target : target + "|" + source;
+                edges.put(key, adjacency.getWeight(e));
+            }
+
+        return edges;
+    }
+}
@@ -0,0 +1,176 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.monkproject.utils.CountMapUtils;
+import org.monkproject.utils.corpuslinguistics.Collocation;
+import org.monkproject.utils.corpuslinguistics.Frequency;
+import org.monkproject.utils.corpuslinguistics.ReferenceCorpus;
+
+/**
+ * Checks the aligned comparison against the per word computation DunningLogLikelihood used to do
+ * over the combined sample and reference count maps.
+ */
+public class FrequencyComparisonTests {
+
+    @Test
+    public void testMatchesPerWordLogLikelihood() {
+        Map<String, Number> sample = randomCounts(300, 120, 1);
+        Map<String, Number> reference = randomCounts(500, 400, 2);
+
+        for (int cutoff : new int[] { 0, 1, 2, 5, 50 })
+            checkLogLikelihoods(new FrequencyComparison(sample, reference), sample, reference, cutoff);
+    }
+
+    @Test
+    public void testMatchesPerWordAssociations() {
+        Map<String, Number> sample = randomCounts(300, 120, 3);
+        Map<String, Number> reference = randomCounts(500, 400, 4);
+        int sampleSize = CountMapUtils.getTotalWordCount(sample);
+        int refSize = CountMapUtils.getTotalWordCount(reference);
+
+        FrequencyComparison comparison = new FrequencyComparison(sample, reference);
+        int[] words = comparison.wordsWithCountAtLeast(1);
+
+        for (int measure = Collocation.DICE; measure <= Collocation.Z; measure++) {
+            double[] scores = comparison.associations(measure, words);
+            for (int i = 0; i < words.length; i++) {
+                String word = comparison.getWord(words[i]);
+                double[] expected = Collocation.association(count(sample, word), count(reference, word), sampleSize, refSize);
+                assertEquals(word, expected[measure], scores[i], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedReferenceCorpus() {
+        Map<String, Number> reference = randomCounts(500, 400, 5);
+        ReferenceCorpus corpus = ReferenceCorpus.forCounts(reference);
+        FrequencyComparison comparison = new FrequencyComparison(corpus, randomCounts(300, 120, 6));
+
+        for (long seed = 7; seed < 10; seed++) {
+            Map<String, Number> sample = randomCounts(300, 120, seed);
+            FrequencyComparison next = comparison.withSample(sample);
+
+            assertSame(corpus, next.getReference());
+            checkLogLikelihoods(next, sample, reference, 2);
+        }
+    }
+
+    @Test
+    public void testEmptySample() {
+        Map<String, Number> reference = randomCounts(50, 40, 10);
+        FrequencyComparison comparison = new FrequencyComparison(new HashMap<String, Number>(), reference);
+
+        assertEquals(0, comparison.getSampleSize());
+        assertEquals(reference.size(), comparison.size());
+        checkLogLikelihoods(comparison, new HashMap<String, Number>(), reference, 1);
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static void checkLogLikelihoods(FrequencyComparison comparison,
+            Map<String, Number> sample, Map<String, Number> reference, int cutoff) {
+
+        int sampleSize = CountMapUtils.getTotalWordCount(sample);
+        int refSize = CountMapUtils.getTotalWordCount(reference);
+        assertEquals(sampleSize, comparison.getSampleSize());
+        assertEquals(refSize, comparison.getReferenceSize());
+
+        // the words the old loop over the combined key set kept for this cutoff
+        Set<String> expectedWords = new HashSet<String>();
+        Set<String> combined = new HashSet<String>(sample.keySet());
+        combined.addAll(reference.keySet());
+        for (String word : combined)
+            if (count(sample, word) >= cutoff || count(reference, word) >= cutoff)
+                expectedWords.add(word);
+
+        int[] words = comparison.wordsWithCountAtLeast(cutoff);
+        double[] scores = comparison.logLikelihoods(words);
+
+        Set<String> actualWords = new HashSet<String>();
+        for (int i = 0; i < words.length; i++) {
+            String word = comparison.getWord(words[i]);
+            actualWords.add(word);
+
+            double[] expected = Frequency.logLikelihoodFrequencyComparison(
+                    count(sample, word), count(reference, word), sampleSize, refSize, false);
+
+            assertEquals(word, expected[0], comparison.getSampleCount(words[i]), 0.0);
+            assertEquals(word, expected[1], comparison.getSamplePercent(words[i]), 0.0);
+            assertEquals(word, expected[2], comparison.getReferenceCount(words[i]), 0.0);
+            assertEquals(word, expected[3], comparison.getReferencePercent(words[i]), 0.0);
+            assertEquals(word, expected[4], scores[i], 0.0);
+        }
+
+        assertEquals(words.length, actualWords.size());
+        assertEquals(expectedWords, actualWords);
+    }
+
+    private static int count(Map<String, Number> counts, String word) {
+        Number count = counts.get(word);
+        return (count == null) ? 0 : count.intValue();
+    }
+
+    /** Counts over a vocabulary of w0..w(vocabulary-1), so that sample and reference overlap */
+    private static Map<String, Number> randomCounts(int vocabulary, int numWords, long seed) {
+        Random random = new Random(seed);
+        Map<String, Number> counts = new HashMap<String, Number>();
+
+        for (int i = 0; i < numWords; i++)
+            counts.put("w" + random.nextInt(vocabulary), 1 + random.nextInt(random.nextBoolean() ? 3 : 100));
+
+        return counts;
+    }
+}
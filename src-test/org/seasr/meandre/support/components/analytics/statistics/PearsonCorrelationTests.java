@@ -0,0 +1,232 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Checks the block computation against the correlation of every pair computed on its own,
+ * the way the stat_pmcc_samp queries of ComputePearson and TuplePearsonAnalysis did.
+ */
+public class PearsonCorrelationTests {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testAllPairsOverAllTimes() throws Exception {
+        double[][] series = randomSeries(150, 40, 1.0, 1);
+        series[7] = new double[40];   // constant series are skipped
+
+        List<double[]> pairs = allPairs(new PearsonCorrelation(series), -1.0, null);
+
+        int expected = 0;
+        for (int s1 = 0; s1 < series.length; s1++)
+            for (int s2 = s1 + 1; s2 < series.length; s2++)
+                if (s1 != 7 && s2 != 7) {
+                    double[] pair = pairs.get(expected++);
+                    assertEquals(s1, (int) pair[0]);
+                    assertEquals(s2, (int) pair[1]);
+                    assertEquals(pearson(series[s1], series[s2], null, null), pair[2], EPSILON);
+                }
+
+        assertEquals(expected, pairs.size());
+    }
+
+    @Test
+    public void testAllPairsOverPresentTimes() throws Exception {
+        double[][] series = randomSeries(100, 30, 0.3, 2);
+        boolean[][] present = new boolean[series.length][30];
+        for (int s = 0; s < series.length; s++)
+            for (int t = 0; t < 30; t++)
+                present[s][t] = series[s][t] != 0.0;
+
+        // constant where present, but not over the times of the other series
+        series[3] = new double[30];
+        present[3] = new boolean[30];
+        series[3][4] = series[3][9] = 2.0;
+        present[3][4] = present[3][9] = true;
+
+        PearsonCorrelation pearson = new PearsonCorrelation(series, present);
+        List<double[]> pairs = allPairs(pearson, -1.0, null);
+
+        int expected = 0;
+        for (int s1 = 0; s1 < series.length; s1++)
+            for (int s2 = s1 + 1; s2 < series.length; s2++) {
+                double r = pearson(series[s1], series[s2], present[s1], present[s2]);
+                if (Double.isNaN(r)) continue;
+
+                double[] pair = pairs.get(expected++);
+                assertEquals(s1, (int) pair[0]);
+                assertEquals(s2, (int) pair[1]);
+                assertEquals(r, pair[2], EPSILON);
+                assertEquals(r, pearson.correlation(s1, s2), EPSILON);
+            }
+
+        assertEquals(expected, pairs.size());
+        assertTrue(expected > 0);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        double[][] series = randomSeries(300, 25, 0.5, 3);
+        PearsonCorrelation pearson = new PearsonCorrelation(series);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<double[]> expected = allPairs(pearson, 0.2, null);
+            List<double[]> actual = allPairs(pearson, 0.2, executor);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+                for (int j = 0; j < 3; j++)
+                    assertEquals(expected.get(i)[j], actual.get(i)[j], 0.0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTopK() throws Exception {
+        double[][] series = randomSeries(90, 20, 1.0, 4);
+        final PearsonCorrelation pearson = new PearsonCorrelation(series);
+        final List<double[]> top = new ArrayList<double[]>();
+
+        pearson.topK(3, null, 1, new PearsonCorrelation.Handler() {
+            public void correlation(int series1, int series2, double r) {
+                top.add(new double[] { series1, series2, r });
+            }
+        });
+
+        assertEquals(90 * 3, top.size());
+
+        for (int s = 0; s < series.length; s++) {
+            // the expected top 3 by brute force
+            double[] best = { -2, -2, -2 };
+            for (int other = 0; other < series.length; other++) {
+                if (other == s) continue;
+                double r = pearson(series[s], series[other], null, null);
+                for (int i = 0; i < 3; i++)
+                    if (r > best[i]) {
+                        System.arraycopy(best, i, best, i + 1, 2 - i);
+                        best[i] = r;
+                        break;
+                    }
+            }
+
+            for (int i = 0; i < 3; i++) {
+                double[] pair = top.get(s * 3 + i);
+                assertEquals(s, (int) pair[0]);
+                assertEquals(best[i], pair[2], EPSILON);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static List<double[]> allPairs(PearsonCorrelation pearson, double minCorrelation, ExecutorService executor)
+        throws Exception {
+
+        final List<double[]> pairs = new ArrayList<double[]>();
+        pearson.allPairs(minCorrelation, executor, executor != null ? 3 : 1, new PearsonCorrelation.Handler() {
+            public void correlation(int series1, int series2, double r) {
+                pairs.add(new double[] { series1, series2, r });
+            }
+        });
+
+        return pairs;
+    }
+
+    /**
+     * The sample correlation of two series over the times at which either one is present
+     * (over all times if the presence is not given)
+     */
+    private static double pearson(double[] x, double[] y, boolean[] presentX, boolean[] presentY) {
+        List<double[]> values = new ArrayList<double[]>();
+        for (int i = 0; i < x.length; i++)
+            if (presentX == null || presentX[i] || presentY[i])
+                values.add(new double[] { x[i], y[i] });
+
+        int n = values.size();
+        double meanX = 0, meanY = 0;
+        for (double[] v : values) {
+            meanX += v[0] / n;
+            meanY += v[1] / n;
+        }
+
+        double sxy = 0, sxx = 0, syy = 0;
+        for (double[] v : values) {
+            sxy += (v[0] - meanX) * (v[1] - meanY);
+            sxx += (v[0] - meanX) * (v[0] - meanX);
+            syy += (v[1] - meanY) * (v[1] - meanY);
+        }
+
+        if (sxx < 1e-12 || syy < 1e-12) return Double.NaN;
+        return sxy / Math.sqrt(sxx * syy);
+    }
+
+    /**
+     * Random series of the given length, with each value non-zero with the given probability
+     */
+    private static double[][] randomSeries(int count, int length, double density, long seed) {
+        Random random = new Random(seed);
+        double[][] series = new double[count][length];
+
+        for (int s = 0; s < count; s++)
+            for (int t = 0; t < length; t++)
+                if (random.nextDouble() < density)
+                    series[s][t] = 1 + random.nextInt(1000) * random.nextDouble();
+
+        return series;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.analytics.summarization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.SparseDoubleMatrix2D;
+import cern.colt.matrix.linalg.Algebra;
+import cern.jet.math.Functions;
+
+/**
+ * Checks the CSR implementation against the Colt based iteration HITSSummarizer used before.
+ */
+public class HITSTests {
+
+    private static final double EPSILON = 1e-12;
+
+    @Test
+    public void testMatchesColt() throws Exception {
+        List<List<String>> rows = randomRows(200, 300, 12, 1);
+
+        HITS hits = HITS.fromRows(rows);
+        assertEquals(10, hits.run(10, 0.0, null, 1));
+
+        double[][] expected = coltHits(rows, hits, 10);
+        assertArrayEquals(expected[0], hits.getHubScores(), EPSILON);
+        assertArrayEquals(expected[1], hits.getAuthorityScores(), EPSILON);
+    }
+
+    @Test
+    public void testIncidenceMatrix() {
+        List<List<String>> rows = new ArrayList<List<String>>();
+        rows.add(Arrays.asList("a", "b", "a"));
+        rows.add(new ArrayList<String>());
+        rows.add(Arrays.asList("c", "b"));
+
+        HITS hits = HITS.fromRows(rows);
+        assertEquals(3, hits.getRowCount());
+        assertEquals(3, hits.getColumnCount());
+        // repeated labels in a row count once
+        assertEquals(4, hits.getNonZeroCount());
+        assertEquals("a", hits.getColumnLabel(0));
+        assertEquals("c", hits.getColumnLabel(2));
+    }
+
+    @Test
+    public void testStopsAtEpsilon() throws Exception {
+        HITS hits = HITS.fromRows(randomRows(100, 50, 8, 2));
+
+        int iterations = hits.run(1000, 1e-9, null, 1);
+        double[] hubs = hits.getHubScores().clone();
+
+        assertEquals(iterations, hits.getIterations());
+        assertTrue(iterations < 1000);
+
+        // one more iteration barely changes the scores
+        hits.run(iterations + 1, 0.0, null, 1);
+        assertArrayEquals(hubs, hits.getHubScores(), 1e-8);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        // enough non-zero entries for every iteration to be split
+        List<List<String>> rows = randomRows(20000, 5000, 20, 3);
+
+        HITS sequential = HITS.fromRows(rows);
+        sequential.run(10, 0.0, null, 1);
+
+        HITS parallel = HITS.fromRows(rows);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            parallel.run(10, 0.0, executor, 4);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertArrayEquals(sequential.getHubScores(), parallel.getHubScores(), EPSILON);
+        assertArrayEquals(sequential.getAuthorityScores(), parallel.getAuthorityScores(), EPSILON);
+    }
+
+    @Test
+    public void testTopMatchesStableSort() {
+        Random random = new Random(4);
+        double[] scores = new double[500];
+        for (int i = 0; i < scores.length; i++)
+            scores[i] = random.nextInt(50) / 10.0;
+
+        final double[] s = scores;
+        Integer[] sorted = new Integer[scores.length];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(s[o2], s[o1]);
+            }
+        });
+
+        for (int k : new int[] { 0, 1, 17, 500, 600, -1 }) {
+            int n = (k < 0 || k > scores.length) ? scores.length : k;
+            int[] expected = new int[n];
+            for (int i = 0; i < n; i++)
+                expected[i] = sorted[i];
+
+            assertArrayEquals(expected, HITS.top(scores, k));
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The iteration of the old HITSSummarizer, on a Colt sparse matrix with the same column order
+     */
+    private static double[][] coltHits(List<List<String>> rows, HITS hits, int iterations) {
+        List<String> labels = new ArrayList<String>();
+        for (int c = 0; c < hits.getColumnCount(); c++)
+            labels.add(hits.getColumnLabel(c));
+
+        SparseDoubleMatrix2D w = new SparseDoubleMatrix2D(rows.size(), labels.size());
+        for (int r = 0; r < rows.size(); r++)
+            for (String label : rows.get(r))
+                w.setQuick(r, labels.indexOf(label), 1.0);
+
+        Algebra alg = new Algebra();
+        Functions F = Functions.functions;
+        DoubleMatrix2D wt = alg.transpose(w);
+
+        DoubleMatrix1D cs = new DenseDoubleMatrix1D(w.rows()); cs.assign(1.0);
+        DoubleMatrix1D ts = new DenseDoubleMatrix1D(w.columns()); ts.assign(1.0);
+
+        for (int i = 0; i < iterations; i++) {
+            DoubleMatrix1D ncs = alg.mult(w, ts);
+            ncs.assign(F.mult(1 / Math.sqrt(ncs.zDotProduct(ncs))));
+            cs.assign(ncs);
+            DoubleMatrix1D nts = alg.mult(wt, cs);
+            nts.assign(F.mult(1 / Math.sqrt(nts.zDotProduct(nts))));
+            ts.assign(nts);
+        }
+
+        return new double[][] { cs.toArray(), ts.toArray() };
+    }
+
+    private static List<List<String>> randomRows(int count, int vocabulary, int maxLength, long seed) {
+        Random random = new Random(seed);
+        List<List<String>> rows = new ArrayList<List<String>>(count);
+
+        for (int r = 0; r < count; r++) {
+            List<String> row = new ArrayList<String>();
+            for (int i = 1 + random.nextInt(maxLength); i > 0; i--)
+                row.add("t" + (int) (vocabulary * Math.pow(random.nextDouble(), 2)));
+            rows.add(row);
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,261 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.seasr.datatypes.core.BasicDataTypes;
+import org.seasr.datatypes.core.BasicDataTypesTools;
+import org.seasr.datatypes.core.BasicDataTypes.IntegersMap;
+import org.seasr.datatypes.core.exceptions.UnsupportedDataTypeException;
+
+/**
+ * Checks the accumulated counts against the Hashtable merge the TokenCounterReducer used to do.
+ */
+public class TokenCountAccumulatorTests {
+
+    @Test
+    public void testMatchesHashtableMerge() throws Exception {
+        List<Object> countMaps = randomCountMaps(40, 300, 1);
+        Map<String, Integer> expected = hashtableMerge(countMaps);
+
+        TokenCountAccumulator counts = TokenCountAccumulator.merge(countMaps, null, 1);
+
+        assertEquals(expected, BasicDataTypesTools.IntegerMapToMap(counts.toIntegersMap(false)));
+        assertEquals(expected.size(), counts.size());
+        for (Entry<String, Integer> entry : expected.entrySet())
+            assertEquals(entry.getValue().intValue(), counts.get(entry.getKey()));
+    }
+
+    @Test
+    public void testOrderedByDecreasingCount() throws Exception {
+        List<Object> countMaps = randomCountMaps(20, 200, 2);
+        Map<String, Integer> expected = hashtableMerge(countMaps);
+
+        IntegersMap ordered = TokenCountAccumulator.merge(countMaps, null, 1).toIntegersMap(true);
+        IntegersMap old = BasicDataTypesTools.mapToIntegerMap(expected, true);
+
+        // ties may come out in a different order, but the counts line up position by position
+        assertEquals(old.getKeyCount(), ordered.getKeyCount());
+        for (int i = 0; i < ordered.getKeyCount(); i++) {
+            assertEquals(old.getValue(i).getValue(0), ordered.getValue(i).getValue(0));
+            assertEquals(expected.get(ordered.getKey(i)).intValue(), ordered.getValue(i).getValue(0));
+        }
+    }
+
+    @Test
+    public void testOrderingWithNegativeAndExtremeCounts() {
+        TokenCountAccumulator counts = new TokenCountAccumulator();
+        counts.add("min", Integer.MIN_VALUE);
+        counts.add("neg", -3);
+        counts.add("zero", 0);
+        counts.add("max", Integer.MAX_VALUE);
+        counts.add("one", 1);
+
+        IntegersMap ordered = counts.toIntegersMap(true);
+        String[] keys = { "max", "one", "zero", "neg", "min" };
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(keys[i], ordered.getKey(i));
+    }
+
+    @Test
+    public void testParallelMergeMatchesSequential() throws Exception {
+        List<Object> countMaps = randomCountMaps(64, 500, 3);
+        Map<String, Integer> expected = BasicDataTypesTools.IntegerMapToMap(
+                TokenCountAccumulator.merge(countMaps, null, 1).toIntegersMap(false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int parallelism : new int[] { 2, 3, 4, 7, 100 }) {
+                TokenCountAccumulator counts = TokenCountAccumulator.merge(countMaps, executor, parallelism);
+                assertEquals(expected, BasicDataTypesTools.IntegerMapToMap(counts.toIntegersMap(false)));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelMergePropagatesBadInput() throws Exception {
+        List<Object> countMaps = randomCountMaps(8, 50, 4);
+        countMaps.add("not a count map");
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            TokenCountAccumulator.merge(countMaps, executor, 3);
+            fail("Expected an UnsupportedDataTypeException");
+        }
+        catch (UnsupportedDataTypeException e) {
+            // expected
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRepeatedKeyWithinMapIsSummed() throws Exception {
+        // the old reducer went through a Hashtable, so the last count of a repeated key won
+        IntegersMap.Builder im = IntegersMap.newBuilder();
+        im.addKey("a").addValue(BasicDataTypes.Integers.newBuilder().addValue(2));
+        im.addKey("b").addValue(BasicDataTypes.Integers.newBuilder().addValue(1));
+        im.addKey("a").addValue(BasicDataTypes.Integers.newBuilder().addValue(5));
+
+        TokenCountAccumulator counts = new TokenCountAccumulator();
+        counts.add((Object) im.build());
+
+        assertEquals(7, counts.get("a"));
+        assertEquals(1, counts.get("b"));
+        assertEquals(2, counts.size());
+    }
+
+    @Test
+    public void testMixedFormats() throws Exception {
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("c", 4);
+
+        TokenCountAccumulator other = new TokenCountAccumulator();
+        other.add("c", 10);
+
+        TokenCountAccumulator counts = new TokenCountAccumulator();
+        counts.add((Object) map);
+        counts.add((Object) BasicDataTypesTools.mapToIntegerMap(map, false));
+        counts.add(other);
+
+        assertEquals(2, counts.get("a"));
+        assertEquals(18, counts.get("c"));
+        assertEquals(0, counts.get("missing"));
+
+        counts.clear();
+        assertEquals(0, counts.size());
+    }
+
+    @Test
+    public void testRejectsUnsupportedTypes() {
+        Map<String, String> wrongValues = new HashMap<String, String>();
+        wrongValues.put("a", "1");
+
+        Object[] bad = { null, "a string", Integer.valueOf(3), wrongValues };
+        for (Object data : bad) {
+            try {
+                new TokenCountAccumulator().add(data);
+                fail("Expected an UnsupportedDataTypeException for " + data);
+            }
+            catch (UnsupportedDataTypeException e) {
+                // expected
+            }
+        }
+
+        // an empty map carries no counts, whatever its declared type
+        try {
+            TokenCountAccumulator counts = new TokenCountAccumulator();
+            counts.add((Object) new HashMap<String, String>());
+            assertEquals(0, counts.size());
+        }
+        catch (UnsupportedDataTypeException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /** The merge of the old TokenCounterReducer */
+    private static Map<String, Integer> hashtableMerge(List<Object> countMaps) {
+        Hashtable<String, Integer> accumulator = new Hashtable<String, Integer>();
+        for (Object obj : countMaps) {
+            Map<String, Integer> im = (obj instanceof IntegersMap) ?
+                    BasicDataTypesTools.IntegerMapToMap((IntegersMap) obj) : castMap(obj);
+
+            for (Entry<String, Integer> entry : im.entrySet()) {
+                int count = entry.getValue();
+                Integer oldCount = accumulator.get(entry.getKey());
+                if (oldCount != null)
+                    count += oldCount;
+
+                accumulator.put(entry.getKey(), count);
+            }
+        }
+
+        return accumulator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> castMap(Object obj) {
+        return (Map<String, Integer>) obj;
+    }
+
+    /** Count maps without repeated keys, alternating between the IntegersMap and java Map formats */
+    private static List<Object> randomCountMaps(int n, int vocabulary, long seed) {
+        Random random = new Random(seed);
+        List<Object> countMaps = new ArrayList<Object>(n);
+
+        for (int i = 0; i < n; i++) {
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            int tokens = 1 + random.nextInt(vocabulary);
+            for (int t = 0; t < tokens; t++)
+                counts.put("w" + random.nextInt(vocabulary), 1 + random.nextInt(20));
+
+            if (i % 2 == 0)
+                countMaps.add(BasicDataTypesTools.mapToIntegerMap(counts, random.nextBoolean()));
+            else
+                countMaps.add(counts);
+        }
+
+        return countMaps;
+    }
+}
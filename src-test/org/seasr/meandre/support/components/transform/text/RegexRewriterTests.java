@@ -0,0 +1,143 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.transform.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Checks the single pass rewriter against applying the rules one after the other with
+ * replaceAll(), as TextCleaner does, on rules that do not interact.
+ */
+public class RegexRewriterTests {
+
+    private static final String TEXT =
+        "Call 555-1234 or 555-9876 before 12/31/2009!\nVisit   http://www.seasr.org  NOW,  or e-mail info@seasr.org.";
+
+    @Test
+    public void testMatchesSequentialReplaceAll() {
+        Map<Pattern, String> rules = new LinkedHashMap<Pattern, String>();
+        rules.put(Pattern.compile("(\\d{3})-(\\d{4})"), "($1) $2");
+        rules.put(Pattern.compile("(\\d+)/(\\d+)/(\\d{4})"), "$3-$1-$2");
+        rules.put(Pattern.compile("now", Pattern.CASE_INSENSITIVE), "today");
+        rules.put(Pattern.compile("^visit", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE), "See");
+        rules.put(Pattern.compile("[ \\t]{2,}"), " ");
+        rules.put(Pattern.compile("\\w+@\\w+\\.org"), "\\$EMAIL");
+
+        assertEquals(replaceAll(TEXT, rules), new RegexRewriter(rules).rewrite(TEXT));
+    }
+
+    @Test
+    public void testRulesDoNotSeeEachOtherOutput() {
+        Map<Pattern, String> rules = new LinkedHashMap<Pattern, String>();
+        rules.put(Pattern.compile("cat"), "dog");
+        rules.put(Pattern.compile("dog"), "wolf");
+
+        // applied one after the other, the first rule's output would be rewritten again
+        assertEquals("wolf wolf", replaceAll("cat dog", rules));
+        assertEquals("dog wolf", new RegexRewriter(rules).rewrite("cat dog"));
+    }
+
+    @Test
+    public void testFirstRuleWins() {
+        Map<Pattern, String> rules = new LinkedHashMap<Pattern, String>();
+        rules.put(Pattern.compile("ab"), "1");
+        rules.put(Pattern.compile("abc"), "2");
+        rules.put(Pattern.compile("bcd"), "3");
+
+        // at each position the first matching rule is used (not the longest), and scanning resumes after its match
+        RegexRewriter rewriter = new RegexRewriter(rules);
+        assertEquals("1c", rewriter.rewrite("abc"));
+        assertEquals("1cd", rewriter.rewrite("abcd"));
+        assertEquals("x3", rewriter.rewrite("xbcd"));
+    }
+
+    @Test
+    public void testGroupsAreRenumbered() {
+        Map<Pattern, String> rules = new LinkedHashMap<Pattern, String>();
+        rules.put(Pattern.compile("(a)(b)"), "$2$1");
+        rules.put(Pattern.compile("(c)(d)?(e)"), "[$3$2$1]");
+        rules.put(Pattern.compile("(x)"), "$10");
+
+        // $10 is group 1 followed by a 0, as with Matcher.appendReplacement()
+        assertEquals("ba [ec] [edc] x0", new RegexRewriter(rules).rewrite("ab ce cde x"));
+        assertEquals(replaceAll("ab ce cde x", rules), new RegexRewriter(rules).rewrite("ab ce cde x"));
+    }
+
+    @Test
+    public void testCanCombine() {
+        assertTrue(RegexRewriter.canCombine(Pattern.compile("(a)\\\\1", Pattern.CASE_INSENSITIVE)));
+        assertFalse(RegexRewriter.canCombine(Pattern.compile("(a)\\1")));
+        assertFalse(RegexRewriter.canCombine(Pattern.compile("a.b", Pattern.LITERAL)));
+        assertFalse(RegexRewriter.canCombine(Pattern.compile("a", Pattern.CANON_EQ)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGroupReference() {
+        Map<Pattern, String> rules = new LinkedHashMap<Pattern, String>();
+        rules.put(Pattern.compile("(a)"), "$2");
+        new RegexRewriter(rules);
+    }
+
+    @Test
+    public void testNoRules() {
+        assertEquals(TEXT, new RegexRewriter(new LinkedHashMap<Pattern, String>()).rewrite(TEXT));
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private static String replaceAll(String text, Map<Pattern, String> rules) {
+        for (Map.Entry<Pattern, String> rule : rules.entrySet())
+            text = rule.getKey().matcher(text).replaceAll(rule.getValue());
+
+        return text;
+    }
+}
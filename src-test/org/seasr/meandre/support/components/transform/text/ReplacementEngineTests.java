@@ -0,0 +1,172 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.transform.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.junit.Test;
+
+/**
+ * Checks the replacement engine against the token by token lookup and the phrase
+ * replaceAll() passes of TextReplacement it replaces, and its overlap rules.
+ */
+public class ReplacementEngineTests {
+
+    private static final String TEXT =
+        "The Cat sat on the mat. The cat's dog -- a category of its own -- ate (the) CAT food; cat!";
+
+    @Test
+    public void testTokensMatchLookupLoop() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("cat", "feline");
+        dictionary.put("dog", "canine");
+        dictionary.put("s", "is");
+        dictionary.put("the", "a");
+
+        for (boolean ignoreCase : new boolean[] { false, true }) {
+            ReplacementEngine engine = new ReplacementEngine(dictionary, ignoreCase);
+            assertEquals(replaceTokens(TEXT, dictionary, ignoreCase), engine.replace(TEXT));
+        }
+    }
+
+    @Test
+    public void testPhrasesMatchReplaceAll() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("new york", "NYC");
+        dictionary.put("los angeles", "LA");
+        dictionary.put("city", "town");
+
+        String text = "From new york to los angeles, city by city; new york again.";
+
+        Map<String, String> phrases = new HashMap<String, String>(dictionary);
+        phrases.remove("city");
+        Map<String, String> tokens = new HashMap<String, String>();
+        tokens.put("city", "town");
+
+        String expected = text;
+        for (Map.Entry<String, String> phrase : phrases.entrySet())
+            expected = expected.replaceAll(phrase.getKey(), phrase.getValue());
+        expected = replaceTokens(expected, tokens, false);
+
+        assertEquals(expected, new ReplacementEngine(dictionary, false).replace(text));
+    }
+
+    @Test
+    public void testLongestMatchWins() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("new", "N");
+        dictionary.put("new york", "NY");
+        dictionary.put("new york city", "NYC");
+
+        ReplacementEngine engine = new ReplacementEngine(dictionary, false);
+        assertEquals("NYC, NY and N jersey", engine.replace("new york city, new york and new jersey"));
+    }
+
+    @Test
+    public void testLeftmostMatchWins() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("a b", "X");
+        dictionary.put("b c", "Y");
+        dictionary.put("c", "Z");
+
+        ReplacementEngine engine = new ReplacementEngine(dictionary, false);
+        // "a b" starts first, so "b c" cannot match; the remaining "c" still does
+        assertEquals("X Z", engine.replace("a b c"));
+        assertEquals("Y", engine.replace("b c"));
+    }
+
+    @Test
+    public void testMatchesNeverCutTokens() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("cat", "dog");
+        dictionary.put("big cat", "lion");
+
+        ReplacementEngine engine = new ReplacementEngine(dictionary, false);
+        String text = "category bigcat concat big cats";
+        assertSame(text, engine.replace(text));
+        assertEquals("(lion) dog-dog", engine.replace("(big cat) cat-cat"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        Map<String, String> dictionary = new HashMap<String, String>();
+        dictionary.put("New York", "NY");
+
+        assertEquals("NY, NY", new ReplacementEngine(dictionary, true).replace("NEW YORK, new york"));
+        assertEquals("NEW YORK, new york", new ReplacementEngine(dictionary, false).replace("NEW YORK, new york"));
+
+        assertEquals("NY", new ReplacementEngine(dictionary, true).lookup(" new york "));
+        assertNull(new ReplacementEngine(dictionary, true).lookup("york"));
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * The token by token replacement of TextReplacement
+     */
+    private static String replaceTokens(String text, Map<String, String> dictionary, boolean ignoreCase) {
+        if (ignoreCase) {
+            Map<String, String> lowerCase = new HashMap<String, String>();
+            for (Map.Entry<String, String> entry : dictionary.entrySet())
+                lowerCase.put(entry.getKey().toLowerCase(), entry.getValue());
+            dictionary = lowerCase;
+        }
+
+        StringTokenizer tokens = new StringTokenizer(text, ReplacementEngine.DEFAULT_DELIMITERS, true);
+        StringBuilder sb = new StringBuilder();
+        while (tokens.hasMoreTokens()) {
+            String t = tokens.nextToken();
+            String r = dictionary.get(ignoreCase ? t.toLowerCase() : t);
+            sb.append((r == null) ? t : r);
+        }
+
+        return sb.toString();
+    }
+}
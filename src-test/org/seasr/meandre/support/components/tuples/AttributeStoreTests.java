@@ -0,0 +1,310 @@
+/**
+*
+* University of Illinois/NCSA
+* Open Source License
+*
+* Copyright (c) 2008, NCSA.  All rights reserved.
+*
+* Developed by:
+* The Automated Learning Group
+* University of Illinois at Urbana-Champaign
+* http://www.seasr.org
+*
+* Permission is hereby granted, free of charge, to any person obtaining
+* a copy of this software and associated documentation files (the
+* "Software"), to deal with the Software without restriction, including
+* without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to
+* permit persons to whom the Software is furnished to do so, subject
+* to the following conditions:
+*
+* Redistributions of source code must retain the above copyright
+* notice, this list of conditions and the following disclaimers.
+*
+* Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimers in
+* the documentation and/or other materials provided with the distribution.
+*
+* Neither the names of The Automated Learning Group, University of
+* Illinois at Urbana-Champaign, nor the names of its contributors may
+* be used to endorse or promote products derived from this Software
+* without specific prior written permission.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+* EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE CONTRIBUTORS OR COPYRIGHT HOLDERS BE LIABLE
+* FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+* CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+* WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS WITH THE SOFTWARE.
+*
+*/
+
+
+package org.seasr.meandre.support.components.tuples;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the attribute store against the way the cache files were read before it existed
+ * (one key/value record per line, later records overriding earlier ones).
+ */
+public class AttributeStoreTests {
+
+    private File _dir;
+    private File _file;
+
+    @Before
+    public void createFile() throws IOException {
+        _dir = File.createTempFile("attribute-store", "");
+        _dir.delete();
+        _dir.mkdirs();
+        _file = new File(_dir, "cache.txt");
+    }
+
+    @After
+    public void deleteFiles() {
+        for (File file : _dir.listFiles())
+            file.delete();
+        _dir.delete();
+    }
+
+    @Test
+    public void testLookupsMatchCacheFile() throws IOException {
+        write("a\t1\n b \t 2 \n\na\t3\tx\nc\t4\n");
+
+        AttributeStore store = AttributeStore.open(_file);
+        try {
+            Map<String, String> expected = loadCacheData(_file);
+            for (Map.Entry<String, String> entry : expected.entrySet())
+                assertEquals(entry.getValue(), store.get(entry.getKey()));
+
+            assertEquals(expected.size(), store.size());
+            assertArrayEquals(new String[] { "a", "3", "x" }, store.getRecord("a"));
+            assertNull(store.get("d"));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testRecoversPartialLastLine() throws IOException {
+        write("a\t1\nb\t2");
+
+        AttributeStore store = AttributeStore.open(_file);
+        store.put("c", "3");
+        store.close();
+
+        assertEquals("a\t1\nb\t2\nc\t3\n", read());
+
+        store = AttributeStore.open(_file);
+        try {
+            assertEquals("2", store.get("b"));
+            assertEquals("3", store.get("c"));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testReopenUsesSavedIndex() throws IOException {
+        AttributeStore store = AttributeStore.open(_file);
+        for (int i = 0; i < 1000; i++)
+            store.put("key" + (i % 100), "value" + i);
+        store.close();
+
+        assertTrue(new File(_file.getPath() + ".idx").exists());
+
+        store = AttributeStore.open(_file);
+        try {
+            assertEquals(loadCacheData(_file), contents(store, 100));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsLatestRecords() throws IOException {
+        AttributeStore store = AttributeStore.open(_file);
+        try {
+            for (int i = 0; i < 1000; i++)
+                store.put("key" + (i % 100), "value" + i, "extra" + i);
+            store.flush();
+
+            Map<String, String> expected = loadCacheData(_file);
+            store.compact();
+
+            assertEquals(expected, loadCacheData(_file));
+            assertEquals(100, lines().size());
+            assertEquals(expected, contents(store, 100));
+            assertArrayEquals(new String[] { "key7", "value907", "extra907" }, store.getRecord("key7"));
+
+            // entries appended after a compaction override the compacted ones
+            store.put("key7", "new");
+            store.flush();
+            assertEquals("new", store.get("key7"));
+        }
+        finally {
+            store.close();
+        }
+
+        store = AttributeStore.open(_file);
+        try {
+            assertEquals("new", store.get("key7"));
+            assertEquals("value999", store.get("key99"));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testReadOnlyMissingFile() throws IOException {
+        assertNull(AttributeStore.openReadOnly(_file));
+        assertFalse(_file.exists());
+    }
+
+    @Test
+    public void testReadOnlyDoesNotModifyFile() throws IOException {
+        write("a\t1\nb\t2");
+        _file.setReadOnly();
+
+        AttributeStore store = AttributeStore.openReadOnly(_file);
+        try {
+            assertEquals("1", store.get("a"));
+            // the partial last line is left out rather than terminated
+            assertNull(store.get("b"));
+
+            try {
+                store.put("c", "3");
+                fail("put() on a read-only store");
+            }
+            catch (IOException e) {
+                // expected
+            }
+        }
+        finally {
+            store.close();
+        }
+
+        assertEquals("a\t1\nb\t2", read());
+        assertFalse(new File(_file.getPath() + ".idx").exists());
+    }
+
+    @Test
+    public void testReadOnlySharesOpenStore() throws IOException {
+        AttributeStore store = AttributeStore.open(_file);
+        try {
+            store.put("a", "1");
+
+            AttributeStore reader = AttributeStore.openReadOnly(_file);
+            try {
+                assertEquals("1", reader.get("a"));
+            }
+            finally {
+                reader.close();
+            }
+
+            // the writer's reference is still open
+            store.put("b", "2");
+            assertEquals("2", store.get("b"));
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    private Map<String, String> contents(AttributeStore store, int keys) throws IOException {
+        Map<String, String> contents = new HashMap<String, String>();
+        for (int i = 0; i < keys; i++)
+            contents.put("key" + i, store.get("key" + i));
+
+        return contents;
+    }
+
+    /**
+     * The way AttributeCacheLookup read the cache files
+     */
+    private static Map<String, String> loadCacheData(File file) throws IOException {
+        Map<String, String> cacheMap = new HashMap<String, String>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0) continue;
+
+                String[] parts = line.split("\t");
+                cacheMap.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return cacheMap;
+    }
+
+    private void write(String text) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(_file), "UTF-8");
+        writer.write(text);
+        writer.close();
+    }
+
+    private String read() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        FileReader reader = new FileReader(_file);
+        try {
+            int c;
+            while ((c = reader.read()) != -1)
+                sb.append((char) c);
+        }
+        finally {
+            reader.close();
+        }
+
+        return sb.toString();
+    }
+
+    private List<String> lines() throws IOException {
+        List<String> lines = new ArrayList<String>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(_file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        }
+        finally {
+            reader.close();
+        }
+
+        return lines;
+    }
+}
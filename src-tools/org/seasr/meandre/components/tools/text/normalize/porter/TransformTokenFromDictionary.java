@@ -100,6 +100,13 @@ public class TransformTokenFromDictionary extends AbstractExecutableComponent {
 	protected static final String OUT_TOKEN_COUNTS = Names.PORT_TOKEN_COUNTS;
 
 
+	//--------------------------------------------------------------------------------------------
+
+
+	protected StringsMap _dictionary = null;
+	protected Map<String, String> _lookup = null;
+
+
 	//--------------------------------------------------------------------------------------------
 
 	@Override
@@ -111,18 +118,26 @@ public class TransformTokenFromDictionary extends AbstractExecutableComponent {
 	    IntegersMap tokenCounts = (IntegersMap) cc.getDataComponentFromInput(IN_TOKEN_COUNTS);
         StringsMap stemDictionary = (StringsMap) cc.getDataComponentFromInput(IN_DICTIONARY);
 
-        Map<String, String> dictionary = new HashMap<String, String>();
-        for (int i = 0, iMax = stemDictionary.getValueCount(); i < iMax; i++) {
-            String key = stemDictionary.getKey(i);
-            String word = stemDictionary.getValue(i).getValue(0);
-            dictionary.put(key, word);
+        // the same dictionary object is usually sent with every token count; only rebuild the lookup
+        // when a different one arrives (an identity check, since comparing the contents costs as much
+        // as the rebuild)
+        if (_lookup == null || stemDictionary != _dictionary) {
+            Map<String, String> dictionary = new HashMap<String, String>();
+            for (int i = 0, iMax = stemDictionary.getValueCount(); i < iMax; i++) {
+                String key = stemDictionary.getKey(i);
+                String word = stemDictionary.getValue(i).getValue(0);
+                dictionary.put(key, word);
+            }
+
+            _lookup = dictionary;
+            _dictionary = stemDictionary;
         }
 
         org.seasr.datatypes.core.BasicDataTypes.IntegersMap.Builder res = BasicDataTypes.IntegersMap.newBuilder();
         for (int i = 0, iMax = tokenCounts.getValueCount(); i < iMax; i++) {
             String word  = tokenCounts.getKey(i);
 
-            String origWord = dictionary.get(word);
+            String origWord = _lookup.get(word);
             if (origWord != null)
                 word = origWord;
 
@@ -135,5 +150,7 @@ public class TransformTokenFromDictionary extends AbstractExecutableComponent {
 
 	@Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+	    _dictionary = null;
+	    _lookup = null;
 	}
 }
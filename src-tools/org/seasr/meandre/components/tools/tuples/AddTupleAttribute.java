@@ -60,6 +60,7 @@ import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 
 /**
  * @author Boris Capitanu
@@ -145,8 +146,8 @@ public class AddTupleAttribute extends AbstractExecutableComponent {
         String attribute = DataTypeParser.parseAsString(cc.getDataComponentFromInput(IN_ATTRIBUTE))[0];
 
         Strings inputMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-        SimpleTuplePeer inPeer  = new SimpleTuplePeer(inputMeta);
-        SimpleTuplePeer outPeer = new SimpleTuplePeer(inPeer, new String[] { _attributeName });
+        SimpleTuplePeer inPeer  = SimpleTuplePeerRegistry.getPeer(inputMeta);
+        SimpleTuplePeer outPeer = SimpleTuplePeerRegistry.getPeer(inPeer, new String[] { _attributeName });
 
         Object input = cc.getDataComponentFromInput(IN_TUPLES);
         boolean singleTuple = true;
@@ -165,8 +166,8 @@ public class AddTupleAttribute extends AbstractExecutableComponent {
         else
             throw new ComponentExecutionException("Don't know how to handle input of type: " + input.getClass().getName());
 
-        SimpleTuple tuple    = inPeer.createTuple();
-        SimpleTuple outTuple = outPeer.createTuple();
+        SimpleTuple tuple    = inPeer.createView();
+        SimpleTuple outTuple = outPeer.createTupleBuilder();
 
         Strings[] modifiedTuples = new Strings[tuples.length];
         int i = 0;
@@ -207,8 +207,8 @@ public class AlterTuple extends AbstractExecutableComponent {
         SimpleTuplePeer outPeer = new SimpleTuplePeer(outFieldNames.toArray(fieldNames));
         StringsArray.Builder outTuples = StringsArray.newBuilder();
 
+        SimpleTuple inTuple = inPeer.createView();
         for (Strings t : inTuples) {
-            SimpleTuple inTuple = inPeer.createTuple();
             inTuple.setValues(t);
 
             SimpleTuple outTuple = outPeer.createTuple();
@@ -43,6 +43,7 @@
 package org.seasr.meandre.components.tools.tuples;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
@@ -65,8 +66,10 @@ import org.meandre.core.ComponentExecutionException;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.support.components.tuples.AttributeStore;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 import org.seasr.meandre.support.generic.io.IOUtils;
 import org.seasr.meandre.support.generic.io.PathUtils;
 
@@ -171,6 +174,7 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
     //--------------------------------------------------------------------------------------------
 
 
+    protected AttributeStore _attributeStore = null;
     protected Map<String, String> _attributeCacheMap = null;
     protected Set<String> _ignoreCacheSet = Collections.synchronizedSet(new HashSet<String>());
     protected String _key;
@@ -187,7 +191,17 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
         String defaultDir = ccp.getPublicResourcesDirectory();
 
         String cacheFile = getPropertyOrDieTrying(PROP_CACHE, ccp);
-        _attributeCacheMap = loadCacheData(PathUtils.relativize(new URI(cacheFile), defaultDir));
+        URI cacheUri = PathUtils.relativize(new URI(cacheFile), defaultDir);
+
+        // local cache files are served from the shared store, which also sees the entries added by UpdateTupleCache
+        File localCacheFile = UpdateTupleCache.getLocalFile(cacheUri);
+        if (localCacheFile != null) {
+            // a missing cache file means that nothing is cached yet
+            _attributeStore = AttributeStore.openReadOnly(localCacheFile);
+            if (_attributeStore != null)
+                console.fine(String.format("Opened the attribute cache %s (%d entries)", localCacheFile, _attributeStore.size()));
+        } else
+            _attributeCacheMap = loadCacheData(cacheUri);
 
         String ignoreFile = getPropertyOrDieTrying(PROP_IGNORE, true, false, ccp);
         if (ignoreFile.length() > 0)
@@ -199,8 +213,8 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
         Strings inTuple = (Strings) cc.getDataComponentFromInput(IN_TUPLE);
         Strings inMetaTuple = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
 
-        SimpleTuplePeer inPeer  = new SimpleTuplePeer(inMetaTuple);
-        SimpleTuplePeer outPeer = new SimpleTuplePeer(inPeer, new String[] { _attributeName });
+        SimpleTuplePeer inPeer  = SimpleTuplePeerRegistry.getPeer(inMetaTuple);
+        SimpleTuplePeer outPeer = SimpleTuplePeerRegistry.getPeer(inPeer, new String[] { _attributeName });
 
         int KEY_IDX = inPeer.getIndexForFieldName(_key);
         int ATTRIB_IDX = outPeer.getIndexForFieldName(_attributeName);
@@ -208,8 +222,8 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
         if (KEY_IDX == -1)
             throw new ComponentExecutionException(String.format("Incoming tuple has no attributed named '%s'", _key));
 
-        SimpleTuple tuple    = inPeer.createTuple();
-        SimpleTuple outTuple = outPeer.createTuple();
+        SimpleTuple tuple    = inPeer.createView();
+        SimpleTuple outTuple = outPeer.createTupleBuilder();
 
         tuple.setValues(inTuple);
         outTuple.setValue(tuple);
@@ -225,7 +239,12 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
         }
 
         // Look it up in the cache
-        String value = _attributeCacheMap != null ? _attributeCacheMap.get(key) : null;
+        String value = null;
+        if (_attributeStore != null)
+            value = _attributeStore.get(key);
+        else
+            if (_attributeCacheMap != null)
+                value = _attributeCacheMap.get(key);
         if (value == null) {
             // Not found in cache
             console.fine(String.format("key '%s' not cached", key));
@@ -244,6 +263,11 @@ public class AttributeCacheLookup extends AbstractExecutableComponent {
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        if (_attributeStore != null) {
+            _attributeStore.close();
+            _attributeStore = null;
+        }
+
         _attributeCacheMap = null;
         _ignoreCacheSet = null;
     }
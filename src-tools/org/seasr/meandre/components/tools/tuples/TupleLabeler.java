@@ -64,6 +64,7 @@ import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 
 /**
  *
@@ -241,8 +242,8 @@ public class TupleLabeler extends AbstractExecutableComponent {
 		// Process the tuple data
 		//
 		inputMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-		inPeer = new SimpleTuplePeer(inputMeta);
-		SimpleTuplePeer outPeer = new SimpleTuplePeer(inPeer, new String[]{hashValueFieldName});
+		inPeer = SimpleTuplePeerRegistry.getPeer(inputMeta);
+		SimpleTuplePeer outPeer = SimpleTuplePeerRegistry.getPeer(inPeer, new String[]{hashValueFieldName});
 
 		input = (StringsArray) cc.getDataComponentFromInput(IN_TUPLES);
 		in = BasicDataTypesTools.stringsArrayToJavaArray(input);
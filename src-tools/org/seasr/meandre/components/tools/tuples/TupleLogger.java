@@ -63,6 +63,7 @@ import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 
 /**
  *
@@ -155,7 +156,7 @@ public class TupleLogger extends AbstractExecutableComponent {
     public void executeCallBack(ComponentContext cc) throws Exception
     {
         Strings inputMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-        SimpleTuplePeer inPeer  = new SimpleTuplePeer(inputMeta);
+        SimpleTuplePeer inPeer  = SimpleTuplePeerRegistry.getPeer(inputMeta);
 
         Object input = cc.getDataComponentFromInput(IN_TUPLES);
         Strings[] tuples;
@@ -175,7 +176,7 @@ public class TupleLogger extends AbstractExecutableComponent {
 
 		console.info(inPeer.toString());
 
-		SimpleTuple tuple = inPeer.createTuple();
+		SimpleTuple tuple = inPeer.createView();
 
 		for (int i = 0; i < tuples.length; i++) {
 			tuple.setValues(tuples[i]);
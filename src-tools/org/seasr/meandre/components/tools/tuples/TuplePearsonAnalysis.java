@@ -42,6 +42,21 @@
 
 package org.seasr.meandre.components.tools.tuples;
 
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
 import org.meandre.annotations.Component;
 import org.meandre.annotations.Component.FiringPolicy;
 import org.meandre.annotations.Component.Licenses;
@@ -118,6 +133,10 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 	@ComponentProperty(name = Names.PROP_MAX_VALUE, description = "Indicates the maximum year to be used in the analysis.", defaultValue = "1899")
 	protected static final String PROP_MAX_VALUE = Names.PROP_MAX_VALUE;
 
+	@ComponentProperty(name = "num_threads", description = "The number of threads used to generate the queries. "
+		+ "Use 0 for one per available processor.", defaultValue = "1")
+	protected static final String PROP_NUM_THREADS = "num_threads";
+
 	private static final Boolean FALSE = null;
 
 	private static final Boolean TRUE = null;
@@ -127,6 +146,11 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 	protected boolean _wrapStream;
 	protected int _min_year;
 	protected int _max_year;
+	protected int _numThreads;
+	protected ExecutorService _workers;
+
+	/** The number of list 1 words whose queries are generated by the same task */
+	private static final int WORDS_PER_TASK = 16;
 
 	// --------------------------------------------------------------------------------------------
 
@@ -141,6 +165,22 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 				PROP_MIN_VALUE, ccp));
 		_max_year = Integer.parseInt(getPropertyOrDieTrying(
 				PROP_MAX_VALUE, ccp));
+
+		_numThreads = Integer.parseInt(getPropertyOrDieTrying(
+				PROP_NUM_THREADS, ccp));
+		if (_numThreads <= 0)
+			_numThreads = Runtime.getRuntime().availableProcessors();
+
+		if (_numThreads > 1) {
+			final AtomicInteger count = new AtomicInteger();
+			_workers = Executors.newFixedThreadPool(_numThreads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TuplePearsonAnalysis-worker-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
 	}
 
 	@Override
@@ -186,66 +226,15 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 			cc.pushDataComponentToOutput(OUT_QUERY, sd);
 		}
 
-		SimpleTuple tuple_i = inPeer.createTuple();
-		SimpleTuple tuple_j = inPeer_2.createTuple();
-		SimpleTuple tuple_k = inPeer.createTuple();
-
-		for (int i = 0; i < tuples.length; i++) {
-			tuple_i.setValues(tuples[i]);
-			String word_i = tuple_i.getValue(0);
-			for (int j = 0; j < tuples_2.length; j++) {
-				tuple_j.setValues(tuples_2[j]);
-				String word_j = tuple_j.getValue(0);
-				// skip the calculation if the word in list 1 is the same as the word in list 2
-				if (!word_i.equalsIgnoreCase(word_j)) {
-					
-					// skip the calculation if we have already made the comparison of the word in list 2 because it occurs earlier in list 1
-					boolean found = false;
-					for (int k=0; k<i; k++) {
-						tuple_k.setValues(tuples[k]);
-						String word_k = tuple_k.getValue(0);
-						if (word_j.equalsIgnoreCase(word_k)) {
-							found = true;
-							break;
-						}
-					}
+		WordPairs pairs = new WordPairs(inPeer, tuples, inPeer_2, tuples_2);
 
-					if (!found){
-
-						console.fine("word 1 = " + tuple_i.toString() + " word 2 = " + tuple_j.toString());
-
-						String query = "SELECT \"" 
-						+tuple_i.toString()
-						+"\" as ngram1, \""
-						+tuple_j.toString()
-						+"\" as ngram2, stat_pmcc_samp(n1, n2) as pearson_analysis from "
-						+"(SELECT year, max(if(ngram_label=\""
-						+tuple_i.toString()
-						+"\",y,0)) as n1, max(if(ngram_label=\"" 
-						+tuple_j.toString()
-						+"\",y,0)) as n2 from "
-						+"(SELECT ngram_label, year, sum(match_count) / sum_match_count * 1000000 as y "
-						+"FROM ("
-						+"SELECT ngram, ifnull(ngram_spelling_checked,ngram_normalized) as ngram_label "
-						+"FROM ngram_summary ns "
-						+"WHERE ngram_normalized IN (\""
-						+tuple_i.toString()
-						+"\",\"" 
-						+tuple_j.toString()
-						+"\") OR ngram_spelling_checked IN (\""
-						+tuple_i.toString()
-						+"\",\"" 
-						+tuple_j.toString()
-						+"\")) t1 "
-						+"LEFT JOIN ngrams n USING(ngram) LEFT JOIN yearly_summary s USING(year) "
-						+"GROUP BY ngram_label, year HAVING year >= "+ _min_year+" AND year <= "+_max_year+") t2 group by year) t3;";
-
-						console.finer("query = "+query);
-						cc.pushDataComponentToOutput(OUT_QUERY, query);
-					}
-				}
-			}
+		if (_workers == null) {
+			// generate the queries block by block so that only one block is held at a time
+			for (int start = 0; start < tuples.length; start += WORDS_PER_TASK)
+				pushQueries(cc, pairs.queries(start, Math.min(start + WORDS_PER_TASK, tuples.length), _min_year, _max_year));
 		}
+		else
+			pushQueriesInParallel(cc, pairs, tuples.length);
 
 		if (_wrapStream) {
 			StreamDelimiter sd = new StreamTerminator(streamId);
@@ -256,6 +245,10 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 	@Override
 	public void disposeCallBack(ComponentContextProperties ccp)
 	throws Exception {
+		if (_workers != null) {
+			_workers.shutdownNow();
+			_workers = null;
+		}
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -277,4 +270,157 @@ import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
 		// TODO Auto-generated method stub
 		return false;
 	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void pushQueries(ComponentContext cc, List<String> queries) throws Exception {
+		boolean finer = console.isLoggable(Level.FINER);
+
+		for (String query : queries) {
+			if (finer) console.finer("query = "+query);
+			cc.pushDataComponentToOutput(OUT_QUERY, query);
+		}
+	}
+
+	/**
+	 * Generates the queries for consecutive blocks of list 1 words concurrently, pushing them in order.
+	 * At most two blocks per thread are pending at any time.
+	 */
+	private void pushQueriesInParallel(ComponentContext cc, final WordPairs pairs, int count) throws Exception {
+		LinkedList<Future<List<String>>> pending = new LinkedList<Future<List<String>>>();
+
+		try {
+			for (int start = 0; start < count; start += WORDS_PER_TASK) {
+				if (pending.size() >= 2 * _numThreads)
+					pushQueries(cc, pending.removeFirst().get());
+
+				final int from = start, to = Math.min(start + WORDS_PER_TASK, count);
+				pending.add(_workers.submit(new Callable<List<String>>() {
+					public List<String> call() {
+						return pairs.queries(from, to, _min_year, _max_year);
+					}
+				}));
+			}
+
+			while (!pending.isEmpty())
+				pushQueries(cc, pending.removeFirst().get());
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			throw e;
+		}
+		finally {
+			for (Future<List<String>> future : pending)
+				future.cancel(true);
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * The pairs of words to compare. A word of list 1 is paired with every word of list 2, except
+	 * itself and the words that occur earlier in list 1 (those pairs were already generated, in
+	 * the other order). Words are compared ignoring case, through a case folded index of both lists.
+	 */
+	static class WordPairs {
+		private final String[] _labels1;
+		private final String[] _labels2;
+		private final int[] _words1;
+		private final int[] _words2;
+
+		/** For each distinct word, the first position in list 1 where it occurs (or the list length) */
+		private final int[] _firstInList1;
+
+		WordPairs(SimpleTuplePeer peer1, Strings[] tuples1, SimpleTuplePeer peer2, Strings[] tuples2) {
+			TObjectIntHashMap<String> wordIds = new TObjectIntHashMap<String>();
+
+			_labels1 = new String[tuples1.length];
+			_words1 = new int[tuples1.length];
+			index(peer1, tuples1, _labels1, _words1, wordIds);
+
+			_labels2 = new String[tuples2.length];
+			_words2 = new int[tuples2.length];
+			index(peer2, tuples2, _labels2, _words2, wordIds);
+
+			_firstInList1 = new int[wordIds.size()];
+			Arrays.fill(_firstInList1, tuples1.length);
+			for (int i = tuples1.length - 1; i >= 0; i--)
+				_firstInList1[_words1[i]] = i;
+		}
+
+		/**
+		 * Generates the queries pairing the list 1 words in [from, to) with the list 2 words
+		 *
+		 * @return The queries, in list 1 then list 2 order
+		 */
+		List<String> queries(int from, int to, int minYear, int maxYear) {
+			List<String> queries = new ArrayList<String>();
+			StringBuilder sb = new StringBuilder(1024);
+
+			for (int i = from; i < to; i++) {
+				int word_i = _words1[i];
+
+				for (int j = 0; j < _words2.length; j++) {
+					int word_j = _words2[j];
+
+					// skip the word itself, and the words already paired because they occur earlier in list 1
+					if (word_j == word_i || _firstInList1[word_j] < i)
+						continue;
+
+					sb.setLength(0);
+					appendQuery(sb, _labels1[i], _labels2[j], minYear, maxYear);
+					queries.add(sb.toString());
+				}
+			}
+
+			return queries;
+		}
+
+		private static void index(SimpleTuplePeer peer, Strings[] tuples, String[] labels, int[] words,
+				TObjectIntHashMap<String> wordIds) {
+			SimpleTuple tuple = peer.createTuple();
+
+			for (int i = 0; i < tuples.length; i++) {
+				tuple.setValues(tuples[i]);
+				labels[i] = tuple.toString();
+
+				String word = foldCase(tuple.getValue(0));
+				int id;
+				if (wordIds.containsKey(word))
+					id = wordIds.get(word);
+				else {
+					id = wordIds.size();
+					wordIds.put(word, id);
+				}
+				words[i] = id;
+			}
+		}
+
+		/** Two strings fold to the same value iff they are equal ignoring case (see String.equalsIgnoreCase()) */
+		private static String foldCase(String s) {
+			char[] chars = new char[s.length()];
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+
+			return new String(chars);
+		}
+
+		private static void appendQuery(StringBuilder sb, String ngram1, String ngram2, int minYear, int maxYear) {
+			sb.append("SELECT \"").append(ngram1).append("\" as ngram1, \"").append(ngram2)
+			  .append("\" as ngram2, stat_pmcc_samp(n1, n2) as pearson_analysis from ")
+			  .append("(SELECT year, max(if(ngram_label=\"").append(ngram1)
+			  .append("\",y,0)) as n1, max(if(ngram_label=\"").append(ngram2).append("\",y,0)) as n2 from ")
+			  .append("(SELECT ngram_label, year, sum(match_count) / sum_match_count * 1000000 as y ")
+			  .append("FROM (")
+			  .append("SELECT ngram, ifnull(ngram_spelling_checked,ngram_normalized) as ngram_label ")
+			  .append("FROM ngram_summary ns ")
+			  .append("WHERE ngram_normalized IN (\"").append(ngram1).append("\",\"").append(ngram2)
+			  .append("\") OR ngram_spelling_checked IN (\"").append(ngram1).append("\",\"").append(ngram2)
+			  .append("\")) t1 ")
+			  .append("LEFT JOIN ngrams n USING(ngram) LEFT JOIN yearly_summary s USING(year) ")
+			  .append("GROUP BY ngram_label, year HAVING year >= ").append(minYear)
+			  .append(" AND year <= ").append(maxYear).append(") t2 group by year) t3;");
+		}
+	}
 }
@@ -123,8 +123,8 @@ public class TupleToHTML extends VelocityTemplateToHTML {
         for (int i = 0, iMax = inPeer.size(); i < iMax; i++)
             data.put(inPeer.getFieldNameForIndex(i), new ArrayList<String>());
 
+        SimpleTuple tuple = inPeer.createView();
         for (Strings inTuple : inTuples) {
-            SimpleTuple tuple = inPeer.createTuple();
             tuple.setValues(inTuple);
 
             for (int i = 0, iMax = inPeer.size(); i < iMax; i++)
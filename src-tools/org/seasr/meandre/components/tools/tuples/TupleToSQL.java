@@ -75,6 +75,7 @@ import org.seasr.meandre.components.abstracts.AbstractStreamingExecutableCompone
 import org.seasr.meandre.support.components.db.DBUtils;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 
 import com.jolbox.bonecp.BoneCP;
 
@@ -287,9 +288,9 @@ public class TupleToSQL extends AbstractStreamingExecutableComponent {
                     componentInputCache.retrieveNext(IN_TABLE_NAME); // remove from queue the current table name
                 }
 
-                SimpleTuplePeer metaPeer  = new SimpleTuplePeer((Strings) inMeta);
+                SimpleTuplePeer metaPeer  = SimpleTuplePeerRegistry.getPeer((Strings) inMeta);
                 Strings[] tuples = BasicDataTypesTools.stringsArrayToJavaArray((StringsArray) inTuple);
-                SimpleTuple tuple = metaPeer.createTuple();
+                SimpleTuple tuple = metaPeer.createView();
 
                 if (console.isLoggable(Level.FINER)) {
                     StringBuilder sb = new StringBuilder();
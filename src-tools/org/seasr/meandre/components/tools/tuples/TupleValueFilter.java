@@ -61,6 +61,7 @@ import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 
 /**
  *
@@ -161,7 +162,7 @@ public class TupleValueFilter extends AbstractExecutableComponent {
 	@Override
     public void executeCallBack(ComponentContext cc) throws Exception {
 	    Strings inMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-	    SimpleTuplePeer inPeer = new SimpleTuplePeer(inMeta);
+	    SimpleTuplePeer inPeer = SimpleTuplePeerRegistry.getPeer(inMeta);
 
 	    Object input = cc.getDataComponentFromInput(IN_TUPLES);
 	    Strings[] tuples;
@@ -185,8 +186,9 @@ public class TupleValueFilter extends AbstractExecutableComponent {
 
 		StringsArray.Builder tuplesBuilder = StringsArray.newBuilder();
 
+		SimpleTuple tuple = inPeer.createView();
+
 		for (int i = 0, iMax = tuples.length; i < iMax; i++) {
-	        SimpleTuple tuple = inPeer.createTuple();
 			tuple.setValues(tuples[i]);
 
             String fieldValue = tuple.getValue(FIELD_IDX);
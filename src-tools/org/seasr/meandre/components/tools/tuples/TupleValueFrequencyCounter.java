@@ -45,10 +45,10 @@ package org.seasr.meandre.components.tools.tuples;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.meandre.annotations.Component;
 import org.meandre.annotations.Component.FiringPolicy;
@@ -58,16 +58,19 @@ import org.meandre.annotations.ComponentInput;
 import org.meandre.annotations.ComponentOutput;
 import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
+import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
 import org.meandre.core.ComponentExecutionException;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
-import org.seasr.datatypes.core.BasicDataTypesTools;
+import org.seasr.datatypes.core.KeyValuePair;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.support.components.tuples.FrequencyMap;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
+import org.seasr.meandre.support.components.tuples.TupleGroupBy;
 
 /**
  *
@@ -96,7 +99,8 @@ public class TupleValueFrequencyCounter extends AbstractExecutableComponent {
 	@ComponentInput(
 			name = Names.PORT_TUPLES,
 			description = "The set of tuples" +
-			    "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray"
+			    "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray" +
+			    "<br>TYPE: org.seasr.meandre.support.components.tuples.TupleBatch"
 	)
 	protected static final String IN_TUPLES = Names.PORT_TUPLES;
 
@@ -163,13 +167,36 @@ public class TupleValueFrequencyCounter extends AbstractExecutableComponent {
 	)
 	protected static final String PROP_FILTER_TOP_N = Names.PROP_MAX_SIZE;
 
+	@ComponentProperty(
+	        name = "aggregates",
+	        description = "Optional aggregates to compute over numeric fields for each group, as a comma-separated list of " +
+	        		"function(field), where function is one of: sum, min, max, avg. " +
+	        		"Example: sum(weight), avg(score) -- similar to 'SELECT ..., SUM(weight), AVG(score) ... GROUP BY ...'. " +
+	        		"Each aggregate is added as a '<function>_<field>' column; empty values are ignored.",
+	        defaultValue = ""
+	)
+	protected static final String PROP_AGGREGATES = "aggregates";
+
+	@ComponentProperty(
+	        name = "num_threads",
+	        description = "The number of threads used to group large tuple sets (use 0 for the number of available processors)",
+	        defaultValue = "0"
+	)
+	protected static final String PROP_NUM_THREADS = "num_threads";
+
 	//--------------------------------------------------------------------------------------------
 
+	protected static final Pattern REGEXP_AGGREGATE = Pattern.compile("^(sum|min|max|avg)\\s*\\(\\s*([^)]+?)\\s*\\)$", Pattern.CASE_INSENSITIVE);
+
 	protected Set<String> fields = new HashSet<String>();
 	protected Set<String> normalizeFields = new HashSet<String>();
 	protected Set<String> trimFields = new HashSet<String>();
 	protected int threshold = 0;
 	protected int topN = 0;
+	protected List<KeyValuePair<String, TupleGroupBy.Function>> aggregates = new ArrayList<KeyValuePair<String, TupleGroupBy.Function>>();
+	protected int numThreads;
+
+	protected TupleGroupBy groupBy;
 
 	//--------------------------------------------------------------------------------------------
 
@@ -203,6 +230,19 @@ public class TupleValueFrequencyCounter extends AbstractExecutableComponent {
 		threshold = Integer.parseInt(getPropertyOrDieTrying(PROP_FILTER_THRESHOLD, ccp));
 		topN      = Integer.parseInt(getPropertyOrDieTrying(PROP_FILTER_TOP_N, ccp));
 
+		final String propAggregates = getPropertyOrDieTrying(PROP_AGGREGATES, true, false, ccp);
+		if (!propAggregates.isEmpty())
+		    for (String aggregate : propAggregates.split(",")) {
+		        Matcher matcher = REGEXP_AGGREGATE.matcher(aggregate.trim());
+		        if (!matcher.matches())
+		            throw new ComponentContextException(String.format("Invalid aggregate '%s' in property '%s'", aggregate.trim(), PROP_AGGREGATES));
+
+		        aggregates.add(new KeyValuePair<String, TupleGroupBy.Function>(
+		                matcher.group(2), TupleGroupBy.Function.valueOf(matcher.group(1).toUpperCase())));
+		    }
+
+		numThreads = Integer.parseInt(getPropertyOrDieTrying(PROP_NUM_THREADS, ccp));
+
 		console.fine(String.format("Tuples with COUNT(%s) > %d will be included in the result", fields, threshold));
 
 		if (topN > 0)
@@ -212,67 +252,74 @@ public class TupleValueFrequencyCounter extends AbstractExecutableComponent {
 	@Override
     public void executeCallBack(ComponentContext cc) throws Exception {
 		Strings inputMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-		SimpleTuplePeer tuplePeer = new SimpleTuplePeer(inputMeta);
-		SimpleTuple tuple = tuplePeer.createTuple();
-
-		StringsArray input = (StringsArray) cc.getDataComponentFromInput(IN_TUPLES);
-		Strings[] in = BasicDataTypesTools.stringsArrayToJavaArray(input);
+		SimpleTuplePeer tuplePeer = SimpleTuplePeerRegistry.getPeer(inputMeta);
 
 		if (!Arrays.asList(tuplePeer.getFieldNames()).containsAll(fields))
 		    throw new ComponentExecutionException("Incoming tuples do not contain all the fields listed in the '" + PROP_FILTER_FIELD + "' property.");
 
-		FrequencyMap<ValueList<String>> freqMap = new FrequencyMap<ValueList<String>>();
-		for (int i = 0; i < in.length; i++) {
-			tuple.setValues(in[i]);
+		int[] keyFields = new int[fields.size()];
+		boolean[] lowercase = new boolean[fields.size()];
+		boolean[] trim = new boolean[fields.size()];
 
-			ValueList<String> key = new ValueList<String>(fields.size());
-			for (String field : fields) {
-			    String fieldValue = tuple.getValue(field);
-
-			    if (normalizeFields.contains(field))
-			        fieldValue = fieldValue.toLowerCase();
+		int i = 0;
+		for (String field : fields) {
+		    keyFields[i] = tuplePeer.getIndexForFieldName(field);
+		    lowercase[i] = normalizeFields.contains(field);
+		    trim[i] = trimFields.contains(field);
+		    i++;
+		}
 
-			    if (trimFields.contains(field))
-			        fieldValue = fieldValue.trim();
+		int[] aggregateFields = new int[aggregates.size()];
+		TupleGroupBy.Function[] functions = new TupleGroupBy.Function[aggregates.size()];
+
+		i = 0;
+		for (KeyValuePair<String, TupleGroupBy.Function> aggregate : aggregates) {
+		    aggregateFields[i] = tuplePeer.getIndexForFieldName(aggregate.getKey());
+		    if (aggregateFields[i] == -1)
+		        throw new ComponentExecutionException(String.format("Incoming tuples do not contain the field '%s' " +
+		        		"listed in the '%s' property.", aggregate.getKey(), PROP_AGGREGATES));
+		    functions[i] = aggregate.getValue();
+		    i++;
+		}
 
-			    key.add(fieldValue);
-			}
+		TupleBatch input = TupleBatch.parse(cc.getDataComponentFromInput(IN_TUPLES), tuplePeer);
 
-			freqMap.add(key);
+		if (groupBy == null || !groupBy.usesFields(keyFields, aggregateFields)) {
+		    if (groupBy != null) groupBy.dispose();
+		    groupBy = new TupleGroupBy(keyFields, lowercase, trim, functions, aggregateFields, numThreads);
 		}
 
-		List<Map.Entry<ValueList<String>, Integer>> sortedEntries = freqMap.sortedEntries();
+		List<TupleGroupBy.Group> groups = TupleGroupBy.topGroups(groupBy.groupBy(input), threshold, topN);
 
-		String[] outputFields = new String[fields.size() + 1];
+		String[] outputFields = new String[fields.size() + 1 + aggregates.size()];
 		fields.toArray(outputFields);
 		outputFields[fields.size()] = "count";
+		for (i = 0; i < aggregates.size(); i++) {
+		    KeyValuePair<String, TupleGroupBy.Function> aggregate = aggregates.get(i);
+		    outputFields[fields.size() + 1 + i] = aggregate.getValue().name().toLowerCase() + "_" + aggregate.getKey();
+		}
 
-	    SimpleTuplePeer outPeer = new SimpleTuplePeer(outputFields);
-	    SimpleTuple outTuple = outPeer.createTuple();
+	    SimpleTuplePeer outPeer = SimpleTuplePeerRegistry.getPeer(outputFields);
+	    SimpleTuple outTuple = outPeer.createTupleBuilder();
 
 	    int COUNT_IDX = fields.size();
 
-	    List<Strings> output = new ArrayList<Strings>();
+	    StringsArray.Builder output = StringsArray.newBuilder();
 
-	    for (Map.Entry<ValueList<String>,Integer> v : sortedEntries) {
-	    	int count = v.getValue();
-	    	if (count > threshold) {
-	    	   Iterator<String> valueIt = v.getKey().iterator();
-	    	   for (String field : fields)
-	    	       outTuple.setValue(field, valueIt.next());
+	    for (TupleGroupBy.Group group : groups) {
+	        String[] values = group.getKeyValues();
+	        for (i = 0; i < values.length; i++)
+	            outTuple.setValue(i, values[i]);
 
-	    	   outTuple.setValue(COUNT_IDX, count);
+	        outTuple.setValue(COUNT_IDX, (int) group.getCount());
 
-	    	   if (topN <= 0 || topN > 0 && output.size() < topN)
-	    	      output.add(outTuple.convert());
-	    	}
-	    }
+	        for (i = 0; i < functions.length; i++)
+	            outTuple.setValue(COUNT_IDX + 1 + i, formatNumber(group.getAggregate(i, functions[i])));
 
-	    Strings[] results = new Strings[output.size()];
-	    output.toArray(results);
+	        output.addValue(outTuple.convert());
+	    }
 
-	    StringsArray outputSafe = BasicDataTypesTools.javaArrayToStringsArray(results);
-	    cc.pushDataComponentToOutput(OUT_TUPLES, outputSafe);
+	    cc.pushDataComponentToOutput(OUT_TUPLES, output.build());
 
 		// tuple meta data
 		cc.pushDataComponentToOutput(OUT_META_TUPLE, outPeer.convert());
@@ -280,45 +327,23 @@ public class TupleValueFrequencyCounter extends AbstractExecutableComponent {
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+        if (groupBy != null) {
+            groupBy.dispose();
+            groupBy = null;
+        }
     }
 
     //--------------------------------------------------------------------------------------------
 
-    @SuppressWarnings("serial")
-    static class ValueList<T> extends ArrayList<T> {
-
-        public ValueList(int size) {
-            super(size);
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null || !(obj instanceof ValueList<?>))
-                return false;
+    protected static String formatNumber(double value) {
+        if (Double.isNaN(value))
+            return "";
 
-            @SuppressWarnings("unchecked")
-            ValueList<?> other = (ValueList<T>) obj;
-            if (this.size() != other.size()) return false;
+        // keep integral results (counts, sums of counts, ...) free of a trailing '.0'
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
 
-            Iterator<T> thisIt = this.iterator();
-            Iterator<?> otherIt = other.iterator();
-
-            while (thisIt.hasNext())
-                if (!thisIt.next().equals(otherIt.next()))
-                    return false;
-
-            return true;
-        }
-
-        @Override
-        public int hashCode() {
-            int hashCode = 0;
-
-            for (T item : this)
-                hashCode += item.hashCode();
-
-            return hashCode;
-        }
+        return Double.toString(value);
     }
 }
 
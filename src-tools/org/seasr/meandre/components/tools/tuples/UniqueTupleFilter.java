@@ -57,11 +57,11 @@ import org.meandre.core.ComponentContextProperties;
 import org.meandre.core.ComponentExecutionException;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsArray;
-import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
-import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
+import org.seasr.meandre.support.components.tuples.TupleBatch;
 
 /**
  * @author Boris Capitanu
@@ -86,7 +86,8 @@ public class UniqueTupleFilter extends AbstractExecutableComponent {
     @ComponentInput(
             name = Names.PORT_TUPLES,
             description = "The tuples" +
-                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray"
+                "<br>TYPE: org.seasr.datatypes.BasicDataTypes.StringsArray" +
+                "<br>TYPE: org.seasr.meandre.support.components.tuples.TupleBatch"
     )
     protected static final String IN_TUPLES = Names.PORT_TUPLES;
 
@@ -160,7 +161,7 @@ public class UniqueTupleFilter extends AbstractExecutableComponent {
             _uniqueSet = new HashSet<String>();
 
         Strings inMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
-        SimpleTuplePeer inPeer  = new SimpleTuplePeer(inMeta);
+        SimpleTuplePeer inPeer  = SimpleTuplePeerRegistry.getPeer(inMeta);
 
         int FIELD_IDX = inPeer.getIndexForFieldName(_attributeName);
         if (FIELD_IDX == -1) {
@@ -168,20 +169,17 @@ public class UniqueTupleFilter extends AbstractExecutableComponent {
             throw new ComponentExecutionException(String.format("The tuples have no attribute named '%s'%nAttributes: %s", _attributeName, dump));
         }
 
-        Strings[] inTuples = BasicDataTypesTools.stringsArrayToJavaArray((StringsArray) cc.getDataComponentFromInput(IN_TUPLES));
-        SimpleTuple tuple = inPeer.createTuple();
+        TupleBatch inTuples = TupleBatch.parse(cc.getDataComponentFromInput(IN_TUPLES), inPeer);
+        String[] keys = inTuples.getStringColumn(FIELD_IDX);
 
         StringsArray.Builder uniqueTuplesBuilder = StringsArray.newBuilder();
         StringsArray.Builder duplicateTuplesBuilder = StringsArray.newBuilder();
 
-        for (Strings inTuple : inTuples) {
-            tuple.setValues(inTuple);
+        for (int i = 0, iMax = inTuples.size(); i < iMax; i++) {
+            Strings inTuple = inTuples.getRow(i);
 
-            String key = tuple.getValue(FIELD_IDX);
-            if (!_uniqueSet.contains(key)) {
+            if (_uniqueSet.add(keys[i]))
                 uniqueTuplesBuilder.addValue(inTuple);
-                _uniqueSet.add(key);
-            }
             else
                 duplicateTuplesBuilder.addValue(inTuple);
         }
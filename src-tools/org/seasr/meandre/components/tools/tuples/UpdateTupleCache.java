@@ -43,6 +43,7 @@
 package org.seasr.meandre.components.tools.tuples;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.Writer;
 import java.net.URI;
 
@@ -59,8 +60,10 @@ import org.meandre.core.ComponentExecutionException;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.support.components.tuples.AttributeStore;
 import org.seasr.meandre.support.components.tuples.SimpleTuple;
 import org.seasr.meandre.support.components.tuples.SimpleTuplePeer;
+import org.seasr.meandre.support.components.tuples.SimpleTuplePeerRegistry;
 import org.seasr.meandre.support.generic.io.IOUtils;
 import org.seasr.meandre.support.generic.io.PathUtils;
 
@@ -77,7 +80,7 @@ import org.seasr.meandre.support.generic.io.PathUtils;
         rights = Licenses.UofINCSA,
         tags = "#OUTPUT, cache",
         description = "Adds entries to the cache",
-        dependency = {"protobuf-java-2.2.0.jar"}
+        dependency = {"trove-2.0.3.jar", "protobuf-java-2.2.0.jar"}
 )
 public class UpdateTupleCache extends AbstractExecutableComponent {
 
@@ -139,6 +142,7 @@ public class UpdateTupleCache extends AbstractExecutableComponent {
     //--------------------------------------------------------------------------------------------
 
 
+    protected AttributeStore _store;
     protected Writer _writer;
     protected String _key;
     protected String _value;
@@ -154,7 +158,13 @@ public class UpdateTupleCache extends AbstractExecutableComponent {
         String cacheFile = getPropertyOrDieTrying(PROP_CACHE, ccp);
         String defaultDir = ccp.getPublicResourcesDirectory();
         URI cacheUri = PathUtils.relativize(new URI(cacheFile), defaultDir);
-        _writer = new BufferedWriter(IOUtils.getWriterForResource(cacheUri, true));
+
+        // local cache files are written through the shared store, making new entries visible to AttributeCacheLookup right away
+        File localCacheFile = getLocalFile(cacheUri);
+        if (localCacheFile != null)
+            _store = AttributeStore.open(localCacheFile);
+        else
+            _writer = new BufferedWriter(IOUtils.getWriterForResource(cacheUri, true));
     }
 
     @Override
@@ -162,7 +172,7 @@ public class UpdateTupleCache extends AbstractExecutableComponent {
         Strings inTuple = (Strings) cc.getDataComponentFromInput(IN_TUPLE);
         Strings inMetaTuple = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
 
-        SimpleTuplePeer inPeer = new SimpleTuplePeer(inMetaTuple);
+        SimpleTuplePeer inPeer = SimpleTuplePeerRegistry.getPeer(inMetaTuple);
         SimpleTuple tuple = inPeer.createTuple();
 
         tuple.setValues(inTuple);
@@ -177,19 +187,29 @@ public class UpdateTupleCache extends AbstractExecutableComponent {
 
         console.finer(String.format("key_idx=%d, key='%s', value_idx=%d, value='%s'", KEY_IDX, key, VALUE_IDX, value));
 
-        String data = String.format("%s\t%s", key, value);
-        for (int i = 0; i < inPeer.size(); i++) {
+        String[] extras = new String[inPeer.size() - (KEY_IDX == VALUE_IDX ? 1 : 2)];
+        for (int i = 0, j = 0; i < inPeer.size(); i++) {
             if (i == KEY_IDX || i == VALUE_IDX)
                 continue;
             else
-                data += String.format("\t%s", tuple.getValue(i));
+                extras[j++] = tuple.getValue(i);
         }
-        data += "\n";
 
-        console.finest("Writing to cache: " + data);
+        if (_store != null) {
+            console.finest("Adding to cache: " + key);
+            _store.put(key, value, extras);
+        } else {
+            StringBuilder data = new StringBuilder();
+            data.append(key).append('\t').append(value);
+            for (String extra : extras)
+                data.append('\t').append(extra);
+            data.append('\n');
+
+            console.finest("Writing to cache: " + data);
 
-        _writer.write(data);
-        _writer.flush();
+            _writer.write(data.toString());
+            _writer.flush();
+        }
 
         cc.pushDataComponentToOutput(OUT_TUPLE, inTuple);
         cc.pushDataComponentToOutput(OUT_META_TUPLE, inMetaTuple);
@@ -197,7 +217,32 @@ public class UpdateTupleCache extends AbstractExecutableComponent {
 
     @Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
-        _writer.close();
-        _writer = null;
+        if (_store != null) {
+            _store.close();
+            _store = null;
+        }
+
+        if (_writer != null) {
+            _writer.close();
+            _writer = null;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the local file for a cache location
+     *
+     * @param uri The cache location
+     * @return The file, or null if the location is not on the local file system
+     */
+    static File getLocalFile(URI uri) {
+        if (uri.getScheme() == null)
+            return new File(uri.getPath());
+
+        if (uri.getScheme().equalsIgnoreCase("file"))
+            return new File(uri);
+
+        return null;
     }
 }
@@ -45,6 +45,7 @@ package org.seasr.meandre.components.transform.text;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,7 +59,8 @@ import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
-import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.components.abstracts.AbstractParallelExecutableComponent;
+import org.seasr.meandre.support.components.transform.text.RegexRewriter;
 
 import tchrist.PatternUtils;
 
@@ -77,7 +79,7 @@ import tchrist.PatternUtils;
         baseURL = "meandre://seasr.org/components/foundry/",
         dependency = {"protobuf-java-2.2.0.jar"}
 )
-public class TextCleaner extends AbstractExecutableComponent {
+public class TextCleaner extends AbstractParallelExecutableComponent {
 
 	//------------------------------ INPUTS ------------------------------------------------------
 
@@ -110,6 +112,16 @@ public class TextCleaner extends AbstractExecutableComponent {
 	)
 	protected static final String PROP_UNICODE_REGEX = "unicode-regex";
 
+	@ComponentProperty(
+	        description = "If true, all find/replace rules are applied together in a single pass over the text: " +
+	                      "at each position the first rule that matches is replaced. In this mode a rule does not see " +
+	                      "the replacements made by the previous rules. Rules using back references (\\1...) " +
+	                      "cannot be combined; if any are present, the rules are applied one after the other.",
+            name = "single_pass",
+            defaultValue = "false"
+	)
+	protected static final String PROP_SINGLE_PASS = "single_pass";
+
 	@ComponentProperty(
 	        description = "The regular expression to find the matched substring. " +
             	          "For example, if specifying the regular expression as 'push' and " +
@@ -182,6 +194,7 @@ public class TextCleaner extends AbstractExecutableComponent {
 
 	private final Map<Pattern,String> replacements = new LinkedHashMap<Pattern,String>();
 	private boolean unicodeRegexes = false; 
+	private RegexRewriter rewriter;
 
 	//--------------------------------------------------------------------------------------------
 
@@ -212,6 +225,15 @@ public class TextCleaner extends AbstractExecutableComponent {
 	    if (replacements.size() == 0)
 	        console.warning("No find/replace regular expressions have been set. No action will be taken on the input text.");
 	    console.info(String.format("found these replacement strings: %s", replacements));
+
+	    if (Boolean.parseBoolean(getPropertyOrDieTrying(PROP_SINGLE_PASS, ccp)) && replacements.size() > 0) {
+	        try {
+	            rewriter = new RegexRewriter(replacements);
+	        }
+	        catch (IllegalArgumentException e) {
+	            console.warning("Cannot apply the rules in a single pass, applying them one after the other: " + e.getMessage());
+	        }
+	    }
 	}
 
 	@Override
@@ -222,18 +244,25 @@ public class TextCleaner extends AbstractExecutableComponent {
 		for (int i = 0, iMax = input.length; i < iMax; i++) {
 		    String text = input[i];
 
+		    if (rewriter != null) {
+		        output[i] = rewriter.rewrite(text, console);
+		        continue;
+		    }
+
 		    for (Entry<Pattern,String> entry : replacements.entrySet()) {
 		        Pattern regexp = entry.getKey();
 		        String replacement = entry.getValue();
 
 		        Matcher matcher = regexp.matcher(text);
 
-		        while (matcher.find())
-    		        for (int n = 1, nMax = matcher.groupCount(); n <= nMax; n++)
-    		            if (matcher.group(n) != null)
-    		                console.fine(String.format("Group %2$d ($%2$d) match: '%s' replacing with: '%3s'", matcher.group(n), n, replacement));
+		        if (console.isLoggable(Level.FINE)) {
+    		        while (matcher.find())
+        		        for (int n = 1, nMax = matcher.groupCount(); n <= nMax; n++)
+        		            if (matcher.group(n) != null)
+        		                console.fine(String.format("Group %2$d ($%2$d) match: '%s' replacing with: '%3s'", matcher.group(n), n, replacement));
 
-                matcher.reset();
+                    matcher.reset();
+		        }
 
 		        text = matcher.replaceAll(replacement);
 		    }
@@ -59,6 +59,7 @@ import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
 import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.support.components.transform.text.ReplacementEngine;
 
 //
 // FORMAT:  newText = {old1, old2, old3}; newText2 = {old4,old5}; newText3=old6"
@@ -81,7 +82,7 @@ import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
         firingPolicy = FiringPolicy.all,
         rights = Licenses.UofINCSA,
         baseURL = "meandre://seasr.org/components/foundry/",
-        dependency = {"protobuf-java-2.2.0.jar"}
+        dependency = {"trove-2.0.3.jar", "protobuf-java-2.2.0.jar"}
 )
 public class TextReplacement extends AbstractExecutableComponent {
 
@@ -130,6 +131,8 @@ public class TextReplacement extends AbstractExecutableComponent {
 
 
     boolean ignoreCase = true;
+    String rules = null;
+    ReplacementEngine engine = null;
 
 
     //--------------------------------------------------------------------------------------------
@@ -145,95 +148,28 @@ public class TextReplacement extends AbstractExecutableComponent {
     public void executeCallBack(ComponentContext cc) throws Exception {
 	    String[] val = DataTypeParser.parseAsString(cc.getDataComponentFromInput(IN_MAP_DATA));
 
-	    Map<String,String> dictionary = buildDictionary(val[0], console);
-	    Map<String,String> phraseReplaceDictionary = new HashMap<String,String>();
-	    for (String key : dictionary.keySet()) {
-	        if (key.indexOf(" ") > 1) {
-	            String value = dictionary.get(key);
-	            phraseReplaceDictionary.put(key, value);
-	        }
-	    }
-	    for (String key : phraseReplaceDictionary.keySet()) {
-	        dictionary.remove(key);
-	    }
-
-
-	    if (ignoreCase) {
-	        HashMap<String,String>tmp = new HashMap<String,String>();
-	        for (String key : dictionary.keySet()) {
-	            String v = dictionary.get(key);
-	            tmp.put(key.toLowerCase(),v);
-	        }
-	        dictionary = tmp;
+	    // the rules rarely change between firings; only rebuild the engine when they do
+	    if (engine == null || !val[0].equals(rules)) {
+	        Map<String,String> dictionary = buildDictionary(val[0], console);
+	        engine = new ReplacementEngine(dictionary, ignoreCase);
+	        rules = val[0];
+	        console.fine(String.format("Built the replacement engine for %d patterns", engine.getPatternCount()));
 	    }
 
-	    /*
-			for (String key : dictionary.keySet()) {
-				String v = dictionary.get(key);
-				console.info(key + "-->" + v);
-			}
-	     */
-
-
 		String text = DataTypeParser.parseAsString(cc.getDataComponentFromInput(IN_TEXT))[0];
 
-		//
-		// TODO: measure for speed:  cycle through the dictionary keys, doing a replaceAll
-		// OR cycle through the tokens, do an individual lookup/replace
-		//
-
-		//
-		// Option A, parse the text based on whitespace and punctuation
-		// cycle through these tokens, match against the dictionary
-		// we want tokens that typically mark an end of a word
-		// adding a few more characters that should mark an end of a word for replacement
-		StringTokenizer tokens = new StringTokenizer(text, " \t\n\r\f.,;!?\"\':(){}[]*-<>~", true);
-		StringBuilder sb = new StringBuilder();
-		while(tokens.hasMoreTokens()) {
-
-			String t = tokens.nextToken();
-			String key = t;
-			if (ignoreCase) {
-				key = key.toLowerCase();
-			}
-			// console.info("look at " + key);
-			String r = dictionary.get(key);
-			r = (r == null) ? (t) : (r);
-			sb.append(r);
-		}
-
-		text = cleanPhrases(sb.toString(), phraseReplaceDictionary);
-
-
-
-
-		//
-		// Option B: use Pattern (RegEx) and just do a replaceAll or match
-		// not implemented, yet
-		//
+		// tokens and phrases are all replaced in a single pass over the tokens of the text
+		// (see ReplacementEngine.DEFAULT_DELIMITERS for the characters that mark the end of a word)
+		text = engine.replace(text);
 
 		// push the output
 		cc.pushDataComponentToOutput(OUT_TEXT, BasicDataTypesTools.stringToStrings(text));
-
-		// console.info(sb.toString());
-	}
-
-	String cleanPhrases(String text, Map<String,String> phraseReplaceDictionary)
-	{
-		for (String key : phraseReplaceDictionary.keySet()) {
-			String replace = phraseReplaceDictionary.get(key);
-
-			//
-			// TODO: for ignoreCase, you have to make a new RegEx
-			// out of key such that case is ignored
-			//
-			text = text.replaceAll(key, replace);
-		}
-		return text;
 	}
 
 	@Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+	    rules = null;
+	    engine = null;
 	}
 
     //--------------------------------------------------------------------------------------------
@@ -51,7 +51,7 @@ import org.meandre.core.ComponentContextProperties;
 import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
-import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.components.abstracts.AbstractParallelExecutableComponent;
 
 /**
  * @author Lily Dong
@@ -69,7 +69,7 @@ import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
         baseURL = "meandre://seasr.org/components/foundry/",
         dependency = {"protobuf-java-2.2.0.jar"}
 )
-public class ToLowercase extends AbstractExecutableComponent {
+public class ToLowercase extends AbstractParallelExecutableComponent {
 
     //------------------------------ INPUTS ------------------------------------------------------
 
@@ -43,7 +43,7 @@
 
 package org.seasr.meandre.components.transform.text;
 
-import java.util.Vector;
+import gnu.trove.TLongHashSet;
 
 import org.meandre.annotations.Component;
 import org.meandre.annotations.Component.FiringPolicy;
@@ -54,12 +54,15 @@ import org.meandre.annotations.ComponentProperty;
 import org.meandre.core.ComponentContext;
 import org.meandre.core.ComponentContextException;
 import org.meandre.core.ComponentContextProperties;
+import org.meandre.core.system.components.ext.StreamInitiator;
+import org.meandre.core.system.components.ext.StreamTerminator;
+import org.seasr.datatypes.core.BasicDataTypes.Longs;
+import org.seasr.datatypes.core.BasicDataTypes.LongsMap;
 import org.seasr.datatypes.core.BasicDataTypes.Strings;
 import org.seasr.datatypes.core.BasicDataTypes.StringsMap;
-import org.seasr.datatypes.core.BasicDataTypesTools;
 import org.seasr.datatypes.core.DataTypeParser;
 import org.seasr.datatypes.core.Names;
-import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
+import org.seasr.meandre.components.abstracts.AbstractParallelExecutableComponent;
 
 
 /**
@@ -68,15 +71,17 @@ import org.seasr.meandre.components.abstracts.AbstractExecutableComponent;
 
 @Component(
         creator = "Lily Dong",
-        description = "Transforms token counts to ngram objects.",
+        description = "Transforms token counts to ngram objects. " +
+                "The ngrams can optionally be output in chunks (as a stream) and/or as 64-bit ids " +
+                "with a dictionary mapping each id to its ngram.",
         name = "Token To NGrams",
         tags = "#TRANSFORM, token, NGrams",
         firingPolicy = FiringPolicy.all,
         rights = Licenses.UofINCSA,
         baseURL = "meandre://seasr.org/components/foundry/",
-        dependency = {"protobuf-java-2.2.0.jar"}
+        dependency = {"protobuf-java-2.2.0.jar", "trove-2.0.3.jar"}
 )
-public class TokenToNGrams extends AbstractExecutableComponent {
+public class TokenToNGrams extends AbstractParallelExecutableComponent {
 
 	//------------------------------ INPUTS ------------------------------------------------------
 
@@ -92,11 +97,26 @@ public class TokenToNGrams extends AbstractExecutableComponent {
 
 	@ComponentOutput(
 			name = Names.PORT_TOKENS,
-			description = "The ngram objects." +
+			description = "The ngram objects (not output when ngram ids are requested)." +
 			"<br>TYPE: org.seasr.datatypes.BasicDataTypes.Strings"
 	)
 	protected static final String OUT_TOKENS = Names.PORT_TOKENS;
 
+	@ComponentOutput(
+	        name = "ngram_ids",
+	        description = "The 64-bit ids of the ngrams, in order (only output when ngram ids are requested)." +
+	        "<br>TYPE: org.seasr.datatypes.BasicDataTypes.Longs"
+	)
+	protected static final String OUT_NGRAM_IDS = "ngram_ids";
+
+	@ComponentOutput(
+	        name = Names.PORT_DICTIONARY,
+	        description = "The ngrams whose ids appear in the corresponding ngram_ids output, mapped to their id " +
+	        "(only output when ngram ids are requested)." +
+	        "<br>TYPE: org.seasr.datatypes.BasicDataTypes.LongsMap"
+	)
+	protected static final String OUT_DICTIONARY = Names.PORT_DICTIONARY;
+
     //------------------------------ PROPERTIES --------------------------------------------------
 
 	@ComponentProperty(
@@ -106,10 +126,39 @@ public class TokenToNGrams extends AbstractExecutableComponent {
 	)
 	protected static final String PROP_ARITY = Names.PROP_ARITY;
 
+	@ComponentProperty(
+	        description = "The maximum number of ngrams per output. If greater than 0, the ngrams of each input " +
+	                      "are output in chunks of this size, surrounded by stream delimiters. " +
+	                      "Use 0 to output all the ngrams of an input at once.",
+	        name = "chunk_size",
+	        defaultValue = "0"
+	)
+	protected static final String PROP_CHUNK_SIZE = "chunk_size";
+
+	@ComponentProperty(
+	        description = "The stream id to use for the stream delimiters when the output is chunked.",
+	        name = "stream_id",
+	        defaultValue = "0"
+	)
+	protected static final String PROP_STREAM_ID = "stream_id";
+
+	@ComponentProperty(
+	        description = "If true, the ngrams are output as 64-bit hash ids (ngram_ids) along with a dictionary " +
+	                      "mapping each ngram to its id, instead of as strings.",
+	        name = "ngram_ids",
+	        defaultValue = "false"
+	)
+	protected static final String PROP_NGRAM_IDS = "ngram_ids";
+
 	//--------------------------------------------------------------------------------------------
 
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
 	private int arity;
-	private Vector<String> vector;
+	private int chunkSize;
+	private int streamId;
+	private boolean emitIds;
 
 	//--------------------------------------------------------------------------------------------
 
@@ -120,21 +169,31 @@ public class TokenToNGrams extends AbstractExecutableComponent {
 			throw new ComponentContextException(
 					"Invalid value for property arity. The value must be greater than 1.");
 
+		chunkSize = Integer.parseInt(getPropertyOrDieTrying(PROP_CHUNK_SIZE, cc));
+		if (chunkSize < 0)
+		    throw new ComponentContextException(String.format("%s cannot be negative.", PROP_CHUNK_SIZE));
+
+		streamId = Integer.parseInt(getPropertyOrDieTrying(PROP_STREAM_ID, cc));
+		emitIds = Boolean.parseBoolean(getPropertyOrDieTrying(PROP_NGRAM_IDS, cc));
 	}
 
 	@Override
 	public void executeCallBack(ComponentContext cc) throws Exception {
-		vector = new Vector<String>();
+		NGramWriter writer = new NGramWriter(cc);
+
+		if (chunkSize > 0)
+		    writer.pushDelimiter(new StreamInitiator(streamId));
 
 		Object obj = cc.getDataComponentFromInput(IN_TOKENS);
 		if(obj instanceof StringsMap) //tokenized sentences
-			processSentences((StringsMap)obj);
+			processSentences((StringsMap)obj, writer);
 		else if(obj instanceof Strings) //tokens only
-			processTokens(DataTypeParser.parseAsString(obj));
+			processTokens(DataTypeParser.parseAsString(obj), writer);
 
-		String[] array = vector.toArray(new String[0]);
-		cc.pushDataComponentToOutput(
-				OUT_TOKENS, BasicDataTypesTools.stringToStrings(array));
+		writer.flush();
+
+		if (chunkSize > 0)
+		    writer.pushDelimiter(new StreamTerminator(streamId));
 	}
 
 	@Override
@@ -147,14 +206,10 @@ public class TokenToNGrams extends AbstractExecutableComponent {
 	 *
 	 * @param input contains sentences and tokens.
 	 */
-	private void processSentences(StringsMap input) throws Exception {
+	private void processSentences(StringsMap input, NGramWriter writer) throws Exception {
 		for (int i=0; i<input.getKeyCount(); i++) {
-			String[] tokens = null;
-			//String sentence = null;
-    		//sentence      = input.getKey(i);    // this is the entire sentence (the key)
     		Strings value = input.getValue(i);  // this is the set of tokens for that sentence
-    		tokens = DataTypeParser.parseAsString(value);
-    		processTokens(tokens);
+    		processTokens(DataTypeParser.parseAsString(value), writer);
 		}
 	}
 
@@ -162,12 +217,108 @@ public class TokenToNGrams extends AbstractExecutableComponent {
 	 *
 	 * @param input contains tokens only.
 	 */
-	private void processTokens(String[] input) {
-		for (int k=0;k<input.length-arity+1;k++) {
-			String str = "";
-    		for(int l=0; l<arity; ++l)
-    			str += input[k+l] + ((l!=arity-1)?" ":"");
-    		vector.add(str);
-		}
+	private void processTokens(String[] input, NGramWriter writer) throws Exception {
+		for (int k=0;k<input.length-arity+1;k++)
+		    writer.add(input, k, arity);
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the ngram (the tokens separated by single spaces)
+	 */
+	protected static long hash(String[] tokens, int start, int arity) {
+	    long hash = FNV_OFFSET_BASIS;
+
+	    for (int l = 0; l < arity; l++) {
+	        if (l > 0)
+	            hash = (hash ^ ' ') * FNV_PRIME;
+
+	        String token = tokens[start + l];
+	        for (int c = 0, cMax = token.length(); c < cMax; c++)
+	            hash = (hash ^ token.charAt(c)) * FNV_PRIME;
+	    }
+
+	    return hash;
+	}
+
+	//--------------------------------------------------------------------------------------------
+
+	/**
+	 * Accumulates the ngrams of one firing and pushes them out, one chunk at a time
+	 */
+	private class NGramWriter {
+	    private final ComponentContext cc;
+	    private final StringBuilder ngram = new StringBuilder();
+
+	    private Strings.Builder ngrams;
+	    private Longs.Builder ids;
+	    private LongsMap.Builder dictionary;
+	    private TLongHashSet known;
+	    private int count = 0;
+
+	    NGramWriter(ComponentContext cc) {
+	        this.cc = cc;
+	        reset();
+	    }
+
+	    void add(String[] tokens, int start, int arity) throws Exception {
+	        if (emitIds) {
+	            long id = hash(tokens, start, arity);
+	            ids.addValue(id);
+
+	            // the ngram string is only built the first time its id is seen in a chunk
+	            if (known.add(id))
+	                dictionary.addKey(build(tokens, start, arity)).addValue(Longs.newBuilder().addValue(id));
+	        }
+	        else
+	            ngrams.addValue(build(tokens, start, arity));
+
+	        if (++count == chunkSize)
+	            flush();
+	    }
+
+	    void flush() throws Exception {
+	        if (count == 0 && chunkSize > 0)
+	            return;
+
+	        if (emitIds) {
+	            cc.pushDataComponentToOutput(OUT_NGRAM_IDS, ids.build());
+	            cc.pushDataComponentToOutput(OUT_DICTIONARY, dictionary.build());
+	        }
+	        else
+	            cc.pushDataComponentToOutput(OUT_TOKENS, ngrams.build());
+
+	        reset();
+	    }
+
+	    void pushDelimiter(Object delimiter) throws Exception {
+	        if (emitIds) {
+	            cc.pushDataComponentToOutput(OUT_NGRAM_IDS, delimiter);
+	            cc.pushDataComponentToOutput(OUT_DICTIONARY, delimiter);
+	        }
+	        else
+	            cc.pushDataComponentToOutput(OUT_TOKENS, delimiter);
+	    }
+
+	    private String build(String[] tokens, int start, int arity) {
+	        ngram.setLength(0);
+	        for (int l = 0; l < arity; l++) {
+	            if (l > 0) ngram.append(' ');
+	            ngram.append(tokens[start + l]);
+	        }
+
+	        return ngram.toString();
+	    }
+
+	    private void reset() {
+	        count = 0;
+
+	        if (emitIds) {
+	            ids = Longs.newBuilder();
+	            dictionary = LongsMap.newBuilder();
+	            known = new TLongHashSet();
+	        }
+	        else
+	            ngrams = Strings.newBuilder();
+	    }
 	}
 }
@@ -46,6 +46,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.StringTokenizer;
 
 import org.meandre.annotations.Component;
@@ -148,8 +149,8 @@ public class TupleTextReplacement extends AbstractExecutableComponent {
 
 
     boolean ignoreCase = true;
+    String rules = null;
     Map<String,String> dictionary;
-    Map<String,String> phraseReplaceDictionary;
 
    	List<Integer> idxList = null;
 	String[] values = null;
@@ -176,39 +177,13 @@ public class TupleTextReplacement extends AbstractExecutableComponent {
 	@Override
     public void executeCallBack(ComponentContext cc) throws Exception {
 
-		if (dictionary == null) {
+		Strings input = (Strings) cc.getDataComponentFromInput(IN_MAP_DATA);
+		String[] val = BasicDataTypesTools.stringsToStringArray (input);
 
-			Strings input = (Strings) cc.getDataComponentFromInput(IN_MAP_DATA);
-			String[] val = BasicDataTypesTools.stringsToStringArray (input);
-
-			dictionary = buildDictionary(val[0]);
-			phraseReplaceDictionary = new HashMap<String,String>();
-			for (String key : dictionary.keySet()) {
-				if (key.indexOf(" ") > 1) {
-					String value = dictionary.get(key);
-					phraseReplaceDictionary.put(key, value);
-				}
-			}
-			for (String key : phraseReplaceDictionary.keySet()) {
-				dictionary.remove(key);
-			}
-
-
-			if (ignoreCase) {
-				HashMap<String,String>tmp = new HashMap<String,String>();
-				for (String key : dictionary.keySet()) {
-					String v = dictionary.get(key);
-					tmp.put(key.toLowerCase(),v);
-				}
-				dictionary = tmp;
-			}
-
-			/*
-			for (String key : dictionary.keySet()) {
-				String v = dictionary.get(key);
-				console.info(key + "-->" + v);
-			}
-			*/
+		// only rebuild the dictionary when the rules change
+		if (dictionary == null || !val[0].equals(rules)) {
+			dictionary = buildLookup(val[0]);
+			rules = val[0];
 		}
 		Strings inputMeta = (Strings) cc.getDataComponentFromInput(IN_META_TUPLE);
 		SimpleTuplePeer tuplePeer = new SimpleTuplePeer(inputMeta);
@@ -292,32 +267,15 @@ public class TupleTextReplacement extends AbstractExecutableComponent {
 		// console.info(sb.toString());
 	}
 
-	String cleanPhrases(String text)
-	{
-		for (String key : phraseReplaceDictionary.keySet()) {
-			String replace = phraseReplaceDictionary.get(key);
-
-			//
-			// TODO: for ignoreCase, you have to make a new RegEx
-			// out of key such that case is ignored
-			//
-			text = text.replaceAll(key, replace);
-		}
-		return text;
-	}
-
 	@Override
     public void disposeCallBack(ComponentContextProperties ccp) throws Exception {
+	    rules = null;
+
 	    if (dictionary != null) {
     	    dictionary.clear();
     	    dictionary = null;
 	    }
 
-	    if (phraseReplaceDictionary != null) {
-	        phraseReplaceDictionary.clear();
-	        phraseReplaceDictionary = null;
-	    }
-
 	    if (idxList != null) {
 	        idxList.clear();
 	        idxList = null;
@@ -328,6 +286,37 @@ public class TupleTextReplacement extends AbstractExecutableComponent {
 
     //--------------------------------------------------------------------------------------------
 
+    /**
+     * Builds the lookup used for the whole field values. Phrase keys (containing a space)
+     * are dropped and, when ignoring case, the keys are lower cased; the field values
+     * themselves are always lower cased before the lookup.
+     *
+     * @param configData The replacement rules
+     * @return The lookup
+     */
+    Map<String,String> buildLookup(String configData)
+    {
+        Map<String,String> map = buildDictionary(configData);
+
+        List<String> phrases = new ArrayList<String>();
+        for (String key : map.keySet())
+            if (key.indexOf(" ") > 1)
+                phrases.add(key);
+
+        for (String key : phrases)
+            map.remove(key);
+
+        if (ignoreCase) {
+            HashMap<String,String> tmp = new HashMap<String,String>();
+            for (Entry<String,String> entry : map.entrySet())
+                tmp.put(entry.getKey().toLowerCase(), entry.getValue());
+
+            map = tmp;
+        }
+
+        return map;
+    }
+
     public Map<String,String> buildDictionary(String configData)
 	{
 		configData = configData.replaceAll("\n","");